@@ -0,0 +1,47 @@
+package org.keycloak.benchmarks.jose;
+
+import org.keycloak.common.util.Base64Url;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class Base64UrlBenchmark {
+
+    @Param({"256", "2048"})
+    public int size;
+
+    private byte[] bytes;
+    private String encoded;
+
+    @Setup
+    public void setup() {
+        bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        encoded = Base64Url.encode(bytes);
+    }
+
+    @Benchmark
+    public String encode() {
+        return Base64Url.encode(bytes);
+    }
+
+    @Benchmark
+    public byte[] decode() {
+        return Base64Url.decode(encoded);
+    }
+
+}
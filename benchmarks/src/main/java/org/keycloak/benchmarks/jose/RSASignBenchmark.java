@@ -0,0 +1,56 @@
+package org.keycloak.benchmarks.jose;
+
+import org.keycloak.jose.jws.Algorithm;
+import org.keycloak.jose.jws.JWSBuilder;
+import org.keycloak.jose.jws.crypto.RSAProvider;
+import org.keycloak.representations.AccessToken;
+import org.keycloak.util.TokenUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.Charset;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class RSASignBenchmark {
+
+    private KeyPair keyPair;
+    private AccessToken token;
+    private byte[] data;
+
+    @Setup
+    public void setup() throws Exception {
+        keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+
+        token = new AccessToken();
+        token.type(TokenUtil.TOKEN_TYPE_BEARER)
+                .subject("user")
+                .issuer("http://localhost:8080/auth/realms/benchmark")
+                .addAccess("service").addRole("admin");
+
+        data = new JWSBuilder().jsonContent(token).none().getBytes(Charset.forName("UTF-8"));
+    }
+
+    @Benchmark
+    public String jwsBuilder() {
+        return new JWSBuilder().jsonContent(token).rsa256(keyPair.getPrivate());
+    }
+
+    @Benchmark
+    public byte[] rsaProviderSign() {
+        return RSAProvider.sign(data, Algorithm.RS256, keyPair.getPrivate());
+    }
+
+}
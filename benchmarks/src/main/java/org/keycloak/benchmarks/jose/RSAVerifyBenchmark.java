@@ -0,0 +1,69 @@
+package org.keycloak.benchmarks.jose;
+
+import org.keycloak.RSATokenVerifier;
+import org.keycloak.common.util.Time;
+import org.keycloak.jose.jws.JWSBuilder;
+import org.keycloak.jose.jws.JWSInput;
+import org.keycloak.jose.jws.crypto.RSAProvider;
+import org.keycloak.jose.jws.crypto.VerifiedTokenCache;
+import org.keycloak.representations.AccessToken;
+import org.keycloak.util.TokenUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+
+/**
+ * Throughput of bearer token verification. With <code>cache=false</code> every verification does the RSA check, which is
+ * the behaviour before {@link VerifiedTokenCache} was added.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class RSAVerifyBenchmark {
+
+    private static final String REALM_URL = "http://localhost:8080/auth/realms/benchmark";
+
+    @Param({"true", "false"})
+    public boolean cache;
+
+    private KeyPair keyPair;
+    private String encoded;
+
+    @Setup
+    public void setup() throws Exception {
+        keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+
+        AccessToken token = new AccessToken();
+        token.type(TokenUtil.TOKEN_TYPE_BEARER)
+                .subject("user")
+                .issuer(REALM_URL)
+                .expiration(Time.currentTime() + 3600)
+                .addAccess("service").addRole("admin");
+        encoded = new JWSBuilder().jsonContent(token).rsa256(keyPair.getPrivate());
+
+        VerifiedTokenCache.getInstance().clear();
+        VerifiedTokenCache.getInstance().setMaxSize(cache ? VerifiedTokenCache.DEFAULT_MAX_SIZE : 0);
+    }
+
+    @Benchmark
+    public AccessToken verifyToken() throws Exception {
+        return RSATokenVerifier.verifyToken(encoded, keyPair.getPublic(), REALM_URL);
+    }
+
+    @Benchmark
+    public boolean verifySignature() {
+        return RSAProvider.verify(new JWSInput(encoded), keyPair.getPublic());
+    }
+
+}
@@ -0,0 +1,54 @@
+package org.keycloak.benchmarks.models;
+
+import org.keycloak.models.utils.Pbkdf2PasswordEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Pbkdf2PasswordEncoderBenchmark {
+
+    @Param({"1", "1000", "20000"})
+    public int iterations;
+
+    @Param({Pbkdf2PasswordEncoder.PBKDF2_ALGORITHM, Pbkdf2PasswordEncoder.PBKDF2_SHA256_ALGORITHM})
+    public String algorithm;
+
+    private Pbkdf2PasswordEncoder encoder;
+    private String encoded;
+
+    @Setup
+    public void setup() {
+        encoder = new Pbkdf2PasswordEncoder(Pbkdf2PasswordEncoder.getSalt(), iterations, algorithm);
+        encoded = encoder.encode("password");
+    }
+
+    @Benchmark
+    public String encode() {
+        return encoder.encode("password");
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return encoder.verify("password", encoded);
+    }
+
+}
@@ -0,0 +1,168 @@
+package org.keycloak.benchmarks.models;
+
+import org.infinispan.commons.marshall.AdvancedExternalizer;
+import org.jboss.logging.Logger;
+import org.keycloak.models.ClientSessionModel;
+import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.sessions.infinispan.entities.ClientSessionEntity;
+import org.keycloak.models.sessions.infinispan.entities.UserSessionEntity;
+import org.keycloak.models.sessions.infinispan.marshall.ClientSessionEntityExternalizer;
+import org.keycloak.models.sessions.infinispan.marshall.UserSessionEntityExternalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.UUID;
+
+/**
+ * Compares default Java serialization of session entities with their externalizers. Size of the serialized entities is
+ * logged during setup. Sizes aren't reported through JMH as auxiliary counters would be normalized to the time of the
+ * iteration.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class SessionEntitySerializationBenchmark {
+
+    private static final Logger logger = Logger.getLogger(SessionEntitySerializationBenchmark.class);
+
+    private UserSessionEntityExternalizer userSessionExternalizer = new UserSessionEntityExternalizer();
+    private ClientSessionEntityExternalizer clientSessionExternalizer = new ClientSessionEntityExternalizer();
+
+    private UserSessionEntity userSession;
+    private ClientSessionEntity clientSession;
+
+    private byte[] userSessionSerialized;
+    private byte[] userSessionExternalized;
+    private byte[] clientSessionSerialized;
+    private byte[] clientSessionExternalized;
+
+    @Setup
+    public void setup() throws IOException {
+        userSession = new UserSessionEntity();
+        userSession.setId(UUID.randomUUID().toString());
+        userSession.setRealm("benchmark");
+        userSession.setUser(UUID.randomUUID().toString());
+        userSession.setLoginUsername("benchmark-user");
+        userSession.setIpAddress("192.168.0.10");
+        userSession.setAuthMethod("openid-connect");
+        userSession.setStarted(1448000000);
+        userSession.setLastSessionRefresh(1448000300);
+        userSession.setState(UserSessionModel.State.LOGGED_IN);
+        userSession.setClientSessions(new HashSet<String>());
+        userSession.setNotes(new HashMap<String, String>());
+        for (int i = 0; i < 3; i++) {
+            userSession.getClientSessions().add(UUID.randomUUID().toString());
+        }
+        userSession.getNotes().put("KC_DEVICE_NOTE", "desktop");
+
+        clientSession = new ClientSessionEntity();
+        clientSession.setId(UUID.randomUUID().toString());
+        clientSession.setRealm("benchmark");
+        clientSession.setClient(UUID.randomUUID().toString());
+        clientSession.setUserSession(userSession.getId());
+        clientSession.setAuthMethod("openid-connect");
+        clientSession.setRedirectUri("http://localhost:8080/benchmark-app/");
+        clientSession.setTimestamp(1448000300);
+        clientSession.setAction("CODE_TO_TOKEN");
+        clientSession.setRoles(new HashSet<String>());
+        clientSession.setProtocolMappers(new HashSet<String>());
+        for (int i = 0; i < 5; i++) {
+            clientSession.getRoles().add(UUID.randomUUID().toString());
+            clientSession.getProtocolMappers().add(UUID.randomUUID().toString());
+        }
+        clientSession.setNotes(new HashMap<String, String>());
+        clientSession.getNotes().put("iss", "http://localhost:8080/auth/realms/benchmark");
+        clientSession.getNotes().put("response_type", "code");
+        clientSession.getAuthenticatorStatus().put(UUID.randomUUID().toString(), ClientSessionModel.ExecutionStatus.SUCCESS);
+        clientSession.getAuthenticatorStatus().put(UUID.randomUUID().toString(), ClientSessionModel.ExecutionStatus.ATTEMPTED);
+
+        userSessionSerialized = serialize(userSession);
+        userSessionExternalized = externalize(userSessionExternalizer, userSession);
+        clientSessionSerialized = serialize(clientSession);
+        clientSessionExternalized = externalize(clientSessionExternalizer, clientSession);
+
+        logger.infov("User session: serialized {0} bytes, externalized {1} bytes", userSessionSerialized.length, userSessionExternalized.length);
+        logger.infov("Client session: serialized {0} bytes, externalized {1} bytes", clientSessionSerialized.length, clientSessionExternalized.length);
+    }
+
+    @Benchmark
+    public byte[] writeUserSessionSerialized() throws IOException {
+        return serialize(userSession);
+    }
+
+    @Benchmark
+    public byte[] writeUserSessionExternalized() throws IOException {
+        return externalize(userSessionExternalizer, userSession);
+    }
+
+    @Benchmark
+    public Object readUserSessionSerialized() throws Exception {
+        return deserialize(userSessionSerialized);
+    }
+
+    @Benchmark
+    public Object readUserSessionExternalized() throws Exception {
+        return internalize(userSessionExternalizer, userSessionExternalized);
+    }
+
+    @Benchmark
+    public byte[] writeClientSessionSerialized() throws IOException {
+        return serialize(clientSession);
+    }
+
+    @Benchmark
+    public byte[] writeClientSessionExternalized() throws IOException {
+        return externalize(clientSessionExternalizer, clientSession);
+    }
+
+    @Benchmark
+    public Object readClientSessionSerialized() throws Exception {
+        return deserialize(clientSessionSerialized);
+    }
+
+    @Benchmark
+    public Object readClientSessionExternalized() throws Exception {
+        return internalize(clientSessionExternalizer, clientSessionExternalized);
+    }
+
+    // Both are written with ObjectOutputStream, so the difference is only in the format of the entity
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(object);
+        output.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws Exception {
+        return new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+    }
+
+    private static <T> byte[] externalize(AdvancedExternalizer<T> externalizer, T object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        externalizer.writeObject(output, object);
+        output.close();
+        return bytes.toByteArray();
+    }
+
+    private static <T> T internalize(AdvancedExternalizer<T> externalizer, byte[] bytes) throws Exception {
+        return externalizer.readObject(new ObjectInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+}
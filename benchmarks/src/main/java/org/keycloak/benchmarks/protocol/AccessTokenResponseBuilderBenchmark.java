@@ -0,0 +1,127 @@
+package org.keycloak.benchmarks.protocol;
+
+import org.keycloak.common.ClientConnection;
+import org.keycloak.events.EventBuilder;
+import org.keycloak.models.ClientModel;
+import org.keycloak.models.RealmModel;
+import org.keycloak.protocol.oidc.TokenManager;
+import org.keycloak.representations.AccessToken;
+import org.keycloak.representations.AccessTokenResponse;
+import org.keycloak.representations.IDToken;
+import org.keycloak.representations.RefreshToken;
+import org.keycloak.util.TokenUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encoding of access, refresh and id token into token response. Realm and client are in-memory stubs, so no database or
+ * cache is needed.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class AccessTokenResponseBuilderBenchmark {
+
+    private static final String ISSUER = "http://localhost:8080/auth/realms/benchmark";
+
+    private TokenManager tokenManager;
+    private RealmModel realm;
+    private ClientModel client;
+    private ClientConnection connection;
+    private AccessToken accessToken;
+    private RefreshToken refreshToken;
+    private IDToken idToken;
+
+    @Setup
+    public void setup() throws Exception {
+        KeyPair keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+
+        Map<String, Object> realmValues = new HashMap<>();
+        realmValues.put("getId", "benchmark");
+        realmValues.put("getName", "benchmark");
+        realmValues.put("getPrivateKey", keyPair.getPrivate());
+        realmValues.put("getPublicKey", keyPair.getPublic());
+        realm = stub(RealmModel.class, realmValues);
+
+        Map<String, Object> clientValues = new HashMap<>();
+        clientValues.put("getId", "benchmark-client");
+        clientValues.put("getClientId", "benchmark-client");
+        client = stub(ClientModel.class, clientValues);
+
+        Map<String, Object> connectionValues = new HashMap<>();
+        connectionValues.put("getRemoteAddr", "127.0.0.1");
+        connection = stub(ClientConnection.class, connectionValues);
+
+        tokenManager = new TokenManager();
+
+        accessToken = new AccessToken();
+        accessToken.type(TokenUtil.TOKEN_TYPE_BEARER)
+                .id("access-token")
+                .subject("user")
+                .issuer(ISSUER)
+                .issuedFor("benchmark-client")
+                .addAccess("service").addRole("admin");
+        accessToken.setSessionState("session");
+
+        refreshToken = new RefreshToken(accessToken);
+        refreshToken.id("refresh-token");
+
+        idToken = new IDToken();
+        idToken.id("id-token");
+        idToken.type(TokenUtil.TOKEN_TYPE_ID);
+        idToken.subject("user");
+        idToken.issuer(ISSUER);
+        idToken.issuedFor("benchmark-client");
+    }
+
+    @Benchmark
+    public AccessTokenResponse build() {
+        EventBuilder event = new EventBuilder(realm, null, connection);
+        return tokenManager.responseBuilder(realm, client, event, null, null, null)
+                .accessToken(accessToken)
+                .refreshToken(refreshToken)
+                .idToken(idToken)
+                .build();
+    }
+
+    /**
+     * Returns given values for getters of the given names, defaults of primitive types or null for everything else
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, final Map<String, Object> values) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[] { type }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (values.containsKey(method.getName())) {
+                    return values.get(method.getName());
+                }
+                Class<?> returnType = method.getReturnType();
+                if (returnType == boolean.class) {
+                    return false;
+                } else if (returnType == int.class) {
+                    return 0;
+                } else if (returnType == long.class) {
+                    return 0L;
+                }
+                return null;
+            }
+        });
+    }
+
+}
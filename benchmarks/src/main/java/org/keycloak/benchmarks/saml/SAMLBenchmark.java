@@ -0,0 +1,119 @@
+package org.keycloak.benchmarks.saml;
+
+import org.keycloak.dom.saml.v2.protocol.ResponseType;
+import org.keycloak.saml.common.util.DocumentUtil;
+import org.keycloak.saml.common.util.ThreadLocalCache;
+import org.keycloak.saml.processing.api.saml.v2.response.SAML2Response;
+import org.keycloak.saml.processing.core.parsers.saml.SAMLParser;
+import org.keycloak.saml.processing.core.util.XMLSignatureUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+import javax.xml.crypto.dsig.DigestMethod;
+import javax.xml.crypto.dsig.SignatureMethod;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+
+/**
+ * Parsing, marshalling and signing of a SAML response with one assertion
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class SAMLBenchmark {
+
+    private static final String RESPONSE =
+            "<samlp:Response xmlns:samlp=\"urn:oasis:names:tc:SAML:2.0:protocol\" xmlns:saml=\"urn:oasis:names:tc:SAML:2.0:assertion\""
+            + " ID=\"ID_response\" Version=\"2.0\" IssueInstant=\"2015-11-01T12:00:00Z\" Destination=\"http://localhost:8080/sales-post/\""
+            + " InResponseTo=\"ID_request\">"
+            + "<saml:Issuer>http://localhost:8080/auth/realms/benchmark</saml:Issuer>"
+            + "<samlp:Status><samlp:StatusCode Value=\"urn:oasis:names:tc:SAML:2.0:status:Success\"/></samlp:Status>"
+            + "<saml:Assertion ID=\"ID_assertion\" Version=\"2.0\" IssueInstant=\"2015-11-01T12:00:00Z\">"
+            + "<saml:Issuer>http://localhost:8080/auth/realms/benchmark</saml:Issuer>"
+            + "<saml:Subject>"
+            + "<saml:NameID Format=\"urn:oasis:names:tc:SAML:1.1:nameid-format:unspecified\">user</saml:NameID>"
+            + "<saml:SubjectConfirmation Method=\"urn:oasis:names:tc:SAML:2.0:cm:bearer\">"
+            + "<saml:SubjectConfirmationData InResponseTo=\"ID_request\" NotOnOrAfter=\"2015-11-01T12:05:00Z\""
+            + " Recipient=\"http://localhost:8080/sales-post/\"/>"
+            + "</saml:SubjectConfirmation>"
+            + "</saml:Subject>"
+            + "<saml:Conditions NotBefore=\"2015-11-01T11:59:00Z\" NotOnOrAfter=\"2015-11-01T12:05:00Z\">"
+            + "<saml:AudienceRestriction><saml:Audience>http://localhost:8080/sales-post/</saml:Audience></saml:AudienceRestriction>"
+            + "</saml:Conditions>"
+            + "<saml:AuthnStatement AuthnInstant=\"2015-11-01T12:00:00Z\" SessionIndex=\"session\">"
+            + "<saml:AuthnContext><saml:AuthnContextClassRef>urn:oasis:names:tc:SAML:2.0:ac:classes:unspecified</saml:AuthnContextClassRef></saml:AuthnContext>"
+            + "</saml:AuthnStatement>"
+            + "<saml:AttributeStatement>"
+            + "<saml:Attribute Name=\"Role\"><saml:AttributeValue>manager</saml:AttributeValue></saml:Attribute>"
+            + "<saml:Attribute Name=\"email\"><saml:AttributeValue>user@localhost</saml:AttributeValue></saml:Attribute>"
+            + "</saml:AttributeStatement>"
+            + "</saml:Assertion>"
+            + "</samlp:Response>";
+
+    // Server enables the per-thread cache of JAXP objects, adapters don't
+    @Param({"true", "false"})
+    public boolean threadLocalCache;
+
+    private KeyPair keyPair;
+    private Document document;
+    private byte[] responseBytes;
+    private ResponseType responseType;
+
+    @Setup
+    public void setup() throws Exception {
+        ThreadLocalCache.setEnabled(threadLocalCache);
+        keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        document = DocumentUtil.getDocument(RESPONSE);
+        responseBytes = RESPONSE.getBytes(StandardCharsets.UTF_8);
+        responseType = (ResponseType) new SAMLParser().parse(new ByteArrayInputStream(responseBytes));
+    }
+
+    @Benchmark
+    public Document parse() throws Exception {
+        return DocumentUtil.getDocument(RESPONSE);
+    }
+
+    @Benchmark
+    public Object parseResponseType() throws Exception {
+        return new SAMLParser().parse(new ByteArrayInputStream(responseBytes));
+    }
+
+    @Benchmark
+    public byte[] marshall() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new SAML2Response().marshall(responseType, bos);
+        return bos.toByteArray();
+    }
+
+    /**
+     * Response read from the wire the way SAML2Response does it (DOM, schema validation, parsing) and written back as a
+     * document, as the server does before signing
+     */
+    @Benchmark
+    public Document roundTrip() throws Exception {
+        SAML2Response saml2Response = new SAML2Response();
+        ResponseType parsed = saml2Response.getResponseType(new ByteArrayInputStream(responseBytes));
+        return saml2Response.convert(parsed);
+    }
+
+    @Benchmark
+    public Document sign() throws Exception {
+        Document doc = (Document) document.cloneNode(true);
+        return XMLSignatureUtil.sign(doc, keyPair, DigestMethod.SHA256, SignatureMethod.RSA_SHA1, "", CanonicalizationMethod.EXCLUSIVE);
+    }
+
+}
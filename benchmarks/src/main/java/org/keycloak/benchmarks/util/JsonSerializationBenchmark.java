@@ -0,0 +1,57 @@
+package org.keycloak.benchmarks.util;
+
+import org.keycloak.representations.AccessToken;
+import org.keycloak.util.JsonSerialization;
+import org.keycloak.util.TokenUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class JsonSerializationBenchmark {
+
+    private AccessToken token;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws IOException {
+        token = new AccessToken();
+        token.type(TokenUtil.TOKEN_TYPE_BEARER)
+                .id("3ba0b3ea-4d4b-4e54-a5c2-2b5e5c8f1b7a")
+                .subject("b3c8e2d3-6b1a-4f3e-8f0a-1a2b3c4d5e6f")
+                .issuer("http://localhost:8080/auth/realms/benchmark")
+                .issuedFor("benchmark-client")
+                .expiration(1500000000)
+                .issuedAt(1499999700);
+        token.setRealmAccess(new AccessToken.Access().addRole("user").addRole("offline_access"));
+        token.addAccess("account").addRole("manage-account").addRole("view-profile");
+        token.addAccess("service").addRole("admin");
+        token.setName("Benchmark User");
+        token.setEmail("benchmark@localhost");
+
+        bytes = JsonSerialization.writeValueAsBytes(token);
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        return JsonSerialization.writeValueAsBytes(token);
+    }
+
+    @Benchmark
+    public AccessToken read() throws IOException {
+        return JsonSerialization.readValue(bytes, AccessToken.class);
+    }
+
+}
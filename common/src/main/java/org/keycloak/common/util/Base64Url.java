@@ -1,11 +1,27 @@
 package org.keycloak.common.util;
 
+import java.util.Arrays;
 
 /**
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
  * @version $Revision: 1 $
  */
 public class Base64Url {
+
+    private static final byte[] ENCODE_TABLE = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".getBytes();
+
+    private static final byte[] DECODE_TABLE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE_TABLE, (byte) -1);
+        for (int i = 0; i < ENCODE_TABLE.length; i++) {
+            DECODE_TABLE[ENCODE_TABLE[i]] = (byte) i;
+        }
+        // standard Base64 alphabet is accepted as well, same as when decoding through Base64
+        DECODE_TABLE['+'] = 62;
+        DECODE_TABLE['/'] = 63;
+    }
+
     public static String encode(byte[] bytes) {
         String s = Base64.encodeBytes(bytes);
         s = s.split("=")[0]; // Remove any trailing '='s
@@ -38,5 +54,83 @@ public class Base64Url {
         }
     }
 
+    /**
+     * @return length of unpadded encoding of given number of bytes
+     */
+    public static int encodedLength(int length) {
+        return (length * 4 + 2) / 3;
+    }
+
+    /**
+     * Encodes bytes without padding directly into the destination array, which must have space for
+     * {@link #encodedLength(int)} bytes.
+     *
+     * @return offset in the destination after the encoded bytes
+     */
+    public static int encode(byte[] source, int offset, int length, byte[] destination, int destinationOffset) {
+        int s = offset;
+        int d = destinationOffset;
+        int end = offset + length - length % 3;
+        while (s < end) {
+            int bits = (source[s++] & 0xff) << 16 | (source[s++] & 0xff) << 8 | (source[s++] & 0xff);
+            destination[d++] = ENCODE_TABLE[(bits >>> 18) & 0x3f];
+            destination[d++] = ENCODE_TABLE[(bits >>> 12) & 0x3f];
+            destination[d++] = ENCODE_TABLE[(bits >>> 6) & 0x3f];
+            destination[d++] = ENCODE_TABLE[bits & 0x3f];
+        }
+        int remaining = length % 3;
+        if (remaining == 1) {
+            int bits = (source[s] & 0xff) << 16;
+            destination[d++] = ENCODE_TABLE[(bits >>> 18) & 0x3f];
+            destination[d++] = ENCODE_TABLE[(bits >>> 12) & 0x3f];
+        } else if (remaining == 2) {
+            int bits = (source[s] & 0xff) << 16 | (source[s + 1] & 0xff) << 8;
+            destination[d++] = ENCODE_TABLE[(bits >>> 18) & 0x3f];
+            destination[d++] = ENCODE_TABLE[(bits >>> 12) & 0x3f];
+            destination[d++] = ENCODE_TABLE[(bits >>> 6) & 0x3f];
+        }
+        return d;
+    }
+
+    /**
+     * Decodes part of the string between start (inclusive) and end (exclusive) without creating substring. Trailing
+     * '='s are ignored.
+     */
+    public static byte[] decode(CharSequence s, int start, int end) {
+        while (end > start && s.charAt(end - 1) == '=') {
+            end--;
+        }
+        int length = end - start;
+        if (length % 4 == 1) {
+            throw new RuntimeException("Illegal base64url string!");
+        }
+
+        byte[] decoded = new byte[length * 3 / 4];
+        int d = 0;
+        int bits = 0;
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            int value = c < 128 ? DECODE_TABLE[c] : -1;
+            if (value < 0) {
+                throw new RuntimeException("Illegal base64url character: " + c);
+            }
+            bits = bits << 6 | value;
+            if (++count == 4) {
+                decoded[d++] = (byte) (bits >>> 16);
+                decoded[d++] = (byte) (bits >>> 8);
+                decoded[d++] = (byte) bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count == 2) {
+            decoded[d] = (byte) (bits >>> 4);
+        } else if (count == 3) {
+            decoded[d++] = (byte) (bits >>> 10);
+            decoded[d] = (byte) (bits >>> 2);
+        }
+        return decoded;
+    }
 
 }
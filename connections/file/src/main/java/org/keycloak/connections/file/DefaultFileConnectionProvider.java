@@ -32,6 +32,12 @@ public class DefaultFileConnectionProvider implements FileConnectionProvider {
 
     private boolean isRollbackOnly = false;
 
+    // Content of the model file this session was loaded from
+    private byte[] loadedModel;
+
+    // Version of the model file this session was loaded from
+    private long loadedVersion;
+
     public DefaultFileConnectionProvider(DefaultFileConnectionProviderFactory factory,
                                          KeycloakSession session,
                                          InMemoryModel inMemoryModel) {
@@ -45,6 +51,22 @@ public class DefaultFileConnectionProvider implements FileConnectionProvider {
         return inMemoryModel;
     }
 
+    byte[] getLoadedModel() {
+        return loadedModel;
+    }
+
+    void setLoadedModel(byte[] loadedModel) {
+        this.loadedModel = loadedModel;
+    }
+
+    long getLoadedVersion() {
+        return loadedVersion;
+    }
+
+    void setLoadedVersion(long loadedVersion) {
+        this.loadedVersion = loadedVersion;
+    }
+
     @Override
     public void sessionClosed(KeycloakSession session) {
         factory.sessionClosed(session);
@@ -16,16 +16,20 @@
  */
 package org.keycloak.connections.file;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.JsonNode;
 import org.jboss.logging.Logger;
 import org.keycloak.Config;
 import org.keycloak.exportimport.Strategy;
@@ -33,6 +37,7 @@ import org.keycloak.exportimport.util.ExportUtils;
 import org.keycloak.exportimport.util.ImportUtils;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.ModelException;
 import org.keycloak.models.RealmModel;
 import org.keycloak.representations.idm.RealmRepresentation;
 import org.keycloak.util.JsonSerialization;
@@ -41,6 +46,12 @@ import org.keycloak.util.JsonSerialization;
  * This class dispenses a FileConnectionProvider to Keycloak sessions.  It
  * makes sure that only one InMemoryModel is provided for each session and it
  * handles thread contention for the file where the model is read or saved.
+ * The content of the file is kept in memory, so sessions don't read the file
+ * unless it was changed externally. The file is only written by sessions, which
+ * changed the model, and it's replaced atomically. Each write increments the
+ * version of the model. Commit of a session, which changed the model loaded
+ * in an older version, is rejected, so it can't overwrite changes committed
+ * by other sessions meanwhile.
  *
  * @author Stan Silvert ssilvert@redhat.com (C) 2015 Red Hat Inc.
  */
@@ -49,7 +60,13 @@ public class DefaultFileConnectionProviderFactory implements FileConnectionProvi
     protected static final Logger logger = Logger.getLogger(DefaultFileConnectionProviderFactory.class);
 
     private File kcdata;
-    private final Map<KeycloakSession, FileConnectionProvider> allProviders = new HashMap<KeycloakSession, FileConnectionProvider>();
+    private final Map<KeycloakSession, DefaultFileConnectionProvider> allProviders = new HashMap<KeycloakSession, DefaultFileConnectionProvider>();
+
+    // Guards the model file and the in-memory copy of its content
+    private final Object fileLock = new Object();
+    private byte[] modelBytes;
+    private long modelLastModified;
+    private long modelVersion;
 
     @Override
     public void init(Config.Scope config) {
@@ -77,42 +94,95 @@ public class DefaultFileConnectionProviderFactory implements FileConnectionProvi
         }
     }
 
-    void readModelFile(KeycloakSession session) {
-        synchronized(allProviders) {
+    void readModelFile(KeycloakSession session, DefaultFileConnectionProvider fcProvider) {
+        byte[] bytes;
+        synchronized (fileLock) {
+            bytes = loadModelBytes();
+            fcProvider.setLoadedVersion(modelVersion);
+        }
+        if (bytes == null) {
+            return;
+        }
+
+        try {
+            Model model = JsonSerialization.readValue(new ByteArrayInputStream(bytes), Model.class);
+            session.realms().getMigrationModel().setStoredVersion(model.getModelVersion());
+
+            ImportUtils.importRealms(session, model.getRealms(), Strategy.IGNORE_EXISTING);
+            fcProvider.setLoadedModel(bytes);
+        } catch (IOException ioe) {
+            logger.error("Unable to read model file " + kcdata.getAbsolutePath(), ioe);
+        }
+    }
+
+    /**
+     * Returns content of the model file. The content is kept in memory, so the file is read again only if it was changed
+     * by someone else than this factory.
+     */
+    private byte[] loadModelBytes() {
+        synchronized (fileLock) {
             if (!kcdata.exists()) {
-                return;
+                return null;
             }
 
-            FileInputStream fis = null;
-            try {
-                fis = new FileInputStream(kcdata);
-                Model model = JsonSerialization.readValue(fis, Model.class);
-                ImportUtils.importFromStream(session, JsonSerialization.mapper, fis, Strategy.IGNORE_EXISTING);
-                session.realms().getMigrationModel().setStoredVersion(model.getModelVersion());
+            if (modelBytes != null && kcdata.lastModified() == modelLastModified) {
+                return modelBytes;
+            }
 
-                ImportUtils.importRealms(session, model.getRealms(), Strategy.IGNORE_EXISTING);
+            try {
+                modelBytes = Files.readAllBytes(kcdata.toPath());
+                modelLastModified = kcdata.lastModified();
+                modelVersion++;
+                //logger.info("Read model file");
+                return modelBytes;
             } catch (IOException ioe) {
                 logger.error("Unable to read model file " + kcdata.getAbsolutePath(), ioe);
-            } finally {
-                //logger.info("Read model file for session=" + session.hashCode());
-                try {
-                    if (fis != null) {
-                        fis.close();
-                    }
-                } catch (IOException e) {
-                    logger.error("Failed to close output stream.", e);
-                }
+                return null;
             }
         }
     }
 
-    void writeModelFile(KeycloakSession session) {
-        synchronized(allProviders) {
+    void writeModelFile(KeycloakSession session, DefaultFileConnectionProvider fcProvider) {
+        byte[] bytes;
+        try {
+            bytes = exportModel(session);
+        } catch (IOException e) {
+            logger.error("Unable to export model", e);
+            return;
+        }
+
+        // Session didn't change anything. Don't write it, so it can't overwrite changes committed by other sessions meanwhile
+        if (isSameModel(bytes, fcProvider.getLoadedModel())) {
+            return;
+        }
+
+        synchronized (fileLock) {
+            if (kcdata.exists() && kcdata.lastModified() != modelLastModified) {
+                // Changed externally since it was last read or written by this factory
+                modelVersion++;
+            }
+            if (fcProvider.getLoadedVersion() != modelVersion) {
+                throw new ModelException("Model file " + kcdata.getAbsolutePath() + " was changed by other session meanwhile");
+            }
+
+            File tmp = new File(kcdata.getAbsoluteFile().getParentFile(), kcdata.getName() + ".tmp");
             FileOutputStream outStream = null;
 
             try {
-                outStream = new FileOutputStream(kcdata);
-                exportModel(session, outStream);
+                outStream = new FileOutputStream(tmp);
+                outStream.write(bytes);
+                outStream.close();
+                outStream = null;
+
+                try {
+                    Files.move(tmp.toPath(), kcdata.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp.toPath(), kcdata.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+
+                modelBytes = bytes;
+                modelLastModified = kcdata.lastModified();
+                modelVersion++;
             } catch (IOException e) {
                 logger.error("Unable to write model file " + kcdata.getAbsolutePath(), e);
             } finally {
@@ -128,7 +198,29 @@ public class DefaultFileConnectionProviderFactory implements FileConnectionProvi
         }
     }
 
-    private void exportModel(KeycloakSession session, FileOutputStream outStream) throws IOException {
+    /**
+     * Export isn't guaranteed to be byte-identical for the same model (eg. order of fields), so the content is compared as
+     * JSON tree if the bytes differ.
+     */
+    private boolean isSameModel(byte[] exported, byte[] loaded) {
+        if (loaded == null) {
+            return false;
+        }
+        if (Arrays.equals(exported, loaded)) {
+            return true;
+        }
+
+        try {
+            JsonNode exportedTree = JsonSerialization.mapper.readTree(exported);
+            JsonNode loadedTree = JsonSerialization.mapper.readTree(loaded);
+            return exportedTree.equals(loadedTree);
+        } catch (IOException e) {
+            logger.warn("Unable to compare model with the model file", e);
+            return false;
+        }
+    }
+
+    private byte[] exportModel(KeycloakSession session) throws IOException {
         List<RealmModel> realms = session.realms().getRealms();
         List<RealmRepresentation> reps = new ArrayList<RealmRepresentation>();
         for (RealmModel realm : realms) {
@@ -137,24 +229,28 @@ public class DefaultFileConnectionProviderFactory implements FileConnectionProvi
         Model model = new Model();
         model.setRealms(reps);
         model.setModelVersion(session.realms().getMigrationModel().getStoredVersion());
-        JsonSerialization.prettyMapper.writeValue(outStream, model);
+        return JsonSerialization.prettyMapper.writeValueAsBytes(model);
     }
 
     @Override
     public FileConnectionProvider create(KeycloakSession session) {
+        DefaultFileConnectionProvider fcProvider;
         synchronized (allProviders) {
-            FileConnectionProvider fcProvider = allProviders.get(session);
-            if (fcProvider == null) {
-                InMemoryModel model = new InMemoryModel();
-                fcProvider = new DefaultFileConnectionProvider(this, session, model);
-                allProviders.put(session, fcProvider);
-                session.getTransaction().enlist(fcProvider);
-                readModelFile(session);
-                //logger.info("Added session " + session.hashCode() + " total sessions=" + allModels.size());
+            fcProvider = allProviders.get(session);
+            if (fcProvider != null) {
+                return fcProvider;
             }
 
-            return fcProvider;
+            InMemoryModel model = new InMemoryModel();
+            fcProvider = new DefaultFileConnectionProvider(this, session, model);
+            allProviders.put(session, fcProvider);
+            //logger.info("Added session " + session.hashCode() + " total sessions=" + allModels.size());
         }
+
+        // Importing the model is done outside of the lock, so sessions don't wait for each other
+        session.getTransaction().enlist(fcProvider);
+        readModelFile(session, fcProvider);
+        return fcProvider;
     }
 
     // commitCount is used for debugging.  This allows you to easily run a test
@@ -162,21 +258,20 @@ public class DefaultFileConnectionProviderFactory implements FileConnectionProvi
     //private static int commitCount = 0;
     void commit(KeycloakSession session) {
         //commitCount++;
+        DefaultFileConnectionProvider fcProvider;
         synchronized (allProviders) {
             // in case commit was somehow called twice on the same session
-            if (!allProviders.containsKey(session)) return;
+            fcProvider = allProviders.remove(session);
+            if (fcProvider == null) return;
 
-            try {
-                writeModelFile(session);
-            } finally {
-                allProviders.remove(session);
-                //logger.info("Removed session " + session.hashCode());
-                //logger.info("*** commitCount=" + commitCount);
-                //logger.info("commit(): Session count=" + allModels.size());
-            }
+            //logger.info("Removed session " + session.hashCode());
+            //logger.info("*** commitCount=" + commitCount);
+            //logger.info("commit(): Session count=" + allModels.size());
+        }
+
+        writeModelFile(session, fcProvider);
 
     //     if (commitCount == 16) {Thread.dumpStack();System.exit(0);}
-        }
     }
 
     void rollback(KeycloakSession session) {
@@ -3,6 +3,7 @@ package org.keycloak.connections.httpclient;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.EntityBuilder;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
@@ -44,7 +45,15 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
 
             @Override
             public int postText(String uri, String text) throws IOException {
+                return postText(uri, text, null);
+            }
+
+            @Override
+            public int postText(String uri, String text, RequestConfig requestConfig) throws IOException {
                 HttpPost request = new HttpPost(uri);
+                if (requestConfig != null) {
+                    request.setConfig(requestConfig);
+                }
                 request.setEntity(EntityBuilder.create().setText(text).setContentType(ContentType.TEXT_PLAIN).build());
                 HttpResponse response = httpClient.execute(request);
                 try {
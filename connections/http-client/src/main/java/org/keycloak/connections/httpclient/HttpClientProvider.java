@@ -1,6 +1,7 @@
 package org.keycloak.connections.httpclient;
 
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.keycloak.provider.Provider;
 import org.keycloak.provider.ProviderFactory;
 
@@ -23,6 +24,17 @@ public interface HttpClientProvider extends Provider {
      */
     public int postText(String uri, String text) throws IOException;
 
+    /**
+     * Helper method
+     *
+     * @param uri
+     * @param text
+     * @param requestConfig timeouts and other settings of the request or null to use defaults of the http client
+     * @return http response status
+     * @throws IOException
+     */
+    public int postText(String uri, String text, RequestConfig requestConfig) throws IOException;
+
     /**
      * Helper method
      *
@@ -0,0 +1,22 @@
+package org.keycloak.connections.mongo.updater.impl.updates;
+
+import org.keycloak.models.KeycloakSession;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class Update1_7_0 extends Update {
+
+    @Override
+    public String getId() {
+        return "1.7.0";
+    }
+
+    @Override
+    public void update(KeycloakSession session) throws ClassNotFoundException {
+        // Persisted user sessions are looked up by their client session when the preload runs in background
+        ensureIndex("userSessions", "clientSessions.clientSessionId", false, false);
+        ensureIndex("offlineUserSessions", "clientSessions.clientSessionId", false, false);
+    }
+
+}
@@ -3,6 +3,7 @@ package org.keycloak;
 import org.keycloak.common.VerificationException;
 import org.keycloak.jose.jws.JWSInput;
 import org.keycloak.jose.jws.crypto.RSAProvider;
+import org.keycloak.jose.jws.crypto.VerifiedTokenCache;
 import org.keycloak.representations.AccessToken;
 import org.keycloak.util.TokenUtil;
 
@@ -25,7 +26,9 @@ public class RSATokenVerifier {
         } catch (Exception e) {
             throw new VerificationException("Couldn't parse token", e);
         }
-        if (!isPublicKeyValid(input, realmKey)) throw new VerificationException("Invalid token signature.");
+        VerifiedTokenCache cache = VerifiedTokenCache.getInstance();
+        boolean cached = cache.isVerified(input, realmKey);
+        if (!cached && !isPublicKeyValid(input, realmKey)) throw new VerificationException("Invalid token signature.");
 
         AccessToken token;
         try {
@@ -33,6 +36,10 @@ public class RSATokenVerifier {
         } catch (IOException e) {
             throw new VerificationException("Couldn't parse token signature", e);
         }
+        if (!cached) {
+            cache.verified(input, realmKey, token.getExpiration());
+        }
+
         String user = token.getSubject();
         if (user == null) {
             throw new VerificationException("Token user was null.");
@@ -7,7 +7,7 @@ import org.keycloak.util.JsonSerialization;
 
 import javax.crypto.SecretKey;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 import java.security.PrivateKey;
 
 /**
@@ -15,6 +15,13 @@ import java.security.PrivateKey;
  * @version $Revision: 1 $
  */
 public class JWSBuilder {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    private static final int INITIAL_BUFFER_SIZE = 2048;
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>();
+
     String type;
     String contentType;
     byte[] contentBytes;
@@ -44,162 +51,137 @@ public class JWSBuilder {
     }
 
 
-    protected String encodeHeader(Algorithm alg) {
+    protected byte[] headerBytes(Algorithm alg) {
         StringBuilder builder = new StringBuilder("{");
         builder.append("\"alg\":\"").append(alg.toString()).append("\"");
 
         if (type != null) builder.append(",\"typ\" : \"").append(type).append("\"");
         if (contentType != null) builder.append(",\"cty\":\"").append(contentType).append("\"");
         builder.append("}");
-        try {
-            return Base64Url.encode(builder.toString().getBytes("UTF-8"));
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException(e);
+        return builder.toString().getBytes(UTF_8);
+    }
+
+    protected byte[] marshalContent() {
+        return contentBytes;
+    }
+
+    /**
+     * Encodes header and content into the buffer of the current thread, which is then signed as it is and the signature
+     * is appended to it. The compact serialization is created from the buffer at once.
+     */
+    protected String encodeAndSign(Algorithm alg, Signer signer) {
+        byte[] header = headerBytes(alg);
+        byte[] data = marshalContent();
+
+        int signatureInputLength = Base64Url.encodedLength(header.length) + 1 + Base64Url.encodedLength(data.length);
+        byte[] buffer = getBuffer(signatureInputLength + 1);
+        int offset = Base64Url.encode(header, 0, header.length, buffer, 0);
+        buffer[offset++] = '.';
+        offset = Base64Url.encode(data, 0, data.length, buffer, offset);
+        buffer[offset++] = '.';
+
+        if (signer != null) {
+            byte[] signature = signer.sign(buffer, 0, signatureInputLength);
+            byte[] bigger = getBuffer(offset + Base64Url.encodedLength(signature.length));
+            if (bigger != buffer) {
+                System.arraycopy(buffer, 0, bigger, 0, offset);
+                buffer = bigger;
+            }
+            offset = Base64Url.encode(signature, 0, signature.length, buffer, offset);
         }
+
+        String encoded = new String(buffer, 0, offset, US_ASCII);
+        releaseBuffer(buffer);
+        return encoded;
     }
 
-    protected String encodeAll(StringBuffer encoding, byte[] signature) {
-        encoding.append('.');
-        if (signature != null) {
-            encoding.append(Base64Url.encode(signature));
+    private static byte[] getBuffer(int size) {
+        byte[] buffer = BUFFER.get();
+        if (buffer == null || buffer.length < size) {
+            buffer = new byte[Math.max(size, INITIAL_BUFFER_SIZE)];
+            BUFFER.set(buffer);
         }
-        return encoding.toString();
+        return buffer;
     }
 
-    protected void encode(Algorithm alg, byte[] data, StringBuffer encoding) {
-        encoding.append(encodeHeader(alg));
-        encoding.append('.');
-        encoding.append(Base64Url.encode(data));
+    private static void releaseBuffer(byte[] buffer) {
+        // don't keep unusually large buffers around
+        if (buffer.length > MAX_BUFFER_SIZE) {
+            BUFFER.remove();
+        }
     }
 
-    protected byte[] marshalContent() {
-        return contentBytes;
+    protected interface Signer {
+        byte[] sign(byte[] data, int offset, int length);
     }
 
     public class EncodingBuilder {
         public String none() {
-            StringBuffer buffer = new StringBuffer();
-            byte[] data = marshalContent();
-            encode(Algorithm.none, data, buffer);
-            return encodeAll(buffer, null);
+            return encodeAndSign(Algorithm.none, null);
         }
 
         public String rsa256(PrivateKey privateKey) {
-            StringBuffer buffer = new StringBuffer();
-            byte[] data = marshalContent();
-            encode(Algorithm.RS256, data, buffer);
-            byte[] signature = null;
-            try {
-                signature = RSAProvider.sign(buffer.toString().getBytes("UTF-8"), Algorithm.RS256, privateKey);
-            } catch (UnsupportedEncodingException e) {
-                throw new RuntimeException(e);
-            }
-            return encodeAll(buffer, signature);
+            return rsa(Algorithm.RS256, privateKey);
         }
 
         public String rsa384(PrivateKey privateKey) {
-            StringBuffer buffer = new StringBuffer();
-            byte[] data = marshalContent();
-            encode(Algorithm.RS384, data, buffer);
-            byte[] signature = null;
-            try {
-                signature = RSAProvider.sign(buffer.toString().getBytes("UTF-8"), Algorithm.RS384, privateKey);
-            } catch (UnsupportedEncodingException e) {
-                throw new RuntimeException(e);
-            }
-            return encodeAll(buffer, signature);
+            return rsa(Algorithm.RS384, privateKey);
         }
 
         public String rsa512(PrivateKey privateKey) {
-            StringBuffer buffer = new StringBuffer();
-            byte[] data = marshalContent();
-            encode(Algorithm.RS512, data, buffer);
-            byte[] signature = null;
-            try {
-                signature = RSAProvider.sign(buffer.toString().getBytes("UTF-8"), Algorithm.RS512, privateKey);
-            } catch (UnsupportedEncodingException e) {
-                throw new RuntimeException(e);
-            }
-            return encodeAll(buffer, signature);
+            return rsa(Algorithm.RS512, privateKey);
         }
 
 
         public String hmac256(byte[] sharedSecret) {
-            StringBuffer buffer = new StringBuffer();
-            byte[] data = marshalContent();
-            encode(Algorithm.HS256, data, buffer);
-            byte[] signature = null;
-            try {
-                signature = HMACProvider.sign(buffer.toString().getBytes("UTF-8"), Algorithm.HS256, sharedSecret);
-            } catch (UnsupportedEncodingException e) {
-                throw new RuntimeException(e);
-            }
-            return encodeAll(buffer, signature);
+            return hmac(Algorithm.HS256, sharedSecret);
         }
 
         public String hmac384(byte[] sharedSecret) {
-            StringBuffer buffer = new StringBuffer();
-            byte[] data = marshalContent();
-            encode(Algorithm.HS384, data, buffer);
-            byte[] signature = null;
-            try {
-                signature = HMACProvider.sign(buffer.toString().getBytes("UTF-8"), Algorithm.HS384, sharedSecret);
-            } catch (UnsupportedEncodingException e) {
-                throw new RuntimeException(e);
-            }
-            return encodeAll(buffer, signature);
+            return hmac(Algorithm.HS384, sharedSecret);
         }
 
         public String hmac512(byte[] sharedSecret) {
-            StringBuffer buffer = new StringBuffer();
-            byte[] data = marshalContent();
-            encode(Algorithm.HS512, data, buffer);
-            byte[] signature = null;
-            try {
-                signature = HMACProvider.sign(buffer.toString().getBytes("UTF-8"), Algorithm.HS512, sharedSecret);
-            } catch (UnsupportedEncodingException e) {
-                throw new RuntimeException(e);
-            }
-            return encodeAll(buffer, signature);
+            return hmac(Algorithm.HS512, sharedSecret);
         }
 
         public String hmac256(SecretKey sharedSecret) {
-            StringBuffer buffer = new StringBuffer();
-            byte[] data = marshalContent();
-            encode(Algorithm.HS256, data, buffer);
-            byte[] signature = null;
-            try {
-                signature = HMACProvider.sign(buffer.toString().getBytes("UTF-8"), Algorithm.HS256, sharedSecret);
-            } catch (UnsupportedEncodingException e) {
-                throw new RuntimeException(e);
-            }
-            return encodeAll(buffer, signature);
+            return hmac(Algorithm.HS256, sharedSecret);
         }
 
         public String hmac384(SecretKey sharedSecret) {
-            StringBuffer buffer = new StringBuffer();
-            byte[] data = marshalContent();
-            encode(Algorithm.HS384, data, buffer);
-            byte[] signature = null;
-            try {
-                signature = HMACProvider.sign(buffer.toString().getBytes("UTF-8"), Algorithm.HS384, sharedSecret);
-            } catch (UnsupportedEncodingException e) {
-                throw new RuntimeException(e);
-            }
-            return encodeAll(buffer, signature);
+            return hmac(Algorithm.HS384, sharedSecret);
         }
 
         public String hmac512(SecretKey sharedSecret) {
-            StringBuffer buffer = new StringBuffer();
-            byte[] data = marshalContent();
-            encode(Algorithm.HS512, data, buffer);
-            byte[] signature = null;
-            try {
-                signature = HMACProvider.sign(buffer.toString().getBytes("UTF-8"), Algorithm.HS512, sharedSecret);
-            } catch (UnsupportedEncodingException e) {
-                throw new RuntimeException(e);
-            }
-            return encodeAll(buffer, signature);
+            return hmac(Algorithm.HS512, sharedSecret);
+        }
+
+        private String rsa(final Algorithm algorithm, final PrivateKey privateKey) {
+            return encodeAndSign(algorithm, new Signer() {
+                @Override
+                public byte[] sign(byte[] data, int offset, int length) {
+                    return RSAProvider.sign(data, offset, length, algorithm, privateKey);
+                }
+            });
+        }
+
+        private String hmac(final Algorithm algorithm, final byte[] sharedSecret) {
+            return encodeAndSign(algorithm, new Signer() {
+                @Override
+                public byte[] sign(byte[] data, int offset, int length) {
+                    return HMACProvider.sign(data, offset, length, algorithm, sharedSecret);
+                }
+            });
+        }
+
+        private String hmac(final Algorithm algorithm, final SecretKey sharedSecret) {
+            return encodeAndSign(algorithm, new Signer() {
+                @Override
+                public byte[] sign(byte[] data, int offset, int length) {
+                    return HMACProvider.sign(data, offset, length, algorithm, sharedSecret);
+                }
+            });
         }
     }
 }
@@ -7,11 +7,16 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 
 /**
+ * Parses compact serialization of JWS. Parts are decoded directly from the wire string, encoded parts are only extracted
+ * as strings when asked for.
+ *
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
  * @version $Revision: 1 $
  */
 public class JWSInput {
     String wireString;
+    int headerEnd;
+    int contentEnd;
     String encodedHeader;
     String encodedContent;
     String encodedSignature;
@@ -23,19 +28,20 @@ public class JWSInput {
 
     public JWSInput(String wire) {
         this.wireString = wire;
-        String[] parts = wire.split("\\.");
-        if (parts.length < 2 || parts.length > 3) throw new IllegalArgumentException("Parsing error");
-        encodedHeader = parts[0];
-        encodedContent = parts[1];
-        encodedSignatureInput = encodedHeader + '.' + encodedContent;
+        headerEnd = wire.indexOf('.');
+        if (headerEnd < 0) throw new IllegalArgumentException("Parsing error");
+        contentEnd = wire.indexOf('.', headerEnd + 1);
+        if (contentEnd < 0) {
+            contentEnd = wire.length();
+        } else if (wire.indexOf('.', contentEnd + 1) >= 0) {
+            throw new IllegalArgumentException("Parsing error");
+        }
         try {
-            content = Base64Url.decode(encodedContent);
-            if (parts.length > 2) {
-                encodedSignature = parts[2];
-                signature = Base64Url.decode(encodedSignature);
-
+            content = Base64Url.decode(wire, headerEnd + 1, contentEnd);
+            if (contentEnd + 1 < wire.length()) {
+                signature = Base64Url.decode(wire, contentEnd + 1, wire.length());
             }
-            byte[] headerBytes = Base64Url.decode(encodedHeader);
+            byte[] headerBytes = Base64Url.decode(wire, 0, headerEnd);
             header = JsonSerialization.readValue(headerBytes, JWSHeader.class);
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -47,20 +53,44 @@ public class JWSInput {
     }
 
     public String getEncodedHeader() {
+        if (encodedHeader == null) {
+            encodedHeader = wireString.substring(0, headerEnd);
+        }
         return encodedHeader;
     }
 
     public String getEncodedContent() {
+        if (encodedContent == null) {
+            encodedContent = wireString.substring(headerEnd + 1, contentEnd);
+        }
         return encodedContent;
     }
 
     public String getEncodedSignature() {
+        if (encodedSignature == null && signature != null) {
+            encodedSignature = wireString.substring(contentEnd + 1);
+        }
         return encodedSignature;
     }
     public String getEncodedSignatureInput() {
+        if (encodedSignatureInput == null) {
+            encodedSignatureInput = wireString.substring(0, contentEnd);
+        }
         return encodedSignatureInput;
     }
 
+    /**
+     * Bytes of the encoded header and content, which are signed. Encoded parts are ASCII, so chars are copied without
+     * charset encoding.
+     */
+    public byte[] getSignatureInput() {
+        byte[] bytes = new byte[contentEnd];
+        for (int i = 0; i < contentEnd; i++) {
+            bytes[i] = (byte) wireString.charAt(i);
+        }
+        return bytes;
+    }
+
     public JWSHeader getHeader() {
         return header;
     }
@@ -3,11 +3,11 @@ package org.keycloak.jose.jws.crypto;
 
 import org.keycloak.jose.jws.Algorithm;
 import org.keycloak.jose.jws.JWSInput;
-import org.keycloak.common.util.Base64Url;
 
 import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 /**
@@ -40,10 +40,14 @@ public class HMACProvider implements SignatureProvider {
     }
 
     public static byte[] sign(byte[] data, Algorithm algorithm, byte[] sharedSecret) {
+        return sign(data, 0, data.length, algorithm, sharedSecret);
+    }
+
+    public static byte[] sign(byte[] data, int offset, int length, Algorithm algorithm, byte[] sharedSecret) {
         try {
             Mac mac = getMAC(algorithm);
             mac.init(new SecretKeySpec(sharedSecret, mac.getAlgorithm()));
-            mac.update(data);
+            mac.update(data, offset, length);
             return mac.doFinal();
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -51,10 +55,14 @@ public class HMACProvider implements SignatureProvider {
     }
 
     public static byte[] sign(byte[] data, Algorithm algorithm, SecretKey key) {
+        return sign(data, 0, data.length, algorithm, key);
+    }
+
+    public static byte[] sign(byte[] data, int offset, int length, Algorithm algorithm, SecretKey key) {
         try {
             Mac mac = getMAC(algorithm);
             mac.init(key);
-            mac.update(data);
+            mac.update(data, offset, length);
             return mac.doFinal();
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -63,9 +71,8 @@ public class HMACProvider implements SignatureProvider {
 
     public static boolean verify(JWSInput input, SecretKey key) {
         try {
-            byte[] signature = sign(input.getEncodedSignatureInput().getBytes("UTF-8"), input.getHeader().getAlgorithm(), key);
-            String x = Base64Url.encode(signature);
-            return x.equals(input.getEncodedSignature());
+            byte[] signature = sign(input.getSignatureInput(), input.getHeader().getAlgorithm(), key);
+            return input.getSignature() != null && MessageDigest.isEqual(signature, input.getSignature());
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -74,9 +81,8 @@ public class HMACProvider implements SignatureProvider {
 
     public static boolean verify(JWSInput input, byte[] sharedSecret) {
         try {
-            byte[] signature = sign(input.getEncodedSignatureInput().getBytes("UTF-8"), input.getHeader().getAlgorithm(), sharedSecret);
-            String x = Base64Url.encode(signature);
-            return x.equals(input.getEncodedSignature());
+            byte[] signature = sign(input.getSignatureInput(), input.getHeader().getAlgorithm(), sharedSecret);
+            return input.getSignature() != null && MessageDigest.isEqual(signature, input.getSignature());
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -9,12 +9,23 @@ import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Signature;
 import java.security.cert.X509Certificate;
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
  * @version $Revision: 1 $
  */
 public class RSAProvider implements SignatureProvider {
+
+    // Signature is reset after sign or verify, so the instance can be reused by the same thread for next token
+    private static final ThreadLocal<Map<Algorithm, Signature>> SIGNATURES = new ThreadLocal<Map<Algorithm, Signature>>() {
+        @Override
+        protected Map<Algorithm, Signature> initialValue() {
+            return new EnumMap<Algorithm, Signature>(Algorithm.class);
+        }
+    };
+
     public static String getJavaAlgorithm(Algorithm alg) {
         switch (alg) {
             case RS256:
@@ -36,11 +47,28 @@ public class RSAProvider implements SignatureProvider {
         }
     }
 
+    /**
+     * Returns signature cached for the current thread. It must not be used after another call of sign or verify.
+     */
+    private static Signature getCachedSignature(Algorithm alg) {
+        Map<Algorithm, Signature> signatures = SIGNATURES.get();
+        Signature signature = signatures.get(alg);
+        if (signature == null) {
+            signature = getSignature(alg);
+            signatures.put(alg, signature);
+        }
+        return signature;
+    }
+
     public static byte[] sign(byte[] data, Algorithm algorithm, PrivateKey privateKey) {
+        return sign(data, 0, data.length, algorithm, privateKey);
+    }
+
+    public static byte[] sign(byte[] data, int offset, int length, Algorithm algorithm, PrivateKey privateKey) {
         try {
-            Signature signature = getSignature(algorithm);
+            Signature signature = getCachedSignature(algorithm);
             signature.initSign(privateKey);
-            signature.update(data);
+            signature.update(data, offset, length);
             return signature.sign();
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -59,9 +87,9 @@ public class RSAProvider implements SignatureProvider {
 
     public static boolean verify(JWSInput input, PublicKey publicKey) {
         try {
-            Signature verifier = getSignature(input.getHeader().getAlgorithm());
+            Signature verifier = getCachedSignature(input.getHeader().getAlgorithm());
             verifier.initVerify(publicKey);
-            verifier.update(input.getEncodedSignatureInput().getBytes("UTF-8"));
+            verifier.update(input.getSignatureInput());
             return verifier.verify(input.getSignature());
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -0,0 +1,208 @@
+package org.keycloak.jose.jws.crypto;
+
+import org.keycloak.common.util.Time;
+import org.keycloak.jose.jws.JWSInput;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers tokens, which signature was already verified, so the same token presented again and again doesn't need
+ * another RSA verification. Tokens are identified by SHA-256 hash of the encoded token, so the tokens themselves are not kept
+ * in memory. Entry is valid only for the key it was verified with and only until the token expires.
+ * <p>
+ * The cache doesn't verify nor parse tokens itself. Caller checks {@link #isVerified(JWSInput, PublicKey)} first, verifies
+ * the signature if it's not cached and only then parses the token and adds it with {@link #verified(JWSInput, PublicKey, int)},
+ * so the expiration is never read from a token with unverified signature.
+ * <p>
+ * Entries are split to segments by the token hash, each of them is access-ordered map evicting its least recently used
+ * entry when it's full. Lookups lock only the segment of the token. Small caches have single segment, so they are exact
+ * LRU, while bigger caches have up to {@link #MAX_SEGMENTS} segments with at least {@link #MIN_SEGMENT_SIZE} entries each.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ * @version $Revision: 1 $
+ */
+public class VerifiedTokenCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    public static final int MAX_SEGMENTS = 16;
+
+    public static final int MIN_SEGMENT_SIZE = 64;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    private static final VerifiedTokenCache INSTANCE = new VerifiedTokenCache(Integer.getInteger("keycloak.verifiedTokenCacheSize", DEFAULT_MAX_SIZE));
+
+    private volatile int maxSize;
+
+    private final Segment[] segments;
+
+    public VerifiedTokenCache(int maxSize) {
+        this.maxSize = maxSize;
+
+        segments = new Segment[Math.max(1, Math.min(MAX_SEGMENTS, maxSize / MIN_SEGMENT_SIZE))];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Cache shared by {@link org.keycloak.RSATokenVerifier} instances. Size is configured with system property
+     * <code>keycloak.verifiedTokenCacheSize</code>, 0 disables the cache.
+     */
+    public static VerifiedTokenCache getInstance() {
+        return INSTANCE;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.evict(getSegmentSize());
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * @param input
+     * @param publicKey
+     * @return true if signature of the token was already verified with the same key and the token didn't expire yet
+     */
+    public boolean isVerified(JWSInput input, PublicKey publicKey) {
+        if (maxSize <= 0) {
+            return false;
+        }
+
+        TokenHash hash = new TokenHash(input.getWireString());
+        Segment segment = getSegment(hash);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(hash);
+            if (entry == null) {
+                return false;
+            }
+            if (Time.currentTime() >= entry.expiration) {
+                segment.remove(hash);
+                return false;
+            }
+        }
+        return entry.publicKey == publicKey || entry.publicKey.equals(publicKey);
+    }
+
+    /**
+     * Remembers that signature of the token was verified with the key. Must be called only after the signature was
+     * successfully verified.
+     *
+     * @param input
+     * @param publicKey
+     * @param expiration expiration of the token in seconds, token is not cached if 0 or already expired
+     */
+    public void verified(JWSInput input, PublicKey publicKey, int expiration) {
+        if (maxSize <= 0 || expiration <= Time.currentTime()) {
+            return;
+        }
+
+        TokenHash hash = new TokenHash(input.getWireString());
+        Segment segment = getSegment(hash);
+        synchronized (segment) {
+            segment.put(hash, new Entry(publicKey, expiration));
+            segment.evict(getSegmentSize());
+        }
+    }
+
+    private Segment getSegment(TokenHash hash) {
+        return segments[(hash.hashCode & Integer.MAX_VALUE) % segments.length];
+    }
+
+    private int getSegmentSize() {
+        return Math.max(0, maxSize) / segments.length;
+    }
+
+    private static class Segment extends LinkedHashMap<TokenHash, Entry> {
+
+        private Segment() {
+            super(16, 0.75f, true);
+        }
+
+        // Removes least recently used entries until the segment isn't bigger than the size
+        private void evict(int size) {
+            for (Iterator<TokenHash> itr = keySet().iterator(); itr.hasNext() && size() > size; ) {
+                itr.next();
+                itr.remove();
+            }
+        }
+    }
+
+    private static class TokenHash {
+        private final byte[] hash;
+        private final int hashCode;
+
+        private TokenHash(String token) {
+            MessageDigest digest = SHA_256.get();
+            digest.reset();
+            this.hash = digest.digest(token.getBytes(UTF_8));
+            this.hashCode = Arrays.hashCode(hash);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TokenHash && Arrays.equals(hash, ((TokenHash) o).hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static class Entry {
+        private final PublicKey publicKey;
+        private final int expiration;
+
+        private Entry(PublicKey publicKey, int expiration) {
+            this.publicKey = publicKey;
+            this.expiration = expiration;
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package org.keycloak.representations;
+
+import org.codehaus.jackson.annotate.JsonProperty;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class ReadinessRepresentation {
+
+    protected boolean ready;
+    protected int realmsTotal;
+    protected int realmsLoaded;
+    protected int realmsFailed;
+    protected long duration;
+
+    @JsonProperty("ready")
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    @JsonProperty("realms-total")
+    public int getRealmsTotal() {
+        return realmsTotal;
+    }
+
+    public void setRealmsTotal(int realmsTotal) {
+        this.realmsTotal = realmsTotal;
+    }
+
+    @JsonProperty("realms-loaded")
+    public int getRealmsLoaded() {
+        return realmsLoaded;
+    }
+
+    public void setRealmsLoaded(int realmsLoaded) {
+        this.realmsLoaded = realmsLoaded;
+    }
+
+    @JsonProperty("realms-failed")
+    public int getRealmsFailed() {
+        return realmsFailed;
+    }
+
+    public void setRealmsFailed(int realmsFailed) {
+        this.realmsFailed = realmsFailed;
+    }
+
+    @JsonProperty("duration")
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+}
@@ -18,7 +18,8 @@ import org.codehaus.jackson.annotate.JsonPropertyOrder;
         "allow-any-hostname", "disable-trust-manager", "truststore", "truststore-password",
         "client-keystore", "client-keystore-password", "client-key-password",
         "auth-server-url-for-backend-requests", "always-refresh-token",
-        "register-node-at-startup", "register-node-period", "token-store", "principal-attribute"
+        "register-node-at-startup", "register-node-period", "token-store", "principal-attribute",
+        "token-pre-refresh-ratio"
 })
 public class AdapterConfig extends BaseAdapterConfig {
 
@@ -50,6 +51,8 @@ public class AdapterConfig extends BaseAdapterConfig {
     protected String tokenStore;
     @JsonProperty("principal-attribute")
     protected String principalAttribute;
+    @JsonProperty("token-pre-refresh-ratio")
+    protected double tokenPreRefreshRatio;
 
     public boolean isAllowAnyHostname() {
         return allowAnyHostname;
@@ -162,4 +165,12 @@ public class AdapterConfig extends BaseAdapterConfig {
     public void setPrincipalAttribute(String principalAttribute) {
         this.principalAttribute = principalAttribute;
     }
+
+    public double getTokenPreRefreshRatio() {
+        return tokenPreRefreshRatio;
+    }
+
+    public void setTokenPreRefreshRatio(double tokenPreRefreshRatio) {
+        this.tokenPreRefreshRatio = tokenPreRefreshRatio;
+    }
 }
@@ -9,6 +9,8 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.keycloak.common.VerificationException;
 import org.keycloak.jose.jws.JWSBuilder;
+import org.keycloak.jose.jws.JWSInput;
+import org.keycloak.jose.jws.crypto.VerifiedTokenCache;
 import org.keycloak.representations.AccessToken;
 import org.keycloak.common.util.Time;
 import org.keycloak.util.TokenUtil;
@@ -231,5 +233,81 @@ public class RSAVerifierTest {
         }
     }
 
+    @Test
+    public void testVerifiedTokenCache() throws Exception {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        token.expiration(Time.currentTime() + 100);
+
+        String encoded = new JWSBuilder()
+                .jsonContent(token)
+                .rsa256(idpPair.getPrivate());
+
+        Assert.assertFalse(cache.isVerified(new JWSInput(encoded), idpPair.getPublic()));
+        cache.verified(new JWSInput(encoded), idpPair.getPublic(), token.getExpiration());
+        Assert.assertEquals(1, cache.size());
+        Assert.assertTrue(cache.isVerified(new JWSInput(encoded), idpPair.getPublic()));
+
+        // cached verification is only valid for the same key
+        Assert.assertFalse(cache.isVerified(new JWSInput(encoded), badPair.getPublic()));
+
+        // expired tokens are not cached
+        token.expiration(Time.currentTime() - 1);
+        String expired = new JWSBuilder()
+                .jsonContent(token)
+                .rsa256(idpPair.getPrivate());
+        cache.verified(new JWSInput(expired), idpPair.getPublic(), token.getExpiration());
+        Assert.assertEquals(1, cache.size());
+        Assert.assertFalse(cache.isVerified(new JWSInput(expired), idpPair.getPublic()));
+
+        // verifier doesn't cache tokens with invalid signature
+        token.expiration(Time.currentTime() + 100);
+        String bad = new JWSBuilder()
+                .jsonContent(token)
+                .rsa256(badPair.getPrivate());
+        try {
+            RSATokenVerifier.verifyToken(bad, idpPair.getPublic(), "http://localhost:8080/auth/realm");
+            Assert.fail("Expected VerificationException");
+        } catch (VerificationException e) {
+            // Expected
+        }
+        Assert.assertFalse(VerifiedTokenCache.getInstance().isVerified(new JWSInput(bad), idpPair.getPublic()));
+    }
+
+    @Test
+    public void testVerifiedTokenCacheEviction() throws Exception {
+        VerifiedTokenCache cache = new VerifiedTokenCache(8);
+        for (int i = 0; i < 20; i++) {
+            token.expiration(Time.currentTime() + 100 + i);
+            String encoded = new JWSBuilder()
+                    .jsonContent(token)
+                    .rsa256(idpPair.getPrivate());
+            cache.verified(new JWSInput(encoded), idpPair.getPublic(), token.getExpiration());
+            Assert.assertTrue(cache.size() <= 8);
+        }
+    }
+
+    @Test
+    public void testVerifiedTokenCacheLeastRecentlyUsed() throws Exception {
+        VerifiedTokenCache cache = new VerifiedTokenCache(2);
+        String[] encoded = new String[3];
+        for (int i = 0; i < encoded.length; i++) {
+            token.expiration(Time.currentTime() + 100 + i);
+            encoded[i] = new JWSBuilder()
+                    .jsonContent(token)
+                    .rsa256(idpPair.getPrivate());
+        }
+
+        cache.verified(new JWSInput(encoded[0]), idpPair.getPublic(), Time.currentTime() + 100);
+        cache.verified(new JWSInput(encoded[1]), idpPair.getPublic(), Time.currentTime() + 100);
+
+        // first token is used recently, so the second one is evicted
+        Assert.assertTrue(cache.isVerified(new JWSInput(encoded[0]), idpPair.getPublic()));
+        cache.verified(new JWSInput(encoded[2]), idpPair.getPublic(), Time.currentTime() + 100);
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertTrue(cache.isVerified(new JWSInput(encoded[0]), idpPair.getPublic()));
+        Assert.assertFalse(cache.isVerified(new JWSInput(encoded[1]), idpPair.getPublic()));
+        Assert.assertTrue(cache.isVerified(new JWSInput(encoded[2]), idpPair.getPublic()));
+    }
 
 }
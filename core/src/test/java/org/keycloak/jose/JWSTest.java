@@ -0,0 +1,66 @@
+package org.keycloak.jose;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.common.util.Base64Url;
+import org.keycloak.jose.jws.Algorithm;
+import org.keycloak.jose.jws.JWSBuilder;
+import org.keycloak.jose.jws.JWSInput;
+import org.keycloak.jose.jws.crypto.RSAProvider;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ * @version $Revision: 1 $
+ */
+public class JWSTest {
+
+    @Test
+    public void testBase64UrlRange() throws Exception {
+        Random random = new Random();
+        for (int length = 0; length < 100; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+
+            String expected = Base64Url.encode(bytes);
+            byte[] encoded = new byte[Base64Url.encodedLength(length)];
+            Assert.assertEquals(encoded.length, Base64Url.encode(bytes, 0, length, encoded, 0));
+            Assert.assertEquals(expected, new String(encoded, "US-ASCII"));
+
+            Assert.assertTrue(Arrays.equals(bytes, Base64Url.decode("." + expected + ".", 1, expected.length() + 1)));
+        }
+    }
+
+    @Test
+    public void testSameAsSeparateEncoding() throws Exception {
+        KeyPair keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        byte[] content = "{\"sub\":\"user\"}".getBytes("UTF-8");
+
+        String encoded = new JWSBuilder().type("JWT").content(content).rsa256(keyPair.getPrivate());
+
+        String signatureInput = Base64Url.encode("{\"alg\":\"RS256\",\"typ\" : \"JWT\"}".getBytes("UTF-8")) + "." + Base64Url.encode(content);
+        byte[] signature = RSAProvider.sign(signatureInput.getBytes("UTF-8"), Algorithm.RS256, keyPair.getPrivate());
+        Assert.assertEquals(signatureInput + "." + Base64Url.encode(signature), encoded);
+
+        JWSInput input = new JWSInput(encoded);
+        Assert.assertEquals(signatureInput, input.getEncodedSignatureInput());
+        Assert.assertTrue(Arrays.equals(content, input.getContent()));
+        Assert.assertTrue(RSAProvider.verify(input, keyPair.getPublic()));
+    }
+
+    @Test
+    public void testUnsigned() throws Exception {
+        String encoded = new JWSBuilder().content("content".getBytes("UTF-8")).none();
+
+        JWSInput input = new JWSInput(encoded);
+        Assert.assertEquals(Algorithm.none, input.getHeader().getAlgorithm());
+        Assert.assertNull(input.getSignature());
+        Assert.assertNull(input.getEncodedSignature());
+        Assert.assertEquals("content", input.readContentAsString());
+    }
+
+}
@@ -22,6 +22,7 @@ public class EventBuilder {
 
     private EventStoreProvider store;
     private List<EventListenerProvider> listeners;
+    private List<String> listenerIds;
     private RealmModel realm;
     private Event event;
 
@@ -41,10 +42,12 @@ public class EventBuilder {
 
         if (realm.getEventsListeners() != null && !realm.getEventsListeners().isEmpty()) {
             this.listeners = new LinkedList<>();
+            this.listenerIds = new LinkedList<>();
             for (String id : realm.getEventsListeners()) {
                 EventListenerProvider listener = session.getProvider(EventListenerProvider.class, id);
                 if (listener != null) {
                     listeners.add(listener);
+                    listenerIds.add(id);
                 } else {
                     log.error("Event listener '" + id + "' registered, but provider not found");
                 }
@@ -55,9 +58,10 @@ public class EventBuilder {
         ipAddress(clientConnection.getRemoteAddr());
     }
 
-    private EventBuilder(EventStoreProvider store, List<EventListenerProvider> listeners, RealmModel realm, Event event) {
+    private EventBuilder(EventStoreProvider store, List<EventListenerProvider> listeners, List<String> listenerIds, RealmModel realm, Event event) {
         this.store = store;
         this.listeners = listeners;
+        this.listenerIds = listenerIds;
         this.realm = realm;
         this.event = event;
     }
@@ -148,19 +152,24 @@ public class EventBuilder {
     }
 
     public EventBuilder clone() {
-        return new EventBuilder(store, listeners, realm, event.clone());
+        return new EventBuilder(store, listeners, listenerIds, realm, event.clone());
     }
 
     private void send() {
         event.setTime(Time.toMillis(Time.currentTime()));
 
-        if (store != null) {
-            if (realm.getEnabledEventTypes() != null && !realm.getEnabledEventTypes().isEmpty() ? realm.getEnabledEventTypes().contains(event.getType().name()) : event.getType().isSaveByDefault()) {
-                try {
-                    store.onEvent(event);
-                } catch (Throwable t) {
-                    log.error("Failed to save event", t);
-                }
+        boolean save = store != null && (realm.getEnabledEventTypes() != null && !realm.getEnabledEventTypes().isEmpty() ? realm.getEnabledEventTypes().contains(event.getType().name()) : event.getType().isSaveByDefault());
+
+        EventDispatcher dispatcher = EventDispatcher.getInstance();
+        if (dispatcher != null && (save || listeners != null) && dispatcher.dispatch(event.clone(), save, listenerIds)) {
+            return;
+        }
+
+        if (save) {
+            try {
+                store.onEvent(event);
+            } catch (Throwable t) {
+                log.error("Failed to save event", t);
             }
         }
 
@@ -0,0 +1,398 @@
+package org.keycloak.events;
+
+import org.jboss.logging.Logger;
+import org.keycloak.Config;
+import org.keycloak.events.admin.AdminEvent;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.KeycloakSessionTask;
+import org.keycloak.models.utils.KeycloakModelUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Saves events and sends them to event listeners on a background thread, so requests don't wait for the event store.
+ * Events are put to a bounded queue, which is drained by a writer thread. The writer saves all events of a batch in a
+ * single transaction and then sends them to the listeners of the realm. If saving the batch fails, events are saved one
+ * by one, so single invalid event doesn't discard the others.
+ * <p>
+ * Events are saved independently of the transaction of the request, which sent them. Providers of the event store and
+ * listeners are created in the session of the writer.
+ * <p>
+ * Until {@link #init(Config.Scope, KeycloakSessionFactory)} is called, events are sent on the calling thread.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class EventDispatcher {
+
+    private static final Logger logger = Logger.getLogger(EventDispatcher.class);
+
+    private static final long POLL_TIMEOUT = 1000;
+
+    private static final long CLOSE_TIMEOUT = 10000;
+
+    /**
+     * What to do with an event when the queue is full
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait until there's space in the queue. If it doesn't happen within block timeout, send the event on the calling thread
+         */
+        BLOCK,
+        /**
+         * Discard the event
+         */
+        DROP,
+        /**
+         * Send the event on the calling thread
+         */
+        SYNC
+    }
+
+    private static volatile EventDispatcher instance;
+
+    private final KeycloakSessionFactory sessionFactory;
+    private final BlockingQueue<Task> queue;
+    private final int batchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeout;
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong saved = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sentSynchronously = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong undelivered = new AtomicLong();
+
+    EventDispatcher(KeycloakSessionFactory sessionFactory, int queueSize, int batchSize, OverflowPolicy overflowPolicy, long blockTimeout) {
+        this.sessionFactory = sessionFactory;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeout = blockTimeout;
+
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeEvents();
+            }
+        }, "Event Dispatcher");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Configured with:
+     * <ul>
+     *     <li>enabled - if false, events are sent on the request thread. Default false</li>
+     *     <li>queueSize - max number of events waiting to be sent. Default 10000</li>
+     *     <li>batchSize - max number of events saved in one transaction. Default 100</li>
+     *     <li>overflowPolicy - block, drop or sync, see {@link OverflowPolicy}. Default block</li>
+     *     <li>blockTimeout - milliseconds to wait for space in the queue with block policy. Default 1000</li>
+     * </ul>
+     *
+     * @param config
+     * @param sessionFactory
+     */
+    public static synchronized void init(Config.Scope config, KeycloakSessionFactory sessionFactory) {
+        close();
+
+        if (!config.getBoolean("enabled", false)) {
+            return;
+        }
+
+        int queueSize = config.getInt("queueSize", 10000);
+        int batchSize = config.getInt("batchSize", 100);
+        OverflowPolicy overflowPolicy = OverflowPolicy.valueOf(config.get("overflowPolicy", "block").toUpperCase());
+        long blockTimeout = config.getLong("blockTimeout", 1000L);
+
+        logger.debugv("Event dispatcher with queue size {0}, batch size {1} and overflow policy {2}", queueSize, batchSize, overflowPolicy);
+        EventDispatcher dispatcher = new EventDispatcher(sessionFactory, queueSize, batchSize, overflowPolicy, blockTimeout);
+        dispatcher.start();
+        instance = dispatcher;
+    }
+
+    /**
+     * Sends the events remaining in the queue and stops the writer. Writer is not interrupted, as it may be in the middle
+     * of a JDBC call, it notices the stop within the poll timeout.
+     */
+    public static synchronized void close() {
+        EventDispatcher dispatcher = instance;
+        if (dispatcher != null) {
+            instance = null;
+            dispatcher.stop();
+        }
+    }
+
+    void start() {
+        writer.start();
+    }
+
+    /**
+     * Waits until the writer sends all queued events. Waiting continues as long as the writer makes progress, so events
+     * are not lost just because there's many of them. If the writer is stuck, events still in the queue are logged as
+     * undelivered.
+     */
+    void stop() {
+        running = false;
+        try {
+            int remaining = queue.size();
+            writer.join(CLOSE_TIMEOUT);
+            while (writer.isAlive() && queue.size() < remaining) {
+                remaining = queue.size();
+                writer.join(CLOSE_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (writer.isAlive()) {
+            int undelivered = queue.size();
+            this.undelivered.addAndGet(undelivered);
+            logger.warnv("Event dispatcher didn't stop within {0} ms, {1} events not sent", CLOSE_TIMEOUT, undelivered);
+        }
+    }
+
+    /**
+     * @return dispatcher or null if events are sent on the calling thread
+     */
+    public static EventDispatcher getInstance() {
+        return instance;
+    }
+
+    /**
+     * @param event event, which is not modified afterwards
+     * @param save if the event should be saved to the event store
+     * @param listeners ids of event listeners
+     * @return false if the event should be sent on the calling thread
+     */
+    public boolean dispatch(Event event, boolean save, List<String> listeners) {
+        return enqueue(new Task(event, null, false, save, listeners));
+    }
+
+    /**
+     * @param event event, which is not modified afterwards
+     * @param includeRepresentation
+     * @param save if the event should be saved to the event store
+     * @param listeners ids of event listeners
+     * @return false if the event should be sent on the calling thread
+     */
+    public boolean dispatch(AdminEvent event, boolean includeRepresentation, boolean save, List<String> listeners) {
+        return enqueue(new Task(null, event, includeRepresentation, save, listeners));
+    }
+
+    private boolean enqueue(Task task) {
+        if (!running) {
+            sentSynchronously.incrementAndGet();
+            return false;
+        }
+
+        if (queue.offer(task)) {
+            dispatched.incrementAndGet();
+            return true;
+        }
+
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    if (queue.offer(task, blockTimeout, TimeUnit.MILLISECONDS)) {
+                        dispatched.incrementAndGet();
+                        return true;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                sentSynchronously.incrementAndGet();
+                return false;
+            case DROP:
+                if (dropped.incrementAndGet() % 1000 == 1) {
+                    logger.warnv("Event queue is full, events are dropped. Dropped {0} events so far", dropped.get());
+                }
+                return true;
+            default:
+                sentSynchronously.incrementAndGet();
+                return false;
+        }
+    }
+
+    private void writeEvents() {
+        List<Task> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Task first = running ? queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS) : queue.poll();
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                // Not interrupted by close, stop without sending remaining events
+                logger.warnv("Event dispatcher interrupted, {0} events not sent", queue.size());
+                return;
+            } catch (Throwable t) {
+                logger.error("Failed to send events", t);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(final List<Task> batch) {
+        batches.incrementAndGet();
+
+        final List<Task> toSave = new ArrayList<>(batch.size());
+        for (Task task : batch) {
+            if (task.save) {
+                toSave.add(task);
+            }
+        }
+
+        if (!toSave.isEmpty()) {
+            try {
+                KeycloakModelUtils.runJobInTransaction(sessionFactory, new KeycloakSessionTask() {
+                    @Override
+                    public void run(KeycloakSession session) {
+                        EventStoreProvider store = session.getProvider(EventStoreProvider.class);
+                        for (Task task : toSave) {
+                            task.save(store);
+                        }
+                    }
+                });
+                saved.addAndGet(toSave.size());
+            } catch (Throwable t) {
+                logger.debug("Failed to save batch of events, saving them one by one", t);
+                for (final Task task : toSave) {
+                    saveSingle(task);
+                }
+            }
+        }
+
+        KeycloakModelUtils.runJobInTransaction(sessionFactory, new KeycloakSessionTask() {
+            @Override
+            public void run(KeycloakSession session) {
+                for (Task task : batch) {
+                    task.sendToListeners(session);
+                }
+            }
+        });
+    }
+
+    private void saveSingle(final Task task) {
+        try {
+            KeycloakModelUtils.runJobInTransaction(sessionFactory, new KeycloakSessionTask() {
+                @Override
+                public void run(KeycloakSession session) {
+                    task.save(session.getProvider(EventStoreProvider.class));
+                }
+            });
+            saved.incrementAndGet();
+        } catch (Throwable t) {
+            failed.incrementAndGet();
+            logger.error("Failed to save event", t);
+        }
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public long getDispatched() {
+        return dispatched.get();
+    }
+
+    public long getSaved() {
+        return saved.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getSentSynchronously() {
+        return sentSynchronously.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * @return number of events, which were still in the queue when the writer didn't stop in time
+     */
+    public long getUndelivered() {
+        return undelivered.get();
+    }
+
+    private static class Task {
+
+        private final Event event;
+        private final AdminEvent adminEvent;
+        private final boolean includeRepresentation;
+        private final boolean save;
+        private final List<String> listeners;
+
+        private Task(Event event, AdminEvent adminEvent, boolean includeRepresentation, boolean save, List<String> listeners) {
+            this.event = event;
+            this.adminEvent = adminEvent;
+            this.includeRepresentation = includeRepresentation;
+            this.save = save;
+            this.listeners = listeners;
+        }
+
+        private void save(EventStoreProvider store) {
+            if (store == null) {
+                throw new IllegalStateException("No event store provider configured");
+            }
+            if (event != null) {
+                store.onEvent(event);
+            } else {
+                store.onEvent(adminEvent, includeRepresentation);
+            }
+        }
+
+        private void sendToListeners(KeycloakSession session) {
+            if (listeners == null) {
+                return;
+            }
+            for (String id : listeners) {
+                EventListenerProvider listener = session.getProvider(EventListenerProvider.class, id);
+                if (listener == null) {
+                    continue;
+                }
+                try {
+                    if (event != null) {
+                        listener.onEvent(event);
+                    } else {
+                        listener.onEvent(adminEvent, includeRepresentation);
+                    }
+                } catch (Throwable t) {
+                    logger.error("Failed to send event to " + listener, t);
+                }
+            }
+        }
+
+    }
+
+}
@@ -116,4 +116,22 @@ public class AdminEvent {
         this.error = error;
     }
 
+    public AdminEvent clone() {
+        AdminEvent clone = new AdminEvent();
+        clone.time = time;
+        clone.realmId = realmId;
+        if (authDetails != null) {
+            clone.authDetails = new AuthDetails();
+            clone.authDetails.setRealmId(authDetails.getRealmId());
+            clone.authDetails.setClientId(authDetails.getClientId());
+            clone.authDetails.setUserId(authDetails.getUserId());
+            clone.authDetails.setIpAddress(authDetails.getIpAddress());
+        }
+        clone.operationType = operationType;
+        clone.resourcePath = resourcePath;
+        clone.representation = representation;
+        clone.error = error;
+        return clone;
+    }
+
 }
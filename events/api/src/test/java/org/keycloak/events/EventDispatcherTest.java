@@ -0,0 +1,260 @@
+package org.keycloak.events;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.KeycloakTransactionManager;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class EventDispatcherTest {
+
+    private static final List<String> LISTENERS = Collections.singletonList("test");
+
+    private final List<String> saved = Collections.synchronizedList(new LinkedList<String>());
+    private final List<String> sent = Collections.synchronizedList(new LinkedList<String>());
+
+    // Listener waits for it before the first event is sent, so events stay in the queue
+    private final CountDownLatch listenerLatch = new CountDownLatch(1);
+
+    private EventDispatcher dispatcher;
+
+    @After
+    public void after() {
+        listenerLatch.countDown();
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        dispatcher = new EventDispatcher(sessionFactory(), 10, 10, EventDispatcher.OverflowPolicy.BLOCK, 100);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(dispatcher.dispatch(event("event-" + i), true, LISTENERS));
+        }
+
+        dispatcher.start();
+        listenerLatch.countDown();
+        dispatcher.stop();
+
+        Assert.assertEquals(list("event-0", "event-1", "event-2", "event-3", "event-4"), saved);
+        Assert.assertEquals(list("event-0", "event-1", "event-2", "event-3", "event-4"), sent);
+        Assert.assertEquals(5, dispatcher.getSaved());
+        Assert.assertEquals(1, dispatcher.getBatches());
+    }
+
+    @Test
+    public void testBatchFallback() throws Exception {
+        dispatcher = new EventDispatcher(sessionFactory(), 10, 10, EventDispatcher.OverflowPolicy.BLOCK, 100);
+        dispatcher.dispatch(event("event-0"), true, LISTENERS);
+        dispatcher.dispatch(event("invalid"), true, LISTENERS);
+        dispatcher.dispatch(event("event-2"), true, LISTENERS);
+
+        dispatcher.start();
+        listenerLatch.countDown();
+        dispatcher.stop();
+
+        // Batch is rolled back and events are saved one by one, so only the invalid one is lost
+        Assert.assertEquals(list("event-0", "event-2"), saved);
+        Assert.assertEquals(list("event-0", "invalid", "event-2"), sent);
+        Assert.assertEquals(2, dispatcher.getSaved());
+        Assert.assertEquals(1, dispatcher.getFailed());
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        dispatcher = new EventDispatcher(sessionFactory(), 1, 10, EventDispatcher.OverflowPolicy.BLOCK, 100);
+        Assert.assertTrue(dispatcher.dispatch(event("event-0"), true, LISTENERS));
+
+        // Writer isn't started, so there's no space in the queue within the block timeout
+        long start = System.currentTimeMillis();
+        Assert.assertFalse(dispatcher.dispatch(event("event-1"), true, LISTENERS));
+        Assert.assertTrue(System.currentTimeMillis() - start >= 100);
+
+        Assert.assertEquals(1, dispatcher.getDispatched());
+        Assert.assertEquals(1, dispatcher.getSentSynchronously());
+    }
+
+    @Test
+    public void testDrop() throws Exception {
+        dispatcher = new EventDispatcher(sessionFactory(), 1, 10, EventDispatcher.OverflowPolicy.DROP, 100);
+        Assert.assertTrue(dispatcher.dispatch(event("event-0"), true, LISTENERS));
+        Assert.assertTrue(dispatcher.dispatch(event("event-1"), true, LISTENERS));
+
+        Assert.assertEquals(1, dispatcher.getDispatched());
+        Assert.assertEquals(1, dispatcher.getDropped());
+        Assert.assertEquals(0, dispatcher.getSentSynchronously());
+
+        dispatcher.start();
+        listenerLatch.countDown();
+        dispatcher.stop();
+        Assert.assertEquals(list("event-0"), saved);
+    }
+
+    @Test
+    public void testSync() throws Exception {
+        dispatcher = new EventDispatcher(sessionFactory(), 1, 10, EventDispatcher.OverflowPolicy.SYNC, 100);
+        Assert.assertTrue(dispatcher.dispatch(event("event-0"), true, LISTENERS));
+
+        long start = System.currentTimeMillis();
+        Assert.assertFalse(dispatcher.dispatch(event("event-1"), true, LISTENERS));
+        Assert.assertTrue(System.currentTimeMillis() - start < 100);
+
+        Assert.assertEquals(1, dispatcher.getDispatched());
+        Assert.assertEquals(1, dispatcher.getSentSynchronously());
+    }
+
+    @Test
+    public void testDrainOnStop() throws Exception {
+        dispatcher = new EventDispatcher(sessionFactory(), 100, 2, EventDispatcher.OverflowPolicy.BLOCK, 100);
+        dispatcher.start();
+        for (int i = 0; i < 7; i++) {
+            dispatcher.dispatch(event("event-" + i), true, LISTENERS);
+        }
+
+        // Writer is stuck in the listener, while the dispatcher is stopped
+        Thread release = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                }
+                listenerLatch.countDown();
+            }
+        };
+        release.start();
+        dispatcher.stop();
+
+        Assert.assertEquals(7, saved.size());
+        Assert.assertEquals(7, sent.size());
+        Assert.assertEquals(0, dispatcher.getQueued());
+        Assert.assertEquals(0, dispatcher.getUndelivered());
+
+        // Events dispatched after stop are sent on the calling thread
+        Assert.assertFalse(dispatcher.dispatch(event("event-7"), true, LISTENERS));
+    }
+
+    private static List<String> list(String... ids) {
+        List<String> list = new ArrayList<>();
+        Collections.addAll(list, ids);
+        return list;
+    }
+
+    private static Event event(String id) {
+        Event event = new Event();
+        event.setType(EventType.LOGIN);
+        event.setRealmId("test");
+        event.setSessionId(id);
+        return event;
+    }
+
+    private KeycloakSessionFactory sessionFactory() {
+        return proxy(KeycloakSessionFactory.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("create")) {
+                    return new TestSession().session;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(EventDispatcherTest.class.getClassLoader(), new Class[] { type }, handler));
+    }
+
+    /**
+     * Events saved in the session are visible only after commit
+     */
+    private class TestSession {
+
+        private final List<String> pending = new LinkedList<>();
+        private boolean active;
+
+        private final KeycloakTransactionManager transaction = proxy(KeycloakTransactionManager.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "begin":
+                        active = true;
+                        return null;
+                    case "commit":
+                        saved.addAll(pending);
+                        active = false;
+                        return null;
+                    case "rollback":
+                        pending.clear();
+                        active = false;
+                        return null;
+                    case "isActive":
+                        return active;
+                    case "getRollbackOnly":
+                        return false;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+
+        private final EventStoreProvider store = proxy(EventStoreProvider.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("onEvent")) {
+                    String id = ((Event) args[0]).getSessionId();
+                    if (id.equals("invalid")) {
+                        throw new RuntimeException("Invalid event");
+                    }
+                    pending.add(id);
+                    return null;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+
+        private final EventListenerProvider listener = proxy(EventListenerProvider.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("onEvent")) {
+                    listenerLatch.await(10, TimeUnit.SECONDS);
+                    sent.add(((Event) args[0]).getSessionId());
+                    return null;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+
+        private final KeycloakSession session = proxy(KeycloakSession.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "getTransaction":
+                        return transaction;
+                    case "getProvider":
+                        if (args[0] == EventStoreProvider.class) {
+                            return store;
+                        }
+                        return args.length == 2 && "test".equals(args[1]) ? listener : null;
+                    case "close":
+                        return null;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+}
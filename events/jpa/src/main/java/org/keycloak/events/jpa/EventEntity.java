@@ -20,6 +20,10 @@ public class EventEntity {
     @Column(name="EVENT_TIME")
     private long time;
 
+    // Day of the event, used to expire and query events by whole days through the index on realm and day
+    @Column(name="EVENT_DAY")
+    private int day;
+
     @Column(name="TYPE")
     private String type;
 
@@ -60,6 +64,14 @@ public class EventEntity {
         this.time = time;
     }
 
+    public int getDay() {
+        return day;
+    }
+
+    public void setDay(int day) {
+        this.day = day;
+    }
+
     public String getType() {
         return type;
     }
@@ -68,12 +68,14 @@ public class JpaEventQuery implements EventQuery {
 
     @Override
     public EventQuery fromDate(Date fromDate) {
+        predicates.add(cb.greaterThanOrEqualTo(root.<Integer>get("day"), JpaEventStoreProvider.toDay(fromDate.getTime())));
         predicates.add(cb.greaterThanOrEqualTo(root.<Long>get("time"), fromDate.getTime()));
         return this;
     }
 
     @Override
     public EventQuery toDate(Date toDate) {
+        predicates.add(cb.lessThanOrEqualTo(root.<Integer>get("day"), JpaEventStoreProvider.toDay(toDate.getTime())));
         predicates.add(cb.lessThanOrEqualTo(root.<Long>get("time"), toDate.getTime()));
         return this;
     }
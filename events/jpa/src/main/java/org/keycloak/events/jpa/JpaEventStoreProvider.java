@@ -28,6 +28,8 @@ public class JpaEventStoreProvider implements EventStoreProvider {
     };
     private static final Logger logger = Logger.getLogger(JpaEventStoreProvider.class);
 
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
     private EntityManager em;
 
     public JpaEventStoreProvider(EntityManager em) {
@@ -49,9 +51,16 @@ public class JpaEventStoreProvider implements EventStoreProvider {
         em.createQuery("delete from EventEntity where realmId = :realmId").setParameter("realmId", realmId).executeUpdate();
     }
 
+    /**
+     * Removes whole days older than the day of <code>olderThan</code> by the index on realm and day, so it doesn't scan
+     * events of other realms or events, which are kept. Only events within the day of <code>olderThan</code> are
+     * compared by time.
+     */
     @Override
     public void clear(String realmId, long olderThan) {
-        em.createQuery("delete from EventEntity where realmId = :realmId and time < :time").setParameter("realmId", realmId).setParameter("time", olderThan).executeUpdate();
+        int day = toDay(olderThan);
+        em.createQuery("delete from EventEntity where realmId = :realmId and day < :day").setParameter("realmId", realmId).setParameter("day", day).executeUpdate();
+        em.createQuery("delete from EventEntity where realmId = :realmId and day = :day and time < :time").setParameter("realmId", realmId).setParameter("day", day).setParameter("time", olderThan).executeUpdate();
     }
 
     @Override
@@ -92,6 +101,7 @@ public class JpaEventStoreProvider implements EventStoreProvider {
         EventEntity eventEntity = new EventEntity();
         eventEntity.setId(UUID.randomUUID().toString());
         eventEntity.setTime(event.getTime());
+        eventEntity.setDay(toDay(event.getTime()));
         eventEntity.setType(event.getType().toString());
         eventEntity.setRealmId(event.getRealmId());
         eventEntity.setClientId(event.getClientId());
@@ -107,6 +117,10 @@ public class JpaEventStoreProvider implements EventStoreProvider {
         return eventEntity;
     }
 
+    static int toDay(long time) {
+        return (int) (time / DAY);
+    }
+
     static Event convertEvent(EventEntity eventEntity) {
         Event event = new Event();
         event.setTime(eventEntity.getTime());
@@ -93,6 +93,26 @@ public class LDAPConfig {
         return config.get(LDAPConstants.CONNECTION_POOLING);
     }
 
+    public int getConnectionPoolSize() {
+        String poolSize = config.get(LDAPConstants.CONNECTION_POOL_SIZE);
+        return poolSize == null ? LDAPConstants.DEFAULT_CONNECTION_POOL_SIZE : Integer.parseInt(poolSize);
+    }
+
+    public long getConnectionPoolTimeout() {
+        String poolTimeout = config.get(LDAPConstants.CONNECTION_POOL_TIMEOUT);
+        return poolTimeout == null ? LDAPConstants.DEFAULT_CONNECTION_POOL_TIMEOUT : Long.parseLong(poolTimeout);
+    }
+
+    public long getUserCacheLifespan() {
+        String lifespan = config.get(LDAPConstants.USER_CACHE_LIFESPAN);
+        return lifespan == null ? LDAPConstants.DEFAULT_USER_CACHE_LIFESPAN : Long.parseLong(lifespan);
+    }
+
+    public int getUserCacheMaxSize() {
+        String maxSize = config.get(LDAPConstants.USER_CACHE_MAX_SIZE);
+        return maxSize == null ? LDAPConstants.DEFAULT_USER_CACHE_MAX_SIZE : Integer.parseInt(maxSize);
+    }
+
     public Properties getAdditionalConnectionProperties() {
         // not supported for now
         return null;
@@ -120,6 +140,11 @@ public class LDAPConfig {
         return userAccountCtrls==null ? false : Boolean.parseBoolean(userAccountCtrls);
     }
 
+    public int getSyncThreads() {
+        String syncThreads = config.get(LDAPConstants.SYNC_THREADS);
+        return syncThreads == null ? LDAPConstants.DEFAULT_SYNC_THREADS : Math.max(1, Integer.parseInt(syncThreads));
+    }
+
     public boolean isPagination() {
         String pagination = config.get(LDAPConstants.PAGINATION);
         return pagination==null ? false : Boolean.parseBoolean(pagination);
@@ -282,6 +282,23 @@ public class LDAPFederationProvider implements UserFederationProvider {
     }
 
     protected LDAPObject queryByEmail(RealmModel realm, String email) {
+        LDAPUserCache userCache = ldapIdentityStore.getUserCache();
+        if (userCache != null) {
+            LDAPUserCache.Lookup cached = userCache.getByEmail(email);
+            if (cached != null) {
+                return cached.getLdapUser();
+            }
+
+            long generation = userCache.getGeneration();
+            LDAPObject ldapUser = searchByEmail(realm, email);
+            userCache.putByEmail(email, ldapUser, generation);
+            return ldapUser;
+        }
+
+        return searchByEmail(realm, email);
+    }
+
+    protected LDAPObject searchByEmail(RealmModel realm, String email) {
         LDAPQuery ldapQuery = LDAPUtils.createQueryForUserSearch(this, realm);
         LDAPQueryConditionsBuilder conditionsBuilder = new LDAPQueryConditionsBuilder();
 
@@ -424,6 +441,23 @@ public class LDAPFederationProvider implements UserFederationProvider {
     }
 
     public LDAPObject loadLDAPUserByUsername(RealmModel realm, String username) {
+        LDAPUserCache userCache = ldapIdentityStore.getUserCache();
+        if (userCache != null) {
+            LDAPUserCache.Lookup cached = userCache.getByUsername(username);
+            if (cached != null) {
+                return cached.getLdapUser();
+            }
+
+            long generation = userCache.getGeneration();
+            LDAPObject ldapUser = searchByUsername(realm, username);
+            userCache.putByUsername(username, ldapUser, generation);
+            return ldapUser;
+        }
+
+        return searchByUsername(realm, username);
+    }
+
+    protected LDAPObject searchByUsername(RealmModel realm, String username) {
         LDAPQuery ldapQuery = LDAPUtils.createQueryForUserSearch(this, realm);
         LDAPQueryConditionsBuilder conditionsBuilder = new LDAPQueryConditionsBuilder();
 
@@ -11,6 +11,7 @@ import org.keycloak.federation.ldap.idm.query.Condition;
 import org.keycloak.federation.ldap.idm.query.QueryParameter;
 import org.keycloak.federation.ldap.idm.query.internal.LDAPQuery;
 import org.keycloak.federation.ldap.idm.query.internal.LDAPQueryConditionsBuilder;
+import org.keycloak.federation.ldap.idm.store.ldap.LDAPContextPool;
 import org.keycloak.federation.ldap.idm.store.ldap.LDAPIdentityStore;
 import org.keycloak.federation.ldap.mappers.FullNameLDAPFederationMapper;
 import org.keycloak.federation.ldap.mappers.FullNameLDAPFederationMapperFactory;
@@ -31,18 +32,29 @@ import org.keycloak.models.UserFederationProviderModel;
 import org.keycloak.models.UserFederationSyncResult;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.utils.KeycloakModelUtils;
+import org.keycloak.provider.ServerInfoAwareProviderFactory;
 
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author <a href="mailto:mposolda@redhat.com">Marek Posolda</a>
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
  * @version $Revision: 1 $
  */
-public class LDAPFederationProviderFactory extends UserFederationEventAwareProviderFactory {
+public class LDAPFederationProviderFactory extends UserFederationEventAwareProviderFactory implements ServerInfoAwareProviderFactory<UserFederationProvider> {
     private static final Logger logger = Logger.getLogger(LDAPFederationProviderFactory.class);
     public static final String PROVIDER_NAME = LDAPConstants.LDAP_PROVIDER;
 
@@ -64,8 +76,16 @@ public class LDAPFederationProviderFactory extends UserFederationEventAwareProvi
         this.ldapStoreRegistry = new LDAPIdentityStoreRegistry();
     }
 
+    @Override
+    public Map<String, String> getOperationalInfo() {
+        return this.ldapStoreRegistry.getOperationalInfo();
+    }
+
     @Override
     public void close() {
+        if (this.ldapStoreRegistry != null) {
+            this.ldapStoreRegistry.close();
+        }
         this.ldapStoreRegistry = null;
     }
 
@@ -232,15 +252,9 @@ public class LDAPFederationProviderFactory extends UserFederationEventAwareProvi
 
             String pageSizeConfig = fedModel.getConfig().get(LDAPConstants.BATCH_SIZE_FOR_SYNC);
             int pageSize = pageSizeConfig!=null ? Integer.parseInt(pageSizeConfig) : LDAPConstants.DEFAULT_BATCH_SIZE_FOR_SYNC;
+            int syncThreads = new LDAPConfig(fedModel.getConfig()).getSyncThreads();
 
-            boolean nextPage = true;
-            while (nextPage) {
-                userQuery.setLimit(pageSize);
-                final List<LDAPObject> users = userQuery.getResultList();
-                nextPage = userQuery.getPaginationContext() != null;
-                UserFederationSyncResult currentPageSync = importLdapUsers(sessionFactory, realmId, fedModel, users);
-                syncResult.add(currentPageSync);
-            }
+            syncPages(sessionFactory, userQuery, realmId, fedModel, pageSize, syncThreads, syncResult);
         } else {
             // LDAP pagination not available. Do everything in single transaction
             final List<LDAPObject> users = userQuery.getResultList();
@@ -251,6 +265,73 @@ public class LDAPFederationProviderFactory extends UserFederationEventAwareProvi
         return syncResult;
     }
 
+    /**
+     * Pages are read from LDAP on the calling thread and imported by <code>syncThreads</code> workers, so reading of the
+     * next page overlaps with import of the previous ones. At most two pages per worker are read ahead of the import.
+     */
+    protected void syncPages(final KeycloakSessionFactory sessionFactory, LDAPQuery userQuery, final String realmId, final UserFederationProviderModel fedModel,
+                             int pageSize, int syncThreads, UserFederationSyncResult syncResult) {
+        final AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(syncThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "LDAP Sync " + fedModel.getDisplayName() + " " + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final Semaphore pagesAhead = new Semaphore(syncThreads * 2);
+        List<Future<UserFederationSyncResult>> pages = new LinkedList<Future<UserFederationSyncResult>>();
+
+        try {
+            boolean nextPage = true;
+            while (nextPage) {
+                pagesAhead.acquireUninterruptibly();
+
+                final List<LDAPObject> users;
+                try {
+                    userQuery.setLimit(pageSize);
+                    users = userQuery.getResultList();
+                } catch (RuntimeException e) {
+                    pagesAhead.release();
+                    throw e;
+                }
+                nextPage = userQuery.getPaginationContext() != null;
+
+                pages.add(executor.submit(new Callable<UserFederationSyncResult>() {
+                    @Override
+                    public UserFederationSyncResult call() {
+                        try {
+                            return importLdapUsersPage(sessionFactory, realmId, fedModel, users);
+                        } finally {
+                            pagesAhead.release();
+                        }
+                    }
+                }));
+            }
+
+            for (Future<UserFederationSyncResult> page : pages) {
+                try {
+                    syncResult.add(page.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ModelException("Interrupted while waiting for import of users from LDAP", e);
+                } catch (ExecutionException e) {
+                    throw new ModelException("Failed to import users from LDAP", e.getCause());
+                }
+            }
+        } finally {
+            // Query is left on some page if reading or import of a page failed
+            userQuery.closePagination();
+            executor.shutdown();
+        }
+
+        LDAPContextPool connectionPool = this.ldapStoreRegistry.getLdapStore(fedModel).getConnectionPool();
+        if (connectionPool != null) {
+            logger.debugf("Connections used by sync: %s", connectionPool);
+        }
+    }
+
     private LDAPQuery createQuery(KeycloakSessionFactory sessionFactory, final String realmId, final UserFederationProviderModel model) {
         class QueryHolder {
             LDAPQuery query;
@@ -270,12 +351,35 @@ public class LDAPFederationProviderFactory extends UserFederationEventAwareProvi
         return queryHolder.query;
     }
 
+    /**
+     * Imports all users of the page in single transaction. If it fails, users are imported again each in its own
+     * transaction, so single invalid user doesn't fail the others.
+     */
+    protected UserFederationSyncResult importLdapUsersPage(KeycloakSessionFactory sessionFactory, final String realmId, final UserFederationProviderModel fedModel, final List<LDAPObject> ldapUsers) {
+        final UserFederationSyncResult pageResult = new UserFederationSyncResult();
+
+        try {
+            KeycloakModelUtils.runJobInTransaction(sessionFactory, new KeycloakSessionTask() {
+
+                @Override
+                public void run(KeycloakSession session) {
+                    BooleanHolder exists = new BooleanHolder();
+                    for (LDAPObject ldapUser : ldapUsers) {
+                        importLdapUser(session, realmId, fedModel, ldapUser, pageResult, exists);
+                    }
+                }
+
+            });
+            return pageResult;
+        } catch (RuntimeException e) {
+            logger.debugf(e, "Failed to import page of %d users from LDAP in single transaction. Importing them one by one", ldapUsers.size());
+            return importLdapUsers(sessionFactory, realmId, fedModel, ldapUsers);
+        }
+    }
+
     protected UserFederationSyncResult importLdapUsers(KeycloakSessionFactory sessionFactory, final String realmId, final UserFederationProviderModel fedModel, List<LDAPObject> ldapUsers) {
         final UserFederationSyncResult syncResult = new UserFederationSyncResult();
 
-        class BooleanHolder {
-            private boolean value = true;
-        }
         final BooleanHolder exists = new BooleanHolder();
 
         for (final LDAPObject ldapUser : ldapUsers) {
@@ -287,38 +391,7 @@ public class LDAPFederationProviderFactory extends UserFederationEventAwareProvi
 
                     @Override
                     public void run(KeycloakSession session) {
-                        LDAPFederationProvider ldapFedProvider = getInstance(session, fedModel);
-                        RealmModel currentRealm = session.realms().getRealm(realmId);
-
-                        String username = LDAPUtils.getUsername(ldapUser, ldapFedProvider.getLdapIdentityStore().getConfig());
-                        exists.value = true;
-                        LDAPUtils.checkUuid(ldapUser, ldapFedProvider.getLdapIdentityStore().getConfig());
-                        UserModel currentUser = session.userStorage().getUserByUsername(username, currentRealm);
-
-                        if (currentUser == null) {
-
-                            // Add new user to Keycloak
-                            exists.value = false;
-                            ldapFedProvider.importUserFromLDAP(session, currentRealm, ldapUser);
-                            syncResult.increaseAdded();
-
-                        } else {
-                            if ((fedModel.getId().equals(currentUser.getFederationLink())) && (ldapUser.getUuid().equals(currentUser.getFirstAttribute(LDAPConstants.LDAP_ID)))) {
-
-                                // Update keycloak user
-                                Set<UserFederationMapperModel> federationMappers = currentRealm.getUserFederationMappersByFederationProvider(fedModel.getId());
-                                for (UserFederationMapperModel mapperModel : federationMappers) {
-                                    LDAPFederationMapper ldapMapper = ldapFedProvider.getMapper(mapperModel);
-                                    ldapMapper.onImportUserFromLDAP(mapperModel, ldapFedProvider, ldapUser, currentUser, currentRealm, false);
-                                }
-
-                                logger.debugf("Updated user from LDAP: %s", currentUser.getUsername());
-                                syncResult.increaseUpdated();
-                            } else {
-                                logger.warnf("User '%s' is not updated during sync as he already exists in Keycloak database but is not linked to federation provider '%s'", username, fedModel.getDisplayName());
-                                syncResult.increaseFailed();
-                            }
-                        }
+                        importLdapUser(session, realmId, fedModel, ldapUser, syncResult, exists);
                     }
 
                 });
@@ -356,6 +429,45 @@ public class LDAPFederationProviderFactory extends UserFederationEventAwareProvi
         return syncResult;
     }
 
+    private void importLdapUser(KeycloakSession session, String realmId, UserFederationProviderModel fedModel, LDAPObject ldapUser, UserFederationSyncResult syncResult, BooleanHolder exists) {
+        LDAPFederationProvider ldapFedProvider = getInstance(session, fedModel);
+        RealmModel currentRealm = session.realms().getRealm(realmId);
+
+        String username = LDAPUtils.getUsername(ldapUser, ldapFedProvider.getLdapIdentityStore().getConfig());
+        exists.value = true;
+        LDAPUtils.checkUuid(ldapUser, ldapFedProvider.getLdapIdentityStore().getConfig());
+        UserModel currentUser = session.userStorage().getUserByUsername(username, currentRealm);
+
+        if (currentUser == null) {
+
+            // Add new user to Keycloak
+            exists.value = false;
+            ldapFedProvider.importUserFromLDAP(session, currentRealm, ldapUser);
+            syncResult.increaseAdded();
+
+        } else {
+            if ((fedModel.getId().equals(currentUser.getFederationLink())) && (ldapUser.getUuid().equals(currentUser.getFirstAttribute(LDAPConstants.LDAP_ID)))) {
+
+                // Update keycloak user
+                Set<UserFederationMapperModel> federationMappers = currentRealm.getUserFederationMappersByFederationProvider(fedModel.getId());
+                for (UserFederationMapperModel mapperModel : federationMappers) {
+                    LDAPFederationMapper ldapMapper = ldapFedProvider.getMapper(mapperModel);
+                    ldapMapper.onImportUserFromLDAP(mapperModel, ldapFedProvider, ldapUser, currentUser, currentRealm, false);
+                }
+
+                logger.debugf("Updated user from LDAP: %s", currentUser.getUsername());
+                syncResult.increaseUpdated();
+            } else {
+                logger.warnf("User '%s' is not updated during sync as he already exists in Keycloak database but is not linked to federation provider '%s'", username, fedModel.getDisplayName());
+                syncResult.increaseFailed();
+            }
+        }
+    }
+
+    private static class BooleanHolder {
+        private boolean value = true;
+    }
+
     protected SPNEGOAuthenticator createSPNEGOAuthenticator(String spnegoToken, CommonKerberosConfig kerberosConfig) {
         KerberosServerSubjectAuthenticator kerberosAuth = createKerberosSubjectAuthenticator(kerberosConfig);
         return new SPNEGOAuthenticator(kerberosConfig, kerberosAuth, spnegoToken);
@@ -1,10 +1,16 @@
 package org.keycloak.federation.ldap;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.jboss.logging.Logger;
+import org.keycloak.federation.ldap.idm.store.ldap.LDAPContextPool;
 import org.keycloak.federation.ldap.idm.store.ldap.LDAPIdentityStore;
 import org.keycloak.models.LDAPConstants;
 import org.keycloak.models.UserFederationProviderModel;
@@ -18,21 +24,123 @@ public class LDAPIdentityStoreRegistry {
 
     private Map<String, LDAPIdentityStoreContext> ldapStores = new ConcurrentHashMap<String, LDAPIdentityStoreContext>();
 
+    // Closes idle pooled connections of stores, which aren't used at all
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "LDAP connection reaper");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    public LDAPIdentityStoreRegistry() {
+        reaper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (LDAPIdentityStoreContext context : ldapStores.values()) {
+                    LDAPContextPool pool = context.store.getConnectionPool();
+                    if (pool != null) {
+                        try {
+                            pool.reapIdle();
+                        } catch (RuntimeException e) {
+                            logger.warn("Failed to close idle LDAP connections", e);
+                        }
+                    }
+                }
+            }
+        }, LDAPContextPool.VALIDATION_INTERVAL, LDAPContextPool.VALIDATION_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
     public LDAPIdentityStore getLdapStore(UserFederationProviderModel model) {
         LDAPIdentityStoreContext context = ldapStores.get(model.getId());
 
         // Ldap config might have changed for the realm. In this case, we must re-initialize
         Map<String, String> config = model.getConfig();
         if (context == null || !config.equals(context.config)) {
-            logLDAPConfig(model.getDisplayName(), config);
-
-            LDAPIdentityStore store = createLdapIdentityStore(config);
-            context = new LDAPIdentityStoreContext(config, store);
-            ldapStores.put(model.getId(), context);
+            synchronized (this) {
+                context = ldapStores.get(model.getId());
+                if (context == null || !config.equals(context.config)) {
+                    logLDAPConfig(model.getDisplayName(), config);
+
+                    LDAPIdentityStore store = createLdapIdentityStore(config);
+                    LDAPIdentityStoreContext previous = ldapStores.put(model.getId(), new LDAPIdentityStoreContext(config, store));
+
+                    // Previous store may still be used by requests in progress. Its connections are closed when released
+                    if (previous != null) {
+                        previous.store.close();
+                    }
+                    return store;
+                }
+            }
         }
         return context.store;
     }
 
+    /**
+     * @return connection pool and user cache statistics summed over all LDAP stores, so they don't reveal anything about
+     * particular realms
+     */
+    public Map<String, String> getOperationalInfo() {
+        int stores = 0, pools = 0, maxSize = 0, active = 0, idle = 0;
+        long created = 0, destroyed = 0, borrowed = 0, timeouts = 0, validationFailures = 0;
+        int caches = 0, cacheSize = 0;
+        long hits = 0, negativeHits = 0, misses = 0, evictions = 0, invalidations = 0;
+        for (LDAPIdentityStoreContext context : ldapStores.values()) {
+            stores++;
+            LDAPContextPool pool = context.store.getConnectionPool();
+            if (pool != null) {
+                pools++;
+                maxSize += pool.getMaxSize();
+                active += pool.getActive();
+                idle += pool.getIdle();
+                created += pool.getCreated();
+                destroyed += pool.getDestroyed();
+                borrowed += pool.getBorrowed();
+                timeouts += pool.getTimeouts();
+                validationFailures += pool.getValidationFailures();
+            }
+            LDAPUserCache cache = context.store.getUserCache();
+            if (cache != null) {
+                caches++;
+                cacheSize += cache.getSize();
+                hits += cache.getHits();
+                negativeHits += cache.getNegativeHits();
+                misses += cache.getMisses();
+                evictions += cache.getEvictions();
+                invalidations += cache.getInvalidations();
+            }
+        }
+
+        Map<String, String> info = new LinkedHashMap<String, String>();
+        info.put("ldapStores", String.valueOf(stores));
+        info.put("connectionPools", String.valueOf(pools));
+        info.put("connectionPoolMaxSize", String.valueOf(maxSize));
+        info.put("connectionsActive", String.valueOf(active));
+        info.put("connectionsIdle", String.valueOf(idle));
+        info.put("connectionsCreated", String.valueOf(created));
+        info.put("connectionsDestroyed", String.valueOf(destroyed));
+        info.put("connectionsBorrowed", String.valueOf(borrowed));
+        info.put("connectionTimeouts", String.valueOf(timeouts));
+        info.put("connectionValidationFailures", String.valueOf(validationFailures));
+        info.put("userCaches", String.valueOf(caches));
+        info.put("userCacheSize", String.valueOf(cacheSize));
+        info.put("userCacheHits", String.valueOf(hits));
+        info.put("userCacheNegativeHits", String.valueOf(negativeHits));
+        info.put("userCacheMisses", String.valueOf(misses));
+        info.put("userCacheEvictions", String.valueOf(evictions));
+        info.put("userCacheInvalidations", String.valueOf(invalidations));
+        return info;
+    }
+
+    public void close() {
+        reaper.shutdownNow();
+        for (LDAPIdentityStoreContext context : ldapStores.values()) {
+            context.store.close();
+        }
+        ldapStores.clear();
+    }
+
     // Don't log LDAP password
     private void logLDAPConfig(String fedProviderDisplayName, Map<String, String> ldapConfig) {
         Map<String, String> copy = new HashMap<String, String>(ldapConfig);
@@ -46,24 +154,9 @@ public class LDAPIdentityStoreRegistry {
      */
     public static LDAPIdentityStore createLdapIdentityStore(Map<String,String> ldapConfig) {
         LDAPConfig cfg = new LDAPConfig(ldapConfig);
-
-        checkSystemProperty("com.sun.jndi.ldap.connect.pool.authentication", "none simple");
-        checkSystemProperty("com.sun.jndi.ldap.connect.pool.initsize", "1");
-        checkSystemProperty("com.sun.jndi.ldap.connect.pool.maxsize", "1000");
-        checkSystemProperty("com.sun.jndi.ldap.connect.pool.prefsize", "5");
-        checkSystemProperty("com.sun.jndi.ldap.connect.pool.timeout", "300000");
-        checkSystemProperty("com.sun.jndi.ldap.connect.pool.protocol", "plain");
-        checkSystemProperty("com.sun.jndi.ldap.connect.pool.debug", "off");
-
         return new LDAPIdentityStore(cfg);
     }
 
-    private static void checkSystemProperty(String name, String defaultValue) {
-        if (System.getProperty(name) == null) {
-            System.setProperty(name, defaultValue);
-        }
-    }
-
 
     private class LDAPIdentityStoreContext {
 
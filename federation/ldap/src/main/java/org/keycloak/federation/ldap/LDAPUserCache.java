@@ -0,0 +1,231 @@
+package org.keycloak.federation.ldap;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.keycloak.federation.ldap.idm.model.LDAPDn;
+import org.keycloak.federation.ldap.idm.model.LDAPObject;
+
+/**
+ * <p>Bounded cache of LDAP users found by username or email. Lookups, which didn't find any user, are cached as well, so
+ * unknown usernames don't hit LDAP on every login attempt.</p>
+ *
+ * <p>Entries expire after <code>lifespan</code> milliseconds. When the cache is full, least recently used entry is
+ * evicted. Entries of an LDAP object are invalidated when the object is updated, removed or when its password is
+ * changed through the identity store. Negative entries are invalidated whenever new object is added.</p>
+ *
+ * <p>LDAPObject is mutable, so the cache always stores and returns copies.</p>
+ *
+ * <p>Lookups by LDAP UUID aren't cached. Result of such lookup depends on the requested attributes and none of the
+ * built-in lookups use it.</p>
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class LDAPUserCache {
+
+    private static final String USERNAME_PREFIX = "username:";
+    private static final String EMAIL_PREFIX = "email:";
+
+    private final long lifespan;
+    private final int maxSize;
+
+    private final Map<String, CacheEntry> entries;
+
+    // Incremented on every invalidation, so results of lookups started before the invalidation aren't cached
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public LDAPUserCache(long lifespan, final int maxSize) {
+        this.lifespan = lifespan;
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                if (size() > maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+
+        };
+    }
+
+    public Lookup getByUsername(String username) {
+        return get(USERNAME_PREFIX + username.toLowerCase());
+    }
+
+    public void putByUsername(String username, LDAPObject ldapUser, long generation) {
+        put(USERNAME_PREFIX + username.toLowerCase(), ldapUser, generation);
+    }
+
+    public Lookup getByEmail(String email) {
+        return get(EMAIL_PREFIX + email.toLowerCase());
+    }
+
+    public void putByEmail(String email, LDAPObject ldapUser, long generation) {
+        put(EMAIL_PREFIX + email.toLowerCase(), ldapUser, generation);
+    }
+
+    /**
+     * @return generation, which must be obtained before LDAP is searched and passed to put methods with the search result
+     */
+    public long getGeneration() {
+        synchronized (entries) {
+            return generation;
+        }
+    }
+
+    /**
+     * Removes all entries of given object and all negative entries, as the object may be the user, which wasn't found before.
+     */
+    public void invalidate(LDAPObject ldapObject) {
+        String dn = ldapObject.getDn() == null ? null : ldapObject.getDn().toString();
+
+        synchronized (entries) {
+            generation++;
+            for (Iterator<CacheEntry> itr = entries.values().iterator(); itr.hasNext(); ) {
+                CacheEntry entry = itr.next();
+                if (entry.ldapUser == null || (dn != null && dn.equalsIgnoreCase(entry.ldapUser.getDn().toString()))) {
+                    itr.remove();
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            generation++;
+            entries.clear();
+        }
+    }
+
+    private Lookup get(String key) {
+        CacheEntry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expires < currentTimeMillis()) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        } else if (entry.ldapUser == null) {
+            negativeHits.incrementAndGet();
+            return new Lookup(null);
+        } else {
+            hits.incrementAndGet();
+            return new Lookup(copy(entry.ldapUser));
+        }
+    }
+
+    private void put(String key, LDAPObject ldapUser, long generation) {
+        CacheEntry entry = new CacheEntry(ldapUser == null ? null : copy(ldapUser), currentTimeMillis() + lifespan);
+        synchronized (entries) {
+            if (this.generation == generation) {
+                entries.put(key, entry);
+            }
+        }
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private static LDAPObject copy(LDAPObject ldapObject) {
+        LDAPObject copy = new LDAPObject();
+        copy.setUuid(ldapObject.getUuid());
+        copy.setDn(LDAPDn.fromString(ldapObject.getDn().toString()));
+        copy.setRdnAttributeName(ldapObject.getRdnAttributeName());
+        copy.setObjectClasses(ldapObject.getObjectClasses());
+        for (String readOnlyAttributeName : ldapObject.getReadOnlyAttributeNames()) {
+            copy.addReadOnlyAttributeName(readOnlyAttributeName);
+        }
+        for (Map.Entry<String, Set<String>> attribute : ldapObject.getAttributes().entrySet()) {
+            copy.setAttribute(attribute.getKey(), new LinkedHashSet<>(attribute.getValue()));
+        }
+        return copy;
+    }
+
+    public long getLifespan() {
+        return lifespan;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getNegativeHits() {
+        return negativeHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    @Override
+    public String toString() {
+        return "LDAPUserCache [ maxSize=" + maxSize + ", size=" + getSize() + ", hits=" + hits + ", negativeHits=" + negativeHits
+                + ", misses=" + misses + ", evictions=" + evictions + ", invalidations=" + invalidations + " ]";
+    }
+
+    /**
+     * Result of cache lookup. {@link #getLdapUser()} is null if the cache remembers that no user was found.
+     */
+    public static class Lookup {
+
+        private final LDAPObject ldapUser;
+
+        private Lookup(LDAPObject ldapUser) {
+            this.ldapUser = ldapUser;
+        }
+
+        public LDAPObject getLdapUser() {
+            return ldapUser;
+        }
+    }
+
+    private static class CacheEntry {
+
+        private final LDAPObject ldapUser;
+        private final long expires;
+
+        private CacheEntry(LDAPObject ldapUser, long expires) {
+            this.ldapUser = ldapUser;
+            this.expires = expires;
+        }
+    }
+
+}
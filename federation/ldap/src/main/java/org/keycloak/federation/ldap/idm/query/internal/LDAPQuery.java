@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Set;
 
 import javax.naming.directory.SearchControls;
+import javax.naming.ldap.LdapContext;
 
 import org.keycloak.federation.ldap.LDAPFederationProvider;
 import org.keycloak.federation.ldap.idm.model.LDAPObject;
@@ -33,6 +34,8 @@ public class LDAPQuery {
     private int offset;
     private int limit;
     private byte[] paginationContext;
+    // Connection, which returned the pagination context. LDAP servers accept the context only on the same connection
+    private LdapContext paginationConnection;
     private String searchDn;
     private final Set<Condition> conditions = new LinkedHashSet<Condition>();
     private final Set<Sort> ordering = new LinkedHashSet<Sort>();
@@ -134,6 +137,10 @@ public class LDAPQuery {
         return paginationContext;
     }
 
+    public LdapContext getPaginationConnection() {
+        return paginationConnection;
+    }
+
 
     public List<LDAPObject> getResultList() {
 
@@ -168,6 +175,13 @@ public class LDAPQuery {
         }
     }
 
+    /**
+     * Releases connection kept for reading the next page. Must be called if the paginated query isn't read until the last page.
+     */
+    public void closePagination() {
+        ldapFedProvider.getLdapIdentityStore().closePagination(this);
+    }
+
     public int getResultCount() {
         return ldapFedProvider.getLdapIdentityStore().countQueryResults(this);
     }
@@ -187,6 +201,11 @@ public class LDAPQuery {
         return this;
     }
 
+    public LDAPQuery setPaginationConnection(LdapContext paginationConnection) {
+        this.paginationConnection = paginationConnection;
+        return this;
+    }
+
     public Set<Condition> getConditions() {
         return this.conditions;
     }
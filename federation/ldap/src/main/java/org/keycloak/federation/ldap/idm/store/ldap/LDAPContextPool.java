@@ -0,0 +1,251 @@
+package org.keycloak.federation.ldap.idm.store.ldap;
+
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.naming.NamingException;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.LdapContext;
+
+import org.jboss.logging.Logger;
+
+/**
+ * <p>Bounded pool of LDAP connections authenticated as the bind DN.</p>
+ *
+ * <p>At most <code>maxSize</code> connections are borrowed at the same time. When all of them are borrowed, callers wait
+ * up to <code>maxWait</code> milliseconds for a connection to be released. Connections idle for longer than
+ * {@link #VALIDATION_INTERVAL} are checked by reading the root DSE before they are borrowed again, and connections idle
+ * for longer than {@link #IDLE_TIMEOUT} are closed by {@link #reapIdle()}, which is called on every borrow and release
+ * and should also be called periodically, so connections of a pool without any load are closed too.</p>
+ *
+ * <p>After the pool is closed, connections can still be borrowed, but they are closed when released.</p>
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class LDAPContextPool {
+
+    private static final Logger logger = Logger.getLogger(LDAPContextPool.class);
+
+    public static final long VALIDATION_INTERVAL = 30000;
+    public static final long IDLE_TIMEOUT = 300000;
+
+    private final Map<String, Object> connectionProperties;
+    private final int maxSize;
+    private final long maxWait;
+    private final Semaphore permits;
+
+    // Most recently released connections are first, so connections on the end of the list get idle when load drops
+    private final LinkedList<IdleContext> idle = new LinkedList<IdleContext>();
+
+    private volatile boolean closed;
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong destroyed = new AtomicLong();
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+
+    public LDAPContextPool(Map<String, Object> connectionProperties, int maxSize, long maxWait) {
+        this.connectionProperties = connectionProperties;
+        this.maxSize = maxSize;
+        this.maxWait = maxWait;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    public LdapContext borrow() throws NamingException {
+        try {
+            if (!permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new NamingException("Timeout waiting for LDAP connection, all " + maxSize + " connections are in use");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NamingException("Interrupted while waiting for LDAP connection");
+        }
+
+        try {
+            reapIdle();
+
+            long now = currentTimeMillis();
+            IdleContext idleContext;
+            while ((idleContext = pollIdle()) != null) {
+                long idleTime = now - idleContext.released;
+                if (idleTime > IDLE_TIMEOUT) {
+                    destroy(idleContext.context);
+                } else if (idleTime > VALIDATION_INTERVAL && !isValid(idleContext.context)) {
+                    validationFailures.incrementAndGet();
+                    destroy(idleContext.context);
+                } else {
+                    borrowed.incrementAndGet();
+                    return idleContext.context;
+                }
+            }
+
+            LdapContext context = createContext();
+            created.incrementAndGet();
+            borrowed.incrementAndGet();
+            return context;
+        } catch (NamingException e) {
+            permits.release();
+            throw e;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @param context borrowed connection
+     * @param reusable false if the connection failed and must not be borrowed again
+     */
+    public void release(LdapContext context, boolean reusable) {
+        try {
+            if (reusable && !closed) {
+                try {
+                    context.setRequestControls(null);
+                } catch (NamingException e) {
+                    reusable = false;
+                }
+            }
+
+            if (reusable) {
+                synchronized (idle) {
+                    // Checked again, so the context isn't added after close() cleared the idle connections
+                    if (!closed) {
+                        idle.addFirst(new IdleContext(context, currentTimeMillis()));
+                        context = null;
+                    }
+                }
+            }
+            if (context != null) {
+                destroy(context);
+            }
+        } finally {
+            permits.release();
+        }
+        reapIdle();
+    }
+
+    /**
+     * Closes connections idle for longer than {@link #IDLE_TIMEOUT}.
+     *
+     * @return number of closed connections
+     */
+    public int reapIdle() {
+        long expired = currentTimeMillis() - IDLE_TIMEOUT;
+        List<LdapContext> reaped = new LinkedList<LdapContext>();
+        synchronized (idle) {
+            // Least recently released connections are on the end of the list
+            while (!idle.isEmpty() && idle.getLast().released < expired) {
+                reaped.add(idle.removeLast().context);
+            }
+        }
+        // Closed out of the lock, as closing sends unbind request to the server
+        for (LdapContext context : reaped) {
+            destroy(context);
+        }
+        return reaped.size();
+    }
+
+    public void close() {
+        closed = true;
+        synchronized (idle) {
+            for (Iterator<IdleContext> itr = idle.iterator(); itr.hasNext(); ) {
+                destroy(itr.next().context);
+                itr.remove();
+            }
+        }
+    }
+
+    protected LdapContext createContext() throws NamingException {
+        return new InitialLdapContext(new Hashtable<Object, Object>(connectionProperties), null);
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private IdleContext pollIdle() {
+        synchronized (idle) {
+            return idle.pollFirst();
+        }
+    }
+
+    private boolean isValid(LdapContext context) {
+        try {
+            context.getAttributes("", new String[] { "objectClass" });
+            return true;
+        } catch (NamingException e) {
+            logger.debugf("Discarding broken LDAP connection: %s", e.getMessage());
+            return false;
+        }
+    }
+
+    private void destroy(LdapContext context) {
+        destroyed.incrementAndGet();
+        try {
+            context.close();
+        } catch (NamingException e) {
+            logger.debug("Could not close Ldap context.", e);
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getActive() {
+        return maxSize - permits.availablePermits();
+    }
+
+    public int getIdle() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    public long getCreated() {
+        return created.get();
+    }
+
+    public long getDestroyed() {
+        return destroyed.get();
+    }
+
+    public long getBorrowed() {
+        return borrowed.get();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public long getValidationFailures() {
+        return validationFailures.get();
+    }
+
+    @Override
+    public String toString() {
+        return "LDAPContextPool [ maxSize=" + maxSize + ", active=" + getActive() + ", idle=" + getIdle() + ", created=" + created
+                + ", destroyed=" + destroyed + ", borrowed=" + borrowed + ", timeouts=" + timeouts + ", validationFailures="
+                + validationFailures + " ]";
+    }
+
+    private static class IdleContext {
+
+        private final LdapContext context;
+        private final long released;
+
+        private IdleContext(LdapContext context, long released) {
+            this.context = context;
+            this.released = released;
+        }
+    }
+
+}
@@ -25,6 +25,7 @@ import javax.naming.directory.SearchResult;
 
 import org.jboss.logging.Logger;
 import org.keycloak.federation.ldap.LDAPConfig;
+import org.keycloak.federation.ldap.LDAPUserCache;
 import org.keycloak.federation.ldap.idm.model.LDAPDn;
 import org.keycloak.federation.ldap.idm.model.LDAPObject;
 import org.keycloak.federation.ldap.idm.query.Condition;
@@ -53,9 +54,11 @@ public class LDAPIdentityStore implements IdentityStore {
 
     private final LDAPConfig config;
     private final LDAPOperationManager operationManager;
+    private final LDAPUserCache userCache;
 
     public LDAPIdentityStore(LDAPConfig config) {
         this.config = config;
+        this.userCache = config.getUserCacheLifespan() > 0 ? new LDAPUserCache(config.getUserCacheLifespan(), config.getUserCacheMaxSize()) : null;
 
         try {
             this.operationManager = new LDAPOperationManager(config);
@@ -69,6 +72,28 @@ public class LDAPIdentityStore implements IdentityStore {
         return this.config;
     }
 
+    /**
+     * @return pool of connections or null if connection pooling is disabled
+     */
+    public LDAPContextPool getConnectionPool() {
+        return operationManager.getConnectionPool();
+    }
+
+    /**
+     * @return cache of users found by username or email or null if the cache is disabled
+     */
+    public LDAPUserCache getUserCache() {
+        return userCache;
+    }
+
+    public void close() {
+        operationManager.close();
+    }
+
+    public void closePagination(LDAPQuery identityQuery) {
+        operationManager.closePagination(identityQuery);
+    }
+
     @Override
     public void add(LDAPObject ldapObject) {
         // id will be assigned by the ldap server
@@ -80,6 +105,7 @@ public class LDAPIdentityStore implements IdentityStore {
         BasicAttributes ldapAttributes = extractAttributes(ldapObject, true);
         this.operationManager.createSubContext(entryDN, ldapAttributes);
         ldapObject.setUuid(getEntryIdentifier(ldapObject));
+        invalidateUserCache(ldapObject);
 
         if (logger.isDebugEnabled()) {
             logger.debugf("Type with identifier [%s] and dn [%s] successfully added to LDAP store.", ldapObject.getUuid(), entryDN);
@@ -92,7 +118,11 @@ public class LDAPIdentityStore implements IdentityStore {
         NamingEnumeration<Attribute> attributes = updatedAttributes.getAll();
 
         String entryDn = ldapObject.getDn().toString();
-        this.operationManager.modifyAttributes(entryDn, attributes);
+        try {
+            this.operationManager.modifyAttributes(entryDn, attributes);
+        } finally {
+            invalidateUserCache(ldapObject);
+        }
 
         if (logger.isDebugEnabled()) {
             logger.debugf("Type with identifier [%s] and DN [%s] successfully updated to LDAP store.", ldapObject.getUuid(), entryDn);
@@ -101,7 +131,11 @@ public class LDAPIdentityStore implements IdentityStore {
 
     @Override
     public void remove(LDAPObject ldapObject) {
-        this.operationManager.removeEntry(ldapObject.getDn().toString());
+        try {
+            this.operationManager.removeEntry(ldapObject.getDn().toString());
+        } finally {
+            invalidateUserCache(ldapObject);
+        }
 
         if (logger.isDebugEnabled()) {
             logger.debugf("Type with identifier [%s] and DN [%s] successfully removed from LDAP store.", ldapObject.getUuid(), ldapObject.getDn().toString());
@@ -217,9 +251,18 @@ public class LDAPIdentityStore implements IdentityStore {
                 throw new ModelException("Error updating password.", e);
             }
         }
+
+        // Password policy attributes of the user may have changed as well
+        invalidateUserCache(user);
     }
 
 
+    private void invalidateUserCache(LDAPObject ldapObject) {
+        if (userCache != null) {
+            userCache.invalidate(ldapObject);
+        }
+    }
+
     private void updateADPassword(String userDN, String password) {
         try {
             // Replace the "unicdodePwd" attribute with a new value
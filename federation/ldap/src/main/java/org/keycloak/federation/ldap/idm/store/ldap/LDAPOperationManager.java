@@ -13,10 +13,12 @@ import java.util.Properties;
 import java.util.Set;
 
 import javax.naming.Binding;
+import javax.naming.CommunicationException;
 import javax.naming.Context;
 import javax.naming.InitialContext;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
 import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
 import javax.naming.directory.DirContext;
@@ -47,10 +49,30 @@ public class LDAPOperationManager {
 
     private final LDAPConfig config;
     private final Map<String, Object> connectionProperties;
+    private final LDAPContextPool connectionPool;
 
     public LDAPOperationManager(LDAPConfig config) throws NamingException {
         this.config = config;
         this.connectionProperties = Collections.unmodifiableMap(createConnectionProperties());
+
+        if (Boolean.parseBoolean(config.getConnectionPooling())) {
+            this.connectionPool = new LDAPContextPool(this.connectionProperties, config.getConnectionPoolSize(), config.getConnectionPoolTimeout());
+        } else {
+            this.connectionPool = null;
+        }
+    }
+
+    /**
+     * @return pool of connections or null if connection pooling is disabled
+     */
+    public LDAPContextPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    public void close() {
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
     }
 
     /**
@@ -165,48 +187,85 @@ public class LDAPOperationManager {
         }
     }
 
+    /**
+     * Reads next page of the query. Until the last page is read, connection used for the query is kept in the query, so
+     * following pages are read with the same connection.
+     */
     public List<SearchResult> searchPaginated(final String baseDN, final String filter, final LDAPQuery identityQuery) throws NamingException {
         final List<SearchResult> result = new ArrayList<SearchResult>();
         final SearchControls cons = getSearchControls(identityQuery.getReturningLdapAttributes(), identityQuery.getSearchScope());
 
+        byte[] cookie = identityQuery.getPaginationContext();
+        LdapContext context = identityQuery.getPaginationConnection();
+        identityQuery.setPaginationConnection(null);
+        if (context != null && cookie == null) {
+            releaseLdapContext(context, true);
+            context = null;
+        }
+        if (context == null) {
+            context = createLdapContext();
+        }
+
+        boolean reusable = false;
+        boolean success = false;
         try {
-            return execute(new LdapOperation<List<SearchResult>>() {
-                @Override
-                public List<SearchResult> execute(LdapContext context) throws NamingException {
-                    try {
-                        byte[] cookie = identityQuery.getPaginationContext();
-                        PagedResultsControl pagedControls = new PagedResultsControl(identityQuery.getLimit(), cookie, Control.CRITICAL);
-                        context.setRequestControls(new Control[] { pagedControls });
+            PagedResultsControl pagedControls = new PagedResultsControl(identityQuery.getLimit(), cookie, Control.CRITICAL);
+            context.setRequestControls(new Control[] { pagedControls });
 
-                        NamingEnumeration<SearchResult> search = context.search(baseDN, filter, cons);
+            NamingEnumeration<SearchResult> search = context.search(baseDN, filter, cons);
 
-                        while (search.hasMoreElements()) {
-                            result.add(search.nextElement());
-                        }
+            while (search.hasMoreElements()) {
+                result.add(search.nextElement());
+            }
 
-                        search.close();
-
-                        Control[] responseControls = context.getResponseControls();
-                        if (responseControls != null) {
-                            for (Control respControl : responseControls) {
-                                if (respControl instanceof PagedResultsResponseControl) {
-                                    PagedResultsResponseControl prrc = (PagedResultsResponseControl)respControl;
-                                    cookie = prrc.getCookie();
-                                    identityQuery.setPaginationContext(cookie);
-                                }
-                            }
-                        }
+            search.close();
 
-                        return result;
-                    } catch (IOException ioe) {
-                        logger.errorf(ioe, "Could not query server with paginated query using DN [%s], filter [%s]", baseDN, filter);
-                        throw new NamingException(ioe.getMessage());
+            cookie = null;
+            Control[] responseControls = context.getResponseControls();
+            if (responseControls != null) {
+                for (Control respControl : responseControls) {
+                    if (respControl instanceof PagedResultsResponseControl) {
+                        PagedResultsResponseControl prrc = (PagedResultsResponseControl)respControl;
+                        cookie = prrc.getCookie();
                     }
                 }
-            });
+            }
+            identityQuery.setPaginationContext(cookie);
+
+            reusable = true;
+            success = true;
+            return result;
+        } catch (IOException ioe) {
+            logger.errorf(ioe, "Could not query server with paginated query using DN [%s], filter [%s]", baseDN, filter);
+            reusable = true;
+            throw new NamingException(ioe.getMessage());
         } catch (NamingException e) {
             logger.errorf(e, "Could not query server using DN [%s] and filter [%s]", baseDN, filter);
+            reusable = isReusable(e);
             throw e;
+        } finally {
+            if (success && identityQuery.getPaginationContext() != null) {
+                identityQuery.setPaginationConnection(context);
+            } else {
+                // Cookie of the failed page can't be used on other connection, so the query can't continue
+                if (!success) {
+                    identityQuery.setPaginationContext(null);
+                }
+                releaseLdapContext(context, reusable);
+            }
+        }
+    }
+
+    /**
+     * Abandons paginated query, which wasn't read until the last page. The connection kept in the query is closed, as
+     * the server may still hold the paged search open on it.
+     */
+    public void closePagination(LDAPQuery identityQuery) {
+        LdapContext context = identityQuery.getPaginationConnection();
+        identityQuery.setPaginationConnection(null);
+        identityQuery.setPaginationContext(null);
+        if (context != null) {
+            releaseLdapContext(context, false);
         }
     }
 
@@ -450,9 +509,29 @@ public class LDAPOperationManager {
     }
 
     private LdapContext createLdapContext() throws NamingException {
+        if (connectionPool != null) {
+            return connectionPool.borrow();
+        }
         return new InitialLdapContext(new Hashtable<Object, Object>(this.connectionProperties), null);
     }
 
+    private void releaseLdapContext(LdapContext context, boolean reusable) {
+        if (connectionPool != null) {
+            connectionPool.release(context, reusable);
+        } else {
+            try {
+                context.close();
+            } catch (NamingException ne) {
+                logger.error("Could not close Ldap context.", ne);
+            }
+        }
+    }
+
+    // Connection can't be used anymore if the operation failed because of the connection itself, not the request
+    private boolean isReusable(NamingException e) {
+        return !(e instanceof CommunicationException || e instanceof ServiceUnavailableException);
+    }
+
     private Map<String, Object> createConnectionProperties() {
         HashMap<String, Object> env = new HashMap<String, Object>();
 
@@ -487,10 +566,8 @@ public class LDAPOperationManager {
             logger.warn("LDAP URL is null. LDAPOperationManager won't work correctly");
         }
 
-        String connectionPooling = this.config.getConnectionPooling();
-        if (connectionPooling != null) {
-            env.put("com.sun.jndi.ldap.connect.pool", connectionPooling);
-        }
+        // Connections are pooled by LDAPContextPool, not by JNDI
+        env.put("com.sun.jndi.ldap.connect.pool", "false");
 
         // Just dump the additional properties
         Properties additionalProperties = this.config.getAdditionalConnectionProperties();
@@ -512,21 +589,18 @@ public class LDAPOperationManager {
     }
 
     private <R> R execute(LdapOperation<R> operation) throws NamingException {
-        LdapContext context = null;
+        LdapContext context = createLdapContext();
+        boolean reusable = false;
 
         try {
-            context = createLdapContext();
-            return operation.execute(context);
+            R result = operation.execute(context);
+            reusable = true;
+            return result;
         } catch (NamingException ne) {
+            reusable = isReusable(ne);
             throw ne;
         } finally {
-            if (context != null) {
-                try {
-                    context.close();
-                } catch (NamingException ne) {
-                    logger.error("Could not close Ldap context.", ne);
-                }
-            }
+            releaseLdapContext(context, reusable);
         }
     }
 
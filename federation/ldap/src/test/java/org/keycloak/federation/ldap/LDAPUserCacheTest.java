@@ -0,0 +1,140 @@
+package org.keycloak.federation.ldap;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.federation.ldap.idm.model.LDAPDn;
+import org.keycloak.federation.ldap.idm.model.LDAPObject;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class LDAPUserCacheTest {
+
+    private TestCache cache;
+
+    @Before
+    public void before() {
+        cache = new TestCache(1000, 2);
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        Assert.assertNull(cache.getByUsername("john"));
+        cache.putByUsername("john", user("john"), cache.getGeneration());
+
+        LDAPUserCache.Lookup lookup = cache.getByUsername("JOHN");
+        Assert.assertNotNull(lookup);
+        Assert.assertEquals("uid=john,ou=People,dc=keycloak,dc=org", lookup.getLdapUser().getDn().toString());
+        Assert.assertEquals("john@keycloak.org", lookup.getLdapUser().getAttributeAsString("mail"));
+
+        Assert.assertNull(cache.getByEmail("john@keycloak.org"));
+
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testCopies() {
+        LDAPObject john = user("john");
+        cache.putByUsername("john", john, cache.getGeneration());
+        john.setSingleAttribute("mail", "changed@keycloak.org");
+
+        LDAPObject cached = cache.getByUsername("john").getLdapUser();
+        Assert.assertEquals("john@keycloak.org", cached.getAttributeAsString("mail"));
+
+        cached.setSingleAttribute("mail", "changed@keycloak.org");
+        Assert.assertEquals("john@keycloak.org", cache.getByUsername("john").getLdapUser().getAttributeAsString("mail"));
+    }
+
+    @Test
+    public void testNegativeEntry() {
+        cache.putByUsername("unknown", null, cache.getGeneration());
+
+        LDAPUserCache.Lookup lookup = cache.getByUsername("unknown");
+        Assert.assertNotNull(lookup);
+        Assert.assertNull(lookup.getLdapUser());
+        Assert.assertEquals(1, cache.getNegativeHits());
+
+        // Added user may be the one, which wasn't found before
+        cache.invalidate(user("mary"));
+        Assert.assertNull(cache.getByUsername("unknown"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        cache.putByUsername("john", user("john"), cache.getGeneration());
+        cache.putByEmail("mary@keycloak.org", user("mary"), cache.getGeneration());
+
+        cache.invalidate(user("john"));
+        Assert.assertNull(cache.getByUsername("john"));
+        Assert.assertNotNull(cache.getByEmail("mary@keycloak.org"));
+        Assert.assertEquals(1, cache.getInvalidations());
+    }
+
+    @Test
+    public void testStaleGeneration() {
+        long generation = cache.getGeneration();
+        cache.invalidate(user("john"));
+
+        // Result of a search started before the invalidation isn't cached
+        cache.putByUsername("john", user("john"), generation);
+        Assert.assertNull(cache.getByUsername("john"));
+    }
+
+    @Test
+    public void testExpiration() {
+        cache.putByUsername("john", user("john"), cache.getGeneration());
+
+        cache.now += 1000;
+        Assert.assertNotNull(cache.getByUsername("john"));
+
+        cache.now += 1;
+        Assert.assertNull(cache.getByUsername("john"));
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testEviction() {
+        cache.putByUsername("john", user("john"), cache.getGeneration());
+        cache.putByUsername("mary", user("mary"), cache.getGeneration());
+
+        // john is used recently, so mary is evicted
+        cache.getByUsername("john");
+        cache.putByUsername("bob", user("bob"), cache.getGeneration());
+
+        Assert.assertEquals(2, cache.getSize());
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertNotNull(cache.getByUsername("john"));
+        Assert.assertNull(cache.getByUsername("mary"));
+        Assert.assertNotNull(cache.getByUsername("bob"));
+    }
+
+    private static LDAPObject user(String username) {
+        LDAPObject user = new LDAPObject();
+        user.setUuid(username + "-uuid");
+        user.setDn(LDAPDn.fromString("uid=" + username + ",ou=People,dc=keycloak,dc=org"));
+        user.setRdnAttributeName("uid");
+        user.setObjectClasses(Arrays.asList("inetOrgPerson", "organizationalPerson"));
+        user.setSingleAttribute("uid", username);
+        user.setSingleAttribute("mail", username + "@keycloak.org");
+        return user;
+    }
+
+    private static class TestCache extends LDAPUserCache {
+
+        private long now = 1000;
+
+        private TestCache(long lifespan, int maxSize) {
+            super(lifespan, maxSize);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+}
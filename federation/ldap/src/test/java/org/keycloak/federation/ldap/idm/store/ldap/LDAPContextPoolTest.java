@@ -0,0 +1,155 @@
+package org.keycloak.federation.ldap.idm.store.ldap;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.naming.NamingException;
+import javax.naming.ldap.LdapContext;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class LDAPContextPoolTest {
+
+    private TestPool pool;
+
+    @Before
+    public void before() {
+        pool = new TestPool(2, 100);
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        LdapContext context = pool.borrow();
+        Assert.assertEquals(1, pool.getActive());
+
+        pool.release(context, true);
+        Assert.assertEquals(0, pool.getActive());
+        Assert.assertEquals(1, pool.getIdle());
+
+        Assert.assertSame(context, pool.borrow());
+        Assert.assertEquals(1, pool.getCreated());
+        Assert.assertEquals(2, pool.getBorrowed());
+        Assert.assertTrue(pool.closed.isEmpty());
+    }
+
+    @Test
+    public void testReleaseNotReusable() throws Exception {
+        LdapContext context = pool.borrow();
+        pool.release(context, false);
+
+        Assert.assertEquals(0, pool.getIdle());
+        Assert.assertEquals(1, pool.getDestroyed());
+        Assert.assertTrue(pool.closed.contains(context));
+        Assert.assertNotSame(context, pool.borrow());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        pool.borrow();
+        LdapContext context = pool.borrow();
+
+        try {
+            pool.borrow();
+            Assert.fail("Expected timeout");
+        } catch (NamingException expected) {
+        }
+        Assert.assertEquals(1, pool.getTimeouts());
+
+        pool.release(context, true);
+        Assert.assertSame(context, pool.borrow());
+    }
+
+    @Test
+    public void testReapIdle() throws Exception {
+        LdapContext first = pool.borrow();
+        LdapContext second = pool.borrow();
+        pool.release(first, true);
+
+        pool.now += LDAPContextPool.IDLE_TIMEOUT / 2;
+        pool.release(second, true);
+        Assert.assertEquals(0, pool.reapIdle());
+        Assert.assertEquals(2, pool.getIdle());
+
+        // Only the connection released first is idle for too long
+        pool.now += LDAPContextPool.IDLE_TIMEOUT / 2 + 1;
+        Assert.assertEquals(1, pool.reapIdle());
+        Assert.assertEquals(1, pool.getIdle());
+        Assert.assertEquals(Collections.singleton(first), pool.closed);
+
+        Assert.assertSame(second, pool.borrow());
+    }
+
+    @Test
+    public void testValidation() throws Exception {
+        LdapContext context = pool.borrow();
+        pool.release(context, true);
+
+        pool.now += LDAPContextPool.VALIDATION_INTERVAL + 1;
+        pool.broken.add(context);
+
+        Assert.assertNotSame(context, pool.borrow());
+        Assert.assertEquals(1, pool.getValidationFailures());
+        Assert.assertTrue(pool.closed.contains(context));
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        LdapContext idle = pool.borrow();
+        LdapContext active = pool.borrow();
+        pool.release(idle, true);
+
+        pool.close();
+        Assert.assertTrue(pool.closed.contains(idle));
+        Assert.assertEquals(0, pool.getIdle());
+
+        // Connection borrowed before the pool was closed is closed on release
+        pool.release(active, true);
+        Assert.assertTrue(pool.closed.contains(active));
+        Assert.assertEquals(0, pool.getActive());
+    }
+
+    private static class TestPool extends LDAPContextPool {
+
+        private long now = 1000;
+        private final Set<LdapContext> closed = new HashSet<LdapContext>();
+        private final Set<LdapContext> broken = new HashSet<LdapContext>();
+
+        private TestPool(int maxSize, long maxWait) {
+            super(Collections.<String, Object>emptyMap(), maxSize, maxWait);
+        }
+
+        @Override
+        protected LdapContext createContext() {
+            return (LdapContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { LdapContext.class }, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if (method.getName().equals("close")) {
+                        closed.add((LdapContext) proxy);
+                    } else if (method.getName().equals("getAttributes") && broken.contains(proxy)) {
+                        throw new NamingException("broken");
+                    } else if (method.getName().equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    } else if (method.getName().equals("equals")) {
+                        return proxy == args[0];
+                    }
+                    return null;
+                }
+            });
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+}
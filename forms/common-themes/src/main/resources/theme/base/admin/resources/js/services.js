@@ -1081,6 +1081,7 @@ module.factory('PasswordPolicy', function() {
 
     p.policyMessages = {
         hashIterations: 	"Number of hashing iterations.  Default is 1.  Recommended is 50000.",
+        hashAlgorithm: 	"PBKDF2 variant used to hash new passwords (PBKDF2WithHmacSHA1, PBKDF2WithHmacSHA256 or PBKDF2WithHmacSHA512). Default is PBKDF2WithHmacSHA1. Existing passwords are rehashed on next login.",
         length:         	"Minimal password length (integer type). Default value is 8.",
         digits:         	"Minimal number (integer type) of digits in password. Default value is 1.",
         lowerCase:      	"Minimal number (integer type) of lowercase characters in password. Default value is 1.",
@@ -1094,6 +1095,7 @@ module.factory('PasswordPolicy', function() {
 
     p.allPolicies = [
         { name: 'hashIterations', value: 1 },
+        { name: 'hashAlgorithm', value: 'PBKDF2WithHmacSHA1' },
         { name: 'length', value: 8 },
         { name: 'digits', value: 1 },
         { name: 'lowerCase', value: 1 },
@@ -1118,7 +1120,7 @@ module.factory('PasswordPolicy', function() {
         for (var i = 0; i < policyArray.length; i ++){
             var policyToken = policyArray[i];
             
-            if(policyToken.indexOf('regexPattern') === 0) {
+            if(policyToken.indexOf('regexPattern') === 0 || policyToken.indexOf('hashAlgorithm') === 0) {
             	re = /(\w+)\((.*)\)/;
             	policyEntry = re.exec(policyToken);
                 if (null !== policyEntry) {
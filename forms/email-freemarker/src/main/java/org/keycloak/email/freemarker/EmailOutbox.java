@@ -0,0 +1,190 @@
+package org.keycloak.email.freemarker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Delivers rendered emails on a pool of worker threads, so requests don't wait for the SMTP server. Every worker keeps
+ * its connection to the SMTP server open and reuses it for following emails with the same SMTP configuration, until it
+ * is idle for longer than idle timeout. Emails, which failed to be delivered, are retried with exponential backoff.
+ * <p>
+ * Emails are held in memory only. When the outbox is full or closed, {@link #submit(OutgoingEmail)} returns false and
+ * the caller is expected to send the email itself.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class EmailOutbox {
+
+    private static final Logger log = Logger.getLogger(EmailOutbox.class);
+
+    private final DelayQueue<OutgoingEmail> queue = new DelayQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final int queueSize;
+    private final int maxAttempts;
+    private final long retryDelay;
+    private final long idleTimeout;
+    private final List<Thread> workers;
+
+    private volatile boolean running = true;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * @param threads number of worker threads
+     * @param queueSize max number of emails waiting to be delivered, including emails waiting for retry
+     * @param maxAttempts max number of attempts to deliver an email
+     * @param retryDelay delay in milliseconds before the first retry, doubled for every following retry
+     * @param idleTimeout milliseconds after which idle connection to the SMTP server is closed
+     */
+    public EmailOutbox(int threads, int queueSize, int maxAttempts, long retryDelay, long idleTimeout) {
+        this.queueSize = queueSize;
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = retryDelay;
+        this.idleTimeout = idleTimeout;
+
+        workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    deliver();
+                }
+            }, "Email Outbox " + (i + 1));
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * @param email
+     * @return false if the email wasn't accepted and should be sent by the caller
+     */
+    public boolean submit(OutgoingEmail email) {
+        if (!running) {
+            return false;
+        }
+
+        if (pending.incrementAndGet() > queueSize) {
+            pending.decrementAndGet();
+            log.debug("Email outbox is full, sending email synchronously");
+            return false;
+        }
+
+        queue.add(email);
+        return true;
+    }
+
+    /**
+     * Stops the workers. Emails ready to be delivered are delivered first, emails waiting for retry are discarded.
+     */
+    public void close() {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        int discarded = queue.size();
+        if (discarded > 0) {
+            log.warnv("Email outbox closed, {0} emails waiting for retry were discarded", discarded);
+        }
+    }
+
+    private void deliver() {
+        SmtpConnection connection = null;
+        try {
+            while (true) {
+                OutgoingEmail email;
+                try {
+                    email = running ? queue.poll(idleTimeout, TimeUnit.MILLISECONDS) : queue.poll();
+                } catch (InterruptedException e) {
+                    continue;
+                }
+
+                if (email == null) {
+                    if (!running) {
+                        return;
+                    }
+                    if (connection != null) {
+                        connection.close();
+                        connection = null;
+                    }
+                    continue;
+                }
+
+                if (connection == null || !connection.getConfig().equals(email.getSmtpConfig())) {
+                    if (connection != null) {
+                        connection.close();
+                    }
+                    connection = new SmtpConnection(email.getSmtpConfig());
+                }
+
+                try {
+                    connection.send(email);
+                    // pending is decremented first, so it's up to date when sent or failed is observed
+                    pending.decrementAndGet();
+                    sent.incrementAndGet();
+                } catch (Throwable t) {
+                    connection.close();
+                    connection = null;
+                    retry(email, t);
+                }
+            }
+        } finally {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+
+    private void retry(OutgoingEmail email, Throwable t) {
+        if (email.getAttempts() + 1 < maxAttempts && running) {
+            long delay = retryDelay << Math.min(email.getAttempts(), 20);
+            log.debugv("Failed to send email, retrying in {0} ms", delay);
+            email.retryAfter(delay);
+            retried.incrementAndGet();
+            queue.add(email);
+        } else {
+            pending.decrementAndGet();
+            failed.incrementAndGet();
+            log.warn("Failed to send email after " + (email.getAttempts() + 1) + " attempts", t);
+        }
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getRetried() {
+        return retried.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+}
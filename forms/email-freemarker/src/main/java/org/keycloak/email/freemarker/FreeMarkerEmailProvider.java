@@ -1,21 +1,11 @@
 package org.keycloak.email.freemarker;
 
 import java.text.MessageFormat;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 
-import javax.mail.Message;
-import javax.mail.Multipart;
-import javax.mail.Session;
-import javax.mail.Transport;
-import javax.mail.internet.InternetAddress;
-import javax.mail.internet.MimeBodyPart;
-import javax.mail.internet.MimeMessage;
-import javax.mail.internet.MimeMultipart;
-
 import org.jboss.logging.Logger;
 import org.keycloak.email.EmailException;
 import org.keycloak.email.EmailProvider;
@@ -41,12 +31,14 @@ public class FreeMarkerEmailProvider implements EmailProvider {
 
     private KeycloakSession session;
     private FreeMarkerUtil freeMarker;
+    private EmailOutbox outbox;
     private RealmModel realm;
     private UserModel user;
 
-    public FreeMarkerEmailProvider(KeycloakSession session, FreeMarkerUtil freeMarker) {
+    public FreeMarkerEmailProvider(KeycloakSession session, FreeMarkerUtil freeMarker, EmailOutbox outbox) {
         this.session = session;
         this.freeMarker = freeMarker;
+        this.outbox = outbox;
     }
 
     @Override
@@ -142,70 +134,19 @@ public class FreeMarkerEmailProvider implements EmailProvider {
 
 
     private void send(String subject, String textBody, String htmlBody) throws EmailException {
-        try {
-            String address = user.getEmail();
-            Map<String, String> config = realm.getSmtpConfig();
-
-            Properties props = new Properties();
-            props.setProperty("mail.smtp.host", config.get("host"));
-
-            boolean auth = "true".equals(config.get("auth"));
-            boolean ssl = "true".equals(config.get("ssl"));
-            boolean starttls = "true".equals(config.get("starttls"));
-
-            if (config.containsKey("port")) {
-                props.setProperty("mail.smtp.port", config.get("port"));
-            }
-
-            if (auth) {
-                props.put("mail.smtp.auth", "true");
-            }
-
-            if (ssl) {
-                props.put("mail.smtp.socketFactory.port", config.get("port"));
-                props.put("mail.smtp.socketFactory.class", "javax.net.ssl.SSLSocketFactory");
-            }
-
-            if (starttls) {
-                props.put("mail.smtp.starttls.enable", "true");
-            }
-
-            String from = config.get("from");
-
-            Session session = Session.getInstance(props);
+        OutgoingEmail email = new OutgoingEmail(realm.getSmtpConfig(), user.getEmail(), subject, textBody, htmlBody);
+        if (outbox != null && outbox.submit(email)) {
+            return;
+        }
 
-            Multipart multipart = new MimeMultipart("alternative");
-            
-            if(textBody != null) {
-            	MimeBodyPart textPart = new MimeBodyPart();
-            	textPart.setText(textBody, "UTF-8");
-            	multipart.addBodyPart(textPart);
-            }
-            
-            if(htmlBody != null) {
-            	MimeBodyPart htmlPart = new MimeBodyPart();
-            	htmlPart.setContent(htmlBody, "text/html; charset=UTF-8");
-            	multipart.addBodyPart(htmlPart);
-            }
-            
-            Message msg = new MimeMessage(session);
-            msg.setFrom(new InternetAddress(from));
-            msg.setHeader("To", address);
-            msg.setSubject(subject);
-            msg.setContent(multipart);
-            msg.saveChanges();
-            msg.setSentDate(new Date());
-
-            Transport transport = session.getTransport("smtp");
-            if (auth) {
-                transport.connect(config.get("user"), config.get("password"));
-            } else {
-                transport.connect();
-            }
-            transport.sendMessage(msg, new InternetAddress[]{new InternetAddress(address)});
+        SmtpConnection connection = new SmtpConnection(email.getSmtpConfig());
+        try {
+            connection.send(email);
         } catch (Exception e) {
             log.warn("Failed to send email", e);
             throw new EmailException(e);
+        } finally {
+            connection.close();
         }
     }
 
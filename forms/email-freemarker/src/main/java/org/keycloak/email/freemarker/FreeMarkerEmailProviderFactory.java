@@ -13,15 +13,28 @@ import org.keycloak.models.KeycloakSessionFactory;
 public class FreeMarkerEmailProviderFactory implements EmailProviderFactory {
 
     private FreeMarkerUtil freeMarker;
+    private EmailOutbox outbox;
 
     @Override
     public EmailProvider create(KeycloakSession session) {
-        return new FreeMarkerEmailProvider(session, freeMarker);
+        return new FreeMarkerEmailProvider(session, freeMarker, outbox);
     }
 
+    /**
+     * Emails are sent on the request thread, unless async is true. Then they are delivered by {@link EmailOutbox}
+     * configured with threads (default 2), queueSize (default 1000), maxAttempts (default 5), retryDelay in milliseconds
+     * (default 1000) and idleTimeout in milliseconds (default 30000).
+     *
+     * @param config
+     */
     @Override
     public void init(Config.Scope config) {
         freeMarker = new FreeMarkerUtil();
+
+        if (config.getBoolean("async", false)) {
+            outbox = new EmailOutbox(config.getInt("threads", 2), config.getInt("queueSize", 1000), config.getInt("maxAttempts", 5),
+                    config.getLong("retryDelay", 1000L), config.getLong("idleTimeout", 30000L));
+        }
     }
 
     @Override
@@ -31,6 +44,10 @@ public class FreeMarkerEmailProviderFactory implements EmailProviderFactory {
 
     @Override
     public void close() {
+        if (outbox != null) {
+            outbox.close();
+            outbox = null;
+        }
         freeMarker = null;
     }
 
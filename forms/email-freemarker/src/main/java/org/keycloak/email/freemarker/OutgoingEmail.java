@@ -0,0 +1,79 @@
+package org.keycloak.email.freemarker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendered email with the SMTP configuration of the realm it was sent from. Holds no references to models or the session,
+ * so it can be delivered after the request finished.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class OutgoingEmail implements Delayed {
+
+    private final Map<String, String> smtpConfig;
+    private final String address;
+    private final String subject;
+    private final String textBody;
+    private final String htmlBody;
+
+    private int attempts;
+    private long notBefore;
+
+    public OutgoingEmail(Map<String, String> smtpConfig, String address, String subject, String textBody, String htmlBody) {
+        this.smtpConfig = new HashMap<>(smtpConfig);
+        this.address = address;
+        this.subject = subject;
+        this.textBody = textBody;
+        this.htmlBody = htmlBody;
+        this.notBefore = System.nanoTime();
+    }
+
+    public Map<String, String> getSmtpConfig() {
+        return smtpConfig;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getTextBody() {
+        return textBody;
+    }
+
+    public String getHtmlBody() {
+        return htmlBody;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Records failed attempt and postpones next one
+     *
+     * @param delay delay in milliseconds
+     */
+    void retryAfter(long delay) {
+        attempts++;
+        notBefore = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(notBefore - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+        long d = getDelay(TimeUnit.NANOSECONDS) - o.getDelay(TimeUnit.NANOSECONDS);
+        return d < 0 ? -1 : d > 0 ? 1 : 0;
+    }
+
+}
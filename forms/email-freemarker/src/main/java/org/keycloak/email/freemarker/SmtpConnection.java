@@ -0,0 +1,115 @@
+package org.keycloak.email.freemarker;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Multipart;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+
+/**
+ * Connection to the SMTP server of a realm. Connects lazily and can send any number of emails before it's closed.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class SmtpConnection {
+
+    private final Map<String, String> config;
+    private final Session session;
+    private final boolean auth;
+
+    private Transport transport;
+
+    public SmtpConnection(Map<String, String> config) {
+        this.config = config;
+
+        Properties props = new Properties();
+        props.setProperty("mail.smtp.host", config.get("host"));
+
+        auth = "true".equals(config.get("auth"));
+        boolean ssl = "true".equals(config.get("ssl"));
+        boolean starttls = "true".equals(config.get("starttls"));
+
+        if (config.containsKey("port")) {
+            props.setProperty("mail.smtp.port", config.get("port"));
+        }
+
+        if (auth) {
+            props.put("mail.smtp.auth", "true");
+        }
+
+        if (ssl) {
+            props.put("mail.smtp.socketFactory.port", config.get("port"));
+            props.put("mail.smtp.socketFactory.class", "javax.net.ssl.SSLSocketFactory");
+        }
+
+        if (starttls) {
+            props.put("mail.smtp.starttls.enable", "true");
+        }
+
+        session = Session.getInstance(props);
+    }
+
+    public Map<String, String> getConfig() {
+        return config;
+    }
+
+    public boolean isConnected() {
+        return transport != null && transport.isConnected();
+    }
+
+    public void send(OutgoingEmail email) throws MessagingException {
+        Multipart multipart = new MimeMultipart("alternative");
+
+        if (email.getTextBody() != null) {
+            MimeBodyPart textPart = new MimeBodyPart();
+            textPart.setText(email.getTextBody(), "UTF-8");
+            multipart.addBodyPart(textPart);
+        }
+
+        if (email.getHtmlBody() != null) {
+            MimeBodyPart htmlPart = new MimeBodyPart();
+            htmlPart.setContent(email.getHtmlBody(), "text/html; charset=UTF-8");
+            multipart.addBodyPart(htmlPart);
+        }
+
+        Message msg = new MimeMessage(session);
+        msg.setFrom(new InternetAddress(config.get("from")));
+        msg.setHeader("To", email.getAddress());
+        msg.setSubject(email.getSubject());
+        msg.setContent(multipart);
+        msg.saveChanges();
+        msg.setSentDate(new Date());
+
+        if (!isConnected()) {
+            close();
+            transport = session.getTransport("smtp");
+            if (auth) {
+                transport.connect(config.get("user"), config.get("password"));
+            } else {
+                transport.connect();
+            }
+        }
+
+        transport.sendMessage(msg, new InternetAddress[]{new InternetAddress(email.getAddress())});
+    }
+
+    public void close() {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                // Connection is discarded anyway
+            }
+            transport = null;
+        }
+    }
+
+}
@@ -57,7 +57,9 @@ public class KeycloakDeployment {
     protected boolean alwaysRefreshToken;
     protected boolean registerNodeAtStartup;
     protected int registerNodePeriod;
+    protected double tokenPreRefreshRatio;
     protected volatile int notBefore;
+    protected final TokenRefreshStatistics tokenRefreshStatistics = new TokenRefreshStatistics();
 
     public KeycloakDeployment() {
     }
@@ -361,4 +363,24 @@ public class KeycloakDeployment {
     public void setPrincipalAttribute(String principalAttribute) {
         this.principalAttribute = principalAttribute;
     }
+
+    /**
+     * @return fraction of access token lifetime, after which the token is refreshed although it's still valid. 0 if
+     * tokens are refreshed only after they expire
+     */
+    public double getTokenPreRefreshRatio() {
+        return tokenPreRefreshRatio;
+    }
+
+    public void setTokenPreRefreshRatio(double tokenPreRefreshRatio) {
+        this.tokenPreRefreshRatio = tokenPreRefreshRatio;
+    }
+
+    /**
+     * @return counters of token refreshes of all sessions of this deployment. They're also logged on debug level after
+     * every refresh
+     */
+    public TokenRefreshStatistics getTokenRefreshStatistics() {
+        return tokenRefreshStatistics;
+    }
 }
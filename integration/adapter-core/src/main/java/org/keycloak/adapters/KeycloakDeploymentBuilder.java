@@ -77,6 +77,10 @@ public class KeycloakDeploymentBuilder {
         deployment.setAlwaysRefreshToken(adapterConfig.isAlwaysRefreshToken());
         deployment.setRegisterNodeAtStartup(adapterConfig.isRegisterNodeAtStartup());
         deployment.setRegisterNodePeriod(adapterConfig.getRegisterNodePeriod());
+        if (adapterConfig.getTokenPreRefreshRatio() < 0 || adapterConfig.getTokenPreRefreshRatio() >= 1) {
+            throw new IllegalArgumentException("token-pre-refresh-ratio must be at least 0 and less than 1");
+        }
+        deployment.setTokenPreRefreshRatio(adapterConfig.getTokenPreRefreshRatio());
 
         if (realmKeyPem == null && adapterConfig.isBearerOnly() && adapterConfig.getAuthServerUrl() == null) {
             throw new IllegalArgumentException("For bearer auth, you must set the realm-public-key or auth-server-url");
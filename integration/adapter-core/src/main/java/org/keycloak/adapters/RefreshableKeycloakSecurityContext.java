@@ -4,13 +4,21 @@ import org.jboss.logging.Logger;
 import org.keycloak.KeycloakSecurityContext;
 import org.keycloak.RSATokenVerifier;
 import org.keycloak.common.VerificationException;
+import org.keycloak.common.util.Time;
 import org.keycloak.representations.AccessToken;
 import org.keycloak.representations.AccessTokenResponse;
 import org.keycloak.representations.IDToken;
 
 import java.io.IOException;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * Security context, which refreshes the access token when it expires. Concurrent requests of the same session share the
+ * context. Only one of them sends the refresh request, the others wait for its result.
+ * <p>
+ * If <code>token-pre-refresh-ratio</code> is set, the token is refreshed when the ratio of its lifetime elapses. The first
+ * request after that refreshes the token, other requests don't wait and use the current token, which is still valid.
+ *
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
  * @version $Revision: 1 $
  */
@@ -22,6 +30,13 @@ public class RefreshableKeycloakSecurityContext extends KeycloakSecurityContext
     protected transient AdapterTokenStore tokenStore;
     protected String refreshToken;
 
+    // ReentrantLock is serializable, it's deserialized unlocked
+    protected final ReentrantLock refreshLock = new ReentrantLock();
+    protected transient volatile int refreshCount;
+    protected transient volatile boolean lastRefreshSucceeded;
+    // Token, which failed to be refreshed before it expired. It isn't tried again until it expires
+    protected transient volatile AccessToken preRefreshFailedToken;
+
     public RefreshableKeycloakSecurityContext() {
     }
 
@@ -78,7 +93,19 @@ public class RefreshableKeycloakSecurityContext extends KeycloakSecurityContext
             if (log.isTraceEnabled()) {
                 log.trace("checking whether to refresh.");
             }
-            if (isActive()) return true;
+            if (isActive()) {
+                // Requests, which come while the token is being refreshed, don't wait as the current token is still valid
+                if (isPreRefreshNeeded() && refreshLock.tryLock()) {
+                    try {
+                        if (isPreRefreshNeeded() && !refresh(true)) {
+                            preRefreshFailedToken = this.token;
+                        }
+                    } finally {
+                        refreshLock.unlock();
+                    }
+                }
+                return true;
+            }
         }
 
         if (this.deployment == null || refreshToken == null) return false; // Might be serialized in HttpSession?
@@ -88,6 +115,62 @@ public class RefreshableKeycloakSecurityContext extends KeycloakSecurityContext
             return false;
         }
 
+        int refreshCount = this.refreshCount;
+        refreshLock.lock();
+        try {
+            if (this.refreshCount != refreshCount) {
+                // Other request refreshed the token while this one was waiting
+                deployment.getTokenRefreshStatistics().coalesced();
+                return lastRefreshSucceeded;
+            }
+            if ((checkActive || !deployment.isAlwaysRefreshToken()) && isActive()) {
+                // Token was refreshed before this request read the refresh count
+                deployment.getTokenRefreshStatistics().coalesced();
+                return true;
+            }
+            return refresh(false);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    protected boolean isPreRefreshNeeded() {
+        if (this.deployment == null || refreshToken == null || deployment.getTokenPreRefreshRatio() <= 0) {
+            return false;
+        }
+
+        AccessToken token = this.token;
+        if (token == null || token == preRefreshFailedToken || token.getExpiration() == 0 || !this.getRealm().equals(this.deployment.getRealm())) {
+            return false;
+        }
+
+        int lifetime = token.getExpiration() - token.getIssuedAt();
+        return Time.currentTime() >= token.getIssuedAt() + (int) (lifetime * deployment.getTokenPreRefreshRatio());
+    }
+
+    // Must be called with refreshLock held
+    private boolean refresh(boolean preRefresh) {
+        boolean success = false;
+        try {
+            success = invokeRefresh();
+            return success;
+        } finally {
+            lastRefreshSucceeded = success;
+            refreshCount++;
+            TokenRefreshStatistics statistics = deployment.getTokenRefreshStatistics();
+            statistics.refreshed(success, preRefresh);
+            if (log.isDebugEnabled()) {
+                log.debugf("Token of %s refreshed. %s", deployment.getResourceName(), statistics);
+            }
+        }
+    }
+
+    /**
+     * Sends the refresh request and updates the tokens. Called with refreshLock held
+     *
+     * @return true if the token was refreshed
+     */
+    protected boolean invokeRefresh() {
         if (log.isTraceEnabled()) {
             log.trace("Doing refresh");
         }
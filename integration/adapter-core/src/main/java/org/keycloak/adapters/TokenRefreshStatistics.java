@@ -0,0 +1,65 @@
+package org.keycloak.adapters;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of token refreshes done by {@link RefreshableKeycloakSecurityContext} of a deployment.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class TokenRefreshStatistics {
+
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong preRefreshes = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    void refreshed(boolean success, boolean preRefresh) {
+        refreshes.incrementAndGet();
+        if (!success) {
+            failures.incrementAndGet();
+        }
+        if (preRefresh) {
+            preRefreshes.incrementAndGet();
+        }
+    }
+
+    void coalesced() {
+        coalesced.incrementAndGet();
+    }
+
+    /**
+     * @return number of refresh requests sent to the token endpoint
+     */
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+
+    /**
+     * @return number of refresh requests, which failed
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return number of refresh requests sent for tokens, which were still valid
+     */
+    public long getPreRefreshes() {
+        return preRefreshes.get();
+    }
+
+    /**
+     * @return number of requests, which waited for refresh done by other request of the same session instead of sending their own
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    @Override
+    public String toString() {
+        return "TokenRefreshStatistics [ refreshes=" + refreshes + ", failures=" + failures + ", preRefreshes=" + preRefreshes
+                + ", coalesced=" + coalesced + " ]";
+    }
+
+}
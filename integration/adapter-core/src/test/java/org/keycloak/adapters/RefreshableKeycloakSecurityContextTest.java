@@ -0,0 +1,162 @@
+package org.keycloak.adapters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.common.util.Time;
+import org.keycloak.representations.AccessToken;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class RefreshableKeycloakSecurityContextTest {
+
+    private static final int THREADS = 8;
+
+    private KeycloakDeployment deployment;
+    private ExecutorService executor;
+
+    @Before
+    public void before() {
+        deployment = new KeycloakDeployment();
+        deployment.setRealm("test");
+        deployment.setResourceName("app");
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentRefresh() throws Exception {
+        TestContext context = new TestContext(deployment, token(-120, -60), true);
+        List<Future<Boolean>> results = refreshConcurrently(context);
+
+        for (Future<Boolean> result : results) {
+            Assert.assertTrue(result.get(10, TimeUnit.SECONDS));
+        }
+        TokenRefreshStatistics statistics = deployment.getTokenRefreshStatistics();
+        Assert.assertEquals(1, context.refreshes.get());
+        Assert.assertEquals(1, statistics.getRefreshes());
+        Assert.assertEquals(THREADS - 1, statistics.getCoalesced());
+
+        // All requests use the token, which was refreshed
+        Assert.assertEquals("refreshed", context.getTokenString());
+        Assert.assertTrue(context.getToken().isActive());
+        Assert.assertEquals(1, context.refreshes.get());
+    }
+
+    @Test
+    public void testConcurrentRefreshFailure() throws Exception {
+        TestContext context = new TestContext(deployment, token(-120, -60), false);
+        List<Future<Boolean>> results = refreshConcurrently(context);
+
+        // Waiters get the result of the failed refresh instead of sending their own request
+        for (Future<Boolean> result : results) {
+            Assert.assertFalse(result.get(10, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(1, context.refreshes.get());
+        Assert.assertEquals(1, deployment.getTokenRefreshStatistics().getFailures());
+        Assert.assertEquals(THREADS - 1, deployment.getTokenRefreshStatistics().getCoalesced());
+    }
+
+    @Test
+    public void testPreRefreshNotRetriedAfterFailure() throws Exception {
+        deployment.setTokenPreRefreshRatio(0.5);
+        AccessToken token = token(-60, 30);
+        TestContext context = new TestContext(deployment, token, false);
+        context.release.countDown();
+
+        // Current token is still valid, so it's returned even though the refresh failed
+        Assert.assertSame(token, context.getToken());
+        Assert.assertSame(token, context.getToken());
+        Assert.assertTrue(context.refreshExpiredToken(true));
+        Assert.assertEquals(1, context.refreshes.get());
+        Assert.assertEquals(1, deployment.getTokenRefreshStatistics().getPreRefreshes());
+
+        // New token may be refreshed early again
+        context.setToken(token(-60, 30));
+        context.getToken();
+        Assert.assertEquals(2, context.refreshes.get());
+    }
+
+    private List<Future<Boolean>> refreshConcurrently(final TestContext context) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    start.await();
+                    return context.refreshExpiredToken(true);
+                }
+            }));
+        }
+        start.countDown();
+
+        // Refresh finishes once all other requests wait for it
+        Assert.assertTrue(context.refreshing.await(10, TimeUnit.SECONDS));
+        long timeout = System.currentTimeMillis() + 10000;
+        while (context.refreshLock.getQueueLength() < THREADS - 1) {
+            Assert.assertTrue("Requests don't wait for the refresh", System.currentTimeMillis() < timeout);
+            Thread.sleep(10);
+        }
+        context.release.countDown();
+        return results;
+    }
+
+    private static AccessToken token(int issuedAt, int expiration) {
+        AccessToken token = new AccessToken();
+        token.issuer("http://localhost:8080/auth/realms/test");
+        token.issuedAt(Time.currentTime() + issuedAt);
+        token.expiration(Time.currentTime() + expiration);
+        return token;
+    }
+
+    private static class TestContext extends RefreshableKeycloakSecurityContext {
+
+        private final boolean success;
+        private final AtomicInteger refreshes = new AtomicInteger();
+        private final CountDownLatch refreshing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private TestContext(KeycloakDeployment deployment, AccessToken token, boolean success) {
+            super(deployment, null, "token", token, null, null, "refresh-token");
+            this.success = success;
+        }
+
+        private void setToken(AccessToken token) {
+            this.token = token;
+        }
+
+        @Override
+        protected boolean invokeRefresh() {
+            refreshes.incrementAndGet();
+            refreshing.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (success) {
+                token = token(0, 60);
+                tokenString = "refreshed";
+            }
+            return success;
+        }
+    }
+
+}
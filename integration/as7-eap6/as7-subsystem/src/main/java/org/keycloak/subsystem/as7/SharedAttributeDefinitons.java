@@ -165,6 +165,11 @@ class SharedAttributeDefinitons {
                     .setAllowExpression(true)
                     .setValidator(new StringLengthValidator(1, Integer.MAX_VALUE, true, true))
                     .build();
+    protected static final SimpleAttributeDefinition TOKEN_PRE_REFRESH_RATIO =
+            new SimpleAttributeDefinitionBuilder("token-pre-refresh-ratio", ModelType.DOUBLE, true)
+                    .setXmlName("token-pre-refresh-ratio")
+                    .setAllowExpression(true)
+                    .build();
 
 
 
@@ -192,6 +197,7 @@ class SharedAttributeDefinitons {
         ATTRIBUTES.add(REGISTER_NODE_PERIOD);
         ATTRIBUTES.add(TOKEN_STORE);
         ATTRIBUTES.add(PRINCIPAL_ATTRIBUTE);
+        ATTRIBUTES.add(TOKEN_PRE_REFRESH_RATIO);
     }
 
     /**
@@ -32,14 +32,31 @@ public class LDAPConstants {
 
     public static final String SEARCH_SCOPE = "searchScope";
     public static final String CONNECTION_POOLING = "connectionPooling";
+    // Max number of connections of the pool used when connection pooling is enabled
+    public static final String CONNECTION_POOL_SIZE = "connectionPoolSize";
+    public static final int DEFAULT_CONNECTION_POOL_SIZE = 20;
+    // Milliseconds to wait for a connection when all connections of the pool are in use
+    public static final String CONNECTION_POOL_TIMEOUT = "connectionPoolTimeout";
+    public static final long DEFAULT_CONNECTION_POOL_TIMEOUT = 30000;
     public static final String PAGINATION = "pagination";
 
+    // Milliseconds for which users found or not found by username or email are cached. Cache is disabled if 0
+    public static final String USER_CACHE_LIFESPAN = "userCacheLifespan";
+    public static final long DEFAULT_USER_CACHE_LIFESPAN = 0;
+    // Max number of cached lookups
+    public static final String USER_CACHE_MAX_SIZE = "userCacheMaxSize";
+    public static final int DEFAULT_USER_CACHE_MAX_SIZE = 1000;
+
     public static final String EDIT_MODE = "editMode";
 
     // Count of users processed per single transaction during sync process
     public static final String BATCH_SIZE_FOR_SYNC = "batchSizeForSync";
     public static final int DEFAULT_BATCH_SIZE_FOR_SYNC = 1000;
 
+    // Count of threads importing pages of users during sync process, while next page is read from LDAP
+    public static final String SYNC_THREADS = "syncThreads";
+    public static final int DEFAULT_SYNC_THREADS = 1;
+
     // Config option to specify if registrations will be synced or not
     public static final String SYNC_REGISTRATIONS = "syncRegistrations";
 
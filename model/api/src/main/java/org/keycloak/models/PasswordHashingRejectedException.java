@@ -0,0 +1,24 @@
+package org.keycloak.models;
+
+/**
+ * Thrown when password can't be hashed, because the queue of the password hashing executor is full or hashing didn't
+ * finish in time.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class PasswordHashingRejectedException extends ModelException {
+
+    private final int retryAfter;
+
+    public PasswordHashingRejectedException(int retryAfter) {
+        super("Too many passwords waiting for hashing");
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return seconds after which client should retry
+     */
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+}
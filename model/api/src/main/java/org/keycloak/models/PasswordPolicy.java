@@ -69,6 +69,8 @@ public class PasswordPolicy implements Serializable {
                 list.add(new NotUsername(arg));
             } else if (name.equals(HashIterations.NAME)) {
                 list.add(new HashIterations(arg));
+            } else if (name.equals(HashAlgorithm.NAME)) {
+                list.add(new HashAlgorithm(arg));
             } else if (name.equals(RegexPatterns.NAME)) {
                 Pattern.compile(arg);
                 list.add(new RegexPatterns(arg));
@@ -97,6 +99,22 @@ public class PasswordPolicy implements Serializable {
         return -1;
     }
 
+    /**
+     *
+     * @return null if no hash algorithm setting
+     */
+    public String getHashAlgorithm() {
+        if (policies == null)
+            return null;
+        for (Policy p : policies) {
+            if (p instanceof HashAlgorithm) {
+                return ((HashAlgorithm) p).algorithm;
+            }
+
+        }
+        return null;
+    }
+
     /**
      *
      * @return -1 if no expired passwords setting
@@ -191,6 +209,28 @@ public class PasswordPolicy implements Serializable {
         }
     }
 
+    private static class HashAlgorithm implements Policy {
+        private static final String NAME = "hashAlgorithm";
+        private String algorithm;
+
+        public HashAlgorithm(String arg) {
+            algorithm = arg != null ? arg.trim() : Pbkdf2PasswordEncoder.PBKDF2_ALGORITHM;
+            if (!algorithm.equals(Pbkdf2PasswordEncoder.getAlgorithm(algorithm))) {
+                throw new IllegalArgumentException("Unsupported hash algorithm " + algorithm);
+            }
+        }
+
+        @Override
+        public Error validate(String user, String password) {
+            return null;
+        }
+
+        @Override
+        public Error validate(UserModel user, String password) {
+            return null;
+        }
+    }
+
     private static class NotUsername implements Policy {
         private static final String NAME = "notUsername";
 
@@ -379,7 +419,7 @@ public class PasswordPolicy implements Serializable {
             
                 UserCredentialValueModel cred = getCredentialValueModel(user, UserCredentialModel.PASSWORD);
                 if (cred != null) {
-                    if(new Pbkdf2PasswordEncoder(cred.getSalt()).verify(password, cred.getValue(), cred.getHashIterations())) {
+                    if(new Pbkdf2PasswordEncoder(cred.getSalt(), cred.getHashIterations(), cred.getAlgorithm()).verify(password, cred.getValue())) {
                         return new Error(INVALID_PASSWORD_HISTORY, passwordHistoryPolicyValue);
                     }
                 }
@@ -387,7 +427,7 @@ public class PasswordPolicy implements Serializable {
                 List<UserCredentialValueModel> passwordExpiredCredentials = getCredentialValueModels(user, passwordHistoryPolicyValue - 1,
                         UserCredentialModel.PASSWORD_HISTORY);
                 for (UserCredentialValueModel credential : passwordExpiredCredentials) {
-                    if (new Pbkdf2PasswordEncoder(credential.getSalt()).verify(password, credential.getValue(), credential.getHashIterations())) {
+                    if (new Pbkdf2PasswordEncoder(credential.getSalt(), credential.getHashIterations(), credential.getAlgorithm()).verify(password, credential.getValue())) {
                         return new Error(INVALID_PASSWORD_HISTORY, passwordHistoryPolicyValue);
                     }
                 }
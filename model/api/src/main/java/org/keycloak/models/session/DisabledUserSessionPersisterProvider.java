@@ -102,6 +102,26 @@ public class DisabledUserSessionPersisterProvider implements UserSessionPersiste
         return Collections.emptyList();
     }
 
+    @Override
+    public List<UserSessionModel> loadUserSessions(String lastUserSessionId, int maxResults, boolean offline) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String getUserSessionIdAfter(String lastUserSessionId, int count, boolean offline) {
+        return null;
+    }
+
+    @Override
+    public UserSessionModel loadUserSession(String userSessionId, boolean offline) {
+        return null;
+    }
+
+    @Override
+    public UserSessionModel loadUserSessionByClientSession(String clientSessionId, boolean offline) {
+        return null;
+    }
+
     @Override
     public int getUserSessionsCount(boolean offline) {
         return 0;
@@ -41,6 +41,19 @@ public interface UserSessionPersisterProvider extends Provider {
     // Called during startup. For each userSession, it loads also clientSessions
     List<UserSessionModel> loadUserSessions(int firstResult, int maxResults, boolean offline);
 
+    // Same as above, but loads userSessions ordered by ID, which follow after userSession with ID "lastUserSessionId". Null "lastUserSessionId" means from the first userSession.
+    // Doesn't need to skip the previous userSessions, so it's cheap even for the last pages
+    List<UserSessionModel> loadUserSessions(String lastUserSessionId, int maxResults, boolean offline);
+
+    // Return ID of the userSession, which is "count" userSessions after userSession with ID "lastUserSessionId" or null if there are less userSessions. Used to split userSessions to segments
+    String getUserSessionIdAfter(String lastUserSessionId, int count, boolean offline);
+
+    // Load userSession with its clientSessions or return null if userSession doesn't exist
+    UserSessionModel loadUserSession(String userSessionId, boolean offline);
+
+    // Load userSession with its clientSessions, which contains clientSession with given ID, or return null if clientSession doesn't exist
+    UserSessionModel loadUserSessionByClientSession(String clientSessionId, boolean offline);
+
     int getUserSessionsCount(boolean offline);
 
 }
@@ -29,8 +29,16 @@ public class CredentialValidation {
 
     }
 
+    private static String hashAlgorithm(RealmModel realm) {
+        PasswordPolicy policy = realm.getPasswordPolicy();
+        if (policy != null) {
+            return policy.getHashAlgorithm();
+        }
+        return null;
+    }
+
     /**
-     * Will update password if hash iteration policy has changed
+     * Will update password if hash iteration or hash algorithm policy has changed
      *
      * @param realm
      * @param user
@@ -51,16 +59,30 @@ public class CredentialValidation {
     }
 
     public static boolean validateHashedCredential(RealmModel realm, UserModel user, String unhashedCredValue, UserCredentialValueModel credential) {
-        boolean validated = new Pbkdf2PasswordEncoder(credential.getSalt()).verify(unhashedCredValue, credential.getValue(), credential.getHashIterations());
+        Pbkdf2PasswordEncoder encoder = new Pbkdf2PasswordEncoder(credential.getSalt(), credential.getHashIterations(), credential.getAlgorithm());
+        boolean validated = PasswordHashingExecutor.verify(encoder, unhashedCredValue, credential.getValue());
         if (validated) {
             int iterations = hashIterations(realm);
-            if (iterations > -1 && iterations != credential.getHashIterations()) {
+            String algorithm = hashAlgorithm(realm);
+            boolean iterationsChanged = iterations > -1 && iterations != credential.getHashIterations();
+            boolean algorithmChanged = algorithm != null && !algorithm.equals(Pbkdf2PasswordEncoder.getAlgorithm(credential.getAlgorithm()));
+            if (iterationsChanged || algorithmChanged) {
+                if (!iterationsChanged) {
+                    iterations = credential.getHashIterations();
+                }
+                if (algorithmChanged) {
+                    encoder = new Pbkdf2PasswordEncoder(credential.getSalt(), iterations, algorithm);
+                } else {
+                    algorithm = credential.getAlgorithm();
+                }
+
                 UserCredentialValueModel newCred = new UserCredentialValueModel();
                 newCred.setType(credential.getType());
                 newCred.setDevice(credential.getDevice());
                 newCred.setSalt(credential.getSalt());
                 newCred.setHashIterations(iterations);
-                newCred.setValue(new Pbkdf2PasswordEncoder(newCred.getSalt()).encode(unhashedCredValue, iterations));
+                newCred.setAlgorithm(algorithm);
+                newCred.setValue(PasswordHashingExecutor.encode(encoder, unhashedCredValue, iterations));
                 user.updateCredentialDirectly(newCred);
             }
 
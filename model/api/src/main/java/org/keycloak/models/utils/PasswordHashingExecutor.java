@@ -0,0 +1,235 @@
+package org.keycloak.models.utils;
+
+import org.jboss.logging.Logger;
+import org.keycloak.Config;
+import org.keycloak.models.PasswordHashingRejectedException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs password hashing on a dedicated pool of threads with bounded queue, so a burst of logins can't occupy all request
+ * threads with hashing and starve cheap requests like token refreshes. When the queue is full, hashing is rejected with
+ * {@link PasswordHashingRejectedException} instead of waiting. Hashing, which doesn't finish within the timeout, is
+ * rejected the same way.
+ * <p>
+ * Until {@link #init(Config.Scope)} is called, passwords are hashed on the calling thread.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class PasswordHashingExecutor {
+
+    private static final Logger logger = Logger.getLogger(PasswordHashingExecutor.class);
+
+    private static volatile PasswordHashingExecutor instance;
+
+    private final ThreadPoolExecutor executor;
+    private final int retryAfter;
+    private final long timeout;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong hashed = new AtomicLong();
+    private final AtomicLong hashingTime = new AtomicLong();
+    private final AtomicLong waitingTime = new AtomicLong();
+
+    PasswordHashingExecutor(int threads, int queueSize, int retryAfter, long timeout) {
+        this.retryAfter = retryAfter;
+        this.timeout = timeout;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Password Hashing " + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Configured with:
+     * <ul>
+     *     <li>enabled - if false, passwords are hashed on the request thread. Default true</li>
+     *     <li>threads - number of hashing threads. Default is number of available processors</li>
+     *     <li>workerThreads - number of threads serving requests. Default is 8 times number of available processors,
+     *     which is the default of Undertow</li>
+     *     <li>queueSize - max number of passwords waiting for hashing. Default is quarter of workerThreads, so requests
+     *     are rejected before all worker threads are waiting for hashing</li>
+     *     <li>timeout - milliseconds to wait for hashing including time in the queue. Default 10000</li>
+     *     <li>retryAfter - seconds sent in Retry-After header of rejected requests. Default 1</li>
+     * </ul>
+     *
+     * @param config
+     */
+    public static synchronized void init(Config.Scope config) {
+        close();
+
+        if (!config.getBoolean("enabled", true)) {
+            return;
+        }
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        int threads = config.getInt("threads", processors);
+        int workerThreads = config.getInt("workerThreads", processors * 8);
+        int queueSize = config.getInt("queueSize", Math.max(1, workerThreads / 4));
+        long timeout = config.getLong("timeout", 10000L);
+        int retryAfter = config.getInt("retryAfter", 1);
+
+        logger.debugv("Password hashing executor with {0} threads, queue size {1} and timeout {2} ms", threads, queueSize, timeout);
+        instance = new PasswordHashingExecutor(threads, queueSize, retryAfter, timeout);
+    }
+
+    public static synchronized void close() {
+        if (instance != null) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return executor or null if passwords are hashed on the calling thread
+     */
+    public static PasswordHashingExecutor getInstance() {
+        return instance;
+    }
+
+    public static boolean verify(final Pbkdf2PasswordEncoder encoder, final String rawPassword, final String encodedPassword) {
+        PasswordHashingExecutor executor = instance;
+        if (executor == null) {
+            return encoder.verify(rawPassword, encodedPassword);
+        }
+
+        return executor.execute(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return encoder.verify(rawPassword, encodedPassword);
+            }
+        });
+    }
+
+    public static String encode(final Pbkdf2PasswordEncoder encoder, final String rawPassword, final int iterations) {
+        PasswordHashingExecutor executor = instance;
+        if (executor == null) {
+            return encoder.encode(rawPassword, iterations);
+        }
+
+        return executor.execute(new Callable<String>() {
+            @Override
+            public String call() {
+                return encoder.encode(rawPassword, iterations);
+            }
+        });
+    }
+
+    <T> T execute(final Callable<T> task) {
+        final long submitted = System.nanoTime();
+
+        Future<T> future;
+        try {
+            future = executor.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    long started = System.nanoTime();
+                    waitingTime.addAndGet(started - submitted);
+                    try {
+                        return task.call();
+                    } finally {
+                        hashingTime.addAndGet(System.nanoTime() - started);
+                        hashed.incrementAndGet();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            logger.debug("Password hashing rejected, queue is full");
+            throw new PasswordHashingRejectedException(retryAfter);
+        }
+
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            timedOut.incrementAndGet();
+            logger.debugv("Password hashing timed out after {0} ms", timeout);
+            throw new PasswordHashingRejectedException(retryAfter);
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingRejectedException(retryAfter);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    public int getThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public int getActive() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    public int getQueueCapacity() {
+        return executor.getQueue().size() + executor.getQueue().remainingCapacity();
+    }
+
+    public long getHashed() {
+        return hashed.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    /**
+     * @return average time of hashing in milliseconds
+     */
+    public double getAverageHashingTime() {
+        long count = hashed.get();
+        return count > 0 ? hashingTime.get() / 1000000.0 / count : 0;
+    }
+
+    /**
+     * @return average time spent in the queue in milliseconds
+     */
+    public double getAverageWaitingTime() {
+        long count = hashed.get();
+        return count > 0 ? waitingTime.get() / 1000000.0 / count : 0;
+    }
+
+}
@@ -2,18 +2,26 @@ package org.keycloak.models.utils;
 
 import org.keycloak.common.util.Base64;
 
-import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.KeySpec;
+import java.util.Arrays;
 
 /**
  * <p>
  * Encoder that uses PBKDF2 function to cryptographically derive passwords.
  * </p>
  * <p>Passwords are returned with a Base64 encoding.</p>
+ * <p>
+ * PBKDF2 is computed directly with {@link Mac} instances, which are cached per thread, instead of looking up
+ * a {@link javax.crypto.SecretKeyFactory} for every password. The result is the same as of the JCE implementation.
+ * </p>
  *
  * @author <a href="mailto:bruno@abstractj.org">Bruno Oliveira</a>
  *
@@ -21,42 +29,59 @@ import java.security.spec.KeySpec;
 public class Pbkdf2PasswordEncoder {
 
     public static final String PBKDF2_ALGORITHM = "PBKDF2WithHmacSHA1";
+    public static final String PBKDF2_SHA256_ALGORITHM = "PBKDF2WithHmacSHA256";
+    public static final String PBKDF2_SHA512_ALGORITHM = "PBKDF2WithHmacSHA512";
     public static final String RNG_ALGORITHM = "SHA1PRNG";
 
     private static final int DERIVED_KEY_SIZE = 512;
     private static final int ITERATIONS = 1;
 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final ThreadLocal<Mac> HMAC_SHA1 = new MacThreadLocal("HmacSHA1");
+    private static final ThreadLocal<Mac> HMAC_SHA256 = new MacThreadLocal("HmacSHA256");
+    private static final ThreadLocal<Mac> HMAC_SHA512 = new MacThreadLocal("HmacSHA512");
+
     private final int iterations;
+    private final String algorithm;
     private byte[] salt;
 
-    public Pbkdf2PasswordEncoder(byte[] salt, int iterations) {
+    public Pbkdf2PasswordEncoder(byte[] salt, int iterations, String algorithm) {
         this.salt = salt;
         this.iterations = iterations;
+        this.algorithm = getAlgorithm(algorithm);
+    }
+
+    public Pbkdf2PasswordEncoder(byte[] salt, int iterations) {
+        this(salt, iterations, PBKDF2_ALGORITHM);
     }
 
     public Pbkdf2PasswordEncoder(byte[] salt) {
         this(salt, ITERATIONS);
     }
 
+    /**
+     * Returns given algorithm if it's one of supported PBKDF2 variants, otherwise the default {@link #PBKDF2_ALGORITHM}.
+     * Credentials without algorithm or with algorithm of other credential type are hashed with the default one.
+     *
+     * @param algorithm
+     * @return
+     */
+    public static String getAlgorithm(String algorithm) {
+        if (PBKDF2_SHA256_ALGORITHM.equals(algorithm) || PBKDF2_SHA512_ALGORITHM.equals(algorithm)) {
+            return algorithm;
+        }
+        return PBKDF2_ALGORITHM;
+    }
+
     /**
      * Encode the raw password provided
      * @param rawPassword The password used as a master key to derive into a session key
      * @return encoded password in Base64
      */
     public String encode(String rawPassword, int iterations) {
-
-        String encodedPassword;
-
-        KeySpec spec = new PBEKeySpec(rawPassword.toCharArray(), salt, iterations, DERIVED_KEY_SIZE);
-
-        try {
-            byte[] key = getSecretKeyFactory().generateSecret(spec).getEncoded();
-            encodedPassword = Base64.encodeBytes(key);
-        } catch (InvalidKeySpecException e) {
-            throw new RuntimeException("Credential could not be encoded");
-        }
-
-        return encodedPassword;
+        byte[] key = derive(rawPassword, iterations, DERIVED_KEY_SIZE / 8);
+        return Base64.encodeBytes(key);
     }
 
     public String encode(String rawPassword) {
@@ -70,17 +95,37 @@ public class Pbkdf2PasswordEncoder {
      * @return true if the password is valid, otherwise false for invalid credentials
      */
     public boolean verify(String rawPassword, String encodedPassword) {
-        return encode(rawPassword).equals(encodedPassword);
+        return verify(rawPassword, encodedPassword, iterations);
     }
 
     /**
-     * Encode the password provided and compare with the hash stored into the database
+     * Encode the password provided and compare with the hash stored into the database. Only the first block of the
+     * derived key is computed and compared, as the remaining blocks don't depend on it and would multiply the cost
+     * of the check. Comparison is done in constant time.
+     *
      * @param rawPassword The password provided
      * @param encodedPassword Encoded hash stored into the database
      * @return true if the password is valid, otherwise false for invalid credentials
      */
     public boolean verify(String rawPassword, String encodedPassword, int iterations) {
-        return encode(rawPassword, iterations).equals(encodedPassword);
+        if (encodedPassword == null) {
+            return false;
+        }
+
+        byte[] expected;
+        try {
+            expected = Base64.decode(encodedPassword);
+        } catch (IOException e) {
+            return false;
+        }
+
+        if (expected.length != DERIVED_KEY_SIZE / 8) {
+            return false;
+        }
+
+        int length = Math.min(expected.length, getMac().getMacLength());
+        byte[] key = derive(rawPassword, iterations, length);
+        return MessageDigest.isEqual(key, Arrays.copyOf(expected, length));
     }
 
     /**
@@ -96,11 +141,85 @@ public class Pbkdf2PasswordEncoder {
         return buffer;
     }
 
-    private static SecretKeyFactory getSecretKeyFactory() {
+    /**
+     * PBKDF2 as defined in RFC 2898. Password is encoded with UTF-8 as done by the JCE implementation.
+     */
+    private byte[] derive(String rawPassword, int iterations, int keyLength) {
+        if (iterations < 1) {
+            throw new RuntimeException("Credential could not be encoded");
+        }
+
+        Mac mac = getMac();
+        byte[] password = rawPassword.getBytes(UTF_8);
+        // HMAC pads the key with zeros, so empty password is the same as single zero byte, which SecretKeySpec accepts
+        if (password.length == 0) {
+            password = new byte[] { 0 };
+        }
+
         try {
-            return SecretKeyFactory.getInstance(PBKDF2_ALGORITHM);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("PBKDF2 algorithm not found");
+            mac.init(new SecretKeySpec(password, mac.getAlgorithm()));
+
+            int macLength = mac.getMacLength();
+            int blocks = (keyLength + macLength - 1) / macLength;
+
+            byte[] key = new byte[blocks * macLength];
+            byte[] u = new byte[macLength];
+            byte[] blockIndex = new byte[4];
+
+            for (int block = 1; block <= blocks; block++) {
+                int offset = (block - 1) * macLength;
+
+                blockIndex[0] = (byte) (block >>> 24);
+                blockIndex[1] = (byte) (block >>> 16);
+                blockIndex[2] = (byte) (block >>> 8);
+                blockIndex[3] = (byte) block;
+
+                mac.update(salt);
+                mac.update(blockIndex);
+                mac.doFinal(u, 0);
+                System.arraycopy(u, 0, key, offset, macLength);
+
+                for (int i = 1; i < iterations; i++) {
+                    mac.update(u);
+                    mac.doFinal(u, 0);
+                    for (int j = 0; j < macLength; j++) {
+                        key[offset + j] ^= u[j];
+                    }
+                }
+            }
+
+            return key.length == keyLength ? key : Arrays.copyOf(key, keyLength);
+        } catch (InvalidKeyException | ShortBufferException e) {
+            throw new RuntimeException("Credential could not be encoded", e);
+        }
+    }
+
+    private Mac getMac() {
+        switch (algorithm) {
+            case PBKDF2_SHA256_ALGORITHM:
+                return HMAC_SHA256.get();
+            case PBKDF2_SHA512_ALGORITHM:
+                return HMAC_SHA512.get();
+            default:
+                return HMAC_SHA1.get();
+        }
+    }
+
+    private static class MacThreadLocal extends ThreadLocal<Mac> {
+
+        private final String macAlgorithm;
+
+        private MacThreadLocal(String macAlgorithm) {
+            this.macAlgorithm = macAlgorithm;
+        }
+
+        @Override
+        protected Mac initialValue() {
+            try {
+                return Mac.getInstance(macAlgorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException("PBKDF2 algorithm not found");
+            }
         }
     }
 }
@@ -0,0 +1,212 @@
+package org.keycloak.models.utils;
+
+import org.keycloak.models.ClientModel;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.RoleModel;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Composite roles of a realm compiled into bit sets. Every role has an index, its direct composites and its transitive
+ * closure (the role itself and all roles it contains directly or through other composites) are bit sets of indexes. Checking
+ * if a role contains another one or computing the effective roles is then a few bit set operations instead of walking the
+ * composites.
+ * <p>
+ * Graph is immutable snapshot of the roles. It should be only used when it is invalidated together with the roles, see
+ * {@link Source}.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ * @version $Revision: 1 $
+ */
+public class RoleGraph {
+
+    /**
+     * Implemented by realms, which can provide role graph kept up to date with the roles of the realm
+     */
+    public interface Source {
+
+        /**
+         * @return graph of realm roles and roles of all clients or null if it's not available
+         */
+        RoleGraph getRoleGraph();
+    }
+
+    private final String[] ids;
+    private final Map<String, Integer> indexes;
+    private final BitSet[] composites;
+    private final BitSet[] closures;
+
+    /**
+     * @param composites ids of direct composites for id of every role
+     */
+    public RoleGraph(Map<String, ? extends Collection<String>> composites) {
+        int size = composites.size();
+        this.ids = new String[size];
+        this.indexes = new HashMap<>(size * 2);
+        this.composites = new BitSet[size];
+        this.closures = new BitSet[size];
+
+        int i = 0;
+        for (String id : composites.keySet()) {
+            ids[i] = id;
+            indexes.put(id, i);
+            i++;
+        }
+
+        for (i = 0; i < size; i++) {
+            BitSet bits = new BitSet(size);
+            for (String composite : composites.get(ids[i])) {
+                Integer index = indexes.get(composite);
+                if (index == null) {
+                    throw new IllegalArgumentException("Composite role " + composite + " of " + ids[i] + " is not in the graph");
+                }
+                bits.set(index);
+            }
+            this.composites[i] = bits;
+        }
+
+        for (i = 0; i < size; i++) {
+            closures[i] = computeClosure(i);
+        }
+    }
+
+    /**
+     * Builds graph of realm roles and roles of all clients of the realm
+     */
+    public static RoleGraph build(RealmModel realm) {
+        Map<String, Set<String>> composites = new HashMap<>();
+        addRoles(composites, realm.getRoles());
+        for (ClientModel client : realm.getClients()) {
+            addRoles(composites, client.getRoles());
+        }
+        return new RoleGraph(composites);
+    }
+
+    /**
+     * @return graph of the realm if the realm keeps it up to date, null otherwise
+     */
+    public static RoleGraph getCached(RealmModel realm) {
+        if (realm instanceof Source) {
+            return ((Source) realm).getRoleGraph();
+        }
+        return null;
+    }
+
+    private static void addRoles(Map<String, Set<String>> composites, Set<RoleModel> roles) {
+        for (RoleModel role : roles) {
+            Set<String> ids = new HashSet<>();
+            if (role.isComposite()) {
+                for (RoleModel composite : role.getComposites()) {
+                    ids.add(composite.getId());
+                }
+            }
+            composites.put(role.getId(), ids);
+        }
+    }
+
+    // Closures of already processed roles are complete, so they are merged instead of walked again. This also handles cycles.
+    private BitSet computeClosure(int index) {
+        BitSet closure = new BitSet(ids.length);
+        closure.set(index);
+        List<Integer> stack = new ArrayList<>();
+        stack.add(index);
+        while (!stack.isEmpty()) {
+            int current = stack.remove(stack.size() - 1);
+            BitSet children = composites[current];
+            for (int child = children.nextSetBit(0); child >= 0; child = children.nextSetBit(child + 1)) {
+                if (closure.get(child)) continue;
+                if (closures[child] != null) {
+                    closure.or(closures[child]);
+                } else {
+                    closure.set(child);
+                    stack.add(child);
+                }
+            }
+        }
+        return closure;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return index of the role or -1 if the role is not in the graph
+     */
+    public int indexOf(String roleId) {
+        Integer index = indexes.get(roleId);
+        return index != null ? index : -1;
+    }
+
+    public String getRoleId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @return bit set of the roles or null if some of the roles is not in the graph
+     */
+    public BitSet toBitSet(Collection<RoleModel> roles) {
+        BitSet bits = new BitSet(ids.length);
+        for (RoleModel role : roles) {
+            int index = indexOf(role.getId());
+            if (index < 0) return null;
+            bits.set(index);
+        }
+        return bits;
+    }
+
+    /**
+     * Same as {@link RoleModel#hasRole(RoleModel)}
+     */
+    public boolean hasRole(int role, int contained) {
+        return closures[role].get(contained);
+    }
+
+    /**
+     * @return the roles with all roles they contain
+     */
+    public BitSet closure(BitSet roles) {
+        BitSet closure = new BitSet(ids.length);
+        for (int i = roles.nextSetBit(0); i >= 0; i = roles.nextSetBit(i + 1)) {
+            closure.or(closures[i]);
+        }
+        return closure;
+    }
+
+    /**
+     * Roles of the scope the user has access to. Result is the same as walking composites of every scope role and adding
+     * the first role on each path, which is contained in some of the user roles.
+     *
+     * @param userRoles roles mapped to the user
+     * @param scope roles in scope of the client
+     * @return
+     */
+    public BitSet getAccess(BitSet userRoles, BitSet scope) {
+        BitSet reachable = closure(scope);
+        BitSet access = new BitSet(ids.length);
+        for (int role = userRoles.nextSetBit(0); role >= 0; role = userRoles.nextSetBit(role + 1)) {
+            BitSet roleClosure = closures[role];
+
+            // Closure is closed under composites, so a path to a role outside of closure never goes through the closure.
+            // Roles of the closure are reached either directly from scope or from such role.
+            BitSet outside = (BitSet) reachable.clone();
+            outside.andNot(roleClosure);
+
+            BitSet reached = (BitSet) scope.clone();
+            for (int i = outside.nextSetBit(0); i >= 0; i = outside.nextSetBit(i + 1)) {
+                reached.or(composites[i]);
+            }
+            reached.and(roleClosure);
+            access.or(reached);
+        }
+        return access;
+    }
+
+}
@@ -84,6 +84,21 @@ public class PasswordPolicyTest {
         Assert.assertNull(policy.validate("jdoe", "ab&d1234"));
     }
     
+    @Test
+    public void testHashAlgorithm() {
+        Assert.assertNull(new PasswordPolicy("length").getHashAlgorithm());
+        Assert.assertEquals("PBKDF2WithHmacSHA1", new PasswordPolicy("hashAlgorithm").getHashAlgorithm());
+        Assert.assertEquals("PBKDF2WithHmacSHA512", new PasswordPolicy("hashIterations(20000) and hashAlgorithm(PBKDF2WithHmacSHA512)").getHashAlgorithm());
+        Assert.assertNull(new PasswordPolicy("hashAlgorithm(PBKDF2WithHmacSHA256)").validate("jdoe", "password"));
+
+        try {
+            new PasswordPolicy("hashAlgorithm(MD5)");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
     @Test
     public void testRegexPatterns() {
         PasswordPolicy policy = null;
@@ -0,0 +1,54 @@
+package org.keycloak.models;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.common.util.Base64;
+import org.keycloak.models.utils.Pbkdf2PasswordEncoder;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class Pbkdf2PasswordEncoderTest {
+
+    @Test
+    public void testSameAsSecretKeyFactory() throws Exception {
+        byte[] salt = Pbkdf2PasswordEncoder.getSalt();
+
+        for (String password : new String[] { "", "password", "pässwörd€" }) {
+            for (int iterations : new int[] { 1, 2, 1000 }) {
+                PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, 512);
+                String expected = Base64.encodeBytes(SecretKeyFactory.getInstance(Pbkdf2PasswordEncoder.PBKDF2_ALGORITHM).generateSecret(spec).getEncoded());
+
+                Assert.assertEquals(expected, new Pbkdf2PasswordEncoder(salt).encode(password, iterations));
+            }
+        }
+    }
+
+    @Test
+    public void testVerify() {
+        byte[] salt = Pbkdf2PasswordEncoder.getSalt();
+
+        for (String algorithm : new String[] { Pbkdf2PasswordEncoder.PBKDF2_ALGORITHM, Pbkdf2PasswordEncoder.PBKDF2_SHA256_ALGORITHM, Pbkdf2PasswordEncoder.PBKDF2_SHA512_ALGORITHM }) {
+            Pbkdf2PasswordEncoder encoder = new Pbkdf2PasswordEncoder(salt, 100, algorithm);
+            String encoded = encoder.encode("password");
+
+            Assert.assertTrue(encoder.verify("password", encoded));
+            Assert.assertFalse(encoder.verify("password1", encoded));
+            Assert.assertFalse(encoder.verify("password", encoded, 101));
+            Assert.assertFalse(encoder.verify("password", "invalid"));
+            Assert.assertFalse(encoder.verify("password", null));
+        }
+    }
+
+    @Test
+    public void testUnknownAlgorithmUsesDefault() {
+        byte[] salt = Pbkdf2PasswordEncoder.getSalt();
+
+        String encoded = new Pbkdf2PasswordEncoder(salt, 10).encode("password");
+        Assert.assertTrue(new Pbkdf2PasswordEncoder(salt, 10, "HmacSHA1").verify("password", encoded));
+        Assert.assertTrue(new Pbkdf2PasswordEncoder(salt, 10, null).verify("password", encoded));
+    }
+}
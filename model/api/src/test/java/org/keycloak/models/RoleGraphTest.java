@@ -0,0 +1,114 @@
+package org.keycloak.models;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.models.utils.RoleGraph;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class RoleGraphTest {
+
+    @Test
+    public void testClosure() {
+        Map<String, Set<String>> composites = new LinkedHashMap<>();
+        composites.put("admin", set("user", "manager"));
+        composites.put("manager", set("user"));
+        composites.put("user", Collections.<String>emptySet());
+        composites.put("a", set("b"));
+        composites.put("b", set("a", "user"));
+
+        RoleGraph graph = new RoleGraph(composites);
+        Assert.assertTrue(hasRole(graph, "admin", "user"));
+        Assert.assertTrue(hasRole(graph, "admin", "admin"));
+        Assert.assertFalse(hasRole(graph, "manager", "admin"));
+        Assert.assertTrue(hasRole(graph, "a", "user"));
+        Assert.assertTrue(hasRole(graph, "b", "a"));
+        Assert.assertFalse(hasRole(graph, "user", "a"));
+    }
+
+    @Test
+    public void testSameAccessAsWalkingComposites() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            int size = 2 + random.nextInt(30);
+            Map<String, Set<String>> composites = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                Set<String> children = new HashSet<>();
+                int count = random.nextInt(4);
+                for (int j = 0; j < count; j++) {
+                    children.add("r" + random.nextInt(size));
+                }
+                composites.put("r" + i, children);
+            }
+            RoleGraph graph = new RoleGraph(composites);
+
+            BitSet userRoles = randomRoles(random, size);
+            BitSet scope = randomRoles(random, size);
+
+            Set<String> expected = new HashSet<>();
+            for (int role = userRoles.nextSetBit(0); role >= 0; role = userRoles.nextSetBit(role + 1)) {
+                for (int desired = scope.nextSetBit(0); desired >= 0; desired = scope.nextSetBit(desired + 1)) {
+                    applyScope(composites, "r" + role, "r" + desired, new HashSet<String>(), expected);
+                }
+            }
+
+            Set<String> actual = new HashSet<>();
+            BitSet access = graph.getAccess(userRoles, scope);
+            for (int i = access.nextSetBit(0); i >= 0; i = access.nextSetBit(i + 1)) {
+                actual.add(graph.getRoleId(i));
+            }
+
+            Assert.assertEquals(expected, actual);
+        }
+    }
+
+    // Same as TokenManager.applyScope
+    private static void applyScope(Map<String, Set<String>> composites, String role, String scope, Set<String> visited, Set<String> requested) {
+        if (visited.contains(scope)) return;
+        visited.add(scope);
+        if (searchFor(composites, role, scope, new HashSet<String>())) {
+            requested.add(scope);
+            return;
+        }
+        for (String contained : composites.get(scope)) {
+            applyScope(composites, role, contained, visited, requested);
+        }
+    }
+
+    private static boolean searchFor(Map<String, Set<String>> composites, String role, String searched, Set<String> visited) {
+        if (role.equals(searched)) return true;
+        if (!visited.add(role)) return false;
+        for (String contained : composites.get(role)) {
+            if (searchFor(composites, contained, searched, visited)) return true;
+        }
+        return false;
+    }
+
+    private static BitSet randomRoles(Random random, int size) {
+        BitSet bits = new BitSet(size);
+        int count = 1 + random.nextInt(4);
+        for (int i = 0; i < count; i++) {
+            bits.set(random.nextInt(size));
+        }
+        return bits;
+    }
+
+    private static boolean hasRole(RoleGraph graph, String role, String contained) {
+        return graph.hasRole(graph.indexOf(role), graph.indexOf(contained));
+    }
+
+    private static Set<String> set(String... ids) {
+        Set<String> set = new HashSet<>();
+        Collections.addAll(set, ids);
+        return set;
+    }
+}
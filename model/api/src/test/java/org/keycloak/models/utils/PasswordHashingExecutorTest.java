@@ -0,0 +1,125 @@
+package org.keycloak.models.utils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.models.PasswordHashingRejectedException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class PasswordHashingExecutorTest {
+
+    private PasswordHashingExecutor executor;
+    private CountDownLatch release;
+
+    @Before
+    public void before() {
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void after() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testExecute() {
+        executor = new PasswordHashingExecutor(1, 1, 1, 10000);
+        Assert.assertEquals("hashed", executor.execute(new Callable<String>() {
+            @Override
+            public String call() {
+                return "hashed";
+            }
+        }));
+        Assert.assertEquals(1, executor.getHashed());
+    }
+
+    @Test
+    public void testRejectedWhenQueueFull() throws Exception {
+        executor = new PasswordHashingExecutor(1, 1, 5, 10000);
+
+        CountDownLatch started = new CountDownLatch(1);
+        // One task occupies the thread and one fills the queue
+        startBlocked(started);
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        startBlocked(new CountDownLatch(1));
+        waitForQueued(1);
+
+        try {
+            executor.execute(blocked(new CountDownLatch(1)));
+            Assert.fail("Expected PasswordHashingRejectedException");
+        } catch (PasswordHashingRejectedException e) {
+            Assert.assertEquals(5, e.getRetryAfter());
+        }
+        Assert.assertEquals(1, executor.getRejected());
+    }
+
+    @Test
+    public void testRejectedWhenTimedOut() {
+        executor = new PasswordHashingExecutor(1, 1, 1, 100);
+
+        long start = System.currentTimeMillis();
+        try {
+            executor.execute(blocked(new CountDownLatch(1)));
+            Assert.fail("Expected PasswordHashingRejectedException");
+        } catch (PasswordHashingRejectedException e) {
+            // Expected
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        Assert.assertEquals(1, executor.getTimedOut());
+    }
+
+    @Test
+    public void testInterruptRestored() {
+        executor = new PasswordHashingExecutor(1, 1, 1, 10000);
+
+        Thread.currentThread().interrupt();
+        try {
+            executor.execute(blocked(new CountDownLatch(1)));
+            Assert.fail("Expected PasswordHashingRejectedException");
+        } catch (PasswordHashingRejectedException e) {
+            Assert.assertTrue(Thread.interrupted());
+        }
+    }
+
+    private void startBlocked(final CountDownLatch started) {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    executor.execute(blocked(started));
+                } catch (PasswordHashingRejectedException e) {
+                    // Ignore
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private Callable<String> blocked(final CountDownLatch started) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                started.countDown();
+                release.await();
+                return "hashed";
+            }
+        };
+    }
+
+    private void waitForQueued(int queued) throws InterruptedException {
+        for (int i = 0; i < 1000 && executor.getQueued() < queued; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(queued, executor.getQueued());
+    }
+
+}
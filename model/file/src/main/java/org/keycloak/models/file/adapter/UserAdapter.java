@@ -356,16 +356,19 @@ public class UserAdapter implements UserModel, Comparable {
     private void setValue(CredentialEntity credentialEntity, UserCredentialModel cred) {
         byte[] salt = getSalt();
         int hashIterations = 1;
+        String hashAlgorithm = null;
         PasswordPolicy policy = realm.getPasswordPolicy();
         if (policy != null) {
             hashIterations = policy.getHashIterations();
             if (hashIterations == -1)
                 hashIterations = 1;
+            hashAlgorithm = policy.getHashAlgorithm();
         }
         credentialEntity.setCreatedDate(Time.toMillis(Time.currentTime()));
-        credentialEntity.setValue(new Pbkdf2PasswordEncoder(salt).encode(cred.getValue(), hashIterations));
+        credentialEntity.setValue(new Pbkdf2PasswordEncoder(salt, hashIterations, hashAlgorithm).encode(cred.getValue()));
         credentialEntity.setSalt(salt);
         credentialEntity.setHashIterations(hashIterations);
+        credentialEntity.setAlgorithm(hashAlgorithm);
     }
 
     private CredentialEntity getCredentialEntity(UserEntity userEntity, String credType) {
@@ -436,6 +439,8 @@ public class UserAdapter implements UserModel, Comparable {
                 } else {
                     credModel.setPeriod(credEntity.getPeriod());
                 }
+            } else {
+                credModel.setAlgorithm(credEntity.getAlgorithm());
             }
 
             result.add(credModel);
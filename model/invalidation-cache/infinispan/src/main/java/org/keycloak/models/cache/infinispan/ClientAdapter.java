@@ -467,6 +467,7 @@ public class ClientAdapter implements ClientModel {
         getDelegateForUpdate();
         RoleModel role = updated.addRole(name);
         cacheSession.registerRoleInvalidation(role.getId());
+        cacheSession.registerRealmInvalidation(cachedRealm.getId());
         return role;
     }
 
@@ -475,12 +476,15 @@ public class ClientAdapter implements ClientModel {
         getDelegateForUpdate();
         RoleModel role =  updated.addRole(id, name);
         cacheSession.registerRoleInvalidation(role.getId());
+        cacheSession.registerRealmInvalidation(cachedRealm.getId());
         return role;
     }
 
     @Override
     public boolean removeRole(RoleModel role) {
         cacheSession.registerRoleInvalidation(role.getId());
+        // role graph of the realm is cached with the realm
+        cacheSession.registerRealmInvalidation(cachedRealm.getId());
         getDelegateForUpdate();
         return updated.removeRole(role);
     }
@@ -24,8 +24,6 @@ public class DefaultCacheUserProvider implements CacheUserProvider {
     protected Set<String> realmInvalidations = new HashSet<>();
     protected Map<String, UserModel> managedUsers = new HashMap<>();
 
-    protected boolean clearAll;
-
     public DefaultCacheUserProvider(UserCache cache, KeycloakSession session) {
         this.cache = cache;
         this.session = session;
@@ -75,9 +73,6 @@ public class DefaultCacheUserProvider implements CacheUserProvider {
             @Override
             public void commit() {
                 if (delegate == null) return;
-                if (clearAll) {
-                    cache.clear();
-                }
                 runInvalidations();
                 transactionActive = false;
             }
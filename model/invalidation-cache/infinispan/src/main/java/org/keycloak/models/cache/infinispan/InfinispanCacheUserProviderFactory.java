@@ -3,8 +3,10 @@ package org.keycloak.models.cache.infinispan;
 import org.infinispan.Cache;
 import org.infinispan.notifications.Listener;
 import org.infinispan.notifications.cachelistener.annotation.CacheEntryCreated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryInvalidated;
 import org.infinispan.notifications.cachelistener.annotation.CacheEntryRemoved;
 import org.infinispan.notifications.cachelistener.event.CacheEntryCreatedEvent;
+import org.infinispan.notifications.cachelistener.event.CacheEntryInvalidatedEvent;
 import org.infinispan.notifications.cachelistener.event.CacheEntryRemovedEvent;
 import org.keycloak.Config;
 import org.keycloak.connections.infinispan.InfinispanConnectionProvider;
@@ -40,15 +42,19 @@ public class InfinispanCacheUserProviderFactory implements CacheUserProviderFact
         if (userCache == null) {
             synchronized (this) {
                 if (userCache == null) {
-                    checkIspnVersion();
-                    Cache<String, CachedUser> cache = session.getProvider(InfinispanConnectionProvider.class).getCache(InfinispanConnectionProvider.USER_CACHE_NAME);
-                    cache.addListener(new CacheListener());
-                    userCache = new InfinispanUserCache(cache, usernameLookup, emailLookup);
+                    Cache<String, Object> cache = session.getProvider(InfinispanConnectionProvider.class).getCache(InfinispanConnectionProvider.USER_CACHE_NAME);
+                    initUserCache(cache);
                 }
             }
         }
     }
 
+    protected void initUserCache(Cache<String, Object> cache) {
+        checkIspnVersion();
+        cache.addListener(new CacheListener());
+        userCache = new InfinispanUserCache(cache, usernameLookup, emailLookup);
+    }
+
     protected void checkIspnVersion() {
         try {
             CacheEntryCreatedEvent.class.getMethod("getValue");
@@ -80,20 +86,21 @@ public class InfinispanCacheUserProviderFactory implements CacheUserProviderFact
     public class CacheListener {
 
         @CacheEntryCreated
-        public void userCreated(CacheEntryCreatedEvent<String, CachedUser> event) {
+        public void userCreated(CacheEntryCreatedEvent<String, Object> event) {
             if (!event.isPre()) {
 
-                CachedUser cachedUser;
+                Object value;
 
                 // Try optimized version if available
                 if (isNewInfinispan) {
-                    cachedUser = event.getValue();
+                    value = event.getValue();
                 } else {
                     String userId = event.getKey();
-                    cachedUser = event.getCache().get(userId);
+                    value = event.getCache().get(userId);
                 }
 
-                if (cachedUser != null) {
+                if (value instanceof CachedUser) {
+                    CachedUser cachedUser = (CachedUser) value;
                     String realm = cachedUser.getRealm();
                     usernameLookup.put(realm, cachedUser.getUsername(), cachedUser.getId());
                     if (cachedUser.getEmail() != null) {
@@ -104,9 +111,9 @@ public class InfinispanCacheUserProviderFactory implements CacheUserProviderFact
         }
 
         @CacheEntryRemoved
-        public void userRemoved(CacheEntryRemovedEvent<String, CachedUser> event) {
-            if (event.isPre() && event.getValue() != null) {
-                CachedUser cachedUser = event.getValue();
+        public void userRemoved(CacheEntryRemovedEvent<String, Object> event) {
+            if (event.isPre() && event.getValue() instanceof CachedUser) {
+                CachedUser cachedUser = (CachedUser) event.getValue();
                 String realm = cachedUser.getRealm();
                 usernameLookup.remove(realm, cachedUser.getUsername());
                 if (cachedUser.getEmail() != null) {
@@ -115,6 +122,17 @@ public class InfinispanCacheUserProviderFactory implements CacheUserProviderFact
             }
         }
 
+        // Value of invalidated entry is only available in the pre event, so the realm is taken from the key
+        @CacheEntryInvalidated
+        public void realmUsersInvalidated(CacheEntryInvalidatedEvent<String, Object> event) {
+            if (event.isPre()) {
+                String realm = InfinispanUserCache.RealmUsersMarker.realm(event.getKey());
+                if (realm != null) {
+                    userCache.invalidateRealmUsersLocally(realm);
+                }
+            }
+        }
+
     }
 
     static class RealmLookup {
@@ -138,6 +156,13 @@ public class InfinispanCacheUserProviderFactory implements CacheUserProviderFact
             return map != null ? map.get(key) : null;
         }
 
+        /**
+         * @return removed lookup of the realm or null
+         */
+        public ConcurrentHashMap<String, String> removeRealm(String realm) {
+            return lookup.remove(realm);
+        }
+
         public void remove(String realm, String key) {
             ConcurrentHashMap<String, String> map = lookup.get(realm);
             if (map != null) {
@@ -1,13 +1,22 @@
 package org.keycloak.models.cache.infinispan;
 
 import org.infinispan.Cache;
+import org.infinispan.context.Flag;
 import org.jboss.logging.Logger;
 import org.keycloak.models.cache.UserCache;
 import org.keycloak.models.cache.entities.CachedUser;
 
+import java.io.Serializable;
 import java.util.Map;
 
 /**
+ * Users of a realm are found through the per realm username lookup, so invalidating users of a realm doesn't iterate
+ * over the users of other realms. Users are removed only from the local cache and other nodes are notified with single
+ * invalidation of {@link RealmUsersMarker} of the realm, which is kept in the cache of every node with users of the realm.
+ * <p>
+ * Marker may be evicted like any other entry. Node without the marker doesn't receive invalidations of the realm, so its
+ * users of the realm are invalidated locally as soon as the missing marker is noticed, on read or when adding a user.
+ *
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
 public class InfinispanUserCache implements UserCache {
@@ -16,13 +25,13 @@ public class InfinispanUserCache implements UserCache {
 
     protected volatile boolean enabled = true;
 
-    protected final Cache<String, CachedUser> cache;
+    protected final Cache<String, Object> cache;
 
     protected final InfinispanCacheUserProviderFactory.RealmLookup usernameLookup;
 
     protected final InfinispanCacheUserProviderFactory.RealmLookup emailLookup;
 
-    public InfinispanUserCache(Cache<String, CachedUser> cache, InfinispanCacheUserProviderFactory.RealmLookup usernameLookup, InfinispanCacheUserProviderFactory.RealmLookup emailLookup) {
+    public InfinispanUserCache(Cache<String, Object> cache, InfinispanCacheUserProviderFactory.RealmLookup usernameLookup, InfinispanCacheUserProviderFactory.RealmLookup emailLookup) {
         this.cache = cache;
         this.usernameLookup = usernameLookup;
         this.emailLookup = emailLookup;
@@ -43,8 +52,17 @@ public class InfinispanUserCache implements UserCache {
     @Override
     public CachedUser getCachedUser(String realmId, String id) {
         if (realmId == null || id == null) return null;
-        CachedUser user = cache.get(id);
-        return user != null && realmId.equals(user.getRealm()) ? user : null;
+        Object user = cache.get(id);
+        if (!(user instanceof CachedUser) || !realmId.equals(((CachedUser) user).getRealm())) {
+            return null;
+        }
+        if (!cache.containsKey(RealmUsersMarker.key(realmId))) {
+            // Marker was evicted, invalidation of the realm users from other node may have been missed
+            logger.debugv("Users marker of realm {0} evicted, invalidating users", realmId);
+            invalidateRealmUsersLocally(realmId);
+            return null;
+        }
+        return (CachedUser) user;
     }
 
     @Override
@@ -62,6 +80,14 @@ public class InfinispanUserCache implements UserCache {
     @Override
     public void addCachedUser(String realmId, CachedUser user) {
         logger.tracev("Adding user {0}", user.getId());
+        String markerKey = RealmUsersMarker.key(realmId);
+        if (!cache.containsKey(markerKey)) {
+            // Users cached before the marker was evicted may have missed invalidations
+            invalidateRealmUsersLocally(realmId);
+
+            // Only needs to be in the local cache to receive invalidations from other nodes
+            cache.getAdvancedCache().withFlags(Flag.CACHE_MODE_LOCAL).putIfAbsent(markerKey, new RealmUsersMarker(realmId));
+        }
         cache.put(user.getId(), user);
     }
 
@@ -79,11 +105,24 @@ public class InfinispanUserCache implements UserCache {
 
     @Override
     public void invalidateRealmUsers(String realmId) {
+        invalidateRealmUsersLocally(realmId);
+
+        // Invalidates the marker on other nodes, which then invalidate their users of the realm
+        cache.put(RealmUsersMarker.key(realmId), new RealmUsersMarker(realmId));
+    }
+
+    protected void invalidateRealmUsersLocally(String realmId) {
         logger.tracev("Invalidating users for realm {0}", realmId);
-        for (Map.Entry<String, CachedUser> u : cache.entrySet()) {
-            if (u.getValue().getRealm().equals(realmId)) {
-                cache.remove(u.getKey());
-            }
+
+        Map<String, String> users = usernameLookup.removeRealm(realmId);
+        emailLookup.removeRealm(realmId);
+        if (users == null) {
+            return;
+        }
+
+        Cache<String, Object> localCache = cache.getAdvancedCache().withFlags(Flag.CACHE_MODE_LOCAL);
+        for (String id : users.values()) {
+            localCache.remove(id);
         }
     }
 
@@ -92,4 +131,34 @@ public class InfinispanUserCache implements UserCache {
         cache.clear();
     }
 
+    /**
+     * Entry with the key of the realm, which is invalidated when users of the realm are invalidated on any node
+     */
+    public static class RealmUsersMarker implements Serializable {
+
+        private static final String PREFIX = "realmUsers::";
+
+        private final String realm;
+
+        public RealmUsersMarker(String realm) {
+            this.realm = realm;
+        }
+
+        public String getRealm() {
+            return realm;
+        }
+
+        public static String key(String realm) {
+            return PREFIX + realm;
+        }
+
+        /**
+         * @return realm of the marker key or null if the key is not a marker key
+         */
+        public static String realm(String key) {
+            return key != null && key.startsWith(PREFIX) ? key.substring(PREFIX.length()) : null;
+        }
+
+    }
+
 }
@@ -7,6 +7,7 @@ import org.keycloak.models.cache.CacheRealmProvider;
 import org.keycloak.models.cache.RealmCache;
 import org.keycloak.models.cache.entities.CachedRealm;
 import org.keycloak.models.utils.KeycloakModelUtils;
+import org.keycloak.models.utils.RoleGraph;
 
 import java.security.Key;
 import java.security.PrivateKey;
@@ -18,7 +19,7 @@ import java.util.*;
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
  * @version $Revision: 1 $
  */
-public class RealmAdapter implements RealmModel {
+public class RealmAdapter implements RealmModel, RoleGraph.Source {
     protected CachedRealm cached;
     protected CacheRealmProvider cacheSession;
     protected RealmModel updated;
@@ -1262,4 +1263,12 @@ public class RealmAdapter implements RealmModel {
         if (updated != null) return updated.getRequiredActionProviderByAlias(alias);
         return cached.getRequiredActionProvidersByAlias().get(alias);
     }
+
+    @Override
+    public RoleGraph getRoleGraph() {
+        // roles may be changing in this transaction
+        if (updated != null) return null;
+        return cached.getRoleGraph(this);
+    }
+
 }
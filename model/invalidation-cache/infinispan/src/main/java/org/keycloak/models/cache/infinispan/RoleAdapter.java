@@ -92,12 +92,16 @@ public class RoleAdapter implements RoleModel {
     @Override
     public void addCompositeRole(RoleModel role) {
         getDelegateForUpdate();
+        // role graph of the realm is cached with the realm
+        cacheSession.registerRealmInvalidation(realm.getId());
         updated.addCompositeRole(role);
     }
 
     @Override
     public void removeCompositeRole(RoleModel role) {
         getDelegateForUpdate();
+        // role graph of the realm is cached with the realm
+        cacheSession.registerRealmInvalidation(realm.getId());
         updated.removeCompositeRole(role);
     }
 
@@ -0,0 +1,164 @@
+package org.keycloak.models.cache.infinispan;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.connections.infinispan.InfinispanConnectionProvider;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserModel;
+import org.keycloak.models.cache.entities.CachedUser;
+
+/**
+ * Two nodes of a cluster with the user cache in invalidation mode, connected in memory
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class InfinispanUserCacheTest {
+
+    private Node node1;
+    private Node node2;
+
+    @Before
+    public void before() throws Exception {
+        node1 = new Node("node1");
+        node2 = new Node("node2");
+
+        long timeout = System.currentTimeMillis() + 10000;
+        while (node1.cacheManager.getMembers().size() < 2 || node2.cacheManager.getMembers().size() < 2) {
+            Assert.assertTrue("Cluster not formed", System.currentTimeMillis() < timeout);
+            Thread.sleep(100);
+        }
+    }
+
+    @After
+    public void after() {
+        node1.cacheManager.stop();
+        node2.cacheManager.stop();
+    }
+
+    @Test
+    public void testInvalidateRealmUsersOnOtherNode() {
+        node1.userCache.addCachedUser("realm1", user("realm1", "john"));
+        node2.userCache.addCachedUser("realm1", user("realm1", "mary"));
+        node2.userCache.addCachedUser("realm2", user("realm2", "bob"));
+
+        node1.userCache.invalidateRealmUsers("realm1");
+
+        Assert.assertNull(node1.userCache.getCachedUser("realm1", "john"));
+        Assert.assertNull(node2.userCache.getCachedUser("realm1", "mary"));
+        Assert.assertNull(node2.userCache.getCachedUserByUsername("realm1", "mary"));
+        Assert.assertNotNull(node2.userCache.getCachedUser("realm2", "bob"));
+
+        // Users cached after the invalidation are invalidated next time too
+        node2.userCache.addCachedUser("realm1", user("realm1", "mary"));
+        Assert.assertNotNull(node2.userCache.getCachedUserByUsername("realm1", "mary"));
+        node1.userCache.invalidateRealmUsers("realm1");
+        Assert.assertNull(node2.userCache.getCachedUser("realm1", "mary"));
+    }
+
+    @Test
+    public void testEvictedMarkerOnRead() {
+        node2.userCache.addCachedUser("realm1", user("realm1", "mary"));
+        Assert.assertNotNull(node2.userCache.getCachedUser("realm1", "mary"));
+
+        // Node without the marker doesn't get the invalidation
+        node2.cache.evict(InfinispanUserCache.RealmUsersMarker.key("realm1"));
+        node1.userCache.invalidateRealmUsers("realm1");
+
+        Assert.assertNull(node2.userCache.getCachedUser("realm1", "mary"));
+        Assert.assertNull(node2.userCache.getCachedUserByUsername("realm1", "mary"));
+    }
+
+    @Test
+    public void testEvictedMarkerOnAdd() {
+        node2.userCache.addCachedUser("realm1", user("realm1", "mary"));
+
+        node2.cache.evict(InfinispanUserCache.RealmUsersMarker.key("realm1"));
+        node1.userCache.invalidateRealmUsers("realm1");
+
+        // Adding other user brings the marker back, users cached before can't be trusted
+        node2.userCache.addCachedUser("realm1", user("realm1", "john"));
+        Assert.assertNull(node2.userCache.getCachedUser("realm1", "mary"));
+        Assert.assertNotNull(node2.userCache.getCachedUser("realm1", "john"));
+
+        node1.userCache.invalidateRealmUsers("realm1");
+        Assert.assertNull(node2.userCache.getCachedUser("realm1", "john"));
+    }
+
+    private static CachedUser user(String realmId, String username) {
+        RealmModel realm = proxy(RealmModel.class, Collections.<String, Object>singletonMap("getId", realmId));
+
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("getId", username);
+        values.put("getUsername", username);
+        UserModel user = proxy(UserModel.class, values);
+        return new CachedUser(realm, user);
+    }
+
+    // Returns the value of the method from values, empty collections or defaults for other methods
+    private static <T> T proxy(Class<T> type, final Map<String, Object> values) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class[] { type }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (values.containsKey(method.getName())) {
+                    return values.get(method.getName());
+                }
+                Class<?> returnType = method.getReturnType();
+                if (returnType == boolean.class) {
+                    return false;
+                } else if (returnType == List.class) {
+                    return Collections.emptyList();
+                } else if (returnType == Set.class) {
+                    return Collections.emptySet();
+                } else if (returnType == Map.class) {
+                    return Collections.emptyMap();
+                }
+                return null;
+            }
+        }));
+    }
+
+    private static class Node {
+
+        private final EmbeddedCacheManager cacheManager;
+        private final Cache<String, Object> cache;
+        private final InfinispanUserCache userCache;
+
+        private Node(String name) {
+            GlobalConfigurationBuilder gcb = new GlobalConfigurationBuilder();
+            gcb.transport().defaultTransport()
+                    .clusterName("user-cache-test")
+                    .nodeName(name)
+                    .addProperty("configurationFile", "jgroups-loopback.xml");
+            gcb.globalJmxStatistics().allowDuplicateDomains(true);
+
+            ConfigurationBuilder cb = new ConfigurationBuilder();
+            cb.clustering().cacheMode(CacheMode.INVALIDATION_SYNC);
+
+            cacheManager = new DefaultCacheManager(gcb.build());
+            cacheManager.defineConfiguration(InfinispanConnectionProvider.USER_CACHE_NAME, cb.build());
+            cache = cacheManager.getCache(InfinispanConnectionProvider.USER_CACHE_NAME);
+
+            InfinispanCacheUserProviderFactory factory = new InfinispanCacheUserProviderFactory();
+            factory.initUserCache(cache);
+            userCache = factory.userCache;
+        }
+    }
+
+}
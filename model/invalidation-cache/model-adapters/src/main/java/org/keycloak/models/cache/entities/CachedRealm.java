@@ -17,6 +17,7 @@ import org.keycloak.models.RoleModel;
 import org.keycloak.models.UserFederationMapperModel;
 import org.keycloak.models.UserFederationProviderModel;
 import org.keycloak.models.cache.RealmCache;
+import org.keycloak.models.utils.RoleGraph;
 import org.keycloak.common.util.MultivaluedHashMap;
 
 import java.io.Serializable;
@@ -34,6 +35,11 @@ import java.util.Set;
  */
 public class CachedRealm implements Serializable {
 
+    // Built lazily when first token is issued. Changes of roles invalidate the realm, so it's never stale
+    private transient volatile RoleGraph roleGraph;
+    // Set if the graph can't be built, so it isn't retried until this cached realm is invalidated
+    private transient volatile boolean roleGraphUnavailable;
+
     private String id;
     private String name;
     private boolean enabled;
@@ -507,4 +513,25 @@ public class CachedRealm implements Serializable {
     public AuthenticationFlowModel getClientAuthenticationFlow() {
         return clientAuthenticationFlow;
     }
+
+    /**
+     * @param realm realm backed by this cached realm, which is used to build the graph
+     * @return graph or null if it can't be built, for example if some composite role is from other realm
+     */
+    public RoleGraph getRoleGraph(RealmModel realm) {
+        RoleGraph graph = roleGraph;
+        if (graph == null) {
+            if (roleGraphUnavailable) {
+                return null;
+            }
+            try {
+                graph = RoleGraph.build(realm);
+            } catch (IllegalArgumentException e) {
+                roleGraphUnavailable = true;
+                return null;
+            }
+            roleGraph = graph;
+        }
+        return graph;
+    }
 }
@@ -387,16 +387,19 @@ public class UserAdapter implements UserModel {
     private void setValue(CredentialEntity credentialEntity, UserCredentialModel cred) {
         byte[] salt = getSalt();
         int hashIterations = 1;
+        String hashAlgorithm = null;
         PasswordPolicy policy = realm.getPasswordPolicy();
         if (policy != null) {
             hashIterations = policy.getHashIterations();
             if (hashIterations == -1)
                 hashIterations = 1;
+            hashAlgorithm = policy.getHashAlgorithm();
         }
         credentialEntity.setCreatedDate(Time.toMillis(Time.currentTime()));
-        credentialEntity.setValue(new Pbkdf2PasswordEncoder(salt).encode(cred.getValue(), hashIterations));
+        credentialEntity.setValue(new Pbkdf2PasswordEncoder(salt, hashIterations, hashAlgorithm).encode(cred.getValue()));
         credentialEntity.setSalt(salt);
         credentialEntity.setHashIterations(hashIterations);
+        credentialEntity.setAlgorithm(hashAlgorithm);
     }
 
     private CredentialEntity getCredentialEntity(UserEntity userEntity, String credType) {
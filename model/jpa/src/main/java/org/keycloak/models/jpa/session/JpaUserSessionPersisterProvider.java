@@ -1,6 +1,7 @@
 package org.keycloak.models.jpa.session;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -180,7 +181,65 @@ public class JpaUserSessionPersisterProvider implements UserSessionPersisterProv
             query.setMaxResults(maxResults);
         }
 
-        List<PersistentUserSessionEntity> results = query.getResultList();
+        return loadUserSessions(query.getResultList(), offlineStr);
+    }
+
+    @Override
+    public List<UserSessionModel> loadUserSessions(String lastUserSessionId, int maxResults, boolean offline) {
+        String offlineStr = offlineToString(offline);
+
+        TypedQuery<PersistentUserSessionEntity> query;
+        if (lastUserSessionId == null) {
+            query = em.createNamedQuery("findUserSessions", PersistentUserSessionEntity.class);
+        } else {
+            query = em.createNamedQuery("findUserSessionsAfter", PersistentUserSessionEntity.class);
+            query.setParameter("lastUserSessionId", lastUserSessionId);
+        }
+        query.setParameter("offline", offlineStr);
+        query.setMaxResults(maxResults);
+
+        return loadUserSessions(query.getResultList(), offlineStr);
+    }
+
+    @Override
+    public String getUserSessionIdAfter(String lastUserSessionId, int count, boolean offline) {
+        TypedQuery<String> query;
+        if (lastUserSessionId == null) {
+            query = em.createNamedQuery("findUserSessionIds", String.class);
+        } else {
+            query = em.createNamedQuery("findUserSessionIdsAfter", String.class);
+            query.setParameter("lastUserSessionId", lastUserSessionId);
+        }
+        query.setParameter("offline", offlineToString(offline));
+        query.setFirstResult(count - 1);
+        query.setMaxResults(1);
+
+        List<String> ids = query.getResultList();
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    @Override
+    public UserSessionModel loadUserSession(String userSessionId, boolean offline) {
+        String offlineStr = offlineToString(offline);
+        PersistentUserSessionEntity entity = em.find(PersistentUserSessionEntity.class, new PersistentUserSessionEntity.Key(userSessionId, offlineStr));
+        if (entity == null) {
+            return null;
+        }
+
+        return loadUserSessions(Collections.singletonList(entity), offlineStr).get(0);
+    }
+
+    @Override
+    public UserSessionModel loadUserSessionByClientSession(String clientSessionId, boolean offline) {
+        PersistentClientSessionEntity entity = em.find(PersistentClientSessionEntity.class, new PersistentClientSessionEntity.Key(clientSessionId, offlineToString(offline)));
+        if (entity == null) {
+            return null;
+        }
+
+        return loadUserSession(entity.getUserSessionId(), offline);
+    }
+
+    private List<UserSessionModel> loadUserSessions(List<PersistentUserSessionEntity> results, String offlineStr) {
         List<UserSessionModel> result = new ArrayList<>();
         List<String> userSessionIds = new ArrayList<>();
         for (PersistentUserSessionEntity entity : results) {
@@ -45,7 +45,7 @@ public class MongoUserSessionPersisterProvider implements UserSessionPersisterPr
         return invocationContext.getMongoStore();
     }
 
-    private MongoUserSessionEntity loadUserSession(String userSessionId, boolean offline) {
+    private MongoUserSessionEntity loadUserSessionEntity(String userSessionId, boolean offline) {
         Class<? extends MongoUserSessionEntity> clazz = offline ? MongoOfflineUserSessionEntity.class : MongoOnlineUserSessionEntity.class;
         return getMongoStore().loadEntity(clazz, userSessionId, invocationContext);
     }
@@ -70,7 +70,7 @@ public class MongoUserSessionPersisterProvider implements UserSessionPersisterPr
         PersistentClientSessionAdapter adapter = new PersistentClientSessionAdapter(clientSession);
         PersistentClientSessionModel model = adapter.getUpdatedModel();
 
-        MongoUserSessionEntity userSession = loadUserSession(model.getUserSessionId(), offline);
+        MongoUserSessionEntity userSession = loadUserSessionEntity(model.getUserSessionId(), offline);
         if (userSession == null) {
             throw new ModelException("Not userSession found with ID " + clientSession.getUserSession().getId() + ". Requested by clientSession: " + clientSession.getId());
         } else {
@@ -94,7 +94,7 @@ public class MongoUserSessionPersisterProvider implements UserSessionPersisterPr
 
         PersistentUserSessionModel model = adapter.getUpdatedModel();
 
-        MongoUserSessionEntity entity = loadUserSession(model.getUserSessionId(), offline);
+        MongoUserSessionEntity entity = loadUserSessionEntity(model.getUserSessionId(), offline);
         if (entity == null) {
             throw new ModelException("UserSession with ID " + userSession.getId() + ", offline: " + offline + " not found");
         }
@@ -106,7 +106,7 @@ public class MongoUserSessionPersisterProvider implements UserSessionPersisterPr
 
     @Override
     public void removeUserSession(String userSessionId, boolean offline) {
-        MongoUserSessionEntity entity = loadUserSession(userSessionId, offline);
+        MongoUserSessionEntity entity = loadUserSessionEntity(userSessionId, offline);
         if (entity != null) {
             getMongoStore().removeEntity(entity, invocationContext);
         }
@@ -269,6 +269,55 @@ public class MongoUserSessionPersisterProvider implements UserSessionPersisterPr
         return results;
     }
 
+    @Override
+    public List<UserSessionModel> loadUserSessions(String lastUserSessionId, int maxResults, boolean offline) {
+        QueryBuilder queryBuilder = new QueryBuilder();
+        if (lastUserSessionId != null) {
+            queryBuilder.and("_id").greaterThan(lastUserSessionId);
+        }
+        DBObject sort = new BasicDBObject("_id", 1);
+
+        Class<? extends MongoUserSessionEntity> clazz = offline ? MongoOfflineUserSessionEntity.class : MongoOnlineUserSessionEntity.class;
+
+        List<? extends MongoUserSessionEntity> entities = getMongoStore().loadEntities(clazz, queryBuilder.get(), sort, -1, maxResults, invocationContext);
+
+        List<UserSessionModel> results = new LinkedList<>();
+        for (MongoUserSessionEntity entity : entities) {
+            results.add(toAdapter(entity));
+        }
+        return results;
+    }
+
+    @Override
+    public String getUserSessionIdAfter(String lastUserSessionId, int count, boolean offline) {
+        QueryBuilder queryBuilder = new QueryBuilder();
+        if (lastUserSessionId != null) {
+            queryBuilder.and("_id").greaterThan(lastUserSessionId);
+        }
+        DBObject sort = new BasicDBObject("_id", 1);
+
+        Class<? extends MongoUserSessionEntity> clazz = offline ? MongoOfflineUserSessionEntity.class : MongoOnlineUserSessionEntity.class;
+
+        List<? extends MongoUserSessionEntity> entities = getMongoStore().loadEntities(clazz, queryBuilder.get(), sort, count - 1, 1, invocationContext);
+        return entities.isEmpty() ? null : entities.get(0).getId();
+    }
+
+    @Override
+    public UserSessionModel loadUserSession(String userSessionId, boolean offline) {
+        MongoUserSessionEntity entity = loadUserSessionEntity(userSessionId, offline);
+        return entity == null ? null : toAdapter(entity);
+    }
+
+    @Override
+    public UserSessionModel loadUserSessionByClientSession(String clientSessionId, boolean offline) {
+        DBObject query = new QueryBuilder()
+                .and("clientSessions.clientSessionId").is(clientSessionId)
+                .get();
+        Class<? extends MongoUserSessionEntity> clazz = offline ? MongoOfflineUserSessionEntity.class : MongoOnlineUserSessionEntity.class;
+        MongoUserSessionEntity entity = getMongoStore().loadSingleEntity(clazz, query, invocationContext);
+        return entity == null ? null : toAdapter(entity);
+    }
+
     private PersistentUserSessionAdapter toAdapter(PersistentUserSessionEntity entity) {
         RealmModel realm = session.realms().getRealm(entity.getRealmId());
         UserModel user = session.users().getUserById(entity.getUserId(), realm);
@@ -330,16 +330,19 @@ public class UserAdapter extends AbstractMongoAdapter<MongoUserEntity> implement
     private void setValue(CredentialEntity credentialEntity, UserCredentialModel cred) {
         byte[] salt = getSalt();
         int hashIterations = 1;
+        String hashAlgorithm = null;
         PasswordPolicy policy = realm.getPasswordPolicy();
         if (policy != null) {
             hashIterations = policy.getHashIterations();
             if (hashIterations == -1)
                 hashIterations = 1;
+            hashAlgorithm = policy.getHashAlgorithm();
         }
         credentialEntity.setCreatedDate(Time.toMillis(Time.currentTime()));
-        credentialEntity.setValue(new Pbkdf2PasswordEncoder(salt).encode(cred.getValue(), hashIterations));
+        credentialEntity.setValue(new Pbkdf2PasswordEncoder(salt, hashIterations, hashAlgorithm).encode(cred.getValue()));
         credentialEntity.setSalt(salt);
         credentialEntity.setHashIterations(hashIterations);
+        credentialEntity.setAlgorithm(hashAlgorithm);
     }
 
     private CredentialEntity getCredentialEntity(MongoUserEntity userEntity, String credType) {
@@ -409,6 +412,8 @@ public class UserAdapter extends AbstractMongoAdapter<MongoUserEntity> implement
                 } else {
                     credModel.setPeriod(credEntity.getPeriod());
                 }
+            } else {
+                credModel.setAlgorithm(credEntity.getAlgorithm());
             }
 
             result.add(credModel);
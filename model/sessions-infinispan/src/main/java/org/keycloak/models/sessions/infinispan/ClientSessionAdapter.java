@@ -239,6 +239,10 @@ public class ClientSessionAdapter implements ClientSessionModel {
         removeRequiredAction(action.name());
     }
 
+    ClientSessionEntity getEntity() {
+        return entity;
+    }
+
     void update() {
         provider.getTx().replace(cache, entity.getId(), entity);
     }
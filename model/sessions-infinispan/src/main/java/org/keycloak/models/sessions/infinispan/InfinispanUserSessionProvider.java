@@ -1,6 +1,7 @@
 package org.keycloak.models.sessions.infinispan;
 
 import org.infinispan.Cache;
+import org.infinispan.atomic.Delta;
 import org.infinispan.distexec.mapreduce.MapReduceTask;
 import org.jboss.logging.Logger;
 import org.keycloak.models.ClientModel;
@@ -17,10 +18,12 @@ import org.keycloak.models.sessions.infinispan.entities.ClientSessionEntity;
 import org.keycloak.models.sessions.infinispan.entities.LoginFailureEntity;
 import org.keycloak.models.sessions.infinispan.entities.LoginFailureKey;
 import org.keycloak.models.sessions.infinispan.entities.SessionEntity;
+import org.keycloak.models.sessions.infinispan.entities.SessionIndexEntity;
 import org.keycloak.models.sessions.infinispan.entities.UserSessionEntity;
+import org.keycloak.models.sessions.infinispan.initializer.InfinispanUserSessionInitializer;
+import org.keycloak.models.sessions.infinispan.initializer.OfflineUserSessionLoader;
 import org.keycloak.models.sessions.infinispan.mapreduce.ClientSessionMapper;
 import org.keycloak.models.sessions.infinispan.mapreduce.FirstResultReducer;
-import org.keycloak.models.sessions.infinispan.mapreduce.LargestResultReducer;
 import org.keycloak.models.sessions.infinispan.mapreduce.SessionMapper;
 import org.keycloak.models.sessions.infinispan.mapreduce.UserLoginFailureMapper;
 import org.keycloak.models.sessions.infinispan.mapreduce.UserSessionMapper;
@@ -29,6 +32,7 @@ import org.keycloak.models.utils.KeycloakModelUtils;
 import org.keycloak.models.utils.RealmInfoUtil;
 import org.keycloak.common.util.Time;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -37,6 +41,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 
 /**
@@ -46,18 +51,28 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
 
     private static final Logger log = Logger.getLogger(InfinispanUserSessionProvider.class);
 
+    private static final Comparator<Map.Entry<String, Integer>> SESSION_TIMESTAMP_COMPARATOR = new Comparator<Map.Entry<String, Integer>>() {
+        @Override
+        public int compare(Map.Entry<String, Integer> e1, Map.Entry<String, Integer> e2) {
+            int result = e1.getValue().compareTo(e2.getValue());
+            return result != 0 ? result : e1.getKey().compareTo(e2.getKey());
+        }
+    };
+
     private final KeycloakSession session;
     private final Cache<String, SessionEntity> sessionCache;
     private final Cache<String, SessionEntity> offlineSessionCache;
     private final Cache<LoginFailureKey, LoginFailureEntity> loginFailureCache;
     private final InfinispanKeycloakTransaction tx;
+    private final boolean preloadInBackground;
 
     public InfinispanUserSessionProvider(KeycloakSession session, Cache<String, SessionEntity> sessionCache, Cache<String, SessionEntity> offlineSessionCache,
-                                         Cache<LoginFailureKey, LoginFailureEntity> loginFailureCache) {
+                                         Cache<LoginFailureKey, LoginFailureEntity> loginFailureCache, boolean preloadInBackground) {
         this.session = session;
         this.sessionCache = sessionCache;
         this.offlineSessionCache = offlineSessionCache;
         this.loginFailureCache = loginFailureCache;
+        this.preloadInBackground = preloadInBackground;
         this.tx = new InfinispanKeycloakTransaction();
 
         session.getTransaction().enlistAfterCompletion(tx);
@@ -78,6 +93,7 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         entity.setClient(client.getId());
 
         tx.put(sessionCache, id, entity);
+        indexClientSession(sessionCache, entity);
 
         return wrap(realm, entity, false);
     }
@@ -103,6 +119,7 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         entity.setLastSessionRefresh(currentTime);
 
         tx.put(sessionCache, id, entity);
+        indexUserSession(sessionCache, entity);
 
         return wrap(realm, entity, false);
     }
@@ -147,44 +164,25 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
 
     protected UserSessionAdapter getUserSession(RealmModel realm, String id, boolean offline) {
         Cache<String, SessionEntity> cache = getCache(offline);
-        UserSessionEntity entity = (UserSessionEntity) cache.get(id);
-
-        // Chance created in this transaction
-        if (entity == null) {
-            entity = (UserSessionEntity) tx.get(cache, id);
-        }
-
-        return wrap(realm, entity, offline);
+        return wrap(realm, getUserSessionEntity(cache, id), offline);
     }
 
     @Override
     public List<UserSessionModel> getUserSessions(RealmModel realm, UserModel user) {
-        Map<String, UserSessionEntity> sessions = new MapReduceTask(sessionCache)
-                .mappedWith(UserSessionMapper.create(realm.getId()).user(user.getId()))
-                .reducedWith(new FirstResultReducer())
-                .execute();
-
-        return wrapUserSessions(realm, sessions.values(), false);
+        Set<String> ids = getIndex(sessionCache, SessionIndexEntity.userKey(realm.getId(), user.getId())).keySet();
+        return wrapUserSessions(realm, getUserSessionEntities(sessionCache, ids), false);
     }
 
     @Override
     public List<UserSessionModel> getUserSessionByBrokerUserId(RealmModel realm, String brokerUserId) {
-        Map<String, UserSessionEntity> sessions = new MapReduceTask(sessionCache)
-                .mappedWith(UserSessionMapper.create(realm.getId()).brokerUserId(brokerUserId))
-                .reducedWith(new FirstResultReducer())
-                .execute();
-
-        return wrapUserSessions(realm, sessions.values(), false);
+        Set<String> ids = getIndex(sessionCache, SessionIndexEntity.brokerUserKey(realm.getId(), brokerUserId)).keySet();
+        return wrapUserSessions(realm, getUserSessionEntities(sessionCache, ids), false);
     }
 
     @Override
     public UserSessionModel getUserSessionByBrokerSessionId(RealmModel realm, String brokerSessionId) {
-        Map<String, UserSessionEntity> sessions = new MapReduceTask(sessionCache)
-                .mappedWith(UserSessionMapper.create(realm.getId()).brokerSessionId(brokerSessionId))
-                .reducedWith(new FirstResultReducer())
-                .execute();
-
-        List<UserSessionModel> userSessionModels = wrapUserSessions(realm, sessions.values(), false);
+        Set<String> ids = getIndex(sessionCache, SessionIndexEntity.brokerSessionKey(realm.getId(), brokerSessionId)).keySet();
+        List<UserSessionModel> userSessionModels = wrapUserSessions(realm, getUserSessionEntities(sessionCache, ids), false);
         if (userSessionModels.isEmpty()) return null;
         return userSessionModels.get(0);
     }
@@ -199,43 +197,44 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         return getUserSessions(realm, client, firstResult, maxResults, false);
     }
 
+    /**
+     * Sessions are ordered by the time, when the first client session of the client was attached to the user session.
+     * The time is kept in the index, so the page is selected without loading the sessions.
+     */
     protected List<UserSessionModel> getUserSessions(RealmModel realm, ClientModel client, int firstResult, int maxResults, boolean offline) {
         Cache<String, SessionEntity> cache = getCache(offline);
 
-        Map<String, Integer> map = new MapReduceTask(cache)
-                .mappedWith(ClientSessionMapper.create(realm.getId()).client(client.getId()).emitUserSessionAndTimestamp())
-                .reducedWith(new LargestResultReducer())
-                .execute();
-
-        List<Map.Entry<String, Integer>> sessionTimestamps = new LinkedList<Map.Entry<String, Integer>>(map.entrySet());
+        if (firstResult == -1 && maxResults != -1) {
+            maxResults = -1;
+        }
 
-        Collections.sort(sessionTimestamps, new Comparator<Map.Entry<String, Integer>>() {
-            @Override
-            public int compare(Map.Entry<String, Integer> e1, Map.Entry<String, Integer> e2) {
-                return e1.getValue().compareTo(e2.getValue());
-            }
-        });
+        if (firstResult == -1) {
+            firstResult = 0;
+        }
 
-        if (firstResult != -1 || maxResults == -1) {
-            if (firstResult == -1) {
-                firstResult = 0;
-            }
+        if (maxResults == 0) {
+            return Collections.emptyList();
+        }
 
-            if (maxResults == -1) {
-                maxResults = Integer.MAX_VALUE;
-            }
+        int count = maxResults == -1 || maxResults > Integer.MAX_VALUE - firstResult ? Integer.MAX_VALUE : firstResult + maxResults;
 
-            if (firstResult > sessionTimestamps.size()) {
-                return Collections.emptyList();
-            }
+        // Candidates for the page are selected bucket by bucket, so the whole index is never copied
+        PriorityQueue<Map.Entry<String, Integer>> heap = new PriorityQueue<>(11, Collections.reverseOrder(SESSION_TIMESTAMP_COMPARATOR));
+        for (String indexKey : SessionIndexEntity.clientUserSessionsKeys(realm.getId(), client.getId())) {
+            selectFirstSessions(getIndexBucket(cache, indexKey), count, heap);
+        }
 
-            int toIndex = (firstResult + maxResults) < sessionTimestamps.size() ? firstResult + maxResults : sessionTimestamps.size();
-            sessionTimestamps = sessionTimestamps.subList(firstResult, toIndex);
+        if (firstResult >= heap.size()) {
+            return Collections.emptyList();
         }
 
+        List<Map.Entry<String, Integer>> sessionTimestamps = new ArrayList<>(heap);
+        Collections.sort(sessionTimestamps, SESSION_TIMESTAMP_COMPARATOR);
+        sessionTimestamps = sessionTimestamps.subList(firstResult, sessionTimestamps.size());
+
         List<UserSessionModel> userSessions = new LinkedList<UserSessionModel>();
         for (Map.Entry<String, Integer> e : sessionTimestamps) {
-            UserSessionEntity userSessionEntity = (UserSessionEntity) cache.get(e.getKey());
+            UserSessionEntity userSessionEntity = getUserSessionEntity(cache, e.getKey());
             if (userSessionEntity != null) {
                 userSessions.add(wrap(realm, userSessionEntity, offline));
             }
@@ -244,6 +243,21 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         return userSessions;
     }
 
+    /**
+     * Adds entries of the bucket to the heap, which keeps only count oldest entries. The cost is O(n log count) instead of
+     * sorting all sessions of the client.
+     */
+    private void selectFirstSessions(Map<String, Integer> bucket, int count, PriorityQueue<Map.Entry<String, Integer>> heap) {
+        for (Map.Entry<String, Integer> e : bucket.entrySet()) {
+            if (heap.size() < count) {
+                heap.add(e);
+            } else if (SESSION_TIMESTAMP_COMPARATOR.compare(e, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(e);
+            }
+        }
+    }
+
     @Override
     public List<UserSessionModel> getUserSessionsByNote(RealmModel realm, String noteName, String noteValue) {
         HashMap<String, String> notes = new HashMap<>();
@@ -268,12 +282,7 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
 
     protected int getUserSessionsCount(RealmModel realm, ClientModel client, boolean offline) {
         Cache<String, SessionEntity> cache = getCache(offline);
-
-        Map map = new MapReduceTask(cache)
-                .mappedWith(ClientSessionMapper.create(realm.getId()).client(client.getId()).emitUserSessionAndTimestamp())
-                .reducedWith(new LargestResultReducer()).execute();
-
-        return map.size();
+        return getIndexSize(cache, SessionIndexEntity.clientUserSessionsKeys(realm.getId(), client.getId()));
     }
 
     @Override
@@ -289,12 +298,8 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
     protected void removeUserSessions(RealmModel realm, UserModel user, boolean offline) {
         Cache<String, SessionEntity> cache = getCache(offline);
 
-        Map<String, String> sessions = new MapReduceTask(cache)
-                .mappedWith(UserSessionMapper.create(realm.getId()).user(user.getId()).emitKey())
-                .reducedWith(new FirstResultReducer())
-                .execute();
-
-        for (String id : sessions.keySet()) {
+        Set<String> ids = getIndex(cache, SessionIndexEntity.userKey(realm.getId(), user.getId())).keySet();
+        for (String id : ids) {
             removeUserSession(realm, id, offline);
         }
     }
@@ -317,13 +322,14 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
             removeUserSession(realm, id);
         }
 
-        map = new MapReduceTask(sessionCache)
-                .mappedWith(ClientSessionMapper.create(realm.getId()).expiredRefresh(expiredDettachedClientSession).requireNullUserSession(true).emitKey())
+        Map<String, ClientSessionEntity> clientSessions = new MapReduceTask(sessionCache)
+                .mappedWith(ClientSessionMapper.create(realm.getId()).expiredRefresh(expiredDettachedClientSession).requireNullUserSession(true))
                 .reducedWith(new FirstResultReducer())
                 .execute();
 
-        for (String id : map.keySet()) {
-            tx.remove(sessionCache, id);
+        for (ClientSessionEntity clientSession : clientSessions.values()) {
+            tx.remove(sessionCache, clientSession.getId());
+            unindexClientSession(sessionCache, clientSession);
         }
 
         // Remove expired offline user sessions
@@ -334,25 +340,31 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
 
         for (Map.Entry<String, SessionEntity> entry : map2.entrySet()) {
             String userSessionId = entry.getKey();
-            tx.remove(offlineSessionCache, userSessionId);
             // Propagate to persister
             persister.removeUserSession(userSessionId, true);
 
-            UserSessionEntity entity = (UserSessionEntity) entry.getValue();
-            for (String clientSessionId : entity.getClientSessions()) {
-                tx.remove(offlineSessionCache, clientSessionId);
-            }
+            removeUserSession(offlineSessionCache, (UserSessionEntity) entry.getValue());
         }
 
         // Remove expired offline client sessions
-        map = new MapReduceTask(offlineSessionCache)
-                .mappedWith(ClientSessionMapper.create(realm.getId()).expiredRefresh(expiredOffline).emitKey())
+        clientSessions = new MapReduceTask(offlineSessionCache)
+                .mappedWith(ClientSessionMapper.create(realm.getId()).expiredRefresh(expiredOffline))
                 .reducedWith(new FirstResultReducer())
                 .execute();
 
-        for (String clientSessionId : map.keySet()) {
-            tx.remove(offlineSessionCache, clientSessionId);
-            persister.removeClientSession(clientSessionId, true);
+        for (ClientSessionEntity clientSession : clientSessions.values()) {
+            tx.remove(offlineSessionCache, clientSession.getId());
+            unindexClientSession(offlineSessionCache, clientSession);
+            if (clientSession.getUserSession() != null) {
+                UserSessionEntity userSession = getUserSessionEntity(offlineSessionCache, clientSession.getUserSession());
+                if (userSession != null) {
+                    unindexClientUserSession(offlineSessionCache, userSession, clientSession, clientSessions.keySet());
+                } else {
+                    tx.removeFromIndex(offlineSessionCache, SessionIndexEntity.clientUserSessionsKey(clientSession.getRealm(), clientSession.getClient(), clientSession.getUserSession()),
+                            clientSession.getRealm(), clientSession.getUserSession());
+                }
+            }
+            persister.removeClientSession(clientSession.getId(), true);
         }
 
     }
@@ -427,18 +439,19 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
     private void onClientRemoved(RealmModel realm, ClientModel client, boolean offline) {
         Cache<String, SessionEntity> cache = getCache(offline);
 
-        Map<String, ClientSessionEntity> map = new MapReduceTask(cache)
-                .mappedWith(ClientSessionMapper.create(realm.getId()).client(client.getId()))
-                .reducedWith(new FirstResultReducer())
-                .execute();
-
-        for (Map.Entry<String, ClientSessionEntity> entry : map.entrySet()) {
+        Set<String> ids = getIndex(cache, SessionIndexEntity.clientKeys(realm.getId(), client.getId())).keySet();
+        for (String id : ids) {
+            ClientSessionEntity entity = getClientSessionEntity(cache, id);
+            if (entity == null) {
+                continue;
+            }
 
             // detach from userSession
-            ClientSessionAdapter adapter = wrap(realm, entry.getValue(), offline);
+            ClientSessionAdapter adapter = wrap(realm, entity, offline);
             adapter.setUserSession(null);
 
-            tx.remove(cache, entry.getKey());
+            tx.remove(cache, id);
+            unindexClientSession(cache, entity);
         }
     }
 
@@ -464,9 +477,40 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         if (!entity.getClientSessions().contains(clientSessionId)) {
             entity.getClientSessions().add(clientSessionId);
             userSession.update();
+
+            ClientSessionEntity clientSessionEntity = ((ClientSessionAdapter) clientSession).getEntity();
+            tx.addToIndex(userSession.getCache(), SessionIndexEntity.clientUserSessionsKey(entity.getRealm(), clientSessionEntity.getClient(), entity.getId()),
+                    entity.getRealm(), entity.getId(), clientSessionEntity.getTimestamp());
         }
     }
 
+    /**
+     * Removes user session from the index of client user sessions, unless it has other client session of the same client
+     */
+    private void unindexClientUserSession(Cache<String, SessionEntity> cache, UserSessionEntity entity, ClientSessionEntity clientSessionEntity) {
+        unindexClientUserSession(cache, entity, clientSessionEntity, Collections.<String>emptySet());
+    }
+
+    /**
+     * Same as above, but client sessions with ids in removed are removed in this transaction too, so they are not taken into account
+     */
+    private void unindexClientUserSession(Cache<String, SessionEntity> cache, UserSessionEntity entity, ClientSessionEntity clientSessionEntity, Set<String> removed) {
+        if (entity.getClientSessions() != null) {
+            for (String id : entity.getClientSessions()) {
+                if (id.equals(clientSessionEntity.getId()) || removed.contains(id)) {
+                    continue;
+                }
+
+                ClientSessionEntity other = getClientSessionEntity(cache, id);
+                if (other != null && clientSessionEntity.getClient().equals(other.getClient())) {
+                    return;
+                }
+            }
+        }
+
+        tx.removeFromIndex(cache, SessionIndexEntity.clientUserSessionsKey(entity.getRealm(), clientSessionEntity.getClient(), entity.getId()), entity.getRealm(), entity.getId());
+    }
+
     @Override
     public void removeClientSession(RealmModel realm, ClientSessionModel clientSession) {
         removeClientSession(realm, clientSession, false);
@@ -483,8 +527,10 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
 
             }
             tx.replace(cache, entity.getId(), entity);
+            unindexClientUserSession(cache, entity, ((ClientSessionAdapter) clientSession).getEntity());
         }
         tx.remove(cache, clientSession.getId());
+        unindexClientSession(cache, ((ClientSessionAdapter) clientSession).getEntity());
     }
 
 
@@ -497,6 +543,8 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
                 entity.setClientSessions(null);
             }
             userSession.update();
+
+            unindexClientUserSession(userSession.getCache(), entity, ((ClientSessionAdapter) clientSession).getEntity());
         }
     }
 
@@ -507,17 +555,140 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
     protected void removeUserSession(RealmModel realm, String userSessionId, boolean offline) {
         Cache<String, SessionEntity> cache = getCache(offline);
 
-        tx.remove(cache, userSessionId);
+        UserSessionEntity entity = getUserSessionEntity(cache, userSessionId);
+        if (entity != null) {
+            removeUserSession(cache, entity);
+        } else {
+            tx.remove(cache, userSessionId);
+        }
+    }
 
-        // TODO: Isn't more effective to retrieve from userSessionEntity directly?
-        Map<String, String> map = new MapReduceTask(cache)
-                .mappedWith(ClientSessionMapper.create(realm.getId()).userSession(userSessionId).emitKey())
-                .reducedWith(new FirstResultReducer())
-                .execute();
+    private void removeUserSession(Cache<String, SessionEntity> cache, UserSessionEntity entity) {
+        tx.remove(cache, entity.getId());
+        unindexUserSession(cache, entity);
 
-        for (String id : map.keySet()) {
-            tx.remove(cache, id);
+        if (entity.getClientSessions() != null) {
+            for (String clientSessionId : entity.getClientSessions()) {
+                ClientSessionEntity clientSession = getClientSessionEntity(cache, clientSessionId);
+                tx.remove(cache, clientSessionId);
+                if (clientSession != null) {
+                    unindexClientSession(cache, clientSession);
+                    tx.removeFromIndex(cache, SessionIndexEntity.clientUserSessionsKey(clientSession.getRealm(), clientSession.getClient(), entity.getId()), clientSession.getRealm(), entity.getId());
+                }
+            }
+        }
+    }
+
+    private UserSessionEntity getUserSessionEntity(Cache<String, SessionEntity> cache, String id) {
+        UserSessionEntity entity = (UserSessionEntity) cache.get(id);
+
+        // Chance created in this transaction
+        if (entity == null) {
+            entity = (UserSessionEntity) tx.get(cache, id);
+        }
+
+        return entity;
+    }
+
+    private ClientSessionEntity getClientSessionEntity(Cache<String, SessionEntity> cache, String id) {
+        ClientSessionEntity entity = (ClientSessionEntity) cache.get(id);
+
+        // Chance created in this transaction
+        if (entity == null) {
+            entity = (ClientSessionEntity) tx.get(cache, id);
+        }
+
+        return entity;
+    }
+
+    private List<UserSessionEntity> getUserSessionEntities(Cache<String, SessionEntity> cache, Set<String> ids) {
+        List<UserSessionEntity> entities = new LinkedList<>();
+        for (String id : ids) {
+            UserSessionEntity entity = getUserSessionEntity(cache, id);
+            if (entity != null) {
+                entities.add(entity);
+            }
         }
+        return entities;
+    }
+
+    /**
+     * Returns ids from the secondary index including changes done in this transaction. Index may contain ids of sessions,
+     * which don't exist anymore, so callers need to skip them.
+     */
+    private Map<String, Integer> getIndex(Cache<String, SessionEntity> cache, String indexKey) {
+        Map<String, Integer> sessions = new HashMap<>();
+
+        SessionIndexEntity index = (SessionIndexEntity) cache.get(indexKey);
+        if (index != null) {
+            sessions.putAll(index.getSessions());
+        }
+
+        tx.applyIndexChanges(cache, indexKey, sessions);
+        return sessions;
+    }
+
+    /**
+     * Same as above, but ids from all buckets of the index are returned
+     */
+    private Map<String, Integer> getIndex(Cache<String, SessionEntity> cache, List<String> indexKeys) {
+        Map<String, Integer> sessions = new HashMap<>();
+        for (String indexKey : indexKeys) {
+            sessions.putAll(getIndex(cache, indexKey));
+        }
+        return sessions;
+    }
+
+    /**
+     * Returns the bucket of the index including changes done in this transaction. Bucket from the cache is returned without
+     * copying when there are no such changes, so it must not be modified.
+     */
+    private Map<String, Integer> getIndexBucket(Cache<String, SessionEntity> cache, String indexKey) {
+        if (tx.hasIndexChanges(cache, indexKey)) {
+            return getIndex(cache, indexKey);
+        }
+
+        SessionIndexEntity index = (SessionIndexEntity) cache.get(indexKey);
+        return index != null ? index.getSessions() : Collections.<String, Integer>emptyMap();
+    }
+
+    // Buckets are disjoint, as each session is in the bucket given by its id
+    private int getIndexSize(Cache<String, SessionEntity> cache, List<String> indexKeys) {
+        int size = 0;
+        for (String indexKey : indexKeys) {
+            size += getIndexBucket(cache, indexKey).size();
+        }
+        return size;
+    }
+
+    private void indexUserSession(Cache<String, SessionEntity> cache, UserSessionEntity entity) {
+        String realm = entity.getRealm();
+        tx.addToIndex(cache, SessionIndexEntity.userKey(realm, entity.getUser()), realm, entity.getId(), entity.getStarted());
+        if (entity.getBrokerSessionId() != null) {
+            tx.addToIndex(cache, SessionIndexEntity.brokerSessionKey(realm, entity.getBrokerSessionId()), realm, entity.getId(), entity.getStarted());
+        }
+        if (entity.getBrokerUserId() != null) {
+            tx.addToIndex(cache, SessionIndexEntity.brokerUserKey(realm, entity.getBrokerUserId()), realm, entity.getId(), entity.getStarted());
+        }
+    }
+
+    private void unindexUserSession(Cache<String, SessionEntity> cache, UserSessionEntity entity) {
+        String realm = entity.getRealm();
+        tx.removeFromIndex(cache, SessionIndexEntity.userKey(realm, entity.getUser()), realm, entity.getId());
+        if (entity.getBrokerSessionId() != null) {
+            tx.removeFromIndex(cache, SessionIndexEntity.brokerSessionKey(realm, entity.getBrokerSessionId()), realm, entity.getId());
+        }
+        if (entity.getBrokerUserId() != null) {
+            tx.removeFromIndex(cache, SessionIndexEntity.brokerUserKey(realm, entity.getBrokerUserId()), realm, entity.getId());
+        }
+    }
+
+    private void indexClientSession(Cache<String, SessionEntity> cache, ClientSessionEntity entity) {
+        tx.addToIndex(cache, SessionIndexEntity.clientKey(entity.getRealm(), entity.getClient(), entity.getId()), entity.getRealm(), entity.getId(), entity.getTimestamp());
+    }
+
+    private void unindexClientSession(Cache<String, SessionEntity> cache, ClientSessionEntity entity) {
+        tx.removeFromIndex(cache, SessionIndexEntity.clientKey(entity.getRealm(), entity.getClient(), entity.getId()), entity.getRealm(), entity.getId());
     }
 
 
@@ -571,7 +742,15 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
 
     @Override
     public UserSessionModel getOfflineUserSession(RealmModel realm, String userSessionId) {
-        return getUserSession(realm, userSessionId, true);
+        UserSessionAdapter userSession = getUserSession(realm, userSessionId, true);
+        if (userSession == null && isOfflineSessionsLoading()) {
+            UserSessionPersisterProvider persister = session.getProvider(UserSessionPersisterProvider.class);
+            UserSessionModel persistentSession = persister.loadUserSession(userSessionId, true);
+            if (persistentSession != null && persistentSession.getRealm().getId().equals(realm.getId())) {
+                userSession = importOfflineSession(persistentSession);
+            }
+        }
+        return userSession;
     }
 
     @Override
@@ -591,19 +770,44 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
 
     @Override
     public ClientSessionModel getOfflineClientSession(RealmModel realm, String clientSessionId) {
-        return getClientSession(realm, clientSessionId, true);
+        ClientSessionModel clientSession = getClientSession(realm, clientSessionId, true);
+        if (clientSession == null && isOfflineSessionsLoading()) {
+            UserSessionPersisterProvider persister = session.getProvider(UserSessionPersisterProvider.class);
+            UserSessionModel persistentSession = persister.loadUserSessionByClientSession(clientSessionId, true);
+            if (persistentSession != null && persistentSession.getRealm().getId().equals(realm.getId())) {
+                importOfflineSession(persistentSession);
+                clientSession = getClientSession(realm, clientSessionId, true);
+            }
+        }
+        return clientSession;
+    }
+
+    // Offline sessions are loaded to the cache in background. Sessions not loaded yet need to be read from persistent storage
+    private boolean isOfflineSessionsLoading() {
+        return preloadInBackground && !InfinispanUserSessionInitializer.isFinished(offlineSessionCache, OfflineUserSessionLoader.STATE_KEY_SUFFIX);
+    }
+
+    private UserSessionAdapter importOfflineSession(UserSessionModel persistentSession) {
+        log.debugf("Offline session %s not loaded yet. Loading it from persistent storage", persistentSession.getId());
+
+        UserSessionAdapter offlineUserSession = importUserSession(persistentSession, true);
+        for (ClientSessionModel persistentClientSession : persistentSession.getClientSessions()) {
+            ClientSessionModel offlineClientSession = importClientSession(persistentClientSession, true);
+            offlineClientSession.setUserSession(offlineUserSession);
+        }
+        return offlineUserSession;
     }
 
     @Override
     public List<ClientSessionModel> getOfflineClientSessions(RealmModel realm, UserModel user) {
-        Map<String, UserSessionEntity> sessions = new MapReduceTask(offlineSessionCache)
-                .mappedWith(UserSessionMapper.create(realm.getId()).user(user.getId()))
-                .reducedWith(new FirstResultReducer())
-                .execute();
+        Set<String> ids = getIndex(offlineSessionCache, SessionIndexEntity.userKey(realm.getId(), user.getId())).keySet();
 
         List<ClientSessionEntity> clientSessions = new LinkedList<>();
-        for (UserSessionEntity userSession : sessions.values()) {
+        for (UserSessionEntity userSession : getUserSessionEntities(offlineSessionCache, ids)) {
             Set<String> currClientSessions = userSession.getClientSessions();
+            if (currClientSessions == null) {
+                continue;
+            }
             for (String clientSessionId : currClientSessions) {
                 ClientSessionEntity cls = (ClientSessionEntity) offlineSessionCache.get(clientSessionId);
                 if (cls != null) {
@@ -651,7 +855,13 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         entity.setLastSessionRefresh(userSession.getLastSessionRefresh());
 
         Cache<String, SessionEntity> cache = getCache(offline);
-        tx.put(cache, userSession.getId(), entity);
+        // Session may be imported concurrently by the preload and by a lookup falling back to the persister
+        UserSessionEntity existing = (UserSessionEntity) cache.get(userSession.getId());
+        if (existing != null) {
+            return wrap(userSession.getRealm(), existing, offline);
+        }
+        tx.putIfAbsent(cache, userSession.getId(), entity);
+        indexUserSession(cache, entity);
         return wrap(userSession.getRealm(), entity, offline);
     }
 
@@ -676,7 +886,12 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         entity.setUserSessionNotes(clientSession.getUserSessionNotes());
 
         Cache<String, SessionEntity> cache = getCache(offline);
-        tx.put(cache, clientSession.getId(), entity);
+        ClientSessionEntity existing = (ClientSessionEntity) cache.get(clientSession.getId());
+        if (existing != null) {
+            return wrap(clientSession.getRealm(), existing, offline);
+        }
+        tx.putIfAbsent(cache, clientSession.getId(), entity);
+        indexClientSession(cache, entity);
         return wrap(clientSession.getRealm(), entity, offline);
     }
 
@@ -685,6 +900,7 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         private boolean active;
         private boolean rollback;
         private Map<Object, CacheTask> tasks = new HashMap<Object, CacheTask>();
+        private Map<Object, IndexTask> indexTasks = new HashMap<Object, IndexTask>();
 
         @Override
         public void begin() {
@@ -700,11 +916,17 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
             for (CacheTask task : tasks.values()) {
                 task.execute();
             }
+
+            // Update indexes after sessions are written, so readers of the index never miss committed session
+            for (IndexTask task : indexTasks.values()) {
+                task.execute();
+            }
         }
 
         @Override
         public void rollback() {
             tasks.clear();
+            indexTasks.clear();
         }
 
         @Override
@@ -733,6 +955,21 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
             }
         }
 
+        /**
+         * Same as {@link #put(Cache, Object, Object)}, but the value already in the cache when the transaction is committed
+         * is kept.
+         */
+        public void putIfAbsent(Cache cache, Object key, Object value) {
+            log.tracev("Adding cache operation: {0} on {1}", CacheOperation.ADD_IF_ABSENT, key);
+
+            Object taskKey = getTaskKey(cache, key);
+            if (tasks.containsKey(taskKey)) {
+                throw new IllegalStateException("Can't add session: task in progress for session");
+            } else {
+                tasks.put(taskKey, new CacheTask(cache, CacheOperation.ADD_IF_ABSENT, key, value));
+            }
+        }
+
         public void replace(Cache cache, Object key, Object value) {
             log.tracev("Adding cache operation: {0} on {1}", CacheOperation.REPLACE, key);
 
@@ -741,9 +978,15 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
             if (current != null) {
                 switch (current.operation) {
                     case ADD:
+                    case ADD_IF_ABSENT:
                     case REPLACE:
                         current.value = value;
                         return;
+                    case APPLY_DELTA:
+                        current.operation = CacheOperation.REPLACE;
+                        current.value = value;
+                        current.delta = null;
+                        return;
                     case REMOVE:
                         return;
                 }
@@ -752,6 +995,40 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
             }
         }
 
+        /**
+         * Same as {@link #replace(Cache, Object, Object)}, but only changes recorded to the returned delta are replicated
+         * instead of the whole value. Value must be {@link org.infinispan.atomic.DeltaAware}, which the delta is merged with.
+         *
+         * @param delta new delta, which is used if there's no delta for the key in this transaction yet
+         * @return delta to record the changes to
+         */
+        public <T extends Delta> T replaceWithDelta(Cache cache, Object key, Object value, T delta) {
+            log.tracev("Adding cache operation: {0} on {1}", CacheOperation.APPLY_DELTA, key);
+
+            Object taskKey = getTaskKey(cache, key);
+            CacheTask current = tasks.get(taskKey);
+            if (current != null) {
+                switch (current.operation) {
+                    case ADD:
+                    case ADD_IF_ABSENT:
+                    case REPLACE:
+                        // Whole value is written, so changes recorded to the delta are ignored
+                        current.value = value;
+                        return delta;
+                    case APPLY_DELTA:
+                        current.value = value;
+                        return (T) current.delta;
+                    case REMOVE:
+                        return delta;
+                }
+            } else {
+                CacheTask task = new CacheTask(cache, CacheOperation.APPLY_DELTA, key, value);
+                task.delta = delta;
+                tasks.put(taskKey, task);
+            }
+            return delta;
+        }
+
         public void remove(Cache cache, Object key) {
             log.tracev("Adding cache operation: {0} on {1}", CacheOperation.REMOVE, key);
 
@@ -766,13 +1043,55 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
             if (current != null) {
                 switch (current.operation) {
                     case ADD:
+                    case ADD_IF_ABSENT:
                     case REPLACE:
+                    case APPLY_DELTA:
                         return current.value;                 }
             }
 
             return null;
         }
 
+        public void addToIndex(Cache cache, String indexKey, String realm, String sessionId, int timestamp) {
+            log.tracev("Adding index operation: add {0} to {1}", sessionId, indexKey);
+
+            IndexTask task = getIndexTask(cache, indexKey, realm);
+            task.removed.remove(sessionId);
+            if (!task.added.containsKey(sessionId)) {
+                task.added.put(sessionId, timestamp);
+            }
+        }
+
+        public void removeFromIndex(Cache cache, String indexKey, String realm, String sessionId) {
+            log.tracev("Adding index operation: remove {0} from {1}", sessionId, indexKey);
+
+            IndexTask task = getIndexTask(cache, indexKey, realm);
+            task.added.remove(sessionId);
+            task.removed.add(sessionId);
+        }
+
+        // Apply index changes done in this transaction to the ids read from the cache
+        public void applyIndexChanges(Cache cache, String indexKey, Map<String, Integer> sessions) {
+            IndexTask task = indexTasks.get(getTaskKey(cache, indexKey));
+            if (task != null) {
+                task.apply(sessions);
+            }
+        }
+
+        public boolean hasIndexChanges(Cache cache, String indexKey) {
+            return indexTasks.containsKey(getTaskKey(cache, indexKey));
+        }
+
+        private IndexTask getIndexTask(Cache cache, String indexKey, String realm) {
+            Object taskKey = getTaskKey(cache, indexKey);
+            IndexTask task = indexTasks.get(taskKey);
+            if (task == null) {
+                task = new IndexTask(cache, indexKey, realm);
+                indexTasks.put(taskKey, task);
+            }
+            return task;
+        }
+
         private Object getTaskKey(Cache cache, Object key) {
             if (key instanceof String) {
                 return new StringBuilder(cache.getName())
@@ -789,6 +1108,7 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
             private CacheOperation operation;
             private Object key;
             private Object value;
+            private Delta delta;
 
             public CacheTask(Cache cache, CacheOperation operation, Object key, Object value) {
                 this.cache = cache;
@@ -804,20 +1124,111 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
                     case ADD:
                         cache.put(key, value);
                         break;
+                    case ADD_IF_ABSENT:
+                        cache.putIfAbsent(key, value);
+                        break;
                     case REMOVE:
                         cache.remove(key);
                         break;
                     case REPLACE:
                         cache.replace(key, value);
                         break;
+                    case APPLY_DELTA:
+                        // Owners merge the delta with the value they have. Session removed meanwhile must not be recreated
+                        // from the delta, so it's applied only to the session, which is still there
+                        if (cache.containsKey(key)) {
+                            cache.put(key, delta);
+                        } else {
+                            log.debugv("Session {0} was removed, changes are not applied", key);
+                        }
+                        break;
+                }
+            }
+        }
+
+        public class IndexTask {
+            private Cache cache;
+            private String key;
+            private String realm;
+            private Map<String, Integer> added = new HashMap<String, Integer>();
+            private Set<String> removed = new HashSet<String>();
+
+            public IndexTask(Cache cache, String key, String realm) {
+                this.cache = cache;
+                this.key = key;
+                this.realm = realm;
+            }
+
+            public void execute() {
+                log.tracev("Executing index operation on {0}: added {1}, removed {2}", key, added, removed);
+
+                // Index is shared by concurrent transactions, so it's updated with conditional operations. Update is never given
+                // up, as nothing would add the sessions to the index later and lookups by the index would miss live sessions.
+                // Failed attempt means other transaction updated the index meanwhile, so retrying always makes progress
+                for (int attempt = 0; ; attempt++) {
+                    if (attempt > 0) {
+                        backoff(attempt);
+                    }
+
+                    SessionIndexEntity current = (SessionIndexEntity) cache.get(key);
+
+                    Map<String, Integer> sessions = new HashMap<String, Integer>();
+                    if (current != null) {
+                        sessions.putAll(current.getSessions());
+                    }
+                    apply(sessions);
+
+                    if (current == null) {
+                        if (sessions.isEmpty() || cache.putIfAbsent(key, createIndex(sessions)) == null) {
+                            return;
+                        }
+                    } else if (sessions.equals(current.getSessions())) {
+                        return;
+                    } else if (sessions.isEmpty()) {
+                        if (cache.remove(key, current)) {
+                            return;
+                        }
+                    } else if (cache.replace(key, current, createIndex(sessions))) {
+                        return;
+                    }
+                }
+            }
+
+            private void backoff(int attempt) {
+                if (attempt < 3) {
+                    Thread.yield();
+                    return;
                 }
+                try {
+                    Thread.sleep(Math.min(attempt, 10));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            // Session already in the index keeps the timestamp of when it was added
+            private void apply(Map<String, Integer> sessions) {
+                for (Map.Entry<String, Integer> e : added.entrySet()) {
+                    if (!sessions.containsKey(e.getKey())) {
+                        sessions.put(e.getKey(), e.getValue());
+                    }
+                }
+                sessions.keySet().removeAll(removed);
+            }
+
+            private SessionIndexEntity createIndex(Map<String, Integer> sessions) {
+                SessionIndexEntity index = new SessionIndexEntity();
+                index.setId(key);
+                index.setRealm(realm);
+                index.setSessions(sessions);
+                return index;
             }
         }
 
     }
 
     public enum CacheOperation {
-        ADD, REMOVE, REPLACE
+        ADD, ADD_IF_ABSENT, REMOVE, REPLACE, APPLY_DELTA
     }
 
 }
@@ -38,6 +38,7 @@ public class InfinispanUserSessionProviderFactory implements UserSessionProvider
     private Config.Scope config;
     private Boolean compatMode;
     private MemUserSessionProviderFactory compatProviderFactory;
+    private boolean preloadInBackground;
 
     @Override
     public UserSessionProvider create(KeycloakSession session) {
@@ -47,7 +48,7 @@ public class InfinispanUserSessionProviderFactory implements UserSessionProvider
             Cache<String, SessionEntity> cache = connections.getCache(InfinispanConnectionProvider.SESSION_CACHE_NAME);
             Cache<String, SessionEntity> offlineSessionsCache = connections.getCache(InfinispanConnectionProvider.OFFLINE_SESSION_CACHE_NAME);
             Cache<LoginFailureKey, LoginFailureEntity> loginFailures = connections.getCache(InfinispanConnectionProvider.LOGIN_FAILURE_CACHE_NAME);
-            return new InfinispanUserSessionProvider(session, cache, offlineSessionsCache, loginFailures);
+            return new InfinispanUserSessionProvider(session, cache, offlineSessionsCache, loginFailures, preloadInBackground);
         } else {
             return compatProviderFactory.create(session);
         }
@@ -56,6 +57,9 @@ public class InfinispanUserSessionProviderFactory implements UserSessionProvider
     @Override
     public void init(Config.Scope config) {
         this.config = config;
+
+        // If true, server starts without waiting for offline sessions to be loaded. Offline sessions not loaded yet are read from persistent storage when requested
+        this.preloadInBackground = config.getBoolean("preloadInBackground", false);
     }
 
     @Override
@@ -83,7 +87,24 @@ public class InfinispanUserSessionProviderFactory implements UserSessionProvider
             @Override
             public void onEvent(ProviderEvent event) {
                 if (event instanceof PostMigrationEvent) {
-                    loadPersistentSessions(factory, maxErrors, sessionsPerSegment);
+                    if (preloadInBackground && !compatMode) {
+                        Thread preloader = new Thread(new Runnable() {
+
+                            @Override
+                            public void run() {
+                                try {
+                                    loadPersistentSessions(factory, maxErrors, sessionsPerSegment);
+                                } catch (RuntimeException e) {
+                                    log.error("Failed to pre-load userSessions and clientSessions from persistent storage", e);
+                                }
+                            }
+
+                        }, "Offline Sessions Preloader");
+                        preloader.setDaemon(true);
+                        preloader.start();
+                    } else {
+                        loadPersistentSessions(factory, maxErrors, sessionsPerSegment);
+                    }
                 }
             }
         });
@@ -94,6 +115,9 @@ public class InfinispanUserSessionProviderFactory implements UserSessionProvider
     public void loadPersistentSessions(final KeycloakSessionFactory sessionFactory, final int maxErrors, final int sessionsPerSegment) {
         log.debug("Start pre-loading userSessions and clientSessions from persistent storage");
 
+        // Count of segments loaded in parallel by each cluster node
+        final int workersPerNode = config.getInt("workersPerNode", Runtime.getRuntime().availableProcessors());
+
         if (compatMode) {
             SimpleUserSessionInitializer initializer = new SimpleUserSessionInitializer(sessionFactory, new OfflineUserSessionLoader(), sessionsPerSegment);
             initializer.loadPersistentSessions();
@@ -106,7 +130,7 @@ public class InfinispanUserSessionProviderFactory implements UserSessionProvider
                     InfinispanConnectionProvider connections = session.getProvider(InfinispanConnectionProvider.class);
                     Cache<String, SessionEntity> cache = connections.getCache(InfinispanConnectionProvider.OFFLINE_SESSION_CACHE_NAME);
 
-                    InfinispanUserSessionInitializer initializer = new InfinispanUserSessionInitializer(sessionFactory, cache, new OfflineUserSessionLoader(), maxErrors, sessionsPerSegment, "offlineUserSessions");
+                    InfinispanUserSessionInitializer initializer = new InfinispanUserSessionInitializer(sessionFactory, cache, new OfflineUserSessionLoader(), maxErrors, sessionsPerSegment, workersPerNode, OfflineUserSessionLoader.STATE_KEY_SUFFIX);
                     initializer.initCache();
                     initializer.loadPersistentSessions();
                 }
@@ -8,6 +8,7 @@ import org.keycloak.models.UserModel;
 import org.keycloak.models.UserSessionModel;
 import org.keycloak.models.sessions.infinispan.entities.ClientSessionEntity;
 import org.keycloak.models.sessions.infinispan.entities.SessionEntity;
+import org.keycloak.models.sessions.infinispan.entities.UserSessionDelta;
 import org.keycloak.models.sessions.infinispan.entities.UserSessionEntity;
 
 import java.util.Collections;
@@ -94,7 +95,7 @@ public class UserSessionAdapter implements UserSessionModel {
 
     public void setLastSessionRefresh(int lastSessionRefresh) {
         entity.setLastSessionRefresh(lastSessionRefresh);
-        update();
+        delta().setLastSessionRefresh(lastSessionRefresh);
     }
 
     @Override
@@ -108,14 +109,14 @@ public class UserSessionAdapter implements UserSessionModel {
             entity.setNotes(new HashMap<String, String>());
         }
         entity.getNotes().put(name, value);
-        update();
+        delta().setNote(name, value);
     }
 
     @Override
     public void removeNote(String name) {
         if (entity.getNotes() != null) {
             entity.getNotes().remove(name);
-            update();
+            delta().removeNote(name);
         }
     }
 
@@ -132,7 +133,7 @@ public class UserSessionAdapter implements UserSessionModel {
     @Override
     public void setState(State state) {
         entity.setState(state);
-        update();
+        delta().setState(state);
     }
 
     @Override
@@ -169,8 +170,17 @@ public class UserSessionAdapter implements UserSessionModel {
         return entity;
     }
 
+    Cache<String, SessionEntity> getCache() {
+        return cache;
+    }
+
     void update() {
         provider.getTx().replace(cache, entity.getId(), entity);
     }
 
+    // Changes of single fields are replicated as delta. Recorded changes are ignored if the whole entity is written anyway
+    private UserSessionDelta delta() {
+        return provider.getTx().replaceWithDelta(cache, entity.getId(), entity, new UserSessionDelta(entity.getId(), entity.getRealm()));
+    }
+
 }
@@ -37,10 +37,14 @@ public class SimpleUserSessionInitializer {
 
             @Override
             public void run(KeycloakSession session) {
-                int count = sessionLoader.getSessionsCount(session);
-
-                for (int i=0 ; i<count ; i+=sessionsPerSegment) {
-                    sessionLoader.loadSessions(session, i, sessionsPerSegment);
+                String lastSessionId = null;
+                while (true) {
+                    sessionLoader.loadSessions(session, lastSessionId, sessionsPerSegment);
+
+                    lastSessionId = sessionLoader.getSessionIdAfter(session, lastSessionId, sessionsPerSegment);
+                    if (lastSessionId == null) {
+                        return;
+                    }
                 }
             }
 
@@ -1,6 +1,8 @@
 package org.keycloak.models.sessions.infinispan.entities;
 
+import org.infinispan.commons.marshall.SerializeWith;
 import org.keycloak.models.ClientSessionModel;
+import org.keycloak.models.sessions.infinispan.marshall.ClientSessionEntityExternalizer;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -12,6 +14,7 @@ import java.util.Set;
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
+@SerializeWith(ClientSessionEntityExternalizer.class)
 public class ClientSessionEntity extends SessionEntity {
 
     private String client;
@@ -134,4 +137,8 @@ public class ClientSessionEntity extends SessionEntity {
     public Set<String> getRequiredActions() {
         return requiredActions;
     }
+
+    public void setRequiredActions(Set<String> requiredActions) {
+        this.requiredActions = requiredActions;
+    }
 }
@@ -1,10 +1,14 @@
 package org.keycloak.models.sessions.infinispan.entities;
 
+import org.infinispan.commons.marshall.SerializeWith;
+import org.keycloak.models.sessions.infinispan.marshall.LoginFailureEntityExternalizer;
+
 import java.io.Serializable;
 
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
+@SerializeWith(LoginFailureEntityExternalizer.class)
 public class LoginFailureEntity implements Serializable {
 
     private String username;
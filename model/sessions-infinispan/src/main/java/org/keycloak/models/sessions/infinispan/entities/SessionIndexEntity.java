@@ -0,0 +1,130 @@
+package org.keycloak.models.sessions.infinispan.entities;
+
+import org.infinispan.commons.marshall.SerializeWith;
+import org.keycloak.models.sessions.infinispan.marshall.SessionIndexEntityExternalizer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Secondary index stored in the sessions cache next to the sessions it points to. Maps an attribute (user, broker session,
+ * broker user or client) to the ids of the sessions, which have that attribute, together with the time when the session
+ * was added to the index. This allows to lookup sessions without running map reduce over whole cache.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@SerializeWith(SessionIndexEntityExternalizer.class)
+public class SessionIndexEntity extends SessionEntity {
+
+    private static final String PREFIX = "index::";
+
+    /**
+     * Client can have lots of sessions, so its indexes are split to buckets by the session id. This keeps the entries,
+     * which are rewritten by every transaction changing the index, small and spreads concurrent writers over more keys.
+     */
+    public static final int CLIENT_BUCKETS = 32;
+
+    private Map<String, Integer> sessions = new HashMap<>();
+
+    public static String userKey(String realm, String user) {
+        return key("user", realm, user);
+    }
+
+    public static String brokerSessionKey(String realm, String brokerSessionId) {
+        return key("brokerSession", realm, brokerSessionId);
+    }
+
+    public static String brokerUserKey(String realm, String brokerUserId) {
+        return key("brokerUser", realm, brokerUserId);
+    }
+
+    /**
+     * Bucket of the index of client sessions of the client, which the client session belongs to
+     */
+    public static String clientKey(String realm, String client, String clientSessionId) {
+        return bucketKey("client", realm, client, bucket(clientSessionId));
+    }
+
+    /**
+     * All buckets of the index of client sessions of the client
+     */
+    public static List<String> clientKeys(String realm, String client) {
+        return bucketKeys("client", realm, client);
+    }
+
+    /**
+     * Bucket of the index of user sessions, which have at least one client session of the client, which the user session
+     * belongs to
+     */
+    public static String clientUserSessionsKey(String realm, String client, String userSessionId) {
+        return bucketKey("clientUserSessions", realm, client, bucket(userSessionId));
+    }
+
+    /**
+     * All buckets of the index of user sessions, which have at least one client session of the client
+     */
+    public static List<String> clientUserSessionsKeys(String realm, String client) {
+        return bucketKeys("clientUserSessions", realm, client);
+    }
+
+    private static int bucket(String sessionId) {
+        return (sessionId.hashCode() & Integer.MAX_VALUE) % CLIENT_BUCKETS;
+    }
+
+    private static String bucketKey(String type, String realm, String value, int bucket) {
+        return new StringBuilder(key(type, realm, value))
+                .append("::")
+                .append(bucket).toString();
+    }
+
+    private static List<String> bucketKeys(String type, String realm, String value) {
+        List<String> keys = new ArrayList<>(CLIENT_BUCKETS);
+        for (int i = 0; i < CLIENT_BUCKETS; i++) {
+            keys.add(bucketKey(type, realm, value, i));
+        }
+        return keys;
+    }
+
+    private static String key(String type, String realm, String value) {
+        return new StringBuilder(PREFIX)
+                .append(type).append("::")
+                .append(realm).append("::")
+                .append(value).toString();
+    }
+
+    public Map<String, Integer> getSessions() {
+        return sessions;
+    }
+
+    public void setSessions(Map<String, Integer> sessions) {
+        this.sessions = sessions;
+    }
+
+    public Set<String> getSessionIds() {
+        return sessions.keySet();
+    }
+
+    // Index is updated with conditional replace, so equality must take the content into account
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SessionIndexEntity)) return false;
+
+        SessionIndexEntity that = (SessionIndexEntity) o;
+
+        if (getId() != null ? !getId().equals(that.getId()) : that.getId() != null) return false;
+        if (sessions != null ? !sessions.equals(that.sessions) : that.sessions != null) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = super.hashCode();
+        result = 31 * result + (sessions != null ? sessions.hashCode() : 0);
+        return result;
+    }
+}
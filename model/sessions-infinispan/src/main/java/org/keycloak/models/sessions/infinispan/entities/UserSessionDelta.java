@@ -0,0 +1,122 @@
+package org.keycloak.models.sessions.infinispan.entities;
+
+import org.infinispan.atomic.Delta;
+import org.infinispan.atomic.DeltaAware;
+import org.infinispan.commons.marshall.SerializeWith;
+import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.sessions.infinispan.marshall.UserSessionDeltaExternalizer;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Changes of user session done in one transaction. Delta is put to the cache instead of the whole entity, so only changed
+ * fields are replicated and every owner applies them to its own copy of the entity. Refreshing a session then doesn't send
+ * notes and client sessions over the network.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@SerializeWith(UserSessionDeltaExternalizer.class)
+public class UserSessionDelta implements Delta, Serializable {
+
+    private final String id;
+
+    private final String realm;
+
+    private Integer lastSessionRefresh;
+
+    private boolean stateChanged;
+
+    private UserSessionModel.State state;
+
+    // Removed notes have null value
+    private Map<String, String> notes;
+
+    public UserSessionDelta(String id, String realm) {
+        this.id = id;
+        this.realm = realm;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getRealm() {
+        return realm;
+    }
+
+    public Integer getLastSessionRefresh() {
+        return lastSessionRefresh;
+    }
+
+    public boolean isStateChanged() {
+        return stateChanged;
+    }
+
+    public UserSessionModel.State getState() {
+        return state;
+    }
+
+    public Map<String, String> getNotes() {
+        return notes;
+    }
+
+    public void setLastSessionRefresh(int lastSessionRefresh) {
+        this.lastSessionRefresh = lastSessionRefresh;
+    }
+
+    public void setState(UserSessionModel.State state) {
+        this.stateChanged = true;
+        this.state = state;
+    }
+
+    public void setNote(String name, String value) {
+        if (notes == null) {
+            notes = new LinkedHashMap<>();
+        }
+        notes.put(name, value);
+    }
+
+    public void removeNote(String name) {
+        setNote(name, null);
+    }
+
+    /**
+     * Applies the changes to the entity. Delta is applied only if the session is in the cache, see
+     * {@link org.keycloak.models.sessions.infinispan.InfinispanUserSessionProvider.CacheOperation#APPLY_DELTA}. If the
+     * session is removed right before that, there's nothing to apply the changes to and null is returned.
+     */
+    @Override
+    public DeltaAware merge(DeltaAware d) {
+        if (!(d instanceof UserSessionEntity)) {
+            return null;
+        }
+        UserSessionEntity entity = (UserSessionEntity) d;
+
+        if (lastSessionRefresh != null) {
+            entity.setLastSessionRefresh(lastSessionRefresh);
+        }
+
+        if (stateChanged) {
+            entity.setState(state);
+        }
+
+        // Entity may be read by other threads, so notes are copied instead of modified
+        if (notes != null) {
+            Map<String, String> merged = entity.getNotes() != null ? new HashMap<>(entity.getNotes()) : new HashMap<String, String>();
+            for (Map.Entry<String, String> e : notes.entrySet()) {
+                if (e.getValue() != null) {
+                    merged.put(e.getKey(), e.getValue());
+                } else {
+                    merged.remove(e.getKey());
+                }
+            }
+            entity.setNotes(merged);
+        }
+
+        return entity;
+    }
+
+}
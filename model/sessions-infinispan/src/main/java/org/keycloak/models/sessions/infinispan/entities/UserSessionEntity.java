@@ -1,14 +1,21 @@
 package org.keycloak.models.sessions.infinispan.entities;
 
+import org.infinispan.atomic.Delta;
+import org.infinispan.atomic.DeltaAware;
+import org.infinispan.commons.marshall.SerializeWith;
 import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.sessions.infinispan.marshall.UserSessionEntityExternalizer;
 
 import java.util.Map;
 import java.util.Set;
 
 /**
+ * Entity is {@link DeltaAware}, so {@link UserSessionDelta} put to the cache is merged with it.
+ *
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
-public class UserSessionEntity extends SessionEntity {
+@SerializeWith(UserSessionEntityExternalizer.class)
+public class UserSessionEntity extends SessionEntity implements DeltaAware {
 
     private String user;
 
@@ -128,4 +135,21 @@ public class UserSessionEntity extends SessionEntity {
     public void setBrokerUserId(String brokerUserId) {
         this.brokerUserId = brokerUserId;
     }
+
+    @Override
+    public Delta delta() {
+        UserSessionDelta delta = new UserSessionDelta(getId(), getRealm());
+        delta.setLastSessionRefresh(lastSessionRefresh);
+        delta.setState(state);
+        if (notes != null) {
+            for (Map.Entry<String, String> e : notes.entrySet()) {
+                delta.setNote(e.getKey(), e.getValue());
+            }
+        }
+        return delta;
+    }
+
+    @Override
+    public void commit() {
+    }
 }
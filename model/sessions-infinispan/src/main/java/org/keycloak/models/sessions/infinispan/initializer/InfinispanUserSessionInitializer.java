@@ -42,18 +42,30 @@ public class InfinispanUserSessionInitializer {
     private final SessionLoader sessionLoader;
     private final int maxErrors;
     private final int sessionsPerSegment;
+    private final int workersPerNode;
     private final String stateKey;
 
     private volatile CountDownLatch latch = new CountDownLatch(1);
 
 
-    public InfinispanUserSessionInitializer(KeycloakSessionFactory sessionFactory, Cache<String, SessionEntity> cache, SessionLoader sessionLoader, int maxErrors, int sessionsPerSegment, String stateKeySuffix) {
+    public InfinispanUserSessionInitializer(KeycloakSessionFactory sessionFactory, Cache<String, SessionEntity> cache, SessionLoader sessionLoader, int maxErrors, int sessionsPerSegment, int workersPerNode, String stateKeySuffix) {
         this.sessionFactory = sessionFactory;
         this.cache = cache;
         this.sessionLoader = sessionLoader;
         this.maxErrors = maxErrors;
         this.sessionsPerSegment = sessionsPerSegment;
-        this.stateKey = STATE_KEY_PREFIX + "::" + stateKeySuffix;
+        this.workersPerNode = workersPerNode;
+        this.stateKey = getStateKey(stateKeySuffix);
+    }
+
+    private static String getStateKey(String stateKeySuffix) {
+        return STATE_KEY_PREFIX + "::" + stateKeySuffix;
+    }
+
+    // Return true if sessions were already loaded to the cache by any cluster node
+    public static boolean isFinished(Cache<String, SessionEntity> cache, String stateKeySuffix) {
+        InitializerState state = (InitializerState) cache.get(getStateKey(stateKeySuffix));
+        return state != null && state.isFinished();
     }
 
     public void initCache() {
@@ -87,6 +99,31 @@ public class InfinispanUserSessionInitializer {
     }
 
 
+    // Find IDs of the sessions before each segment up to "lastSegment". Segments are split in ascending order and each step
+    // just skips "sessionsPerSegment" sessions from the previous start, so workers never need to skip all previous sessions
+    private void splitSegments(final InitializerState state, final int lastSegment) {
+        if (state.getSplitSegmentsCount() > lastSegment) {
+            return;
+        }
+
+        KeycloakModelUtils.runJobInTransaction(sessionFactory, new KeycloakSessionTask() {
+
+            @Override
+            public void run(KeycloakSession session) {
+                String start = state.getLastSplitSegmentStart();
+                for (int i = state.getSplitSegmentsCount(); i <= lastSegment; i++) {
+                    start = sessionLoader.getSessionIdAfter(session, start, sessionsPerSegment);
+                    state.splitSegment(i, start);
+                    if (start == null) {
+                        return;
+                    }
+                }
+            }
+
+        });
+    }
+
+
     private InitializerState getOrCreateInitializerState() {
         InitializerState state = (InitializerState) cache.get(stateKey);
         if (state == null) {
@@ -147,23 +184,27 @@ public class InfinispanUserSessionInitializer {
     private void startLoading() {
         InitializerState state = getOrCreateInitializerState();
 
-        // Assume each worker has same processor's count
-        int processors = Runtime.getRuntime().availableProcessors();
-
         ExecutorService localExecutor = Executors.newCachedThreadPool();
         DistributedExecutorService distributedExecutorService = new DefaultExecutorService(cache, localExecutor);
 
         int errors = 0;
+        int loggedProgress = 0;
 
         try {
             while (!state.isFinished()) {
                 Transport transport = cache.getCacheManager().getTransport();
                 int nodesCount = transport==null ? 1 : transport.getMembers().size();
-                int distributedWorkersCount = processors * nodesCount;
+                int distributedWorkersCount = workersPerNode * nodesCount;
 
                 log.debugf("Starting next iteration with %d workers", distributedWorkersCount);
 
                 List<Integer> segments = state.getUnfinishedSegments(distributedWorkersCount);
+                if (!segments.isEmpty()) {
+                    splitSegments(state, segments.get(segments.size() - 1));
+
+                    // Some segments may turn out to be empty if sessions were removed in the meantime
+                    segments = state.getUnfinishedSegments(distributedWorkersCount);
+                }
 
                 if (log.isTraceEnabled()) {
                     log.trace("unfinished segments for this iteration: " + segments);
@@ -172,7 +213,7 @@ public class InfinispanUserSessionInitializer {
                 List<Future<WorkerResult>> futures = new LinkedList<>();
                 for (Integer segment : segments) {
                     SessionInitializerWorker worker = new SessionInitializerWorker();
-                    worker.setWorkerEnvironment(segment, sessionsPerSegment, sessionLoader);
+                    worker.setWorkerEnvironment(segment, state.getSegmentStart(segment), sessionsPerSegment, sessionLoader);
 
                     Future<WorkerResult> future = distributedExecutorService.submit(worker);
                     futures.add(future);
@@ -208,6 +249,12 @@ public class InfinispanUserSessionInitializer {
                 if (log.isDebugEnabled()) {
                     log.debug("New initializer state pushed. The state is: " + state.printState());
                 }
+
+                int progress = state.getProgress();
+                if (progress / 10 > loggedProgress / 10) {
+                    log.infof("Loaded %d%% of persistent sessions (%s)", progress, stateKey);
+                    loggedProgress = progress;
+                }
             }
         } finally {
             distributedExecutorService.shutdown();
@@ -1,7 +1,9 @@
 package org.keycloak.models.sessions.infinispan.initializer;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.jboss.logging.Logger;
 import org.keycloak.models.sessions.infinispan.entities.SessionEntity;
@@ -17,6 +19,11 @@ public class InitializerState extends SessionEntity {
     private List<Boolean> segments = new ArrayList<>();
     private int lowestUnfinishedSegment = 0;
 
+    // ID of the last session before the segment. Known for all unfinished segments lower than "splitSegmentsCount"
+    private Map<Integer, String> segmentStarts = new HashMap<>();
+    private int splitSegmentsCount = 1;
+    private String lastSplitSegmentStart;
+
 
     public void init(int sessionsCount, int sessionsPerSegment) {
         this.sessionsCount = sessionsCount;
@@ -61,9 +68,56 @@ public class InitializerState extends SessionEntity {
 
     public void markSegmentFinished(int index) {
         segments.set(index, true);
+        segmentStarts.remove(index);
         updateLowestUnfinishedSegment();
     }
 
+    public int getSegmentsCount() {
+        return segments.size();
+    }
+
+    public int getSplitSegmentsCount() {
+        return splitSegmentsCount;
+    }
+
+    public String getLastSplitSegmentStart() {
+        return lastSplitSegmentStart;
+    }
+
+    // Called for segments in ascending order. Null "start" means that there are no more sessions, so this and all following segments are empty
+    public void splitSegment(int index, String start) {
+        if (start == null) {
+            for (int i=index ; i<segments.size() ; i++) {
+                markSegmentFinished(i);
+            }
+            splitSegmentsCount = segments.size();
+        } else {
+            segmentStarts.put(index, start);
+            splitSegmentsCount = index + 1;
+            lastSplitSegmentStart = start;
+        }
+    }
+
+    public String getSegmentStart(int index) {
+        return segmentStarts.get(index);
+    }
+
+    // Return percentage of finished segments
+    public int getProgress() {
+        int size = segments.size();
+        if (size == 0) {
+            return 100;
+        }
+
+        int finished = 0;
+        for (Boolean done : segments) {
+            if (done) {
+                finished++;
+            }
+        }
+        return finished * 100 / size;
+    }
+
     private void updateLowestUnfinishedSegment() {
         this.lowestUnfinishedSegment = getNextUnfinishedSegmentFromIndex(lowestUnfinishedSegment);
     }
@@ -20,13 +20,15 @@ public class SessionInitializerWorker implements DistributedCallable<String, Ses
     private static final Logger log = Logger.getLogger(SessionInitializerWorker.class);
 
     private int segment;
+    private String segmentStart;
     private int sessionsPerSegment;
     private SessionLoader sessionLoader;
 
     private transient Cache<String, SessionEntity> cache;
 
-    public void setWorkerEnvironment(int segment, int sessionsPerSegment, SessionLoader sessionLoader) {
+    public void setWorkerEnvironment(int segment, String segmentStart, int sessionsPerSegment, SessionLoader sessionLoader) {
         this.segment = segment;
+        this.segmentStart = segmentStart;
         this.sessionsPerSegment = sessionsPerSegment;
         this.sessionLoader = sessionLoader;
     }
@@ -48,14 +50,11 @@ public class SessionInitializerWorker implements DistributedCallable<String, Ses
             return InfinispanUserSessionInitializer.WorkerResult.create(segment, false);
         }
 
-        final int first = segment * sessionsPerSegment;
-        final int max = sessionsPerSegment;
-
         KeycloakModelUtils.runJobInTransaction(sessionFactory, new KeycloakSessionTask() {
 
             @Override
             public void run(KeycloakSession session) {
-                sessionLoader.loadSessions(session, first, max);
+                sessionLoader.loadSessions(session, segmentStart, sessionsPerSegment);
             }
 
         });
@@ -13,5 +13,9 @@ public interface SessionLoader extends Serializable {
 
     int getSessionsCount(KeycloakSession session);
 
-    boolean loadSessions(KeycloakSession session, int first, int max);
+    // Return ID of the session, which is "count" sessions after the session with ID "lastSessionId" (or after the start if "lastSessionId" is null). Return null if there are less sessions
+    String getSessionIdAfter(KeycloakSession session, String lastSessionId, int count);
+
+    // Load at most "max" sessions, which follow after the session with ID "lastSessionId" (or after the start if "lastSessionId" is null)
+    boolean loadSessions(KeycloakSession session, String lastSessionId, int max);
 }
@@ -0,0 +1,74 @@
+package org.keycloak.models.sessions.infinispan.marshall;
+
+import org.infinispan.commons.marshall.AbstractExternalizer;
+import org.keycloak.models.ClientSessionModel;
+import org.keycloak.models.sessions.infinispan.entities.ClientSessionEntity;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.keycloak.models.sessions.infinispan.marshall.SessionMarshallUtil.*;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class ClientSessionEntityExternalizer extends AbstractExternalizer<ClientSessionEntity> {
+
+    private static final int VERSION = 1;
+
+    @Override
+    public Set<Class<? extends ClientSessionEntity>> getTypeClasses() {
+        return Collections.<Class<? extends ClientSessionEntity>>singleton(ClientSessionEntity.class);
+    }
+
+    @Override
+    public Integer getId() {
+        return ExternalizerIds.CLIENT_SESSION_ENTITY;
+    }
+
+    @Override
+    public void writeObject(ObjectOutput output, ClientSessionEntity entity) throws IOException {
+        writeVersion(output, VERSION);
+        writeString(output, entity.getId());
+        writeString(output, entity.getRealm());
+        writeString(output, entity.getClient());
+        writeString(output, entity.getUserSession());
+        writeString(output, entity.getAuthMethod());
+        writeString(output, entity.getRedirectUri());
+        writeVarInt(output, entity.getTimestamp());
+        writeString(output, entity.getAction());
+        writeStringSet(output, entity.getRoles());
+        writeStringSet(output, entity.getProtocolMappers());
+        writeStringMap(output, entity.getNotes());
+        writeStringMap(output, entity.getUserSessionNotes());
+        writeEnumMap(output, entity.getAuthenticatorStatus());
+        writeString(output, entity.getAuthUserId());
+        writeStringSet(output, entity.getRequiredActions());
+    }
+
+    @Override
+    public ClientSessionEntity readObject(ObjectInput input) throws IOException {
+        readVersion(input, VERSION);
+        ClientSessionEntity entity = new ClientSessionEntity();
+        entity.setId(readString(input));
+        entity.setRealm(readInternedString(input));
+        entity.setClient(readInternedString(input));
+        entity.setUserSession(readString(input));
+        entity.setAuthMethod(readInternedString(input));
+        entity.setRedirectUri(readString(input));
+        entity.setTimestamp(readVarInt(input));
+        entity.setAction(readInternedString(input));
+        entity.setRoles(readStringSet(input, true));
+        entity.setProtocolMappers(readStringSet(input, true));
+        entity.setNotes(readStringMap(input));
+        entity.setUserSessionNotes(readStringMap(input));
+        entity.setAuthenticatorStatus(readEnumMap(input, ClientSessionModel.ExecutionStatus.class));
+        entity.setAuthUserId(readString(input));
+        entity.setRequiredActions(readStringSet(input, true));
+        return entity;
+    }
+
+}
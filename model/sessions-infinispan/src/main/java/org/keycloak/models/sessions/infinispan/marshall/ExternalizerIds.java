@@ -0,0 +1,17 @@
+package org.keycloak.models.sessions.infinispan.marshall;
+
+/**
+ * Ids of externalizers registered with Infinispan. Ids must not change, as they are part of the serialized data.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public interface ExternalizerIds {
+
+    int USER_SESSION_ENTITY = 4100;
+    int CLIENT_SESSION_ENTITY = 4101;
+    int LOGIN_FAILURE_ENTITY = 4102;
+    int LOGIN_FAILURE_KEY = 4103;
+    int USER_SESSION_DELTA = 4104;
+    int SESSION_INDEX_ENTITY = 4105;
+
+}
@@ -0,0 +1,55 @@
+package org.keycloak.models.sessions.infinispan.marshall;
+
+import org.infinispan.commons.marshall.AbstractExternalizer;
+import org.keycloak.models.sessions.infinispan.entities.LoginFailureEntity;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.keycloak.models.sessions.infinispan.marshall.SessionMarshallUtil.*;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class LoginFailureEntityExternalizer extends AbstractExternalizer<LoginFailureEntity> {
+
+    private static final int VERSION = 1;
+
+    @Override
+    public Set<Class<? extends LoginFailureEntity>> getTypeClasses() {
+        return Collections.<Class<? extends LoginFailureEntity>>singleton(LoginFailureEntity.class);
+    }
+
+    @Override
+    public Integer getId() {
+        return ExternalizerIds.LOGIN_FAILURE_ENTITY;
+    }
+
+    @Override
+    public void writeObject(ObjectOutput output, LoginFailureEntity entity) throws IOException {
+        writeVersion(output, VERSION);
+        writeString(output, entity.getUsername());
+        writeString(output, entity.getRealm());
+        writeVarInt(output, entity.getFailedLoginNotBefore());
+        writeVarInt(output, entity.getNumFailures());
+        writeVarLong(output, entity.getLastFailure());
+        writeString(output, entity.getLastIPFailure());
+    }
+
+    @Override
+    public LoginFailureEntity readObject(ObjectInput input) throws IOException {
+        readVersion(input, VERSION);
+        LoginFailureEntity entity = new LoginFailureEntity();
+        entity.setUsername(readString(input));
+        entity.setRealm(readInternedString(input));
+        entity.setFailedLoginNotBefore(readVarInt(input));
+        entity.setNumFailures(readVarInt(input));
+        entity.setLastFailure(readVarLong(input));
+        entity.setLastIPFailure(readString(input));
+        return entity;
+    }
+
+}
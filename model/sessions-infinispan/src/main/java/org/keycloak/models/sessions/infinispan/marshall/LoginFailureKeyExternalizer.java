@@ -0,0 +1,44 @@
+package org.keycloak.models.sessions.infinispan.marshall;
+
+import org.infinispan.commons.marshall.AbstractExternalizer;
+import org.keycloak.models.sessions.infinispan.entities.LoginFailureKey;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.keycloak.models.sessions.infinispan.marshall.SessionMarshallUtil.*;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class LoginFailureKeyExternalizer extends AbstractExternalizer<LoginFailureKey> {
+
+    private static final int VERSION = 1;
+
+    @Override
+    public Set<Class<? extends LoginFailureKey>> getTypeClasses() {
+        return Collections.<Class<? extends LoginFailureKey>>singleton(LoginFailureKey.class);
+    }
+
+    @Override
+    public Integer getId() {
+        return ExternalizerIds.LOGIN_FAILURE_KEY;
+    }
+
+    @Override
+    public void writeObject(ObjectOutput output, LoginFailureKey key) throws IOException {
+        writeVersion(output, VERSION);
+        writeString(output, key.getRealm());
+        writeString(output, key.getUsername());
+    }
+
+    @Override
+    public LoginFailureKey readObject(ObjectInput input) throws IOException {
+        readVersion(input, VERSION);
+        return new LoginFailureKey(readInternedString(input), readString(input));
+    }
+
+}
@@ -0,0 +1,63 @@
+package org.keycloak.models.sessions.infinispan.marshall;
+
+import org.infinispan.commons.marshall.AbstractExternalizer;
+import org.keycloak.models.sessions.infinispan.entities.SessionIndexEntity;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.keycloak.models.sessions.infinispan.marshall.SessionMarshallUtil.*;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class SessionIndexEntityExternalizer extends AbstractExternalizer<SessionIndexEntity> {
+
+    private static final int VERSION = 1;
+
+    @Override
+    public Set<Class<? extends SessionIndexEntity>> getTypeClasses() {
+        return Collections.<Class<? extends SessionIndexEntity>>singleton(SessionIndexEntity.class);
+    }
+
+    @Override
+    public Integer getId() {
+        return ExternalizerIds.SESSION_INDEX_ENTITY;
+    }
+
+    @Override
+    public void writeObject(ObjectOutput output, SessionIndexEntity entity) throws IOException {
+        writeVersion(output, VERSION);
+        writeString(output, entity.getId());
+        writeString(output, entity.getRealm());
+
+        Map<String, Integer> sessions = entity.getSessions();
+        writeVarInt(output, sessions.size());
+        for (Map.Entry<String, Integer> e : sessions.entrySet()) {
+            writeString(output, e.getKey());
+            writeVarInt(output, e.getValue());
+        }
+    }
+
+    @Override
+    public SessionIndexEntity readObject(ObjectInput input) throws IOException {
+        readVersion(input, VERSION);
+        SessionIndexEntity entity = new SessionIndexEntity();
+        entity.setId(readString(input));
+        entity.setRealm(readInternedString(input));
+
+        int size = readVarInt(input);
+        Map<String, Integer> sessions = new HashMap<>(Math.max(size * 4 / 3 + 1, 16));
+        for (int i = 0; i < size; i++) {
+            sessions.put(readString(input), readVarInt(input));
+        }
+        entity.setSessions(sessions);
+        return entity;
+    }
+
+}
@@ -0,0 +1,264 @@
+package org.keycloak.models.sessions.infinispan.marshall;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact encoding used by externalizers of session entities:
+ * <ul>
+ *     <li>ints and longs are written as varints, so timestamps take 5 bytes and counters 1 byte</li>
+ *     <li>ids in the format of random UUIDs, which Keycloak uses for most of the ids, are written as 16 bytes instead
+ *     of 36 characters</li>
+ *     <li>enums are written as a single byte with the ordinal</li>
+ *     <li>null is distinguished from empty for strings, collections and enums</li>
+ * </ul>
+ * Strings shared by many sessions, like realm and client ids, role ids or note names, can be read interned, so sessions
+ * held by the cache share single instance of them.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class SessionMarshallUtil {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int NULL = 0;
+    private static final int UUID = 1;
+    private static final int STRING = 2;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    public static void writeVersion(ObjectOutput output, int version) throws IOException {
+        output.writeByte(version);
+    }
+
+    public static void readVersion(ObjectInput input, int expected) throws IOException {
+        int version = input.readUnsignedByte();
+        if (version != expected) {
+            throw new IOException("Unsupported version " + version + " of serialized session, expected " + expected);
+        }
+    }
+
+    public static void writeVarInt(ObjectOutput output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    public static int readVarInt(ObjectInput input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public static void writeVarLong(ObjectOutput output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    public static long readVarLong(ObjectInput input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varlong");
+    }
+
+    public static void writeString(ObjectOutput output, String value) throws IOException {
+        if (value == null) {
+            output.writeByte(NULL);
+        } else if (isUUID(value)) {
+            output.writeByte(UUID);
+            output.writeLong(parseHex(value, 0, 8) << 32 | parseHex(value, 9, 13) << 16 | parseHex(value, 14, 18));
+            output.writeLong(parseHex(value, 19, 23) << 48 | parseHex(value, 24, 36));
+        } else {
+            output.writeByte(STRING);
+            byte[] bytes = value.getBytes(UTF_8);
+            writeVarInt(output, bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    public static String readString(ObjectInput input) throws IOException {
+        int type = input.readUnsignedByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case UUID:
+                long most = input.readLong();
+                long least = input.readLong();
+                char[] chars = new char[36];
+                toHex(chars, 0, most >>> 32, 8);
+                chars[8] = '-';
+                toHex(chars, 9, most >>> 16, 4);
+                chars[13] = '-';
+                toHex(chars, 14, most, 4);
+                chars[18] = '-';
+                toHex(chars, 19, least >>> 48, 4);
+                chars[23] = '-';
+                toHex(chars, 24, least, 12);
+                return new String(chars);
+            case STRING:
+                byte[] bytes = new byte[readVarInt(input)];
+                input.readFully(bytes);
+                return new String(bytes, UTF_8);
+            default:
+                throw new IOException("Unknown string type " + type);
+        }
+    }
+
+    public static String readInternedString(ObjectInput input) throws IOException {
+        String value = readString(input);
+        return value != null ? value.intern() : null;
+    }
+
+    public static void writeEnum(ObjectOutput output, Enum<?> value) throws IOException {
+        output.writeByte(value != null ? value.ordinal() + 1 : 0);
+    }
+
+    public static <E extends Enum<E>> E readEnum(ObjectInput input, Class<E> type) throws IOException {
+        int ordinal = input.readUnsignedByte();
+        if (ordinal == 0) {
+            return null;
+        }
+        E[] values = type.getEnumConstants();
+        if (ordinal > values.length) {
+            throw new IOException("Unknown " + type.getSimpleName() + " " + (ordinal - 1));
+        }
+        return values[ordinal - 1];
+    }
+
+    public static void writeStringSet(ObjectOutput output, Set<String> set) throws IOException {
+        if (set == null) {
+            writeVarInt(output, 0);
+            return;
+        }
+        writeVarInt(output, set.size() + 1);
+        for (String value : set) {
+            writeString(output, value);
+        }
+    }
+
+    public static Set<String> readStringSet(ObjectInput input, boolean intern) throws IOException {
+        int size = readVarInt(input) - 1;
+        if (size < 0) {
+            return null;
+        }
+        Set<String> set = new HashSet<>(capacity(size));
+        for (int i = 0; i < size; i++) {
+            set.add(intern ? readInternedString(input) : readString(input));
+        }
+        return set;
+    }
+
+    public static void writeStringMap(ObjectOutput output, Map<String, String> map) throws IOException {
+        if (map == null) {
+            writeVarInt(output, 0);
+            return;
+        }
+        writeVarInt(output, map.size() + 1);
+        for (Map.Entry<String, String> e : map.entrySet()) {
+            writeString(output, e.getKey());
+            writeString(output, e.getValue());
+        }
+    }
+
+    /**
+     * Keys are read interned, values not
+     */
+    public static Map<String, String> readStringMap(ObjectInput input) throws IOException {
+        int size = readVarInt(input) - 1;
+        if (size < 0) {
+            return null;
+        }
+        Map<String, String> map = new HashMap<>(capacity(size));
+        for (int i = 0; i < size; i++) {
+            map.put(readInternedString(input), readString(input));
+        }
+        return map;
+    }
+
+    public static <E extends Enum<E>> void writeEnumMap(ObjectOutput output, Map<String, E> map) throws IOException {
+        if (map == null) {
+            writeVarInt(output, 0);
+            return;
+        }
+        writeVarInt(output, map.size() + 1);
+        for (Map.Entry<String, E> e : map.entrySet()) {
+            writeString(output, e.getKey());
+            writeEnum(output, e.getValue());
+        }
+    }
+
+    /**
+     * Keys are read interned
+     */
+    public static <E extends Enum<E>> Map<String, E> readEnumMap(ObjectInput input, Class<E> type) throws IOException {
+        int size = readVarInt(input) - 1;
+        if (size < 0) {
+            return null;
+        }
+        Map<String, E> map = new HashMap<>(capacity(size));
+        for (int i = 0; i < size; i++) {
+            map.put(readInternedString(input), readEnum(input, type));
+        }
+        return map;
+    }
+
+    private static int capacity(int size) {
+        return Math.max(size * 4 / 3 + 1, 16);
+    }
+
+    // Only lower case, so the string read back is always the same
+    private static boolean isUUID(String value) {
+        if (value.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = value.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') return false;
+            } else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseHex(String value, int start, int end) {
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            result = result << 4 | (c <= '9' ? c - '0' : c - 'a' + 10);
+        }
+        return result;
+    }
+
+    private static void toHex(char[] chars, int offset, long value, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            chars[offset + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+}
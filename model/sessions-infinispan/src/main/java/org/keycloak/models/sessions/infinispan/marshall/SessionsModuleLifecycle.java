@@ -0,0 +1,35 @@
+package org.keycloak.models.sessions.infinispan.marshall;
+
+import org.infinispan.commons.marshall.AdvancedExternalizer;
+import org.infinispan.configuration.global.GlobalConfiguration;
+import org.infinispan.factories.GlobalComponentRegistry;
+import org.infinispan.lifecycle.AbstractModuleLifecycle;
+
+import java.util.Map;
+
+/**
+ * Registers externalizers of session entities with cache managers started with this module on the classpath, so the
+ * entities are written with the externalizer id instead of the class name. Entities are also annotated with
+ * {@link org.infinispan.commons.marshall.SerializeWith}, so they use the same format in cache managers, which don't load
+ * this module (for example the one provided by the application server).
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class SessionsModuleLifecycle extends AbstractModuleLifecycle {
+
+    @Override
+    public void cacheManagerStarting(GlobalComponentRegistry gcr, GlobalConfiguration globalConfiguration) {
+        Map<Integer, AdvancedExternalizer<?>> externalizers = globalConfiguration.serialization().advancedExternalizers();
+        add(externalizers, new UserSessionEntityExternalizer());
+        add(externalizers, new UserSessionDeltaExternalizer());
+        add(externalizers, new ClientSessionEntityExternalizer());
+        add(externalizers, new LoginFailureEntityExternalizer());
+        add(externalizers, new LoginFailureKeyExternalizer());
+        add(externalizers, new SessionIndexEntityExternalizer());
+    }
+
+    private void add(Map<Integer, AdvancedExternalizer<?>> externalizers, AdvancedExternalizer<?> externalizer) {
+        externalizers.put(externalizer.getId(), externalizer);
+    }
+
+}
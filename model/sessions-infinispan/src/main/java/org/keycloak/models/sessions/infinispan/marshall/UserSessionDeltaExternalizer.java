@@ -0,0 +1,76 @@
+package org.keycloak.models.sessions.infinispan.marshall;
+
+import org.infinispan.commons.marshall.AbstractExternalizer;
+import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.sessions.infinispan.entities.UserSessionDelta;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import static org.keycloak.models.sessions.infinispan.marshall.SessionMarshallUtil.*;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class UserSessionDeltaExternalizer extends AbstractExternalizer<UserSessionDelta> {
+
+    private static final int VERSION = 1;
+
+    @Override
+    public Set<Class<? extends UserSessionDelta>> getTypeClasses() {
+        return Collections.<Class<? extends UserSessionDelta>>singleton(UserSessionDelta.class);
+    }
+
+    @Override
+    public Integer getId() {
+        return ExternalizerIds.USER_SESSION_DELTA;
+    }
+
+    @Override
+    public void writeObject(ObjectOutput output, UserSessionDelta delta) throws IOException {
+        writeVersion(output, VERSION);
+        writeString(output, delta.getId());
+        writeString(output, delta.getRealm());
+
+        Integer lastSessionRefresh = delta.getLastSessionRefresh();
+        output.writeBoolean(lastSessionRefresh != null);
+        if (lastSessionRefresh != null) {
+            writeVarInt(output, lastSessionRefresh);
+        }
+
+        output.writeBoolean(delta.isStateChanged());
+        if (delta.isStateChanged()) {
+            writeEnum(output, delta.getState());
+        }
+
+        writeStringMap(output, delta.getNotes());
+    }
+
+    @Override
+    public UserSessionDelta readObject(ObjectInput input) throws IOException {
+        readVersion(input, VERSION);
+        UserSessionDelta delta = new UserSessionDelta(readString(input), readInternedString(input));
+
+        if (input.readBoolean()) {
+            delta.setLastSessionRefresh(readVarInt(input));
+        }
+
+        if (input.readBoolean()) {
+            delta.setState(readEnum(input, UserSessionModel.State.class));
+        }
+
+        // Removed notes have null value
+        Map<String, String> notes = readStringMap(input);
+        if (notes != null) {
+            for (Map.Entry<String, String> e : notes.entrySet()) {
+                delta.setNote(e.getKey(), e.getValue());
+            }
+        }
+        return delta;
+    }
+
+}
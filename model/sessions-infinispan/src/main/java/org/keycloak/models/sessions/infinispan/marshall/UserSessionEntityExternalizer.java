@@ -0,0 +1,72 @@
+package org.keycloak.models.sessions.infinispan.marshall;
+
+import org.infinispan.commons.marshall.AbstractExternalizer;
+import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.sessions.infinispan.entities.UserSessionEntity;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.keycloak.models.sessions.infinispan.marshall.SessionMarshallUtil.*;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class UserSessionEntityExternalizer extends AbstractExternalizer<UserSessionEntity> {
+
+    private static final int VERSION = 1;
+
+    @Override
+    public Set<Class<? extends UserSessionEntity>> getTypeClasses() {
+        return Collections.<Class<? extends UserSessionEntity>>singleton(UserSessionEntity.class);
+    }
+
+    @Override
+    public Integer getId() {
+        return ExternalizerIds.USER_SESSION_ENTITY;
+    }
+
+    @Override
+    public void writeObject(ObjectOutput output, UserSessionEntity entity) throws IOException {
+        writeVersion(output, VERSION);
+        writeString(output, entity.getId());
+        writeString(output, entity.getRealm());
+        writeString(output, entity.getUser());
+        writeString(output, entity.getBrokerSessionId());
+        writeString(output, entity.getBrokerUserId());
+        writeString(output, entity.getLoginUsername());
+        writeString(output, entity.getIpAddress());
+        writeString(output, entity.getAuthMethod());
+        output.writeBoolean(entity.isRememberMe());
+        writeVarInt(output, entity.getStarted());
+        writeVarInt(output, entity.getLastSessionRefresh());
+        writeStringSet(output, entity.getClientSessions());
+        writeEnum(output, entity.getState());
+        writeStringMap(output, entity.getNotes());
+    }
+
+    @Override
+    public UserSessionEntity readObject(ObjectInput input) throws IOException {
+        readVersion(input, VERSION);
+        UserSessionEntity entity = new UserSessionEntity();
+        entity.setId(readString(input));
+        entity.setRealm(readInternedString(input));
+        entity.setUser(readString(input));
+        entity.setBrokerSessionId(readString(input));
+        entity.setBrokerUserId(readString(input));
+        entity.setLoginUsername(readString(input));
+        entity.setIpAddress(readString(input));
+        entity.setAuthMethod(readInternedString(input));
+        entity.setRememberMe(input.readBoolean());
+        entity.setStarted(readVarInt(input));
+        entity.setLastSessionRefresh(readVarInt(input));
+        entity.setClientSessions(readStringSet(input, false));
+        entity.setState(readEnum(input, UserSessionModel.State.class));
+        entity.setNotes(readStringMap(input));
+        return entity;
+    }
+
+}
@@ -0,0 +1,79 @@
+package org.keycloak.models.sessions.infinispan.entities;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.models.UserSessionModel;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class UserSessionDeltaTest {
+
+    @Test
+    public void testMerge() {
+        UserSessionEntity entity = new UserSessionEntity();
+        entity.setId("session");
+        entity.setRealm("realm");
+        entity.setStarted(100);
+        entity.setLastSessionRefresh(100);
+        entity.setClientSessions(new HashSet<String>());
+        entity.getClientSessions().add("client-session");
+
+        Map<String, String> notes = new HashMap<>();
+        notes.put("a", "1");
+        notes.put("b", "2");
+        entity.setNotes(notes);
+
+        UserSessionDelta delta = new UserSessionDelta("session", "realm");
+        delta.setLastSessionRefresh(200);
+        delta.setState(UserSessionModel.State.LOGGING_OUT);
+        delta.setNote("c", "3");
+        delta.removeNote("a");
+
+        Assert.assertSame(entity, delta.merge(entity));
+        Assert.assertEquals(100, entity.getStarted());
+        Assert.assertEquals(200, entity.getLastSessionRefresh());
+        Assert.assertEquals(UserSessionModel.State.LOGGING_OUT, entity.getState());
+        Assert.assertEquals(1, entity.getClientSessions().size());
+
+        Assert.assertEquals(2, entity.getNotes().size());
+        Assert.assertEquals("2", entity.getNotes().get("b"));
+        Assert.assertEquals("3", entity.getNotes().get("c"));
+
+        // Notes are copied, not modified
+        Assert.assertEquals(2, notes.size());
+        Assert.assertEquals("1", notes.get("a"));
+    }
+
+    @Test
+    public void testMergeWithoutEntity() {
+        UserSessionDelta delta = new UserSessionDelta("session", "realm");
+        delta.setLastSessionRefresh(200);
+
+        // Session removed concurrently is not recreated
+        Assert.assertNull(delta.merge(null));
+    }
+
+    @Test
+    public void testEntityDelta() {
+        UserSessionEntity entity = new UserSessionEntity();
+        entity.setId("session");
+        entity.setRealm("realm");
+        entity.setLastSessionRefresh(300);
+        entity.setState(UserSessionModel.State.LOGGED_IN);
+        entity.setNotes(new HashMap<String, String>());
+        entity.getNotes().put("a", "1");
+
+        UserSessionEntity other = new UserSessionEntity();
+        entity.delta().merge(other);
+
+        Assert.assertEquals(300, other.getLastSessionRefresh());
+        Assert.assertEquals(UserSessionModel.State.LOGGED_IN, other.getState());
+        Assert.assertEquals("1", other.getNotes().get("a"));
+    }
+
+}
@@ -0,0 +1,200 @@
+package org.keycloak.models.sessions.infinispan.marshall;
+
+import org.infinispan.commons.marshall.AdvancedExternalizer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.models.ClientSessionModel;
+import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.sessions.infinispan.entities.ClientSessionEntity;
+import org.keycloak.models.sessions.infinispan.entities.LoginFailureEntity;
+import org.keycloak.models.sessions.infinispan.entities.LoginFailureKey;
+import org.keycloak.models.sessions.infinispan.entities.SessionIndexEntity;
+import org.keycloak.models.sessions.infinispan.entities.UserSessionDelta;
+import org.keycloak.models.sessions.infinispan.entities.UserSessionEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.UUID;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class SessionExternalizersTest {
+
+    @Test
+    public void testStrings() throws Exception {
+        for (String value : new String[] { null, "", "master", "pässwörd€", UUID.randomUUID().toString(), "3BA0B3EA-4D4B-4E54-A5C2-2B5E5C8F1B7A", "ffffffff-ffff-ffff-ffff-ffffffffffff", "00000000-0000-0000-0000-000000000000" }) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream output = new ObjectOutputStream(bytes);
+            SessionMarshallUtil.writeString(output, value);
+            output.close();
+
+            ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            Assert.assertEquals(value, SessionMarshallUtil.readString(input));
+        }
+    }
+
+    @Test
+    public void testVarInts() throws Exception {
+        for (long value : new long[] { 0, 1, 127, 128, 1448000000, Integer.MAX_VALUE, -1, Long.MAX_VALUE, Long.MIN_VALUE }) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream output = new ObjectOutputStream(bytes);
+            SessionMarshallUtil.writeVarInt(output, (int) value);
+            SessionMarshallUtil.writeVarLong(output, value);
+            output.close();
+
+            ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            Assert.assertEquals((int) value, SessionMarshallUtil.readVarInt(input));
+            Assert.assertEquals(value, SessionMarshallUtil.readVarLong(input));
+        }
+    }
+
+    @Test
+    public void testUserSession() throws Exception {
+        UserSessionEntity entity = new UserSessionEntity();
+        entity.setId(UUID.randomUUID().toString());
+        entity.setRealm("test");
+        entity.setUser(UUID.randomUUID().toString());
+        entity.setLoginUsername("user");
+        entity.setIpAddress("127.0.0.1");
+        entity.setAuthMethod("openid-connect");
+        entity.setRememberMe(true);
+        entity.setStarted(1448000000);
+        entity.setLastSessionRefresh(1448000100);
+        entity.setClientSessions(new HashSet<String>());
+        entity.getClientSessions().add(UUID.randomUUID().toString());
+        entity.setState(UserSessionModel.State.LOGGED_IN);
+        entity.setNotes(new HashMap<String, String>());
+        entity.getNotes().put("note", "value");
+
+        UserSessionEntity read = copy(new UserSessionEntityExternalizer(), entity);
+        Assert.assertEquals(entity.getId(), read.getId());
+        Assert.assertEquals(entity.getRealm(), read.getRealm());
+        Assert.assertSame("test", read.getRealm());
+        Assert.assertEquals(entity.getUser(), read.getUser());
+        Assert.assertNull(read.getBrokerSessionId());
+        Assert.assertEquals(entity.getLoginUsername(), read.getLoginUsername());
+        Assert.assertEquals(entity.getIpAddress(), read.getIpAddress());
+        Assert.assertEquals(entity.getAuthMethod(), read.getAuthMethod());
+        Assert.assertTrue(read.isRememberMe());
+        Assert.assertEquals(entity.getStarted(), read.getStarted());
+        Assert.assertEquals(entity.getLastSessionRefresh(), read.getLastSessionRefresh());
+        Assert.assertEquals(entity.getClientSessions(), read.getClientSessions());
+        Assert.assertEquals(entity.getState(), read.getState());
+        Assert.assertEquals(entity.getNotes(), read.getNotes());
+    }
+
+    @Test
+    public void testClientSession() throws Exception {
+        ClientSessionEntity entity = new ClientSessionEntity();
+        entity.setId(UUID.randomUUID().toString());
+        entity.setRealm("test");
+        entity.setClient(UUID.randomUUID().toString());
+        entity.setUserSession(UUID.randomUUID().toString());
+        entity.setRedirectUri("http://localhost/app");
+        entity.setTimestamp(1448000000);
+        entity.setAction("CODE_TO_TOKEN");
+        entity.setRoles(new HashSet<String>());
+        entity.getRoles().add(UUID.randomUUID().toString());
+        entity.getAuthenticatorStatus().put(UUID.randomUUID().toString(), ClientSessionModel.ExecutionStatus.SUCCESS);
+        entity.getRequiredActions().add("UPDATE_PASSWORD");
+        entity.setNotes(new HashMap<String, String>());
+        entity.getNotes().put("iss", "http://localhost/auth/realms/test");
+
+        ClientSessionEntity read = copy(new ClientSessionEntityExternalizer(), entity);
+        Assert.assertEquals(entity.getId(), read.getId());
+        Assert.assertEquals(entity.getRealm(), read.getRealm());
+        Assert.assertEquals(entity.getClient(), read.getClient());
+        Assert.assertEquals(entity.getUserSession(), read.getUserSession());
+        Assert.assertNull(read.getAuthMethod());
+        Assert.assertEquals(entity.getRedirectUri(), read.getRedirectUri());
+        Assert.assertEquals(entity.getTimestamp(), read.getTimestamp());
+        Assert.assertEquals(entity.getAction(), read.getAction());
+        Assert.assertEquals(entity.getRoles(), read.getRoles());
+        Assert.assertNull(read.getProtocolMappers());
+        Assert.assertEquals(entity.getNotes(), read.getNotes());
+        Assert.assertNull(read.getUserSessionNotes());
+        Assert.assertEquals(entity.getAuthenticatorStatus(), read.getAuthenticatorStatus());
+        Assert.assertEquals(entity.getRequiredActions(), read.getRequiredActions());
+    }
+
+    @Test
+    public void testLoginFailure() throws Exception {
+        LoginFailureEntity entity = new LoginFailureEntity();
+        entity.setRealm("test");
+        entity.setUsername("user");
+        entity.setFailedLoginNotBefore(1448000000);
+        entity.setNumFailures(3);
+        entity.setLastFailure(1448000000123L);
+        entity.setLastIPFailure("127.0.0.1");
+
+        LoginFailureEntity read = copy(new LoginFailureEntityExternalizer(), entity);
+        Assert.assertEquals(entity.getRealm(), read.getRealm());
+        Assert.assertEquals(entity.getUsername(), read.getUsername());
+        Assert.assertEquals(entity.getFailedLoginNotBefore(), read.getFailedLoginNotBefore());
+        Assert.assertEquals(entity.getNumFailures(), read.getNumFailures());
+        Assert.assertEquals(entity.getLastFailure(), read.getLastFailure());
+        Assert.assertEquals(entity.getLastIPFailure(), read.getLastIPFailure());
+
+        LoginFailureKey key = new LoginFailureKey("test", "user");
+        Assert.assertEquals(key, copy(new LoginFailureKeyExternalizer(), key));
+    }
+
+    @Test
+    public void testUserSessionDelta() throws Exception {
+        UserSessionDelta delta = new UserSessionDelta(UUID.randomUUID().toString(), "test");
+        delta.setLastSessionRefresh(1448000100);
+        delta.setNote("added", "value");
+        delta.removeNote("removed");
+
+        UserSessionDelta read = copy(new UserSessionDeltaExternalizer(), delta);
+        Assert.assertEquals(delta.getId(), read.getId());
+        Assert.assertEquals(delta.getRealm(), read.getRealm());
+        Assert.assertEquals(delta.getLastSessionRefresh(), read.getLastSessionRefresh());
+        Assert.assertFalse(read.isStateChanged());
+        Assert.assertEquals(delta.getNotes(), read.getNotes());
+    }
+
+    @Test
+    public void testSessionIndex() throws Exception {
+        SessionIndexEntity index = new SessionIndexEntity();
+        index.setId(SessionIndexEntity.userKey("test", UUID.randomUUID().toString()));
+        index.setRealm("test");
+        index.getSessions().put(UUID.randomUUID().toString(), 1448000000);
+        index.getSessions().put("session", 1448000100);
+
+        SessionIndexEntity read = copy(new SessionIndexEntityExternalizer(), index);
+        Assert.assertEquals(index, read);
+        Assert.assertSame("test", read.getRealm());
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsupportedVersion() throws Exception {
+        ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(serialize(new byte[] { 99 })));
+        new UserSessionEntityExternalizer().readObject(input);
+    }
+
+    private static <T> T copy(AdvancedExternalizer<T> externalizer, T object) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        externalizer.writeObject(output, object);
+        output.close();
+
+        ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        return externalizer.readObject(input);
+    }
+
+    private static byte[] serialize(byte[] raw) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.write(raw);
+        output.close();
+        return bytes.toByteArray();
+    }
+
+}
@@ -6,12 +6,14 @@ import org.keycloak.saml.common.constants.JBossSAMLConstants;
 import org.keycloak.saml.common.constants.JBossSAMLURIConstants;
 import org.keycloak.saml.common.exceptions.ConfigurationException;
 import org.keycloak.saml.common.exceptions.ProcessingException;
+import org.keycloak.saml.common.util.Base64;
+import org.keycloak.saml.processing.api.saml.v2.response.SAML2Response;
 import org.keycloak.saml.processing.api.saml.v2.sig.SAML2Signature;
 import org.keycloak.saml.processing.core.saml.v2.util.DocumentUtil;
 import org.keycloak.saml.processing.core.util.XMLEncryptionUtil;
-import org.keycloak.saml.processing.web.util.PostBindingUtil;
 import org.keycloak.saml.processing.web.util.RedirectBindingUtil;
 import org.keycloak.common.util.KeycloakUriBuilder;
+import org.keycloak.dom.saml.v2.protocol.StatusResponseType;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -20,7 +22,9 @@ import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 import javax.xml.crypto.dsig.CanonicalizationMethod;
 import javax.xml.namespace.QName;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.security.KeyPair;
 import java.security.PrivateKey;
@@ -130,8 +134,7 @@ public class BaseSAML2BindingBuilder<T extends BaseSAML2BindingBuilder> {
         }
 
         public String encoded() throws ProcessingException, ConfigurationException, IOException {
-            byte[] responseBytes = DocumentUtil.getDocumentAsString(document).getBytes("UTF-8");
-            return PostBindingUtil.base64Encode(new String(responseBytes));
+            return postBindingEncoded(document);
         }
         public Document getDocument() {
             return document;
@@ -148,6 +151,32 @@ public class BaseSAML2BindingBuilder<T extends BaseSAML2BindingBuilder> {
     }
 
 
+    /**
+     * POST binding of unsigned and unencrypted responses. The response is written straight from the model to the output
+     * stream, without building a DOM document and copies of the response as strings.
+     */
+    public static class BaseStreamingPostBindingBuilder {
+        protected StatusResponseType response;
+        protected BaseSAML2BindingBuilder builder;
+
+        public BaseStreamingPostBindingBuilder(BaseSAML2BindingBuilder builder, StatusResponseType response) {
+            if (builder.requiresDocument()) {
+                throw new IllegalStateException("Signed or encrypted response must be built as document");
+            }
+            this.builder = builder;
+            this.response = response;
+        }
+
+        public StatusResponseType getResponse() {
+            return response;
+        }
+
+        public void writeHtmlResponse(String actionUrl, OutputStream os) throws ProcessingException, IOException {
+            builder.writeHtmlPostResponse(response, actionUrl, os);
+        }
+    }
+
+
     public static class BaseRedirectBindingBuilder {
         protected Document document;
         protected BaseSAML2BindingBuilder builder;
@@ -192,6 +221,17 @@ public class BaseSAML2BindingBuilder<T extends BaseSAML2BindingBuilder> {
 
     }
 
+    public BaseStreamingPostBindingBuilder postBinding(StatusResponseType response) {
+        return new BaseStreamingPostBindingBuilder(this, response);
+    }
+
+    /**
+     * @return true if the document is signed or encrypted, so it can't be streamed with {@link #postBinding(StatusResponseType)}
+     */
+    public boolean requiresDocument() {
+        return sign || signAssertions || encrypt;
+    }
+
 
 
     public String getSAMLNSPrefix(Document samlResponseDocument) {
@@ -275,15 +315,40 @@ public class BaseSAML2BindingBuilder<T extends BaseSAML2BindingBuilder> {
 
 
     public String buildHtmlPostResponse(Document responseDoc, String actionUrl, boolean asRequest) throws ProcessingException, ConfigurationException, IOException {
-        byte[] responseBytes = org.keycloak.saml.common.util.DocumentUtil.getDocumentAsString(responseDoc).getBytes("UTF-8");
-        String samlResponse = PostBindingUtil.base64Encode(new String(responseBytes));
+        String samlResponse = postBindingEncoded(responseDoc);
 
         return buildHtml(samlResponse, actionUrl, asRequest);
     }
 
+    public void writeHtmlPostResponse(StatusResponseType response, String actionUrl, OutputStream os) throws ProcessingException, IOException {
+        BufferedOutputStream buffered = new BufferedOutputStream(os);
+        buffered.write(buildHtmlStart(actionUrl, false).getBytes("UTF-8"));
+
+        // Not closed, as that would close the response stream
+        Base64.OutputStream base64 = new Base64.OutputStream(buffered, Base64.ENCODE | Base64.DONT_BREAK_LINES);
+        new SAML2Response().marshall(response, base64);
+        base64.flushBase64();
+
+        buffered.write(buildHtmlEnd().getBytes("UTF-8"));
+        buffered.flush();
+    }
+
     public String buildHtml(String samlResponse, String actionUrl, boolean asRequest) {
         StringBuilder builder = new StringBuilder();
 
+        builder.append(buildHtmlStart(actionUrl, asRequest));
+        builder.append(samlResponse);
+        builder.append(buildHtmlEnd());
+
+        return builder.toString();
+    }
+
+    /**
+     * HTML of the POST binding form up to the value of the SAML message input
+     */
+    protected String buildHtmlStart(String actionUrl, boolean asRequest) {
+        StringBuilder builder = new StringBuilder();
+
         String key = GeneralConstants.SAML_RESPONSE_KEY;
 
         if (asRequest) {
@@ -298,7 +363,18 @@ public class BaseSAML2BindingBuilder<T extends BaseSAML2BindingBuilder> {
         builder.append("<BODY Onload=\"document.forms[0].submit()\">");
 
         builder.append("<FORM METHOD=\"POST\" ACTION=\"" + actionUrl + "\">");
-        builder.append("<INPUT TYPE=\"HIDDEN\" NAME=\"" + key + "\"" + " VALUE=\"" + samlResponse + "\"/>");
+        builder.append("<INPUT TYPE=\"HIDDEN\" NAME=\"" + key + "\"" + " VALUE=\"");
+
+        return builder.toString();
+    }
+
+    /**
+     * HTML of the POST binding form after the value of the SAML message input
+     */
+    protected String buildHtmlEnd() {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append("\"/>");
 
         if (isNotNull(relayState)) {
             builder.append("<INPUT TYPE=\"HIDDEN\" NAME=\"RelayState\" " + "VALUE=\"" + escapeAttribute(relayState) + "\"/>");
@@ -314,6 +390,11 @@ public class BaseSAML2BindingBuilder<T extends BaseSAML2BindingBuilder> {
         return builder.toString();
     }
 
+    protected static String postBindingEncoded(Document document) throws ProcessingException, ConfigurationException, IOException {
+        byte[] responseBytes = org.keycloak.saml.common.util.DocumentUtil.getDocumentAsString(document).getBytes("UTF-8");
+        return Base64.encodeBytes(responseBytes, Base64.DONT_BREAK_LINES);
+    }
+
     public String base64Encoded(Document document) throws ConfigurationException, ProcessingException, IOException  {
         String documentAsString = DocumentUtil.getDocumentAsString(document);
         logger.debugv("saml docment: {0}", documentAsString);
@@ -61,6 +61,8 @@ public class StaxParserUtil {
 
     private static final PicketLinkLogger logger = PicketLinkLoggerFactory.getLogger();
 
+    private static volatile XMLInputFactory xmlInputFactory;
+
     public static void validate(InputStream doc, InputStream sch) throws ParsingException {
         try {
             XMLEventReader xmlEventReader = StaxParserUtil.getXMLEventReader(doc);
@@ -242,16 +244,9 @@ public class StaxParserUtil {
      * @return
      */
     public static XMLEventReader getXMLEventReader(InputStream is) {
-        XMLInputFactory xmlInputFactory = null;
         XMLEventReader xmlEventReader = null;
         try {
-            xmlInputFactory = getXMLInputFactory();
-            xmlInputFactory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
-            xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
-            xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
-            xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
-
-            xmlEventReader = xmlInputFactory.createXMLEventReader(is);
+            xmlEventReader = getXMLInputFactory().createXMLEventReader(is);
         } catch (Exception ex) {
             throw new RuntimeException(ex);
         }
@@ -521,7 +516,27 @@ public class StaxParserUtil {
             throw new RuntimeException(logger.parserExpectedEndTag("</" + tag + ">.  Found </" + elementTag + ">"));
     }
 
-    private static XMLInputFactory getXMLInputFactory() {
+    /**
+     * Get the JAXP {@link XMLInputFactory}, configured to not resolve external entities. The factory is configured only
+     * once and shared between different threads, as creating readers from a configured factory is thread-safe.
+     *
+     * @return
+     */
+    public static XMLInputFactory getXMLInputFactory() {
+        XMLInputFactory factory = xmlInputFactory;
+        if (factory == null) {
+            synchronized (StaxParserUtil.class) {
+                factory = xmlInputFactory;
+                if (factory == null) {
+                    factory = createXMLInputFactory();
+                    xmlInputFactory = factory;
+                }
+            }
+        }
+        return factory;
+    }
+
+    private static XMLInputFactory createXMLInputFactory() {
         boolean tccl_jaxp = SystemPropertiesUtil.getSystemProperty(GeneralConstants.TCCL_JAXP, "false")
                 .equalsIgnoreCase("true");
         ClassLoader prevTCCL = SecurityActions.getTCCL();
@@ -529,11 +544,16 @@ public class StaxParserUtil {
             if (tccl_jaxp) {
                 SecurityActions.setTCCL(StaxParserUtil.class.getClassLoader());
             }
-            return XMLInputFactory.newInstance();
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+            factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+            factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+            return factory;
         } finally {
             if (tccl_jaxp) {
                 SecurityActions.setTCCL(prevTCCL);
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -47,6 +47,9 @@ public class StaxUtil {
 
     private static final PicketLinkLogger logger = PicketLinkLoggerFactory.getLogger();
 
+    // Writers created by the factory aren't thread-safe, but the factory itself is
+    private static volatile XMLOutputFactory xmlOutputFactory;
+
     private static ThreadLocal<Stack<String>> registeredNSStack = new ThreadLocal<Stack<String>>();
 
     /**
@@ -430,6 +433,20 @@ public class StaxUtil {
     }
 
     private static XMLOutputFactory getXMLOutputFactory() {
+        XMLOutputFactory factory = xmlOutputFactory;
+        if (factory == null) {
+            synchronized (StaxUtil.class) {
+                factory = xmlOutputFactory;
+                if (factory == null) {
+                    factory = createXMLOutputFactory();
+                    xmlOutputFactory = factory;
+                }
+            }
+        }
+        return factory;
+    }
+
+    private static XMLOutputFactory createXMLOutputFactory() {
         boolean tccl_jaxp = SystemPropertiesUtil.getSystemProperty(GeneralConstants.TCCL_JAXP, "false")
                 .equalsIgnoreCase("true");
         ClassLoader prevTCCL = SecurityActions.getTCCL();
@@ -444,4 +461,4 @@ public class StaxUtil {
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,44 @@
+package org.keycloak.saml.common.util;
+
+/**
+ * Keeps objects, which are expensive to create and not thread-safe, per thread. Caching is disabled by default, because
+ * saml-core is loaded by adapters too. Values held by the threads of the container would keep the classloader of an
+ * undeployed application. Server, which classloader lives as long as the threads, enables it with
+ * {@link #setEnabled(boolean)}.
+ * <p>
+ * When caching is disabled, {@link #get()} always returns null and {@link #set(Object)} does nothing, so callers create
+ * a new instance every time.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class ThreadLocalCache<T> {
+
+    private static volatile boolean enabled;
+
+    private final ThreadLocal<T> values = new ThreadLocal<T>();
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        ThreadLocalCache.enabled = enabled;
+    }
+
+    /**
+     * @return value cached for the current thread or null if there's none or caching is disabled
+     */
+    public T get() {
+        if (!enabled) {
+            return null;
+        }
+        return values.get();
+    }
+
+    public void set(T value) {
+        if (enabled) {
+            values.set(value);
+        }
+    }
+
+}
@@ -66,23 +66,32 @@ public class TransformerUtil {
 
     private static final PicketLinkLogger logger = PicketLinkLoggerFactory.getLogger();
 
-    private static TransformerFactory transformerFactory;
+    private static volatile TransformerFactory transformerFactory;
+
+    // Transformer isn't thread-safe, but can be reused by the same thread after reset()
+    private static final ThreadLocalCache<Transformer> transformers = new ThreadLocalCache<Transformer>();
 
     /**
-     * Get the Default Transformer
+     * Get the Default Transformer. If {@link ThreadLocalCache} is enabled, the transformer is bound to the current thread
+     * and reset before it's returned, so it must be used only until the next call of this method on the same thread.
      *
      * @return
      *
      * @throws org.keycloak.saml.common.exceptions.ConfigurationException
      */
     public static Transformer getTransformer() throws ConfigurationException {
-        Transformer transformer;
-        try {
-            transformer = getTransformerFactory().newTransformer();
-        } catch (TransformerConfigurationException e) {
-            throw logger.configurationError(e);
-        } catch (TransformerFactoryConfigurationError e) {
-            throw logger.configurationError(e);
+        Transformer transformer = transformers.get();
+        if (transformer == null) {
+            try {
+                transformer = getTransformerFactory().newTransformer();
+            } catch (TransformerConfigurationException e) {
+                throw logger.configurationError(e);
+            } catch (TransformerFactoryConfigurationError e) {
+                throw logger.configurationError(e);
+            }
+            transformers.set(transformer);
+        } else {
+            transformer.reset();
         }
 
         transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
@@ -100,23 +109,30 @@ public class TransformerUtil {
      * @throws TransformerFactoryConfigurationError
      */
     public static TransformerFactory getTransformerFactory() throws TransformerFactoryConfigurationError {
-        if (transformerFactory == null) {
-            boolean tccl_jaxp = SystemPropertiesUtil.getSystemProperty(GeneralConstants.TCCL_JAXP, "false")
-                    .equalsIgnoreCase("true");
-            ClassLoader prevTCCL = SecurityActions.getTCCL();
-            try {
-                if (tccl_jaxp) {
-                    SecurityActions.setTCCL(TransformerUtil.class.getClassLoader());
-                }
-                transformerFactory = TransformerFactory.newInstance();
-            } finally {
-                if (tccl_jaxp) {
-                    SecurityActions.setTCCL(prevTCCL);
+        TransformerFactory factory = transformerFactory;
+        if (factory == null) {
+            synchronized (TransformerUtil.class) {
+                factory = transformerFactory;
+                if (factory == null) {
+                    boolean tccl_jaxp = SystemPropertiesUtil.getSystemProperty(GeneralConstants.TCCL_JAXP, "false")
+                            .equalsIgnoreCase("true");
+                    ClassLoader prevTCCL = SecurityActions.getTCCL();
+                    try {
+                        if (tccl_jaxp) {
+                            SecurityActions.setTCCL(TransformerUtil.class.getClassLoader());
+                        }
+                        factory = TransformerFactory.newInstance();
+                        transformerFactory = factory;
+                    } finally {
+                        if (tccl_jaxp) {
+                            SecurityActions.setTCCL(prevTCCL);
+                        }
+                    }
                 }
             }
         }
 
-        return transformerFactory;
+        return factory;
     }
 
     /**
@@ -502,8 +502,21 @@ public class SAML2Response {
     public Document convert(StatusResponseType responseType) throws ProcessingException, ConfigurationException,
             ParsingException {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        marshall(responseType, bos);
 
-        SAMLResponseWriter writer = new SAMLResponseWriter(StaxUtil.getXMLStreamWriter(bos));
+        return DocumentUtil.getDocument(new ByteArrayInputStream(bos.toByteArray()));
+    }
+
+    /**
+     * Marshall a SAML2 Response or a LogoutResponse to the output stream without building a {@link Document}
+     *
+     * @param responseType
+     * @param os
+     *
+     * @throws ProcessingException
+     */
+    public void marshall(StatusResponseType responseType, OutputStream os) throws ProcessingException {
+        SAMLResponseWriter writer = new SAMLResponseWriter(StaxUtil.getXMLStreamWriter(os));
 
         if (responseType instanceof ResponseType) {
             ResponseType response = (ResponseType) responseType;
@@ -511,8 +524,6 @@ public class SAML2Response {
         } else {
             writer.write(responseType, new QName(PROTOCOL_NSURI.get(), JBossSAMLConstants.LOGOUT_RESPONSE.get(), "samlp"));
         }
-
-        return DocumentUtil.getDocument(new ByteArrayInputStream(bos.toByteArray()));
     }
 
     /**
@@ -23,6 +23,7 @@ import org.keycloak.saml.common.constants.GeneralConstants;
 import org.keycloak.saml.common.exceptions.ConfigurationException;
 import org.keycloak.saml.common.exceptions.ParsingException;
 import org.keycloak.saml.common.util.SystemPropertiesUtil;
+import org.keycloak.saml.common.util.ThreadLocalCache;
 
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeConstants;
@@ -42,6 +43,9 @@ public class XMLTimeUtil {
 
     private static final PicketLinkLogger logger = PicketLinkLoggerFactory.getLogger();
 
+    // DatatypeFactory isn't guaranteed to be thread-safe, so every thread reuses its own instance
+    private static final ThreadLocalCache<DatatypeFactory> datatypeFactories = new ThreadLocalCache<DatatypeFactory>();
+
     /**
      * Add additional time in miliseconds
      *
@@ -57,7 +61,7 @@ public class XMLTimeUtil {
 
         Duration duration;
         try {
-            duration = newDatatypeFactory().newDuration(milis);
+            duration = getDatatypeFactory().newDuration(milis);
         } catch (DatatypeConfigurationException e) {
             throw logger.configurationError(e);
         }
@@ -96,7 +100,7 @@ public class XMLTimeUtil {
         TimeZone tz = TimeZone.getTimeZone(timezone);
         DatatypeFactory dtf;
         try {
-            dtf = newDatatypeFactory();
+            dtf = getDatatypeFactory();
         } catch (DatatypeConfigurationException e) {
             throw logger.configurationError(e);
         }
@@ -192,7 +196,7 @@ public class XMLTimeUtil {
         DatatypeFactory factory = null;
 
         try {
-            factory = newDatatypeFactory();
+            factory = getDatatypeFactory();
         } catch (DatatypeConfigurationException e) {
             throw logger.parserError(e);
         }
@@ -221,7 +225,7 @@ public class XMLTimeUtil {
     public static XMLGregorianCalendar parse(String timeString) throws ParsingException {
         DatatypeFactory factory = null;
         try {
-            factory = newDatatypeFactory();
+            factory = getDatatypeFactory();
         } catch (DatatypeConfigurationException e) {
             throw logger.parserError(e);
         }
@@ -251,4 +255,13 @@ public class XMLTimeUtil {
             }
         }
     }
-}
\ No newline at end of file
+
+    private static DatatypeFactory getDatatypeFactory() throws DatatypeConfigurationException {
+        DatatypeFactory factory = datatypeFactories.get();
+        if (factory == null) {
+            factory = newDatatypeFactory();
+            datatypeFactories.set(factory);
+        }
+        return factory;
+    }
+}
@@ -27,6 +27,7 @@ import org.keycloak.saml.common.util.Base64;
 import org.keycloak.saml.common.util.DocumentUtil;
 import org.keycloak.saml.common.util.StringUtil;
 import org.keycloak.saml.common.util.SystemPropertiesUtil;
+import org.keycloak.saml.common.util.ThreadLocalCache;
 import org.keycloak.saml.common.util.TransformerUtil;
 import org.keycloak.dom.xmlsec.w3.xmldsig.DSAKeyValueType;
 import org.keycloak.dom.xmlsec.w3.xmldsig.KeyValueType;
@@ -79,8 +80,12 @@ import java.security.cert.X509Certificate;
 import java.security.interfaces.DSAPublicKey;
 import java.security.interfaces.RSAPublicKey;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Utility for XML Signature <b>Note:</b> You can change the canonicalization method type by using the system property
@@ -110,6 +115,8 @@ public class XMLSignatureUtil {
 
     private static XMLSignatureFactory fac = getXMLSignatureFactory();
 
+    private static final ThreadLocalCache<SignatureTemplates> signatureTemplates = new ThreadLocalCache<SignatureTemplates>();
+
     /**
      * By default, we include the keyinfo in the signature
      */
@@ -308,7 +315,9 @@ public class XMLSignatureUtil {
     public static Document sign(Document doc, KeyPair keyPair, String digestMethod, String signatureMethod, String referenceURI,
                                 X509Certificate x509Certificate, String canonicalizationMethodType)
             throws GeneralSecurityException, MarshalException, XMLSignatureException {
-        logger.trace("Document to be signed=" + DocumentUtil.asString(doc));
+        if (logger.isTraceEnabled()) {
+            logger.trace("Document to be signed=" + DocumentUtil.asString(doc));
+        }
         PrivateKey signingKey = keyPair.getPrivate();
         PublicKey publicKey = keyPair.getPublic();
 
@@ -338,7 +347,9 @@ public class XMLSignatureUtil {
         String referenceURI = dto.getReferenceURI();
         String signatureMethod = dto.getSignatureMethod();
 
-        logger.trace("Document to be signed=" + DocumentUtil.asString(doc));
+        if (logger.isTraceEnabled()) {
+            logger.trace("Document to be signed=" + DocumentUtil.asString(doc));
+        }
 
         PrivateKey signingKey = keyPair.getPrivate();
         PublicKey publicKey = keyPair.getPublic();
@@ -577,7 +588,13 @@ public class XMLSignatureUtil {
             throws GeneralSecurityException, MarshalException, XMLSignatureException {
         dsc.setDefaultNamespacePrefix("dsig");
 
-        DigestMethod digestMethodObj = fac.newDigestMethod(digestMethod, null);
+        SignatureTemplates templates = signatureTemplates.get();
+        if (templates == null) {
+            templates = new SignatureTemplates();
+            signatureTemplates.set(templates);
+        }
+
+        // Transforms and canonicalization method keep the DOM elements they were marshalled to, so they can't be reused
         Transform transform1 = fac.newTransform(Transform.ENVELOPED, (TransformParameterSpec) null);
         Transform transform2 = fac.newTransform("http://www.w3.org/2001/10/xml-exc-c14n#", (TransformParameterSpec) null);
 
@@ -585,18 +602,17 @@ public class XMLSignatureUtil {
         transformList.add(transform1);
         transformList.add(transform2);
 
-        Reference ref = fac.newReference(referenceURI, digestMethodObj, transformList, null, null);
+        Reference ref = fac.newReference(referenceURI, templates.getDigestMethod(digestMethod), transformList, null, null);
 
         CanonicalizationMethod canonicalizationMethod = fac.newCanonicalizationMethod(canonicalizationMethodType,
                 (C14NMethodParameterSpec) null);
 
         List<Reference> referenceList = Collections.singletonList(ref);
-        SignatureMethod signatureMethodObj = fac.newSignatureMethod(signatureMethod, null);
-        SignedInfo si = fac.newSignedInfo(canonicalizationMethod, signatureMethodObj, referenceList);
+        SignedInfo si = fac.newSignedInfo(canonicalizationMethod, templates.getSignatureMethod(signatureMethod), referenceList);
 
         KeyInfo ki = null;
         if (includeKeyInfoInSignature) {
-            ki = createKeyInfo(publicKey, x509Certificate);
+            ki = templates.getKeyInfo(publicKey, x509Certificate);
         }
         XMLSignature signature = fac.newXMLSignature(si, ki);
 
@@ -627,4 +643,51 @@ public class XMLSignatureUtil {
         }
         return keyInfo;
     }
-}
\ No newline at end of file
+
+    /**
+     * Parts of SignedInfo and KeyInfo, which are the same for all signatures with the same algorithms and keys. They're
+     * kept per thread, as the signature method keeps the JCA signature it used, so it can't be shared by threads.
+     */
+    private static class SignatureTemplates {
+
+        private static final int MAX_KEY_INFOS = 16;
+
+        private final Map<String, DigestMethod> digestMethods = new HashMap<String, DigestMethod>();
+        private final Map<String, SignatureMethod> signatureMethods = new HashMap<String, SignatureMethod>();
+
+        private final Map<List<Object>, KeyInfo> keyInfos = new LinkedHashMap<List<Object>, KeyInfo>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, KeyInfo> eldest) {
+                return size() > MAX_KEY_INFOS;
+            }
+        };
+
+        private DigestMethod getDigestMethod(String algorithm) throws GeneralSecurityException {
+            DigestMethod digestMethod = digestMethods.get(algorithm);
+            if (digestMethod == null) {
+                digestMethod = fac.newDigestMethod(algorithm, null);
+                digestMethods.put(algorithm, digestMethod);
+            }
+            return digestMethod;
+        }
+
+        private SignatureMethod getSignatureMethod(String algorithm) throws GeneralSecurityException {
+            SignatureMethod signatureMethod = signatureMethods.get(algorithm);
+            if (signatureMethod == null) {
+                signatureMethod = fac.newSignatureMethod(algorithm, null);
+                signatureMethods.put(algorithm, signatureMethod);
+            }
+            return signatureMethod;
+        }
+
+        private KeyInfo getKeyInfo(PublicKey publicKey, X509Certificate x509Certificate) throws KeyException {
+            List<Object> key = Arrays.<Object>asList(publicKey, x509Certificate);
+            KeyInfo keyInfo = keyInfos.get(key);
+            if (keyInfo == null) {
+                keyInfo = createKeyInfo(publicKey, x509Certificate);
+                keyInfos.put(key, keyInfo);
+            }
+            return keyInfo;
+        }
+    }
+}
@@ -45,6 +45,10 @@ import static org.keycloak.saml.common.util.StringUtil.isNotNull;
 /**
  * Signature Support for the HTTP/Redirect binding
  *
+ * <p>Keycloak itself doesn't use this class, redirect binding is signed by
+ * {@link org.keycloak.saml.BaseSAML2BindingBuilder#generateRedirectUri(String, String, Document)}. The signature covers
+ * the query string only, so there is no XML signature template to reuse here.</p>
+ *
  * @author Anil.Saldhana@redhat.com
  * @since Dec 16, 2008
  */
@@ -1,5 +1,6 @@
 package org.keycloak.protocol.saml;
 
+import org.keycloak.dom.saml.v2.protocol.StatusResponseType;
 import org.keycloak.saml.BaseSAML2BindingBuilder;
 import org.keycloak.saml.common.exceptions.ConfigurationException;
 import org.keycloak.saml.common.exceptions.ProcessingException;
@@ -8,6 +9,7 @@ import org.w3c.dom.Document;
 import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
 
@@ -37,6 +39,25 @@ public class JaxrsSAML2BindingBuilder extends BaseSAML2BindingBuilder<JaxrsSAML2
 
     }
 
+    public static class StreamingPostBindingBuilder extends BaseStreamingPostBindingBuilder {
+        public StreamingPostBindingBuilder(JaxrsSAML2BindingBuilder builder, StatusResponseType response) {
+            super(builder, response);
+        }
+
+        /**
+         * The response is written before the 200 status is returned, so failure to marshal it can still be reported with
+         * an error page instead of a truncated form.
+         */
+        public Response response(String actionUrl) throws ProcessingException, IOException {
+            ByteArrayOutputStream html = new ByteArrayOutputStream();
+            writeHtmlResponse(actionUrl, html);
+
+            return Response.ok(html.toByteArray(), MediaType.TEXT_HTML_TYPE)
+                    .header("Pragma", "no-cache")
+                    .header("Cache-Control", "no-cache, no-store").build();
+        }
+    }
+
     public static class RedirectBindingBuilder extends BaseRedirectBindingBuilder {
         public RedirectBindingBuilder(JaxrsSAML2BindingBuilder builder, Document document) throws ProcessingException {
             super(builder, document);
@@ -70,6 +91,10 @@ public class JaxrsSAML2BindingBuilder extends BaseSAML2BindingBuilder<JaxrsSAML2
         return new PostBindingBuilder(this, document);
     }
 
+    public StreamingPostBindingBuilder postBinding(StatusResponseType response) {
+        return new StreamingPostBindingBuilder(this, response);
+    }
+
 
 
 
@@ -4,6 +4,7 @@ import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.message.BasicNameValuePair;
@@ -36,6 +37,7 @@ import org.keycloak.saml.common.constants.JBossSAMLURIConstants;
 import org.keycloak.saml.common.exceptions.ConfigurationException;
 import org.keycloak.saml.common.exceptions.ParsingException;
 import org.keycloak.saml.common.exceptions.ProcessingException;
+import org.keycloak.services.managers.BackchannelLogoutDispatcher;
 import org.keycloak.services.managers.ClientSessionCode;
 import org.keycloak.services.managers.ResourceAdminManager;
 import org.keycloak.services.messages.Messages;
@@ -53,12 +55,15 @@ import java.io.InputStream;
 import java.net.URI;
 import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
@@ -331,13 +336,12 @@ public class SamlProtocol implements LoginProtocol {
         }
 
 
-        Document samlDocument = null;
+        ResponseType samlModel = null;
         try {
-            ResponseType samlModel = builder.buildModel();
+            samlModel = builder.buildModel();
             transformAttributeStatement(attributeStatementMappers, samlModel, session, userSession, clientSession);
             populateRoles(roleListMapper, samlModel, session, userSession, clientSession);
             samlModel = transformLoginResponse(loginResponseMappers, samlModel, session, userSession, clientSession);
-            samlDocument = builder.buildDocument(samlModel);
         } catch (Exception e) {
             logger.error("failed", e);
             return ErrorPage.error(session, Messages.FAILED_TO_PROCESS_RESPONSE);
@@ -375,6 +379,12 @@ public class SamlProtocol implements LoginProtocol {
             bindingBuilder.encrypt(publicKey);
         }
         try {
+            // DOM is needed only for XML signatures and encryption, otherwise POST binding writes the response from the model
+            if (isPostBinding(clientSession) && !bindingBuilder.requiresDocument()) {
+                return bindingBuilder.postBinding(samlModel).response(redirectUri);
+            }
+
+            Document samlDocument = builder.buildDocument(samlModel);
             if (isPostBinding(clientSession)) {
                 return bindingBuilder.postBinding(samlDocument).response(redirectUri);
             } else {
@@ -584,7 +594,21 @@ public class SamlProtocol implements LoginProtocol {
         }
 
 
-        HttpClient httpClient = session.getProvider(HttpClientProvider.class).getHttpClient();
+        // Request is created on the calling thread, only the http request is sent by the dispatcher
+        final HttpClient httpClient = session.getProvider(HttpClientProvider.class).getHttpClient();
+        final RequestConfig requestConfig = BackchannelLogoutDispatcher.getRequestConfig();
+        final String url = logoutUrl;
+        final String samlRequest = logoutRequestString;
+        Future<Boolean> result = BackchannelLogoutDispatcher.submit(realm.getName(), client.getClientId(), new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return sendLogoutRequest(httpClient, requestConfig, url, samlRequest);
+            }
+        });
+        BackchannelLogoutDispatcher.await(Collections.singletonList(result));
+    }
+
+    private static boolean sendLogoutRequest(HttpClient httpClient, RequestConfig requestConfig, String logoutUrl, String logoutRequestString) {
         for (int i = 0; i < 2; i++) { // follow redirects once
             try {
                 List<NameValuePair> formparams = new ArrayList<NameValuePair>();
@@ -592,6 +616,9 @@ public class SamlProtocol implements LoginProtocol {
                 formparams.add(new BasicNameValuePair("BACK_CHANNEL_LOGOUT", "BACK_CHANNEL_LOGOUT")); // for Picketlink todo remove this
                 UrlEncodedFormEntity form = new UrlEncodedFormEntity(formparams, "UTF-8");
                 HttpPost post = new HttpPost(logoutUrl);
+                if (requestConfig != null) {
+                    post.setConfig(requestConfig);
+                }
                 post.setEntity(form);
                 HttpResponse response = httpClient.execute(post);
                 try {
@@ -604,6 +631,7 @@ public class SamlProtocol implements LoginProtocol {
                             continue;
                         }
                     }
+                    return status < 400;
                 } finally {
                     HttpEntity entity = response.getEntity();
                     if (entity != null) {
@@ -614,10 +642,10 @@ public class SamlProtocol implements LoginProtocol {
                 }
             } catch (IOException e) {
                 logger.warn("failed to send saml logout", e);
+                return false;
             }
-            break;
         }
-
+        return false;
     }
 
     protected SAML2LogoutRequestBuilder createLogoutRequest(String logoutUrl, ClientSessionModel clientSession, ClientModel client) {
@@ -7,6 +7,7 @@ import org.keycloak.authentication.AuthenticationFlowContext;
 import org.keycloak.events.Details;
 import org.keycloak.events.Errors;
 import org.keycloak.models.ModelDuplicateException;
+import org.keycloak.models.PasswordHashingRejectedException;
 import org.keycloak.models.UserCredentialModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.utils.KeycloakModelUtils;
@@ -14,6 +15,7 @@ import org.keycloak.representations.idm.CredentialRepresentation;
 import org.keycloak.services.managers.AuthenticationManager;
 import org.keycloak.services.messages.Messages;
 
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import java.util.LinkedList;
@@ -56,6 +58,15 @@ public abstract class AbstractUsernameFormAuthenticator extends AbstractFormAuth
                 .setError(Messages.INVALID_USER).createLogin();
     }
 
+    protected Response loginTemporarilyUnavailable(AuthenticationFlowContext context, int retryAfter) {
+        Response response = context.form()
+                .setError(Messages.LOGIN_TEMPORARILY_UNAVAILABLE).createLogin();
+        return Response.fromResponse(response)
+                .status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfter)
+                .build();
+    }
+
     protected Response setDuplicateUserChallenge(AuthenticationFlowContext context, String eventError, String loginFormError, AuthenticationFlowError authenticatorError) {
         context.getEvent().error(eventError);
         Response challengeResponse = context.form()
@@ -144,7 +155,15 @@ public abstract class AbstractUsernameFormAuthenticator extends AbstractFormAuth
             return false;
         }
         credentials.add(UserCredentialModel.password(password));
-        boolean valid = context.getSession().users().validCredentials(context.getRealm(), context.getUser(), credentials);
+        boolean valid;
+        try {
+            valid = context.getSession().users().validCredentials(context.getRealm(), context.getUser(), credentials);
+        } catch (PasswordHashingRejectedException e) {
+            // Server is overloaded, password wasn't checked so it's not counted as login failure
+            Response challengeResponse = loginTemporarilyUnavailable(context, e.getRetryAfter());
+            context.forceChallenge(challengeResponse);
+            return false;
+        }
         if (!valid) {
             context.getEvent().user(context.getUser());
             context.getEvent().error(Errors.INVALID_USER_CREDENTIALS);
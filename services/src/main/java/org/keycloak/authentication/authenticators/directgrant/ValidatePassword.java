@@ -6,12 +6,14 @@ import org.keycloak.authentication.AuthenticationFlowContext;
 import org.keycloak.events.Errors;
 import org.keycloak.models.AuthenticationExecutionModel;
 import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.PasswordHashingRejectedException;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserCredentialModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.provider.ProviderConfigProperty;
 import org.keycloak.representations.idm.CredentialRepresentation;
 
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import java.util.LinkedList;
@@ -41,7 +43,17 @@ public class ValidatePassword extends AbstractDirectGrantAuthenticator {
             return;
         }
         credentials.add(UserCredentialModel.password(password));
-        boolean valid = context.getSession().users().validCredentials(context.getRealm(), context.getUser(), credentials);
+        boolean valid;
+        try {
+            valid = context.getSession().users().validCredentials(context.getRealm(), context.getUser(), credentials);
+        } catch (PasswordHashingRejectedException e) {
+            // Server is overloaded, password wasn't checked so it's not counted as login failure
+            Response challengeResponse = Response.fromResponse(errorResponse(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), "temporarily_unavailable", "Too many login attempts in progress"))
+                    .header(HttpHeaders.RETRY_AFTER, e.getRetryAfter())
+                    .build();
+            context.forceChallenge(challengeResponse);
+            return;
+        }
         if (!valid) {
             context.getEvent().user(context.getUser());
             context.getEvent().error(Errors.INVALID_USER_CREDENTIALS);
@@ -10,6 +10,7 @@ import org.keycloak.events.EventBuilder;
 import org.keycloak.jose.jws.JWSBuilder;
 import org.keycloak.jose.jws.JWSInput;
 import org.keycloak.jose.jws.crypto.RSAProvider;
+import org.keycloak.jose.jws.crypto.VerifiedTokenCache;
 import org.keycloak.models.ClientModel;
 import org.keycloak.models.ClientSessionModel;
 import org.keycloak.models.KeycloakSession;
@@ -21,6 +22,7 @@ import org.keycloak.models.UserModel;
 import org.keycloak.models.UserSessionModel;
 import org.keycloak.models.UserSessionProvider;
 import org.keycloak.models.utils.KeycloakModelUtils;
+import org.keycloak.models.utils.RoleGraph;
 import org.keycloak.protocol.ProtocolMapper;
 import org.keycloak.protocol.oidc.mappers.OIDCAccessTokenMapper;
 import org.keycloak.protocol.oidc.mappers.OIDCIDTokenMapper;
@@ -40,7 +42,9 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import java.io.IOException;
+import java.security.PublicKey;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -197,10 +201,17 @@ public class TokenManager {
         JWSInput jws = new JWSInput(encodedRefreshToken);
         RefreshToken refreshToken = null;
         try {
-            if (!RSAProvider.verify(jws, realm.getPublicKey())) {
+            // Signature is verified before the token is parsed, so expiration is never read from a token with invalid signature
+            VerifiedTokenCache cache = VerifiedTokenCache.getInstance();
+            PublicKey publicKey = realm.getPublicKey();
+            boolean cached = cache.isVerified(jws, publicKey);
+            if (!cached && !RSAProvider.verify(jws, publicKey)) {
                 throw new OAuthErrorException(OAuthErrorException.INVALID_GRANT, "Invalid refresh token");
             }
             refreshToken = jws.readJsonContent(RefreshToken.class);
+            if (!cached) {
+                cache.verified(jws, publicKey, refreshToken.getExpiration());
+            }
         } catch (Exception e) {
             throw new OAuthErrorException(OAuthErrorException.INVALID_GRANT, "Invalid refresh token", e);
         }
@@ -236,8 +247,18 @@ public class TokenManager {
 
     public AccessToken createClientAccessToken(KeycloakSession session, Set<RoleModel> requestedRoles, RealmModel realm, ClientModel client, UserModel user, UserSessionModel userSession, ClientSessionModel clientSession) {
         AccessToken token = initToken(realm, client, user, userSession, clientSession, session.getContext().getUri());
-        for (RoleModel role : requestedRoles) {
-            addComposites(token, role);
+        RoleGraph graph = RoleGraph.getCached(realm);
+        BitSet requested = graph != null ? graph.toBitSet(requestedRoles) : null;
+        if (requested != null) {
+            BitSet closure = graph.closure(requested);
+            for (int i = closure.nextSetBit(0); i >= 0; i = closure.nextSetBit(i + 1)) {
+                RoleModel role = realm.getRoleById(graph.getRoleId(i));
+                if (role != null) addRole(token, role);
+            }
+        } else {
+            for (RoleModel role : requestedRoles) {
+                addComposites(token, role);
+            }
         }
         token = transformAccessToken(session, token, realm, client, user, userSession, clientSession);
         return token;
@@ -294,6 +315,9 @@ public class TokenManager {
 
         Set<RoleModel> roleMappings = user.getRoleMappings();
 
+        RealmModel realm = client.getRealm();
+        RoleGraph graph = RoleGraph.getCached(realm);
+
         if (client.isFullScopeAllowed()) {
             requestedRoles = roleMappings;
         } else {
@@ -301,10 +325,20 @@ public class TokenManager {
             Set<RoleModel> scopeMappings = client.getScopeMappings();
             scopeMappings.addAll(client.getRoles());
 
-            for (RoleModel role : roleMappings) {
-                for (RoleModel desiredRole : scopeMappings) {
-                    Set<RoleModel> visited = new HashSet<RoleModel>();
-                    applyScope(role, desiredRole, visited, requestedRoles);
+            BitSet userBits = graph != null ? graph.toBitSet(roleMappings) : null;
+            BitSet scopeBits = userBits != null ? graph.toBitSet(scopeMappings) : null;
+            if (scopeBits != null) {
+                BitSet access = graph.getAccess(userBits, scopeBits);
+                for (int i = access.nextSetBit(0); i >= 0; i = access.nextSetBit(i + 1)) {
+                    RoleModel role = realm.getRoleById(graph.getRoleId(i));
+                    if (role != null) requestedRoles.add(role);
+                }
+            } else {
+                for (RoleModel role : roleMappings) {
+                    for (RoleModel desiredRole : scopeMappings) {
+                        Set<RoleModel> visited = new HashSet<RoleModel>();
+                        applyScope(role, desiredRole, visited, requestedRoles);
+                    }
                 }
             }
         }
@@ -333,10 +367,13 @@ public class TokenManager {
             // Add all roles specified in scope parameter directly into requestedRoles, even if they are available just through composite role
             List<RoleModel> scopeRoles = new LinkedList<>();
             for (String scopeParamPart : scopeParamRoles) {
-                RoleModel scopeParamRole = getRoleFromScopeParam(client.getRealm(), scopeParamPart);
+                RoleModel scopeParamRole = getRoleFromScopeParam(realm, scopeParamPart);
                 if (scopeParamRole != null) {
+                    int scopeParamIndex = graph != null ? graph.indexOf(scopeParamRole.getId()) : -1;
                     for (RoleModel role : roles) {
-                        if (role.hasRole(scopeParamRole)) {
+                        int roleIndex = scopeParamIndex >= 0 ? graph.indexOf(role.getId()) : -1;
+                        boolean hasRole = roleIndex >= 0 ? graph.hasRole(roleIndex, scopeParamIndex) : role.hasRole(scopeParamRole);
+                        if (hasRole) {
                             scopeRoles.add(scopeParamRole);
                         }
                     }
@@ -449,6 +486,21 @@ public class TokenManager {
     }
 
     protected void addComposites(AccessToken token, RoleModel role) {
+        if (!addRole(token, role)) return;
+        if (!role.isComposite()) return;
+
+        for (RoleModel composite : role.getComposites()) {
+            addComposites(token, composite);
+        }
+
+    }
+
+    /**
+     * Adds the role to the token without its composites
+     *
+     * @return false if the token already contains the role
+     */
+    private boolean addRole(AccessToken token, RoleModel role) {
         AccessToken.Access access = null;
         if (role.getContainer() instanceof RealmModel) {
             access = token.getRealmAccess();
@@ -456,7 +508,7 @@ public class TokenManager {
                 access = new AccessToken.Access();
                 token.setRealmAccess(access);
             } else if (token.getRealmAccess().getRoles() != null && token.getRealmAccess().isUserInRole(role.getName()))
-                return;
+                return false;
 
         } else {
             ClientModel app = (ClientModel) role.getContainer();
@@ -464,16 +516,11 @@ public class TokenManager {
             if (access == null) {
                 access = token.addAccess(app.getClientId());
                 if (app.isSurrogateAuthRequired()) access.verifyCaller(true);
-            } else if (access.isUserInRole(role.getName())) return;
+            } else if (access.isUserInRole(role.getName())) return false;
 
         }
         access.addRole(role.getName());
-        if (!role.isComposite()) return;
-
-        for (RoleModel composite : role.getComposites()) {
-            addComposites(token, composite);
-        }
-
+        return true;
     }
 
     public String encodeToken(RealmModel realm, Object token) {
@@ -516,6 +563,10 @@ public class TokenManager {
             this.refreshToken = refreshToken;
             return this;
         }
+        public AccessTokenResponseBuilder idToken(IDToken idToken) {
+            this.idToken = idToken;
+            return this;
+        }
 
         public AccessTokenResponseBuilder generateAccessToken() {
             UserModel user = userSession.getUser();
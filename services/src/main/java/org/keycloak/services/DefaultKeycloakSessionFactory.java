@@ -11,14 +11,20 @@ import org.keycloak.provider.ProviderFactory;
 import org.keycloak.provider.ProviderManager;
 import org.keycloak.provider.Spi;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class DefaultKeycloakSessionFactory implements KeycloakSessionFactory {
 
@@ -53,49 +59,56 @@ public class DefaultKeycloakSessionFactory implements KeycloakSessionFactory {
         
         ProviderManager pm = new ProviderManager(getClass().getClassLoader(), Config.scope().getArray("providers"));
 
+        Map<Spi, List<ProviderFactory>> loaded = new LinkedHashMap<Spi, List<ProviderFactory>>();
         for (Spi spi : ServiceLoader.load(Spi.class, getClass().getClassLoader())) {
-            Map<String, ProviderFactory> factories = new HashMap<String, ProviderFactory>();
-            factoriesMap.put(spi.getProviderClass(), factories);
-
             String provider = Config.getProvider(spi.getName());
             if (provider != null) {
-                this.provider.put(spi.getProviderClass(), provider);
-
                 ProviderFactory factory = pm.load(spi, provider);
                 if (factory == null) {
                     throw new RuntimeException("Failed to find provider " + provider + " for " + spi.getName());
                 }
+                loaded.put(spi, Collections.singletonList(factory));
+            } else {
+                loaded.put(spi, pm.load(spi));
+            }
+        }
 
-                Config.Scope scope = Config.scope(spi.getName(), provider);
-                factory.init(scope);
+        Config.Scope warmupConfig = Config.scope("warmup");
+        if (warmupConfig.getBoolean("parallelInit", false)) {
+            initFactoriesInParallel(loaded, warmupConfig.getInt("parallelInitThreads", Runtime.getRuntime().availableProcessors()));
+        } else {
+            for (Map.Entry<Spi, List<ProviderFactory>> entry : loaded.entrySet()) {
+                for (ProviderFactory factory : entry.getValue()) {
+                    factory.init(Config.scope(entry.getKey().getName(), factory.getId()));
+                }
+            }
+        }
 
+        for (Map.Entry<Spi, List<ProviderFactory>> entry : loaded.entrySet()) {
+            Spi spi = entry.getKey();
+            Map<String, ProviderFactory> factories = new HashMap<String, ProviderFactory>();
+            factoriesMap.put(spi.getProviderClass(), factories);
+
+            for (ProviderFactory factory : entry.getValue()) {
                 if (spi.isInternal() && !isInternal(factory)) {
                     log.warnv("{0} ({1}) is implementing the internal SPI {2}. This SPI is internal and may change without notice", factory.getId(), factory.getClass().getName(), spi.getName());
                 }
 
                 factories.put(factory.getId(), factory);
+            }
 
-                log.debugv("Loaded SPI {0} (provider = {1})", spi.getName(), provider);
-            } else {
-                for (ProviderFactory factory : pm.load(spi)) {
-                    Config.Scope scope = Config.scope(spi.getName(), factory.getId());
-                    factory.init(scope);
-
-                    if (spi.isInternal() && !isInternal(factory)) {
-                        log.warnv("{0} ({1}) is implementing the internal SPI {2}. This SPI is internal and may change without notice", factory.getId(), factory.getClass().getName(), spi.getName());
-                    }
-
-                    factories.put(factory.getId(), factory);
-                }
+            String provider = Config.getProvider(spi.getName());
+            if (provider != null) {
+                this.provider.put(spi.getProviderClass(), provider);
 
-                if (factories.size() == 1) {
-                    provider = factories.values().iterator().next().getId();
-                    this.provider.put(spi.getProviderClass(), provider);
+                log.debugv("Loaded SPI {0} (provider = {1})", spi.getName(), provider);
+            } else if (factories.size() == 1) {
+                provider = factories.values().iterator().next().getId();
+                this.provider.put(spi.getProviderClass(), provider);
 
-                    log.debugv("Loaded SPI {0}  (provider = {1})", spi.getName(), provider);
-                } else {
-                    log.debugv("Loaded SPI {0} (providers = {1})", spi.getName(), factories.keySet());
-                }
+                log.debugv("Loaded SPI {0}  (provider = {1})", spi.getName(), provider);
+            } else {
+                log.debugv("Loaded SPI {0} (providers = {1})", spi.getName(), factories.keySet());
             }
         }
         for ( Map<String, ProviderFactory> factories : factoriesMap.values()) {
@@ -105,6 +118,45 @@ public class DefaultKeycloakSessionFactory implements KeycloakSessionFactory {
         }
     }
 
+    // Factories only read their own configuration in init, so they don't depend on each other. postInit is still called
+    // sequentially, as factories may use other factories there
+    private void initFactoriesInParallel(Map<Spi, List<ProviderFactory>> loaded, int threads) {
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new LinkedList<Future<?>>();
+            for (Map.Entry<Spi, List<ProviderFactory>> entry : loaded.entrySet()) {
+                final String spiName = entry.getKey().getName();
+                for (final ProviderFactory factory : entry.getValue()) {
+                    futures.add(executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            Thread.currentThread().setContextClassLoader(classLoader);
+                            factory.init(Config.scope(spiName, factory.getId()));
+                        }
+                    }));
+                }
+            }
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while initializing providers", e);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new RuntimeException("Failed to initialize provider", cause);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     public KeycloakSession create() {
         return new DefaultKeycloakSession(this);
     }
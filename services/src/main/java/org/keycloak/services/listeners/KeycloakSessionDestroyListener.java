@@ -1,7 +1,11 @@
 package org.keycloak.services.listeners;
 
+import org.keycloak.events.EventDispatcher;
 import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.utils.PasswordHashingExecutor;
+import org.keycloak.services.managers.BackchannelLogoutDispatcher;
 import org.keycloak.services.managers.BruteForceProtector;
+import org.keycloak.services.managers.RealmCacheWarmup;
 
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
@@ -21,10 +25,17 @@ public class KeycloakSessionDestroyListener implements ServletContextListener {
         if (protector != null) {
             protector.shutdown();
         }
+        RealmCacheWarmup warmup = (RealmCacheWarmup) sce.getServletContext().getAttribute(RealmCacheWarmup.class.getName());
+        if (warmup != null) {
+            warmup.shutdown();
+        }
+        EventDispatcher.close();
+        BackchannelLogoutDispatcher.close();
         KeycloakSessionFactory sessionFactory = (KeycloakSessionFactory) sce.getServletContext().getAttribute(KeycloakSessionFactory.class.getName());
         if (sessionFactory != null) {
             sessionFactory.close();
         }
+        PasswordHashingExecutor.close();
     }
 
 }
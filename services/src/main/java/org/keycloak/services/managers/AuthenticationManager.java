@@ -130,8 +130,14 @@ public class AuthenticationManager {
         logger.debugv("Logging out: {0} ({1})", user.getUsername(), userSession.getId());
         expireUserSessionCookie(session, userSession, realm, uriInfo, headers, connection);
 
-        for (ClientSessionModel clientSession : userSession.getClientSessions()) {
-            backchannelLogoutClientSession(session, realm, clientSession, userSession, uriInfo, headers);
+        // Clients are notified in parallel, the batch waits for all of them
+        BackchannelLogoutDispatcher.Batch batch = BackchannelLogoutDispatcher.startBatch();
+        try {
+            for (ClientSessionModel clientSession : userSession.getClientSessions()) {
+                backchannelLogoutClientSession(session, realm, clientSession, userSession, uriInfo, headers);
+            }
+        } finally {
+            batch.finish();
         }
         if (logoutBroker) {
             String brokerId = userSession.getNote(IdentityBrokerService.BROKER_PROVIDER_ID);
@@ -147,34 +153,62 @@ public class AuthenticationManager {
         session.sessions().removeUserSession(realm, userSession);
     }
 
-    public static void backchannelLogoutClientSession(KeycloakSession session, RealmModel realm, ClientSessionModel clientSession, UserSessionModel userSession, UriInfo uriInfo, HttpHeaders headers) {
+    public static void backchannelLogoutClientSession(KeycloakSession session, RealmModel realm, final ClientSessionModel clientSession, final UserSessionModel userSession, UriInfo uriInfo, HttpHeaders headers) {
         ClientModel client = clientSession.getClient();
         if (client instanceof ClientModel && !client.isFrontchannelLogout() && !ClientSessionModel.Action.LOGGED_OUT.name().equals(clientSession.getAction())) {
             String authMethod = clientSession.getAuthMethod();
             if (authMethod == null) return; // must be a keycloak service like account
-            LoginProtocol protocol = session.getProvider(LoginProtocol.class, authMethod);
+            final LoginProtocol protocol = session.getProvider(LoginProtocol.class, authMethod);
             protocol.setRealm(realm)
                     .setHttpHeaders(headers)
                     .setUriInfo(uriInfo);
-            protocol.backchannelLogout(userSession, clientSession);
-            clientSession.setAction(ClientSessionModel.Action.LOGGED_OUT.name());
+            backchannelLogout(protocol, userSession, clientSession);
         }
 
     }
 
+    /**
+     * Client session is marked as logged out once the notifications sent to the client succeed, which is when the active
+     * batch of the dispatcher finishes
+     */
+    private static void backchannelLogout(final LoginProtocol protocol, final UserSessionModel userSession, final ClientSessionModel clientSession) {
+        BackchannelLogoutDispatcher.logout(new Runnable() {
+            @Override
+            public void run() {
+                protocol.backchannelLogout(userSession, clientSession);
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                clientSession.setAction(ClientSessionModel.Action.LOGGED_OUT.name());
+            }
+        });
+    }
+
     // Logout all clientSessions of this user and client
     public static void backchannelUserFromClient(KeycloakSession session, RealmModel realm, UserModel user, ClientModel client, UriInfo uriInfo, HttpHeaders headers) {
         String clientId = client.getId();
 
         List<UserSessionModel> userSessions = session.sessions().getUserSessions(realm, user);
-        for (UserSessionModel userSession : userSessions) {
-            List<ClientSessionModel> clientSessions = userSession.getClientSessions();
-            for (ClientSessionModel clientSession : clientSessions) {
-                if (clientSession.getClient().getId().equals(clientId)) {
-                    AuthenticationManager.backchannelLogoutClientSession(session, realm, clientSession, userSession, uriInfo, headers);
-                    TokenManager.dettachClientSession(session.sessions(), realm, clientSession);
+        List<ClientSessionModel> loggedOut = new LinkedList<ClientSessionModel>();
+        BackchannelLogoutDispatcher.Batch batch = BackchannelLogoutDispatcher.startBatch();
+        try {
+            for (UserSessionModel userSession : userSessions) {
+                List<ClientSessionModel> clientSessions = userSession.getClientSessions();
+                for (ClientSessionModel clientSession : clientSessions) {
+                    if (clientSession.getClient().getId().equals(clientId)) {
+                        AuthenticationManager.backchannelLogoutClientSession(session, realm, clientSession, userSession, uriInfo, headers);
+                        loggedOut.add(clientSession);
+                    }
                 }
             }
+        } finally {
+            batch.finish();
+        }
+
+        // Detached after the batch marks them as logged out
+        for (ClientSessionModel clientSession : loggedOut) {
+            TokenManager.dettachClientSession(session.sessions(), realm, clientSession);
         }
     }
 
@@ -187,30 +221,34 @@ public class AuthenticationManager {
             userSession.setState(UserSessionModel.State.LOGGING_OUT);
         }
         List<ClientSessionModel> redirectClients = new LinkedList<ClientSessionModel>();
-        for (ClientSessionModel clientSession : userSession.getClientSessions()) {
-            ClientModel client = clientSession.getClient();
-            if (ClientSessionModel.Action.LOGGED_OUT.name().equals(clientSession.getAction())) continue;
-            if (client.isFrontchannelLogout()) {
-                String authMethod = clientSession.getAuthMethod();
-                if (authMethod == null) continue; // must be a keycloak service like account
-                redirectClients.add(clientSession);
-                continue;
-            }
-            if (client instanceof ClientModel && !client.isFrontchannelLogout()) {
-                String authMethod = clientSession.getAuthMethod();
-                if (authMethod == null) continue; // must be a keycloak service like account
-                LoginProtocol protocol = session.getProvider(LoginProtocol.class, authMethod);
-                protocol.setRealm(realm)
-                        .setHttpHeaders(headers)
-                        .setUriInfo(uriInfo);
-                try {
-                    logger.debugv("backchannel logout to: {0}", client.getClientId());
-                    protocol.backchannelLogout(userSession, clientSession);
-                    clientSession.setAction(ClientSessionModel.Action.LOGGED_OUT.name());
-                } catch (Exception e) {
-                    logger.warn("Failed to logout client, continuing", e);
+        BackchannelLogoutDispatcher.Batch batch = BackchannelLogoutDispatcher.startBatch();
+        try {
+            for (ClientSessionModel clientSession : userSession.getClientSessions()) {
+                ClientModel client = clientSession.getClient();
+                if (ClientSessionModel.Action.LOGGED_OUT.name().equals(clientSession.getAction())) continue;
+                if (client.isFrontchannelLogout()) {
+                    String authMethod = clientSession.getAuthMethod();
+                    if (authMethod == null) continue; // must be a keycloak service like account
+                    redirectClients.add(clientSession);
+                    continue;
+                }
+                if (client instanceof ClientModel && !client.isFrontchannelLogout()) {
+                    String authMethod = clientSession.getAuthMethod();
+                    if (authMethod == null) continue; // must be a keycloak service like account
+                    LoginProtocol protocol = session.getProvider(LoginProtocol.class, authMethod);
+                    protocol.setRealm(realm)
+                            .setHttpHeaders(headers)
+                            .setUriInfo(uriInfo);
+                    try {
+                        logger.debugv("backchannel logout to: {0}", client.getClientId());
+                        backchannelLogout(protocol, userSession, clientSession);
+                    } catch (Exception e) {
+                        logger.warn("Failed to logout client, continuing", e);
+                    }
                 }
             }
+        } finally {
+            batch.finish();
         }
 
         for (ClientSessionModel nextRedirectClient : redirectClients) {
@@ -0,0 +1,543 @@
+package org.keycloak.services.managers;
+
+import org.apache.http.client.config.RequestConfig;
+import org.jboss.logging.Logger;
+import org.keycloak.Config;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends backchannel requests to clients (logout, push not before, test availability) in parallel on a bounded pool of
+ * threads, so logout of a user signed in to many clients takes as long as the slowest client, not the sum of all of them.
+ * <p>
+ * Requests are sent with the shared http client, which keeps a pool of connections for each host (see
+ * <code>max-pooled-per-route</code> of <code>connectionsHttpClient</code>). Establishing a connection, waiting for a pooled
+ * connection and waiting for the response are each limited by the timeout. When the queue is full or the dispatcher is
+ * closed, requests are sent on the calling thread.
+ * <p>
+ * Logout notifications sent while a {@link Batch} is active on the thread are awaited when the batch finishes, actions
+ * depending on their results (see {@link #logout(Runnable, Runnable)}) are run then. In async mode they're not awaited at
+ * all, results are only tracked. Requests, whose results are needed, like pushing not before from admin console, are
+ * always awaited. Timeout of each request starts when it's sent, time spent in the queue doesn't count.
+ * <p>
+ * Until {@link #init(Config.Scope)} is called, requests are sent on the calling thread one by one.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class BackchannelLogoutDispatcher {
+
+    private static final Logger logger = Logger.getLogger(BackchannelLogoutDispatcher.class);
+
+    private static volatile BackchannelLogoutDispatcher instance;
+
+    private static final ThreadLocal<Batch> currentBatch = new ThreadLocal<Batch>();
+
+    private final ThreadPoolExecutor executor;
+    private final long timeout;
+    private final boolean async;
+    private final RequestConfig requestConfig;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong sentByCaller = new AtomicLong();
+    private final AtomicLong waitTimeouts = new AtomicLong();
+    private final ConcurrentMap<String, ClientStats> clients = new ConcurrentHashMap<String, ClientStats>();
+
+    private BackchannelLogoutDispatcher(int threads, int queueSize, long timeout, boolean async) {
+        this.timeout = timeout;
+        this.async = async;
+        this.requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) timeout)
+                .setConnectionRequestTimeout((int) timeout)
+                .setSocketTimeout((int) timeout).build();
+
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Backchannel Logout " + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                sentByCaller.incrementAndGet();
+                r.run();
+            }
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Configured with:
+     * <ul>
+     *     <li>enabled - if false, requests are sent on the calling thread one by one, as before the dispatcher was added. Default false</li>
+     *     <li>threads - max number of requests sent at the same time. Default 20</li>
+     *     <li>queueSize - max number of requests waiting to be sent. Default 1000</li>
+     *     <li>timeout - milliseconds to wait for connection and response of a client. Default 10000</li>
+     *     <li>async - if true, logout doesn't wait for clients to be notified. Default false</li>
+     * </ul>
+     *
+     * @param config
+     */
+    public static synchronized void init(Config.Scope config) {
+        close();
+
+        if (!config.getBoolean("enabled", false)) {
+            return;
+        }
+
+        int threads = config.getInt("threads", 20);
+        int queueSize = config.getInt("queueSize", 1000);
+        long timeout = config.getLong("timeout", 10000L);
+        boolean async = config.getBoolean("async", false);
+
+        logger.debugv("Backchannel logout dispatcher with {0} threads, timeout {1} ms, async {2}", threads, timeout, async);
+        instance = new BackchannelLogoutDispatcher(threads, queueSize, timeout, async);
+    }
+
+    /**
+     * Waits for requests being sent and stops the threads
+     */
+    public static synchronized void close() {
+        BackchannelLogoutDispatcher dispatcher = instance;
+        if (dispatcher != null) {
+            instance = null;
+            dispatcher.executor.shutdown();
+            try {
+                if (!dispatcher.executor.awaitTermination(dispatcher.timeout, TimeUnit.MILLISECONDS)) {
+                    dispatcher.executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return dispatcher or null if requests are sent on the calling thread
+     */
+    public static BackchannelLogoutDispatcher getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return config with the timeouts, which should be set to the requests, or null to use defaults of the http client
+     */
+    public static RequestConfig getRequestConfig() {
+        BackchannelLogoutDispatcher dispatcher = instance;
+        return dispatcher != null ? dispatcher.requestConfig : null;
+    }
+
+    /**
+     * Sends the request in background or on the calling thread if dispatcher isn't initialized. The request mustn't use
+     * the session or models of the calling thread.
+     *
+     * @param realm name of the realm
+     * @param clientId client the request is sent to
+     * @param request sends the request, returns true if the client accepted it
+     * @return result of the request
+     */
+    public static Future<Boolean> submit(String realm, String clientId, Callable<Boolean> request) {
+        BackchannelLogoutDispatcher dispatcher = instance;
+        if (dispatcher == null) {
+            FutureTask<Boolean> task = new FutureTask<Boolean>(request);
+            task.run();
+            return task;
+        }
+
+        DeliveryTask task = new DeliveryTask(dispatcher.new Delivery(dispatcher.getClientStats(realm, clientId), request));
+        dispatcher.pending.incrementAndGet();
+        dispatcher.executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Waits for results of the requests, even in async mode.
+     *
+     * @return results in the same order, false if the request failed or didn't finish within the timeout
+     */
+    public static List<Boolean> getResults(List<Future<Boolean>> results) {
+        List<Boolean> values = new ArrayList<Boolean>(results.size());
+        for (Future<Boolean> result : results) {
+            values.add(getResult(result));
+        }
+        return values;
+    }
+
+    /**
+     * Waits for results of logout notifications. If a batch is active, the results are awaited when the batch
+     * finishes. In async mode, the results aren't awaited.
+     *
+     * @return false if any of the requests failed, true if all succeeded or weren't awaited
+     */
+    public static boolean await(Collection<Future<Boolean>> results) {
+        BackchannelLogoutDispatcher dispatcher = instance;
+        if (dispatcher != null && dispatcher.async) {
+            return true;
+        }
+
+        Batch batch = currentBatch.get();
+        if (batch != null) {
+            batch.add(results);
+            return true;
+        }
+
+        return awaitAll(results);
+    }
+
+    /**
+     * Runs send, which sends logout notifications, and then onSuccess if none of the notifications failed. If a batch is
+     * active, onSuccess is run when the batch finishes and the notifications are awaited. In async mode the notifications
+     * aren't awaited, so onSuccess is always run.
+     *
+     * @param send sends logout notifications
+     * @param onSuccess records that the logout succeeded, for example marks the client session as logged out
+     */
+    public static void logout(Runnable send, Runnable onSuccess) {
+        Batch batch = currentBatch.get();
+        boolean outer = batch == null;
+        if (outer) {
+            batch = startBatch();
+        }
+
+        try {
+            batch.run(send, onSuccess);
+        } finally {
+            if (outer) {
+                batch.finish();
+            }
+        }
+    }
+
+    /**
+     * Starts a batch of logout notifications on this thread, which are sent in parallel and awaited by
+     * {@link Batch#finish()}. Batch started while other batch is active is part of the outer batch.
+     */
+    public static Batch startBatch() {
+        Batch batch = currentBatch.get();
+        if (batch != null) {
+            return new Batch(false);
+        }
+
+        batch = new Batch(true);
+        currentBatch.set(batch);
+        return batch;
+    }
+
+    private static boolean awaitAll(Collection<Future<Boolean>> results) {
+        boolean allPassed = true;
+        for (Future<Boolean> result : results) {
+            allPassed = getResult(result) && allPassed;
+        }
+        return allPassed;
+    }
+
+    /**
+     * Waits until the request finishes or until the timeout elapses since it was sent. Request waiting in the queue
+     * doesn't time out.
+     */
+    private static boolean getResult(Future<Boolean> result) {
+        try {
+            if (!(result instanceof DeliveryTask)) {
+                // Sent on the calling thread
+                return result.get();
+            }
+
+            DeliveryTask task = (DeliveryTask) result;
+            BackchannelLogoutDispatcher dispatcher = task.delivery.getDispatcher();
+            while (true) {
+                long started = task.delivery.started;
+                long wait = started == 0 ? dispatcher.timeout : started + dispatcher.timeout - System.currentTimeMillis();
+                try {
+                    return task.get(Math.max(wait, 0), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (started != 0) {
+                        dispatcher.waitTimeouts.incrementAndGet();
+                        logger.debug("Timeout waiting for backchannel request, continuing without result");
+                        return false;
+                    }
+                    if (dispatcher.executor.isTerminated()) {
+                        logger.debug("Backchannel dispatcher closed before the request was sent");
+                        return false;
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            logger.warn("Backchannel request failed", e.getCause());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private ClientStats getClientStats(String realm, String clientId) {
+        String key = realm + "/" + clientId;
+        ClientStats stats = clients.get(key);
+        if (stats == null) {
+            stats = new ClientStats(realm, clientId);
+            ClientStats existing = clients.putIfAbsent(key, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    public int getThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public int getActive() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getSentByCaller() {
+        return sentByCaller.get();
+    }
+
+    public long getWaitTimeouts() {
+        return waitTimeouts.get();
+    }
+
+    public List<ClientStats> getClientStats() {
+        return new ArrayList<ClientStats>(clients.values());
+    }
+
+    /**
+     * Logout notifications sent on the thread, which started the batch
+     */
+    public static class Batch {
+
+        private final boolean outer;
+        private final List<Future<Boolean>> results = new LinkedList<Future<Boolean>>();
+        private final List<Logout> logouts = new LinkedList<Logout>();
+        private Logout logout;
+
+        private Batch(boolean outer) {
+            this.outer = outer;
+        }
+
+        private void add(Collection<Future<Boolean>> results) {
+            this.results.addAll(results);
+            if (logout != null) {
+                logout.results.addAll(results);
+            }
+        }
+
+        private void run(Runnable send, Runnable onSuccess) {
+            Logout previous = logout;
+            Logout current = new Logout(onSuccess);
+            logout = current;
+            try {
+                send.run();
+            } finally {
+                logout = previous;
+            }
+
+            logouts.add(current);
+            if (previous != null) {
+                previous.results.addAll(current.results);
+            }
+        }
+
+        /**
+         * Waits for notifications sent in the batch, unless the batch is part of an outer batch, and runs the actions of
+         * the logouts, which succeeded. Must be called in finally block.
+         *
+         * @return false if any of the notifications failed
+         */
+        public boolean finish() {
+            if (!outer) {
+                return true;
+            }
+
+            currentBatch.remove();
+
+            Map<Future<Boolean>, Boolean> values = new HashMap<Future<Boolean>, Boolean>();
+            boolean allPassed = true;
+            for (Future<Boolean> result : results) {
+                boolean value = getResult(result);
+                values.put(result, value);
+                allPassed = value && allPassed;
+            }
+
+            for (Logout logout : logouts) {
+                boolean success = true;
+                for (Future<Boolean> result : logout.results) {
+                    success = values.get(result) && success;
+                }
+                if (success) {
+                    logout.onSuccess.run();
+                }
+            }
+            return allPassed;
+        }
+    }
+
+    private static class Logout {
+
+        private final Runnable onSuccess;
+        private final List<Future<Boolean>> results = new LinkedList<Future<Boolean>>();
+
+        private Logout(Runnable onSuccess) {
+            this.onSuccess = onSuccess;
+        }
+    }
+
+    /**
+     * Requests sent to a client and their latency
+     */
+    public static class ClientStats {
+
+        private final String realm;
+        private final String clientId;
+        private final AtomicLong sent = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong totalTime = new AtomicLong();
+        private volatile long maxTime;
+
+        private ClientStats(String realm, String clientId) {
+            this.realm = realm;
+            this.clientId = clientId;
+        }
+
+        private void record(long time, boolean success) {
+            sent.incrementAndGet();
+            if (!success) {
+                failed.incrementAndGet();
+            }
+            totalTime.addAndGet(time);
+            if (time > maxTime) {
+                synchronized (this) {
+                    if (time > maxTime) {
+                        maxTime = time;
+                    }
+                }
+            }
+        }
+
+        public String getRealm() {
+            return realm;
+        }
+
+        public String getClientId() {
+            return clientId;
+        }
+
+        public long getSent() {
+            return sent.get();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+
+        public long getAverageTime() {
+            long count = sent.get();
+            return count > 0 ? totalTime.get() / count : 0;
+        }
+
+        public long getMaxTime() {
+            return maxTime;
+        }
+    }
+
+    private static class DeliveryTask extends FutureTask<Boolean> {
+
+        private final Delivery delivery;
+
+        private DeliveryTask(Delivery delivery) {
+            super(delivery);
+            this.delivery = delivery;
+        }
+    }
+
+    private class Delivery implements Callable<Boolean> {
+
+        private final ClientStats stats;
+        private final Callable<Boolean> request;
+
+        // When the request was sent, 0 while it's in the queue
+        private volatile long started;
+
+        private BackchannelLogoutDispatcher getDispatcher() {
+            return BackchannelLogoutDispatcher.this;
+        }
+
+        private Delivery(ClientStats stats, Callable<Boolean> request) {
+            this.stats = stats;
+            this.request = request;
+        }
+
+        @Override
+        public Boolean call() {
+            long start = System.currentTimeMillis();
+            started = start;
+            boolean success = false;
+            try {
+                success = request.call();
+            } catch (Exception e) {
+                logger.warn("Backchannel request to client '" + stats.clientId + "' of realm '" + stats.realm + "' failed", e);
+            } finally {
+                long time = System.currentTimeMillis() - start;
+                stats.record(time, success);
+                sent.incrementAndGet();
+                if (!success) {
+                    failed.incrementAndGet();
+                }
+                pending.decrementAndGet();
+                logger.debugv("Backchannel request to client {0} of realm {1} finished in {2} ms, success: {3}", stats.clientId, stats.realm, time, success);
+            }
+            return success;
+        }
+    }
+
+}
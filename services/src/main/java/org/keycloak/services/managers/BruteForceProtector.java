@@ -2,6 +2,7 @@ package org.keycloak.services.managers;
 
 
 import org.jboss.logging.Logger;
+import org.keycloak.Config;
 import org.keycloak.common.ClientConnection;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
@@ -10,30 +11,50 @@ import org.keycloak.models.UsernameLoginFailureModel;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * A single thread will log failures.  This is so that we can avoid concurrent writes as we want an accurate failure count
+ * Failures are logged by a fixed number of shards, each with its own thread and bounded queue. Username is always handled
+ * by the same shard, so there are no concurrent writes for one username as we want an accurate failure count.
+ * <p>
+ * Failures for username, which is already waiting in the queue, are merged into the waiting event instead of being queued
+ * again. Failures are never dropped. When the queue of the shard is full, failure for new username is put to the overflow
+ * of the shard instead, where it keeps counting further failures of the username until the shard takes it.
  *
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
  * @version $Revision: 1 $
  */
-public class BruteForceProtector implements Runnable {
+public class BruteForceProtector {
     protected static Logger logger = Logger.getLogger(BruteForceProtector.class);
 
+    public static final int TRANSACTION_SIZE = 20;
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
     protected volatile boolean run = true;
     protected int maxDeltaTimeSeconds = 60 * 60 * 12; // 12 hours
     protected KeycloakSessionFactory factory;
-    protected CountDownLatch shutdownLatch = new CountDownLatch(1);
+    protected CountDownLatch shutdownLatch;
 
     protected volatile long failures;
     protected volatile long lastFailure;
     protected volatile long totalTime;
 
-    protected LinkedBlockingQueue<LoginEvent> queue = new LinkedBlockingQueue<LoginEvent>();
-    public static final int TRANSACTION_SIZE = 20;
+    protected final Shard[] shards;
+
+    protected final AtomicLong processed = new AtomicLong();
+    protected final AtomicLong merged = new AtomicLong();
+    protected final AtomicLong overflowed = new AtomicLong();
+    protected final AtomicLong totalLag = new AtomicLong();
+    protected volatile long lastLag;
 
 
     protected abstract class LoginEvent implements Comparable<LoginEvent> {
@@ -67,14 +88,166 @@ public class BruteForceProtector implements Runnable {
 
     protected class FailedLogin extends LoginEvent {
         protected final CountDownLatch latch = new CountDownLatch(1);
+        protected final long created = System.currentTimeMillis();
+        protected int count = 1;
+        protected String lastIp;
+        protected boolean sealed;
 
         public FailedLogin(String realmId, String username, String ip) {
             super(realmId, username, ip);
+            this.lastIp = ip;
+        }
+
+        /**
+         * Adds another failure to this event, unless the event is already being processed
+         */
+        protected synchronized boolean merge(String ip) {
+            if (sealed) {
+                return false;
+            }
+            count++;
+            lastIp = ip;
+            return true;
+        }
+
+        protected synchronized void seal() {
+            sealed = true;
+        }
+    }
+
+    protected class Shard implements Runnable {
+        protected final int index;
+        protected final LinkedBlockingQueue<LoginEvent> queue;
+        protected final ConcurrentMap<String, FailedLogin> waiting = new ConcurrentHashMap<>();
+        // Unbounded, but holds at most one event per username as further failures are merged into it
+        protected final ConcurrentLinkedQueue<FailedLogin> overflow = new ConcurrentLinkedQueue<>();
+
+        protected Shard(int index, int queueSize) {
+            this.index = index;
+            this.queue = new LinkedBlockingQueue<>(queueSize);
+        }
+
+        /**
+         * @return event to wait for
+         */
+        protected FailedLogin failedLogin(String realmId, String username, String ip) {
+            String key = key(realmId, username);
+            while (true) {
+                FailedLogin existing = waiting.get(key);
+                if (existing != null) {
+                    if (existing.merge(ip)) {
+                        merged.incrementAndGet();
+                        return existing;
+                    }
+                    waiting.remove(key, existing);
+                    continue;
+                }
+
+                FailedLogin event = new FailedLogin(realmId, username, ip);
+                if (waiting.putIfAbsent(key, event) != null) {
+                    continue;
+                }
+                if (!queue.offer(event)) {
+                    overflow.add(event);
+                    overflowed.incrementAndGet();
+                    logger.debugv("Brute force protector queue is full, login failure for user {0} from ip {1} added to overflow", username, ip);
+                }
+                return event;
+            }
+        }
+
+        @Override
+        public void run() {
+            final ArrayList<LoginEvent> events = new ArrayList<LoginEvent>(TRANSACTION_SIZE + 1);
+            try {
+                while (run) {
+                    try {
+                        // overflow is not waited for, so don't block while it has events
+                        LoginEvent take = overflow.isEmpty() ? queue.poll(2, TimeUnit.SECONDS) : queue.poll();
+                        if (take != null) {
+                            events.add(take);
+                        }
+                        // take part of the batch from the overflow, so it's not starved by the full queue
+                        for (FailedLogin o; events.size() <= TRANSACTION_SIZE / 2 && (o = overflow.poll()) != null; ) {
+                            events.add(o);
+                        }
+                        if (events.isEmpty()) {
+                            continue;
+                        }
+                        try {
+                            queue.drainTo(events, TRANSACTION_SIZE + 1 - events.size());
+                            // no more failures can be merged into events from now on
+                            for (LoginEvent event : events) {
+                                if (event instanceof FailedLogin) {
+                                    FailedLogin failedLogin = (FailedLogin) event;
+                                    failedLogin.seal();
+                                    waiting.remove(key(failedLogin.realmId, failedLogin.username), failedLogin);
+                                }
+                            }
+                            Collections.sort(events); // we sort to avoid deadlock due to ordered updates.  Maybe I'm overthinking this.
+                            KeycloakSession session = factory.create();
+                            session.getTransaction().begin();
+                            try {
+                                for (LoginEvent event : events) {
+                                    if (event instanceof FailedLogin) {
+                                        failure(session, (FailedLogin) event);
+                                    } else if (event instanceof ShutdownEvent) {
+                                        run = false;
+                                    }
+                                }
+                                session.getTransaction().commit();
+                            } catch (Exception e) {
+                                session.getTransaction().rollback();
+                                throw e;
+                            } finally {
+                                long now = System.currentTimeMillis();
+                                for (LoginEvent event : events) {
+                                    if (event instanceof FailedLogin) {
+                                        FailedLogin failedLogin = (FailedLogin) event;
+                                        failedLogin.latch.countDown();
+                                        lastLag = now - failedLogin.created;
+                                        totalLag.addAndGet(lastLag);
+                                        processed.incrementAndGet();
+                                    }
+                                }
+                                events.clear();
+                                session.close();
+                            }
+                        } catch (Exception e) {
+                            logger.error("Failed processing type", e);
+                        }
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+            } finally {
+                shutdownLatch.countDown();
+            }
         }
     }
 
     public BruteForceProtector(KeycloakSessionFactory factory) {
+        this(factory, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Configured with:
+     * <ul>
+     *     <li>shards - number of threads logging failures. Default is number of available processors</li>
+     *     <li>queueSize - max number of usernames waiting in the queue of one shard. Default 1000</li>
+     * </ul>
+     */
+    public BruteForceProtector(KeycloakSessionFactory factory, Config.Scope config) {
+        this(factory, config.getInt("shards", Runtime.getRuntime().availableProcessors()), config.getInt("queueSize", DEFAULT_QUEUE_SIZE));
+    }
+
+    public BruteForceProtector(KeycloakSessionFactory factory, int shards, int queueSize) {
         this.factory = factory;
+        this.shards = new Shard[Math.max(1, shards)];
+        for (int i = 0; i < this.shards.length; i++) {
+            this.shards[i] = new Shard(i, queueSize);
+        }
+        this.shutdownLatch = new CountDownLatch(this.shards.length);
     }
 
     public void failure(KeycloakSession session, LoginEvent event) {
@@ -85,7 +258,22 @@ public class BruteForceProtector implements Runnable {
         if (user == null) {
             user = session.sessions().addUserLoginFailure(realm, event.username);
         }
-        user.setLastIPFailure(event.ip);
+        int count = 1;
+        String ip = event.ip;
+        if (event instanceof FailedLogin) {
+            synchronized (event) {
+                count = ((FailedLogin) event).count;
+                ip = ((FailedLogin) event).lastIp;
+            }
+        }
+        user.setLastIPFailure(ip);
+        // merged failures happened at about the same time, so all after the first one are treated as quick logins
+        for (int i = 0; i < count; i++) {
+            failure(realm, user);
+        }
+    }
+
+    protected void failure(RealmModel realm, UsernameLoginFailureModel user) {
         long currentTime = System.currentTimeMillis();
         long last = user.getLastFailure();
         long deltaTime = 0;
@@ -133,74 +321,40 @@ public class BruteForceProtector implements Runnable {
         return realm;
     }
 
+    protected static String key(String realmId, String username) {
+        return realmId + "::" + username;
+    }
+
+    protected Shard getShard(String realmId, String username) {
+        int hash = key(realmId, username).hashCode();
+        return shards[(hash & Integer.MAX_VALUE) % shards.length];
+    }
+
     public void start() {
-        new Thread(this, "Brute Force Protector").start();
+        for (Shard shard : shards) {
+            Thread thread = new Thread(shard, "Brute Force Protector " + shard.index);
+            thread.setDaemon(true);
+            thread.start();
+        }
     }
 
     public void shutdown() {
         run = false;
         try {
-            queue.offer(new ShutdownEvent());
+            for (Shard shard : shards) {
+                shard.queue.offer(new ShutdownEvent());
+            }
             shutdownLatch.await(10, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
     }
 
-
-    public void run() {
-        final ArrayList<LoginEvent> events = new ArrayList<LoginEvent>(TRANSACTION_SIZE + 1);
-        try {
-            while (run) {
-                try {
-                    LoginEvent take = queue.poll(2, TimeUnit.SECONDS);
-                    if (take == null) {
-                        continue;
-                    }
-                    try {
-                        events.add(take);
-                        queue.drainTo(events, TRANSACTION_SIZE);
-                        Collections.sort(events); // we sort to avoid deadlock due to ordered updates.  Maybe I'm overthinking this.
-                        KeycloakSession session = factory.create();
-                        session.getTransaction().begin();
-                        try {
-                            for (LoginEvent event : events) {
-                                if (event instanceof FailedLogin) {
-                                    failure(session, event);
-                                } else if (event instanceof ShutdownEvent) {
-                                    run = false;
-                                }
-                            }
-                            session.getTransaction().commit();
-                        } catch (Exception e) {
-                            session.getTransaction().rollback();
-                            throw e;
-                        } finally {
-                            for (LoginEvent event : events) {
-                                if (event instanceof FailedLogin) {
-                                    ((FailedLogin) event).latch.countDown();
-                                }
-                            }
-                            events.clear();
-                            session.close();
-                        }
-                    } catch (Exception e) {
-                        logger.error("Failed processing type", e);
-                    }
-                } catch (InterruptedException e) {
-                    break;
-                }
-            }
-        } finally {
-            shutdownLatch.countDown();
-        }
-    }
-
     protected void logSuccess(LoginEvent event) {
         logger.warn("login success for user " + event.username + " from ip " + event.ip);
     }
 
-    protected void logFailure(LoginEvent event) {
+    protected synchronized void logFailure(LoginEvent event) {
         logger.warn("login failure for user " + event.username + " from ip " + event.ip);
         failures++;
         long delta = 0;
@@ -226,8 +380,7 @@ public class BruteForceProtector implements Runnable {
 
     public void failedLogin(RealmModel realm, String username, ClientConnection clientConnection) {
         try {
-            FailedLogin event = new FailedLogin(realm.getId(), username, clientConnection.getRemoteAddr());
-            queue.offer(event);
+            FailedLogin event = getShard(realm.getId(), username).failedLogin(realm.getId(), username, clientConnection.getRemoteAddr());
             // wait a minimum of seconds for type to process so that a hacker
             // cannot flood with failed logins and overwhelm the queue and not have notBefore updated to block next requests
             // todo failure HTTP responses should be queued via async HTTP
@@ -259,5 +412,45 @@ public class BruteForceProtector implements Runnable {
         return lastFailure;
     }
 
+    /**
+     * @return number of failures waiting in the queue of each shard
+     */
+    public List<Integer> getQueueSizes() {
+        List<Integer> sizes = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            sizes.add(shard.queue.size());
+        }
+        return sizes;
+    }
+
+    /**
+     * @return number of failures waiting in the overflow of all shards
+     */
+    public int getOverflowSize() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.overflow.size();
+        }
+        return size;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        int queued = 0;
+        for (int size : getQueueSizes()) {
+            queued += size;
+        }
+        long count = processed.get();
+        stats.put("shards", shards.length);
+        stats.put("queued", queued);
+        stats.put("queueSizes", getQueueSizes());
+        stats.put("processed", count);
+        stats.put("merged", merged.get());
+        stats.put("overflow", getOverflowSize());
+        stats.put("overflowed", overflowed.get());
+        stats.put("lastLag", lastLag);
+        stats.put("averageLag", count > 0 ? totalLag.get() / count : 0);
+        return stats;
+    }
 
 }
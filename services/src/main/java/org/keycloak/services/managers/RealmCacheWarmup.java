@@ -0,0 +1,236 @@
+package org.keycloak.services.managers;
+
+import org.jboss.logging.Logger;
+import org.keycloak.Config;
+import org.keycloak.freemarker.Theme;
+import org.keycloak.freemarker.ThemeProvider;
+import org.keycloak.models.ClientModel;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.KeycloakSessionTask;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.RoleModel;
+import org.keycloak.models.utils.KeycloakModelUtils;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads realms, their clients, roles and themes after startup, so they're already cached when the first requests
+ * come. Realms are loaded in parallel on a pool of threads, each realm in its own transaction. The server accepts
+ * requests while the warmup runs, {@link #isFinished()} tells when the caches are ready.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class RealmCacheWarmup {
+
+    private static final Logger logger = Logger.getLogger(RealmCacheWarmup.class);
+
+    private static final long SHUTDOWN_TIMEOUT = 10000;
+
+    private final KeycloakSessionFactory sessionFactory;
+    private final boolean enabled;
+    private final String[] realmNames;
+    private final int threads;
+
+    private ExecutorService executor;
+    private final List<Future<?>> futures = new LinkedList<Future<?>>();
+
+    private volatile int total;
+    private final AtomicInteger warmedUp = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private volatile boolean finished;
+    private volatile long started;
+    private volatile long duration;
+
+    /**
+     * Configured with:
+     * <ul>
+     *     <li>realmCache - if true, realms are loaded after startup. Default false</li>
+     *     <li>realms - names of realms to load. Default is all realms</li>
+     *     <li>realmCacheThreads - number of threads loading realms. Default is number of available processors</li>
+     * </ul>
+     *
+     * @param sessionFactory
+     * @param config
+     */
+    public RealmCacheWarmup(KeycloakSessionFactory sessionFactory, Config.Scope config) {
+        this.sessionFactory = sessionFactory;
+        this.enabled = config.getBoolean("realmCache", false);
+        this.realmNames = config.getArray("realms");
+        this.threads = config.getInt("realmCacheThreads", Runtime.getRuntime().availableProcessors());
+    }
+
+    public void start() {
+        started = System.currentTimeMillis();
+
+        if (!enabled) {
+            finished = true;
+            return;
+        }
+
+        final List<String> realmIds = new LinkedList<String>();
+        KeycloakModelUtils.runJobInTransaction(sessionFactory, new KeycloakSessionTask() {
+            @Override
+            public void run(KeycloakSession session) {
+                if (realmNames == null) {
+                    for (RealmModel realm : session.realms().getRealms()) {
+                        realmIds.add(realm.getId());
+                    }
+                } else {
+                    for (String realmName : realmNames) {
+                        RealmModel realm = session.realms().getRealmByName(realmName);
+                        if (realm != null) {
+                            realmIds.add(realm.getId());
+                        } else {
+                            logger.warnv("Realm {0} configured for warmup doesn''t exist", realmName);
+                        }
+                    }
+                }
+            }
+        });
+
+        total = realmIds.size();
+        if (total == 0) {
+            finish();
+            return;
+        }
+
+        logger.debugv("Warming up {0} realms with {1} threads", total, threads);
+
+        executor = Executors.newFixedThreadPool(Math.min(threads, total), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Realm Cache Warmup " + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        for (final String realmId : realmIds) {
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        KeycloakModelUtils.runJobInTransaction(sessionFactory, new KeycloakSessionTask() {
+                            @Override
+                            public void run(KeycloakSession session) {
+                                warmUp(session, realmId);
+                            }
+                        });
+                        warmedUp.incrementAndGet();
+                    } catch (Throwable t) {
+                        // Errors are counted too, otherwise the warmup would never finish
+                        failed.incrementAndGet();
+                        logger.warn("Failed to warm up realm " + realmId, t);
+                    } finally {
+                        if (warmedUp.get() + failed.get() == total) {
+                            finish();
+                        }
+                    }
+                }
+            }));
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Cancels realms not loaded yet and waits for those being loaded. Threads are not interrupted, as interrupting a JDBC
+     * call may corrupt the database (eg. H2 closes the file on interrupt).
+     */
+    public void shutdown() {
+        if (executor == null) {
+            return;
+        }
+
+        for (Future<?> future : futures) {
+            future.cancel(false);
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                logger.warnv("Realm cache warmup didn''t stop within {0} ms", SHUTDOWN_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void warmUp(KeycloakSession session, String realmId) {
+        RealmModel realm = session.realms().getRealm(realmId);
+        if (realm == null) {
+            return;
+        }
+
+        for (RoleModel role : realm.getRoles()) {
+            role.getComposites();
+        }
+        for (ClientModel client : realm.getClients()) {
+            for (RoleModel role : client.getRoles()) {
+                role.getComposites();
+            }
+        }
+
+        ThemeProvider themeProvider = session.getProvider(ThemeProvider.class, "extending");
+        warmUpTheme(themeProvider, realm.getLoginTheme(), Theme.Type.LOGIN);
+        warmUpTheme(themeProvider, realm.getAccountTheme(), Theme.Type.ACCOUNT);
+        warmUpTheme(themeProvider, realm.getEmailTheme(), Theme.Type.EMAIL);
+    }
+
+    private void warmUpTheme(ThemeProvider themeProvider, String name, Theme.Type type) {
+        if (themeProvider == null || name == null) {
+            return;
+        }
+
+        try {
+            themeProvider.getTheme(name, type);
+        } catch (IOException e) {
+            logger.debugv("Failed to load theme {0}: {1}", name, e.getMessage());
+        }
+    }
+
+    private synchronized void finish() {
+        if (!finished) {
+            duration = System.currentTimeMillis() - started;
+            finished = true;
+            logger.infov("Realm cache warmup finished in {0} ms. Realms loaded: {1}, failed: {2}", duration, warmedUp.get(), failed.get());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getWarmedUp() {
+        return warmedUp.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return milliseconds the warmup took or has been running for
+     */
+    public long getDuration() {
+        return finished ? duration : System.currentTimeMillis() - started;
+    }
+
+}
@@ -1,5 +1,6 @@
 package org.keycloak.services.managers;
 
+import org.apache.http.client.config.RequestConfig;
 import org.jboss.logging.Logger;
 import org.keycloak.TokenIdGenerator;
 import org.keycloak.connections.httpclient.HttpClientProvider;
@@ -11,6 +12,7 @@ import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.UserSessionModel;
 import org.keycloak.protocol.oidc.TokenManager;
+import org.keycloak.representations.adapters.action.AdminAction;
 import org.keycloak.representations.adapters.action.GlobalRequestResult;
 import org.keycloak.representations.adapters.action.LogoutAction;
 import org.keycloak.representations.adapters.action.PushNotBeforeAction;
@@ -31,6 +33,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
@@ -104,8 +108,13 @@ public class ResourceAdminManager {
         logger.debugv("logging out {0} resources ", clientSessions.size());
         //logger.infov("logging out resources: {0}", clientSessions);
 
-        for (Map.Entry<ClientModel, List<ClientSessionModel>> entry : clientSessions.entrySet()) {
-            logoutClientSessions(requestUri, realm, entry.getKey(), entry.getValue());
+        BackchannelLogoutDispatcher.Batch batch = BackchannelLogoutDispatcher.startBatch();
+        try {
+            for (Map.Entry<ClientModel, List<ClientSessionModel>> entry : clientSessions.entrySet()) {
+                logoutClientSessions(requestUri, realm, entry.getKey(), entry.getValue());
+            }
+        } finally {
+            batch.finish();
         }
     }
 
@@ -159,16 +168,16 @@ public class ResourceAdminManager {
             }
 
             if (managementUrl.contains(CLIENT_SESSION_HOST_PROPERTY)) {
-                boolean allPassed = true;
+                List<Future<Boolean>> results = new LinkedList<Future<Boolean>>();
                 // Send logout separately to each host (needed for single-sign-out in cluster for non-distributable apps - KEYCLOAK-748)
                 for (Map.Entry<String, List<String>> entry : adapterSessionIds.entrySet()) {
                     String host = entry.getKey();
                     List<String> sessionIds = entry.getValue();
                     String currentHostMgmtUrl = managementUrl.replace(CLIENT_SESSION_HOST_PROPERTY, host);
-                    allPassed = sendLogoutRequest(realm, resource, sessionIds, userSessions, 0, currentHostMgmtUrl) && allPassed;
+                    results.add(sendLogoutRequest(realm, resource, sessionIds, userSessions, 0, currentHostMgmtUrl));
                 }
 
-                return allPassed;
+                return BackchannelLogoutDispatcher.await(results);
             } else {
                 // Send single logout request
                 List<String> allSessionIds = new ArrayList<String>();
@@ -176,7 +185,8 @@ public class ResourceAdminManager {
                     allSessionIds.addAll(currentIds);
                 }
 
-                return sendLogoutRequest(realm, resource, allSessionIds, userSessions, 0, managementUrl);
+                Future<Boolean> result = sendLogoutRequest(realm, resource, allSessionIds, userSessions, 0, managementUrl);
+                return BackchannelLogoutDispatcher.await(Collections.singletonList(result));
             }
         } else {
             logger.debugv("Can't logout {0}: no management url", resource.getClientId());
@@ -191,106 +201,77 @@ public class ResourceAdminManager {
         List<ClientModel> resources = realm.getClients();
         logger.debugv("logging out {0} resources ", resources.size());
 
-        GlobalRequestResult finalResult = new GlobalRequestResult();
+        // Requests to all clients are sent before waiting for results
+        MultivaluedHashMap<String, Future<Boolean>> results = new MultivaluedHashMap<String, Future<Boolean>>();
         for (ClientModel resource : resources) {
-            GlobalRequestResult currentResult = logoutClient(requestUri, realm, resource, realm.getNotBefore());
-            finalResult.addAll(currentResult);
+            logoutClient(requestUri, realm, resource, realm.getNotBefore(), results);
         }
-        return finalResult;
+        return getResults(results);
     }
 
     public GlobalRequestResult logoutClient(URI requestUri, RealmModel realm, ClientModel resource) {
         resource.setNotBefore(Time.currentTime());
-        return logoutClient(requestUri, realm, resource, resource.getNotBefore());
+        MultivaluedHashMap<String, Future<Boolean>> results = new MultivaluedHashMap<String, Future<Boolean>>();
+        logoutClient(requestUri, realm, resource, resource.getNotBefore(), results);
+        return getResults(results);
     }
 
 
-    protected GlobalRequestResult logoutClient(URI requestUri, RealmModel realm, ClientModel resource, int notBefore) {
+    protected void logoutClient(URI requestUri, RealmModel realm, ClientModel resource, int notBefore, MultivaluedHashMap<String, Future<Boolean>> results) {
         List<String> mgmtUrls = getAllManagementUrls(requestUri, resource);
         if (mgmtUrls.isEmpty()) {
             logger.debug("No management URL or no registered cluster nodes for the client " + resource.getClientId());
-            return new GlobalRequestResult();
+            return;
         }
 
         if (logger.isDebugEnabled()) logger.debug("Send logoutClient for URLs: " + mgmtUrls);
 
         // Propagate this to all hosts
-        GlobalRequestResult result = new GlobalRequestResult();
         for (String mgmtUrl : mgmtUrls) {
-            if (sendLogoutRequest(realm, resource, null, null, notBefore, mgmtUrl)) {
-                result.addSuccessRequest(mgmtUrl);
-            } else {
-                result.addFailedRequest(mgmtUrl);
-            }
+            results.add(mgmtUrl, sendLogoutRequest(realm, resource, null, null, notBefore, mgmtUrl));
         }
-        return result;
     }
 
-    protected boolean sendLogoutRequest(RealmModel realm, ClientModel resource, List<String> adapterSessionIds, List<String> userSessions, int notBefore, String managementUrl) {
+    protected Future<Boolean> sendLogoutRequest(RealmModel realm, ClientModel resource, List<String> adapterSessionIds, List<String> userSessions, int notBefore, String managementUrl) {
         LogoutAction adminAction = new LogoutAction(TokenIdGenerator.generateId(), Time.currentTime() + 30, resource.getClientId(), adapterSessionIds, notBefore, userSessions);
-        String token = new TokenManager().encodeToken(realm, adminAction);
         if (logger.isDebugEnabled()) logger.debugv("logout resource {0} url: {1} sessionIds: " + adapterSessionIds, resource.getClientId(), managementUrl);
-        URI target = UriBuilder.fromUri(managementUrl).path(AdapterConstants.K_LOGOUT).build();
-        try {
-            int status = session.getProvider(HttpClientProvider.class).postText(target.toString(), token);
-            boolean success = status == 204 || status == 200;
-            logger.debugf("logout success for %s: %s", managementUrl, success);
-            return success;
-        } catch (IOException e) {
-            logger.warn("Logout for client '" + resource.getClientId() + "' failed", e);
-            return false;
-        }
+        return sendAdminAction(realm, resource, adminAction, managementUrl, AdapterConstants.K_LOGOUT);
     }
 
     public GlobalRequestResult pushRealmRevocationPolicy(URI requestUri, RealmModel realm) {
-        GlobalRequestResult finalResult = new GlobalRequestResult();
+        MultivaluedHashMap<String, Future<Boolean>> results = new MultivaluedHashMap<String, Future<Boolean>>();
         for (ClientModel client : realm.getClients()) {
-            GlobalRequestResult currentResult = pushRevocationPolicy(requestUri, realm, client, realm.getNotBefore());
-            finalResult.addAll(currentResult);
+            pushRevocationPolicy(requestUri, realm, client, realm.getNotBefore(), results);
         }
-        return finalResult;
+        return getResults(results);
     }
 
     public GlobalRequestResult pushClientRevocationPolicy(URI requestUri, RealmModel realm, ClientModel client) {
-        return pushRevocationPolicy(requestUri, realm, client, client.getNotBefore());
+        MultivaluedHashMap<String, Future<Boolean>> results = new MultivaluedHashMap<String, Future<Boolean>>();
+        pushRevocationPolicy(requestUri, realm, client, client.getNotBefore(), results);
+        return getResults(results);
     }
 
 
-    protected GlobalRequestResult pushRevocationPolicy(URI requestUri, RealmModel realm, ClientModel resource, int notBefore) {
+    protected void pushRevocationPolicy(URI requestUri, RealmModel realm, ClientModel resource, int notBefore, MultivaluedHashMap<String, Future<Boolean>> results) {
         List<String> mgmtUrls = getAllManagementUrls(requestUri, resource);
         if (mgmtUrls.isEmpty()) {
             logger.debugf("No management URL or no registered cluster nodes for the client %s", resource.getClientId());
-            return new GlobalRequestResult();
+            return;
         }
 
         if (logger.isDebugEnabled()) logger.debug("Sending push revocation to URLS: " + mgmtUrls);
 
         // Propagate this to all hosts
-        GlobalRequestResult result = new GlobalRequestResult();
         for (String mgmtUrl : mgmtUrls) {
-            if (sendPushRevocationPolicyRequest(realm, resource, notBefore, mgmtUrl)) {
-                result.addSuccessRequest(mgmtUrl);
-            } else {
-                result.addFailedRequest(mgmtUrl);
-            }
+            results.add(mgmtUrl, sendPushRevocationPolicyRequest(realm, resource, notBefore, mgmtUrl));
         }
-        return result;
     }
 
-    protected boolean sendPushRevocationPolicyRequest(RealmModel realm, ClientModel resource, int notBefore, String managementUrl) {
+    protected Future<Boolean> sendPushRevocationPolicyRequest(RealmModel realm, ClientModel resource, int notBefore, String managementUrl) {
         PushNotBeforeAction adminAction = new PushNotBeforeAction(TokenIdGenerator.generateId(), Time.currentTime() + 30, resource.getClientId(), notBefore);
-        String token = new TokenManager().encodeToken(realm, adminAction);
         logger.debugv("pushRevocation resource: {0} url: {1}", resource.getClientId(), managementUrl);
-        URI target = UriBuilder.fromUri(managementUrl).path(AdapterConstants.K_PUSH_NOT_BEFORE).build();
-        try {
-            int status = session.getProvider(HttpClientProvider.class).postText(target.toString(), token);
-            boolean success = status == 204 || status == 200;
-            logger.debugf("pushRevocation success for %s: %s", managementUrl, success);
-            return success;
-        } catch (IOException e) {
-            logger.warn("Failed to send revocation request", e);
-            return false;
-        }
+        return sendAdminAction(realm, resource, adminAction, managementUrl, AdapterConstants.K_PUSH_NOT_BEFORE);
     }
 
     public GlobalRequestResult testNodesAvailability(URI requestUri, RealmModel realm, ClientModel client) {
@@ -304,31 +285,64 @@ public class ResourceAdminManager {
         if (logger.isDebugEnabled()) logger.debug("Sending test nodes availability: " + mgmtUrls);
 
         // Propagate this to all hosts
-        GlobalRequestResult result = new GlobalRequestResult();
+        MultivaluedHashMap<String, Future<Boolean>> results = new MultivaluedHashMap<String, Future<Boolean>>();
         for (String mgmtUrl : mgmtUrls) {
-            if (sendTestNodeAvailabilityRequest(realm, client, mgmtUrl)) {
-                result.addSuccessRequest(mgmtUrl);
-            } else {
-                result.addFailedRequest(mgmtUrl);
-            }
+            results.add(mgmtUrl, sendTestNodeAvailabilityRequest(realm, client, mgmtUrl));
         }
-        return result;
+        return getResults(results);
     }
 
-    protected boolean sendTestNodeAvailabilityRequest(RealmModel realm, ClientModel client, String managementUrl) {
+    protected Future<Boolean> sendTestNodeAvailabilityRequest(RealmModel realm, ClientModel client, String managementUrl) {
         TestAvailabilityAction adminAction = new TestAvailabilityAction(TokenIdGenerator.generateId(), Time.currentTime() + 30, client.getClientId());
-        String token = new TokenManager().encodeToken(realm, adminAction);
         logger.debugv("testNodes availability resource: {0} url: {1}", client.getClientId(), managementUrl);
-        URI target = UriBuilder.fromUri(managementUrl).path(AdapterConstants.K_TEST_AVAILABLE).build();
-        try {
-            int status = session.getProvider(HttpClientProvider.class).postText(target.toString(), token);
-            boolean success = status == 204 || status == 200;
-            logger.debugf("testAvailability success for %s: %s", managementUrl, success);
-            return success;
-        } catch (IOException e) {
-            logger.warn("Availability test failed for uri '" + managementUrl + "'", e);
-            return false;
+        return sendAdminAction(realm, client, adminAction, managementUrl, AdapterConstants.K_TEST_AVAILABLE);
+    }
+
+    private GlobalRequestResult getResults(MultivaluedHashMap<String, Future<Boolean>> results) {
+        List<String> urls = new ArrayList<String>();
+        List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+        for (Map.Entry<String, List<Future<Boolean>>> entry : results.entrySet()) {
+            for (Future<Boolean> future : entry.getValue()) {
+                urls.add(entry.getKey());
+                futures.add(future);
+            }
         }
-   }
+
+        List<Boolean> values = BackchannelLogoutDispatcher.getResults(futures);
+        GlobalRequestResult result = new GlobalRequestResult();
+        for (int i = 0; i < urls.size(); i++) {
+            if (values.get(i)) {
+                result.addSuccessRequest(urls.get(i));
+            } else {
+                result.addFailedRequest(urls.get(i));
+            }
+        }
+        return result;
+    }
+
+    // Token and target are created on the calling thread, only the http request is sent by the dispatcher
+    private Future<Boolean> sendAdminAction(RealmModel realm, ClientModel client, AdminAction adminAction, final String managementUrl, final String path) {
+        final String token = new TokenManager().encodeToken(realm, adminAction);
+        final String target = UriBuilder.fromUri(managementUrl).path(path).build().toString();
+        final String clientId = client.getClientId();
+        // Provider only wraps the shared http client, so it can be used after the session is closed
+        final HttpClientProvider httpClientProvider = session.getProvider(HttpClientProvider.class);
+        final RequestConfig requestConfig = BackchannelLogoutDispatcher.getRequestConfig();
+
+        return BackchannelLogoutDispatcher.submit(realm.getName(), clientId, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                try {
+                    int status = httpClientProvider.postText(target, token, requestConfig);
+                    boolean success = status == 204 || status == 200;
+                    logger.debugf("%s success for %s: %s", path, managementUrl, success);
+                    return success;
+                } catch (IOException e) {
+                    logger.warn("Sending " + path + " to client '" + clientId + "' failed for uri '" + managementUrl + "'", e);
+                    return false;
+                }
+            }
+        });
+    }
 
 }
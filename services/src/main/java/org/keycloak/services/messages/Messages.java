@@ -36,6 +36,8 @@ public class Messages {
 
     public static final String ACCOUNT_TEMPORARILY_DISABLED = "accountTemporarilyDisabledMessage";
 
+    public static final String LOGIN_TEMPORARILY_UNAVAILABLE = "loginTemporarilyUnavailableMessage";
+
     public static final String EXPIRED_CODE = "expiredCodeMessage";
 
     public static final String MISSING_FIRST_NAME = "missingFirstNameMessage";
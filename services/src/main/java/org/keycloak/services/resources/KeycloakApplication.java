@@ -6,17 +6,21 @@ import org.jboss.logging.Logger;
 import org.jboss.resteasy.core.Dispatcher;
 import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.keycloak.Config;
+import org.keycloak.events.EventDispatcher;
 import org.keycloak.exportimport.ExportImportManager;
 import org.keycloak.migration.MigrationModelManager;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
 import org.keycloak.models.RealmModel;
+import org.keycloak.models.utils.PasswordHashingExecutor;
 import org.keycloak.models.utils.PostMigrationEvent;
 import org.keycloak.offlineconfig.AdminRecovery;
 import org.keycloak.representations.idm.RealmRepresentation;
 import org.keycloak.services.DefaultKeycloakSessionFactory;
 import org.keycloak.services.managers.ApplianceBootstrap;
+import org.keycloak.services.managers.BackchannelLogoutDispatcher;
 import org.keycloak.services.managers.BruteForceProtector;
+import org.keycloak.services.managers.RealmCacheWarmup;
 import org.keycloak.services.managers.RealmManager;
 import org.keycloak.services.managers.UsersSyncManager;
 import org.keycloak.services.resources.admin.AdminRoot;
@@ -57,12 +61,15 @@ public class KeycloakApplication extends Application {
 
     public KeycloakApplication(@Context ServletContext context, @Context Dispatcher dispatcher) {
         loadConfig();
+        PasswordHashingExecutor.init(Config.scope("passwordHashing"));
 
         this.contextPath = context.getContextPath();
         this.sessionFactory = createSessionFactory();
+        EventDispatcher.init(Config.scope("asyncEvents"), sessionFactory);
+        BackchannelLogoutDispatcher.init(Config.scope("backchannelLogout"));
 
         dispatcher.getDefaultContextObjects().put(KeycloakApplication.class, this);
-        BruteForceProtector protector = new BruteForceProtector(sessionFactory);
+        BruteForceProtector protector = new BruteForceProtector(sessionFactory, Config.scope("bruteForceProtector"));
         dispatcher.getDefaultContextObjects().put(BruteForceProtector.class, protector);
         ResteasyProviderFactory.pushContext(BruteForceProtector.class, protector); // for injection
         ResteasyProviderFactory.pushContext(KeycloakApplication.class, this); // for injection
@@ -70,14 +77,21 @@ public class KeycloakApplication extends Application {
         context.setAttribute(BruteForceProtector.class.getName(), protector);
         context.setAttribute(KeycloakSessionFactory.class.getName(), this.sessionFactory);
 
+        RealmCacheWarmup warmup = new RealmCacheWarmup(sessionFactory, Config.scope("warmup"));
+        dispatcher.getDefaultContextObjects().put(RealmCacheWarmup.class, warmup);
+        ResteasyProviderFactory.pushContext(RealmCacheWarmup.class, warmup); // for injection
+        context.setAttribute(RealmCacheWarmup.class.getName(), warmup);
+
         singletons.add(new ServerVersionResource());
         singletons.add(new RealmsResource());
         singletons.add(new AdminRoot());
         singletons.add(new ModelExceptionMapper());
+        singletons.add(new PasswordHashingRejectedExceptionMapper());
         classes.add(QRCodeResource.class);
         classes.add(ThemeResource.class);
         classes.add(JsResource.class);
         classes.add(WelcomeResource.class);
+        classes.add(ServerReadinessResource.class);
 
         singletons.add(new ObjectMapperResolver(Boolean.parseBoolean(System.getProperty("keycloak.jsonPrettyPrint", "false"))));
 
@@ -91,6 +105,8 @@ public class KeycloakApplication extends Application {
 
         AdminRecovery.recover(sessionFactory);
 
+        warmup.start();
+
         setupScheduledTasks(sessionFactory);
     }
 
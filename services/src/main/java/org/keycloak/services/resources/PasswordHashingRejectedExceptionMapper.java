@@ -0,0 +1,29 @@
+package org.keycloak.services.resources;
+
+import org.jboss.logging.Logger;
+import org.keycloak.models.PasswordHashingRejectedException;
+import org.keycloak.services.ErrorResponse;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Password hashing queue is full, so client is asked to retry later instead of waiting for a request thread.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@Provider
+public class PasswordHashingRejectedExceptionMapper implements ExceptionMapper<PasswordHashingRejectedException> {
+
+    private static final Logger logger = Logger.getLogger(PasswordHashingRejectedExceptionMapper.class);
+
+    @Override
+    public Response toResponse(PasswordHashingRejectedException ex) {
+        logger.debug(ex.getMessage());
+        return Response.fromResponse(ErrorResponse.error(ex.getMessage(), Response.Status.SERVICE_UNAVAILABLE))
+                .header(HttpHeaders.RETRY_AFTER, ex.getRetryAfter())
+                .build();
+    }
+}
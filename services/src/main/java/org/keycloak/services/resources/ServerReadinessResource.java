@@ -0,0 +1,40 @@
+package org.keycloak.services.resources;
+
+import org.jboss.resteasy.annotations.cache.NoCache;
+import org.keycloak.representations.ReadinessRepresentation;
+import org.keycloak.services.managers.RealmCacheWarmup;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Tells load balancers if the server finished warming up its caches. Returns 503 while realms are still being loaded.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@Path("/ready")
+public class ServerReadinessResource {
+
+    @Context
+    protected RealmCacheWarmup warmup;
+
+    @GET
+    @NoCache
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getReadiness() {
+        ReadinessRepresentation rep = new ReadinessRepresentation();
+        rep.setReady(warmup.isFinished());
+        rep.setRealmsTotal(warmup.getTotal());
+        rep.setRealmsLoaded(warmup.getWarmedUp());
+        rep.setRealmsFailed(warmup.getFailed());
+        rep.setDuration(warmup.getDuration());
+
+        Response.Status status = rep.isReady() ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE;
+        return Response.status(status).entity(rep).build();
+    }
+
+}
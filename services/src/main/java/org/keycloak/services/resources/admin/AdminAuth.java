@@ -1,5 +1,7 @@
 package org.keycloak.services.resources.admin;
 
+import org.keycloak.Config;
+import org.keycloak.models.AdminRoles;
 import org.keycloak.models.ClientModel;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.RoleModel;
@@ -41,6 +43,13 @@ public class AdminAuth {
     }
 
 
+    /**
+     * @return true if authenticated with the master realm and has the admin role, so can access state of the whole server
+     */
+    public boolean isMasterAdmin() {
+        return realm.getName().equals(Config.getAdminRealm()) && hasRealmRole(AdminRoles.ADMIN);
+    }
+
     public boolean hasRealmRole(String role) {
         if (client instanceof ClientModel) {
             RoleModel roleModel = realm.getRole(role);
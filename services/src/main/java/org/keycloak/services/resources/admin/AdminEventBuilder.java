@@ -6,6 +6,7 @@ import java.util.List;
 
 import org.jboss.logging.Logger;
 import org.keycloak.common.ClientConnection;
+import org.keycloak.events.EventDispatcher;
 import org.keycloak.events.EventListenerProvider;
 import org.keycloak.events.EventStoreProvider;
 import org.keycloak.events.admin.AdminEvent;
@@ -26,6 +27,7 @@ public class AdminEventBuilder {
 
     private EventStoreProvider store;
     private List<EventListenerProvider> listeners;
+    private List<String> listenerIds;
     private RealmModel realm;
     private AdminEvent adminEvent;
 
@@ -44,10 +46,12 @@ public class AdminEventBuilder {
 
         if (realm.getEventsListeners() != null && !realm.getEventsListeners().isEmpty()) {
             this.listeners = new LinkedList<>();
+            this.listenerIds = new LinkedList<>();
             for (String id : realm.getEventsListeners()) {
                 EventListenerProvider listener = session.getProvider(EventListenerProvider.class, id);
                 if (listener != null) {
                     listeners.add(listener);
+                    listenerIds.add(id);
                 } else {
                     log.error("Event listener '" + id + "' registered, but provider not found");
                 }
@@ -183,6 +187,11 @@ public class AdminEventBuilder {
         }
         adminEvent.setTime(Time.toMillis(Time.currentTime()));
 
+        EventDispatcher dispatcher = EventDispatcher.getInstance();
+        if (dispatcher != null && (store != null || listeners != null) && dispatcher.dispatch(adminEvent.clone(), includeRepresentation, store != null, listenerIds)) {
+            return;
+        }
+
         if (store != null) {
             try {
                 store.onEvent(adminEvent, includeRepresentation);
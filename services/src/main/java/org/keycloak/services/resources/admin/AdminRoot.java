@@ -217,7 +217,7 @@ public class AdminRoot {
 
         Cors.add(request).allowedOrigins(auth.getToken()).allowedMethods("GET", "PUT", "POST", "DELETE").auth().build(response);
 
-        ServerInfoAdminResource adminResource = new ServerInfoAdminResource();
+        ServerInfoAdminResource adminResource = new ServerInfoAdminResource(auth);
         ResteasyProviderFactory.getInstance().injectProperties(adminResource);
         return adminResource;
     }
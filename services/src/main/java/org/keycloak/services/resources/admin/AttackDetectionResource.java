@@ -7,6 +7,7 @@ import org.keycloak.events.admin.OperationType;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UsernameLoginFailureModel;
+import org.keycloak.services.ForbiddenException;
 import org.keycloak.services.managers.BruteForceProtector;
 
 import javax.ws.rs.DELETE;
@@ -86,6 +87,26 @@ public class AttackDetectionResource {
         return data;
     }
 
+    /**
+     * Get status of the brute force detection queues
+     *
+     * Returns number of shards, failures waiting in the queue of each shard and in the overflow, processed, merged and
+     * overflowed failures and time in milliseconds between login failure and updating its count. Queues are shared by all
+     * realms, so only admins of the master realm have access
+     *
+     * @return
+     */
+    @GET
+    @Path("brute-force/queues")
+    @NoCache
+    @Produces(MediaType.APPLICATION_JSON)
+    public Map<String, Object> bruteForceQueueStatus() {
+        if (!auth.getAuth().isMasterAdmin()) {
+            throw new ForbiddenException();
+        }
+        return protector.getStatistics();
+    }
+
     /**
      * Clear any user login failures for the user
      *
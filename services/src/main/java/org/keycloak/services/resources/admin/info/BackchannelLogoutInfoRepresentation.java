@@ -0,0 +1,142 @@
+package org.keycloak.services.resources.admin.info;
+
+import org.keycloak.services.managers.BackchannelLogoutDispatcher;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class BackchannelLogoutInfoRepresentation {
+
+    protected int threads;
+    protected int active;
+    protected int queued;
+    protected long timeout;
+    protected boolean async;
+    protected int pending;
+    protected long sent;
+    protected long failed;
+    protected long sentByCaller;
+    protected long waitTimeouts;
+    protected List<ClientInfo> clients;
+
+    /**
+     * @param realm name of the realm to include client statistics for or null to include clients of all realms
+     * @return info about backchannel logout dispatcher or null if requests are sent on request threads
+     */
+    public static BackchannelLogoutInfoRepresentation create(String realm) {
+        BackchannelLogoutDispatcher dispatcher = BackchannelLogoutDispatcher.getInstance();
+        if (dispatcher == null) {
+            return null;
+        }
+
+        BackchannelLogoutInfoRepresentation rep = new BackchannelLogoutInfoRepresentation();
+        rep.threads = dispatcher.getThreads();
+        rep.active = dispatcher.getActive();
+        rep.queued = dispatcher.getQueued();
+        rep.timeout = dispatcher.getTimeout();
+        rep.async = dispatcher.isAsync();
+        rep.pending = dispatcher.getPending();
+        rep.sent = dispatcher.getSent();
+        rep.failed = dispatcher.getFailed();
+        rep.sentByCaller = dispatcher.getSentByCaller();
+        rep.waitTimeouts = dispatcher.getWaitTimeouts();
+
+        rep.clients = new LinkedList<ClientInfo>();
+        for (BackchannelLogoutDispatcher.ClientStats stats : dispatcher.getClientStats()) {
+            if (realm != null && !realm.equals(stats.getRealm())) {
+                continue;
+            }
+            ClientInfo client = new ClientInfo();
+            client.realm = stats.getRealm();
+            client.clientId = stats.getClientId();
+            client.sent = stats.getSent();
+            client.failed = stats.getFailed();
+            client.averageTime = stats.getAverageTime();
+            client.maxTime = stats.getMaxTime();
+            rep.clients.add(client);
+        }
+        return rep;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public int getPending() {
+        return pending;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getSentByCaller() {
+        return sentByCaller;
+    }
+
+    public long getWaitTimeouts() {
+        return waitTimeouts;
+    }
+
+    public List<ClientInfo> getClients() {
+        return clients;
+    }
+
+    public static class ClientInfo {
+
+        protected String realm;
+        protected String clientId;
+        protected long sent;
+        protected long failed;
+        protected long averageTime;
+        protected long maxTime;
+
+        public String getRealm() {
+            return realm;
+        }
+
+        public String getClientId() {
+            return clientId;
+        }
+
+        public long getSent() {
+            return sent;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getAverageTime() {
+            return averageTime;
+        }
+
+        public long getMaxTime() {
+            return maxTime;
+        }
+    }
+
+}
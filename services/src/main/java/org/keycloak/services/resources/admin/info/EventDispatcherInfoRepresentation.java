@@ -0,0 +1,78 @@
+package org.keycloak.services.resources.admin.info;
+
+import org.keycloak.events.EventDispatcher;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class EventDispatcherInfoRepresentation {
+
+    protected int queued;
+    protected int queueCapacity;
+    protected String overflowPolicy;
+    protected long dispatched;
+    protected long saved;
+    protected long failed;
+    protected long dropped;
+    protected long sentSynchronously;
+    protected long batches;
+
+    /**
+     * @return info about event dispatcher or null if events are sent on request threads
+     */
+    public static EventDispatcherInfoRepresentation create() {
+        EventDispatcher dispatcher = EventDispatcher.getInstance();
+        if (dispatcher == null) {
+            return null;
+        }
+
+        EventDispatcherInfoRepresentation rep = new EventDispatcherInfoRepresentation();
+        rep.queued = dispatcher.getQueued();
+        rep.queueCapacity = dispatcher.getQueueCapacity();
+        rep.overflowPolicy = dispatcher.getOverflowPolicy().name().toLowerCase();
+        rep.dispatched = dispatcher.getDispatched();
+        rep.saved = dispatcher.getSaved();
+        rep.failed = dispatcher.getFailed();
+        rep.dropped = dispatcher.getDropped();
+        rep.sentSynchronously = dispatcher.getSentSynchronously();
+        rep.batches = dispatcher.getBatches();
+        return rep;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public String getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public long getDispatched() {
+        return dispatched;
+    }
+
+    public long getSaved() {
+        return saved;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    public long getSentSynchronously() {
+        return sentSynchronously;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.keycloak.services.resources.admin.info;
+
+import org.keycloak.models.utils.PasswordHashingExecutor;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class PasswordHashingInfoRepresentation {
+
+    protected int threads;
+    protected int active;
+    protected int queued;
+    protected int queueCapacity;
+    protected long hashed;
+    protected long rejected;
+    protected long timedOut;
+    protected double averageHashingTime;
+    protected double averageWaitingTime;
+
+    /**
+     * @return info about password hashing executor or null if passwords are hashed on request threads
+     */
+    public static PasswordHashingInfoRepresentation create() {
+        PasswordHashingExecutor executor = PasswordHashingExecutor.getInstance();
+        if (executor == null) {
+            return null;
+        }
+
+        PasswordHashingInfoRepresentation rep = new PasswordHashingInfoRepresentation();
+        rep.threads = executor.getThreads();
+        rep.active = executor.getActive();
+        rep.queued = executor.getQueued();
+        rep.queueCapacity = executor.getQueueCapacity();
+        rep.hashed = executor.getHashed();
+        rep.rejected = executor.getRejected();
+        rep.timedOut = executor.getTimedOut();
+        rep.averageHashingTime = executor.getAverageHashingTime();
+        rep.averageWaitingTime = executor.getAverageWaitingTime();
+        return rep;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getHashed() {
+        return hashed;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getTimedOut() {
+        return timedOut;
+    }
+
+    public double getAverageHashingTime() {
+        return averageHashingTime;
+    }
+
+    public double getAverageWaitingTime() {
+        return averageWaitingTime;
+    }
+
+}
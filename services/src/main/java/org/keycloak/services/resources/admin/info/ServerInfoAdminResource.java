@@ -19,6 +19,7 @@ import org.keycloak.provider.Spi;
 import org.keycloak.representations.idm.ConfigPropertyRepresentation;
 import org.keycloak.representations.idm.ProtocolMapperRepresentation;
 import org.keycloak.representations.idm.ProtocolMapperTypeRepresentation;
+import org.keycloak.services.resources.admin.AdminAuth;
 import org.keycloak.social.SocialIdentityProvider;
 
 import javax.ws.rs.GET;
@@ -35,6 +36,12 @@ public class ServerInfoAdminResource {
     @Context
     private KeycloakSession session;
 
+    private final AdminAuth auth;
+
+    public ServerInfoAdminResource(AdminAuth auth) {
+        this.auth = auth;
+    }
+
     /**
      * Get themes, social providers, auth providers, and event listeners available on this server
      *
@@ -45,6 +52,10 @@ public class ServerInfoAdminResource {
         ServerInfoRepresentation info = new ServerInfoRepresentation();
         info.setSystemInfo(SystemInfoRepresentation.create(session));
         info.setMemoryInfo(MemoryInfoRepresentation.create());
+        info.setPasswordHashingInfo(PasswordHashingInfoRepresentation.create());
+        info.setEventDispatcherInfo(EventDispatcherInfoRepresentation.create());
+        // Admins of other realms see only clients of their realm
+        info.setBackchannelLogoutInfo(BackchannelLogoutInfoRepresentation.create(auth.isMasterAdmin() ? null : auth.getRealm().getName()));
 
         setSocialProviders(info);
         setIdentityProviders(info);
@@ -83,8 +94,10 @@ public class ServerInfoAdminResource {
             if (providerIds != null) {
                 for (String name : providerIds) {
                     ProviderRepresentation provider = new ProviderRepresentation();
-                    if (spiRep.isSystemInfo()) {
-                        provider.setOperationalInfo(((ServerInfoAwareProviderFactory) session.getKeycloakSessionFactory().getProviderFactory(spi.getProviderClass(), name)).getOperationalInfo());
+                    // Checked for each factory, as some providers of an SPI may show info, which others don't have
+                    ProviderFactory factory = session.getKeycloakSessionFactory().getProviderFactory(spi.getProviderClass(), name);
+                    if (factory instanceof ServerInfoAwareProviderFactory) {
+                        provider.setOperationalInfo(((ServerInfoAwareProviderFactory) factory).getOperationalInfo());
                     }
                     providers.put(name, provider);
                 }
@@ -13,6 +13,9 @@ public class ServerInfoRepresentation {
 
     private SystemInfoRepresentation systemInfo;
     private MemoryInfoRepresentation memoryInfo;
+    private PasswordHashingInfoRepresentation passwordHashingInfo;
+    private EventDispatcherInfoRepresentation eventDispatcherInfo;
+    private BackchannelLogoutInfoRepresentation backchannelLogoutInfo;
 
     private Map<String, List<String>> themes;
 
@@ -42,6 +45,31 @@ public class ServerInfoRepresentation {
     public void setMemoryInfo(MemoryInfoRepresentation memoryInfo) {
         this.memoryInfo = memoryInfo;
     }
+
+    public PasswordHashingInfoRepresentation getPasswordHashingInfo() {
+        return passwordHashingInfo;
+    }
+
+    public void setPasswordHashingInfo(PasswordHashingInfoRepresentation passwordHashingInfo) {
+        this.passwordHashingInfo = passwordHashingInfo;
+    }
+
+    public EventDispatcherInfoRepresentation getEventDispatcherInfo() {
+        return eventDispatcherInfo;
+    }
+
+    public void setEventDispatcherInfo(EventDispatcherInfoRepresentation eventDispatcherInfo) {
+        this.eventDispatcherInfo = eventDispatcherInfo;
+    }
+
+    public BackchannelLogoutInfoRepresentation getBackchannelLogoutInfo() {
+        return backchannelLogoutInfo;
+    }
+
+    public void setBackchannelLogoutInfo(BackchannelLogoutInfoRepresentation backchannelLogoutInfo) {
+        this.backchannelLogoutInfo = backchannelLogoutInfo;
+    }
+
     public Map<String, List<String>> getThemes() {
         return themes;
     }
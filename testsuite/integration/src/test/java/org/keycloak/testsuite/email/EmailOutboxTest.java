@@ -0,0 +1,96 @@
+package org.keycloak.testsuite.email;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.keycloak.email.freemarker.EmailOutbox;
+import org.keycloak.email.freemarker.OutgoingEmail;
+import org.keycloak.testsuite.rule.GreenMailRule;
+
+import javax.mail.internet.MimeMessage;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class EmailOutboxTest {
+
+    @Rule
+    public GreenMailRule greenMail = new GreenMailRule();
+
+    private EmailOutbox outbox;
+
+    @After
+    public void after() {
+        if (outbox != null) {
+            outbox.close();
+        }
+    }
+
+    @Test
+    public void deliver() throws Exception {
+        outbox = new EmailOutbox(2, 100, 3, 100, 1000);
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(outbox.submit(createEmail("3025", "user" + i + "@localhost")));
+        }
+
+        waitFor(10);
+
+        MimeMessage[] messages = greenMail.getReceivedMessages();
+        Assert.assertEquals(10, messages.length);
+        Assert.assertEquals("Subject", messages[0].getSubject());
+        Assert.assertEquals(10, outbox.getSent());
+        Assert.assertEquals(0, outbox.getRetried());
+        Assert.assertEquals(0, outbox.getPending());
+    }
+
+    @Test
+    public void retryAndFail() throws Exception {
+        outbox = new EmailOutbox(1, 100, 3, 10, 1000);
+
+        Assert.assertTrue(outbox.submit(createEmail("3026", "user@localhost")));
+
+        for (int i = 0; i < 100 && outbox.getFailed() == 0; i++) {
+            Thread.sleep(50);
+        }
+
+        Assert.assertEquals(1, outbox.getFailed());
+        Assert.assertEquals(2, outbox.getRetried());
+        Assert.assertEquals(0, outbox.getSent());
+        Assert.assertEquals(0, outbox.getPending());
+    }
+
+    @Test
+    public void full() throws Exception {
+        outbox = new EmailOutbox(1, 1, 3, 60000, 1000);
+
+        Assert.assertTrue(outbox.submit(createEmail("3026", "user@localhost")));
+        Assert.assertFalse(outbox.submit(createEmail("3025", "user@localhost")));
+    }
+
+    @Test
+    public void closed() throws Exception {
+        outbox = new EmailOutbox(1, 10, 3, 100, 1000);
+        outbox.close();
+
+        Assert.assertFalse(outbox.submit(createEmail("3025", "user@localhost")));
+    }
+
+    private OutgoingEmail createEmail(String port, String address) {
+        Map<String, String> config = new HashMap<>();
+        config.put("from", "auto@keycloak.org");
+        config.put("host", "localhost");
+        config.put("port", port);
+        return new OutgoingEmail(config, address, "Subject", "Text", "<p>Html</p>");
+    }
+
+    private void waitFor(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && greenMail.getReceivedMessages().length < count; i++) {
+            Thread.sleep(50);
+        }
+    }
+
+}
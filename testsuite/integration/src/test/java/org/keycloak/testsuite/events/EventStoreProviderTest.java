@@ -184,6 +184,26 @@ public class EventStoreProviderTest {
         Assert.assertEquals(3, eventStore.createQuery().getResultList().size());
     }
 
+    @Test
+    public void clearOldDays() {
+        long day = 24 * 60 * 60 * 1000L;
+        long now = System.currentTimeMillis();
+
+        eventStore.onEvent(create(now - 3 * day, EventType.LOGIN, "realmId", "clientId", "userId", "127.0.0.1", "error"));
+        eventStore.onEvent(create(now - 2 * day, EventType.LOGIN, "realmId", "clientId", "userId", "127.0.0.1", "error"));
+        eventStore.onEvent(create(now - day - 10000, EventType.LOGIN, "realmId", "clientId", "userId", "127.0.0.1", "error"));
+        eventStore.onEvent(create(now - day + 10000, EventType.LOGIN, "realmId", "clientId", "userId", "127.0.0.1", "error"));
+        eventStore.onEvent(create(now, EventType.LOGIN, "realmId", "clientId", "userId", "127.0.0.1", "error"));
+        eventStore.onEvent(create(now - 3 * day, EventType.LOGIN, "realmId2", "clientId", "userId", "127.0.0.1", "error"));
+
+        resetSession();
+
+        eventStore.clear("realmId", now - day);
+
+        Assert.assertEquals(3, eventStore.createQuery().getResultList().size());
+        Assert.assertEquals(2, eventStore.createQuery().realm("realmId").fromDate(new Date(now - 2 * day)).getResultList().size());
+    }
+
     private Event create(EventType event, String realmId, String clientId, String userId, String ipAddress, String error) {
         return create(System.currentTimeMillis(), event, realmId, clientId, userId, ipAddress, error);
     }
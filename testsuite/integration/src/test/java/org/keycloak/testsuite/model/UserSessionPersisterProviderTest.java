@@ -290,6 +290,46 @@ public class UserSessionPersisterProviderTest {
         realmMgr.removeRealm(realmMgr.getRealm("foo"));
     }
 
+    @Test
+    public void testLoadAfter() {
+        UserSessionModel[] origSessions = createSessions();
+
+        resetSession();
+
+        for (UserSessionModel userSession : origSessions) {
+            persistUserSession(session.sessions().getUserSession(realm, userSession.getId()), true);
+        }
+
+        resetSession();
+
+        // Load in pages following after the last userSession of previous page
+        List<UserSessionModel> loadedSessions = new ArrayList<>();
+        String lastUserSessionId = null;
+        for (int i = 0; i < 2; i++) {
+            List<UserSessionModel> page = persister.loadUserSessions(lastUserSessionId, 2, true);
+            loadedSessions.addAll(page);
+            lastUserSessionId = page.get(page.size() - 1).getId();
+        }
+        Assert.assertEquals(0, persister.loadUserSessions(lastUserSessionId, 2, true).size());
+        UserSessionProviderTest.assertSessions(loadedSessions, origSessions);
+
+        // Segment boundaries
+        String secondId = loadedSessions.get(1).getId();
+        Assert.assertEquals(secondId, persister.getUserSessionIdAfter(null, 2, true));
+        Assert.assertEquals(loadedSessions.get(2).getId(), persister.getUserSessionIdAfter(secondId, 1, true));
+        Assert.assertNull(persister.getUserSessionIdAfter(secondId, 2, true));
+
+        // Load single userSession
+        UserSessionModel userSession = persister.loadUserSession(origSessions[0].getId(), true);
+        Assert.assertEquals(2, userSession.getClientSessions().size());
+        Assert.assertNull(persister.loadUserSession(origSessions[0].getId(), false));
+
+        String clientSessionId = session.sessions().getUserSession(realm, origSessions[1].getId()).getClientSessions().get(0).getId();
+        userSession = persister.loadUserSessionByClientSession(clientSessionId, true);
+        Assert.assertEquals(origSessions[1].getId(), userSession.getId());
+        Assert.assertNull(persister.loadUserSessionByClientSession("unknown", true));
+    }
+
     // KEYCLOAK-1999
     @Test
     public void testNoSessions() {